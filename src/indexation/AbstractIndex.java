@@ -1,5 +1,6 @@
 package indexation;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -12,9 +13,14 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import tools.FileTools;
+import indexation.content.DocumentStatistics;
 import indexation.content.IndexEntry;
+import indexation.content.OffHeapPostingStore;
+import indexation.content.PostingCache;
+import indexation.content.PostingFile;
 import indexation.processing.Builder;
 import indexation.processing.Normalizer;
 import indexation.processing.Tokenizer;
@@ -25,7 +31,7 @@ import indexation.content.Token;
  * classes filles différent dans la structure de données qu'elles utilisent pour
  * représenter le lexique.
  */
-public abstract class AbstractIndex implements Serializable {
+public abstract class AbstractIndex implements Serializable, Closeable {
 	/** Class id (juste pour éviter le warning) */
 	private static final long serialVersionUID = 1L;
 
@@ -86,7 +92,7 @@ public abstract class AbstractIndex implements Serializable {
 		System.out.println("Building index...");
 		start = System.currentTimeMillis();
 		Builder builder = new Builder();
-		result = builder.buildIndex(tokens, lexiconType);
+		result = builder.buildIndex(tokens, lexiconType, docNbr);
 		end = System.currentTimeMillis();
 		System.out.println("There are " + result.getSize()
 				+ " entries in the index, token list=" + tokenListType
@@ -125,7 +131,14 @@ public abstract class AbstractIndex implements Serializable {
 		/** Utilise une table de hashage */
 		HASH,
 		/** Utilise un arbre */
-		TREE;
+		TREE,
+		/**
+		 * Utilise une table de hachage à adressage ouvert, les termes étant
+		 * stockés dans une zone d'octets contiguë
+		 */
+		ARENA,
+		/** Utilise un arbre B+ stocké sur disque */
+		BTREE;
 	}
 
 	// //////////////////////////////////////////////////
@@ -143,6 +156,69 @@ public abstract class AbstractIndex implements Serializable {
 		return docNbr;
 	}
 
+	/** Normes et longueurs des documents, calculées lors de l'indexation */
+	private DocumentStatistics documentStatistics;
+
+	/**
+	 * Renvoie les statistiques des documents du corpus indexé.
+	 * 
+	 * @return Normes et longueurs des documents, ou {@code null} si elles
+	 *         n'ont pas été calculées.
+	 */
+	public DocumentStatistics getDocumentStatistics() {
+		return documentStatistics;
+	}
+
+	/**
+	 * Associe à cet index les statistiques des documents du corpus.
+	 * 
+	 * @param documentStatistics
+	 *            Normes et longueurs des documents.
+	 */
+	public void setDocumentStatistics(DocumentStatistics documentStatistics) {
+		this.documentStatistics = documentStatistics;
+		incrementGeneration();
+	}
+
+	// //////////////////////////////////////////////////
+	// GÉNÉRATION
+	// //////////////////////////////////////////////////
+	/** Dernier numéro de génération attribué, tous index confondus */
+	private static final AtomicLong GENERATIONS = new AtomicLong();
+	/**
+	 * Numéro de génération de cet index, ou zéro s'il n'a pas encore été
+	 * attribué (notamment après la lecture de l'index)
+	 */
+	private transient volatile long generation;
+
+	/**
+	 * Renvoie le numéro de génération de cet index, qui change à chaque
+	 * modification de l'index. Deux index différents n'ont jamais le même
+	 * numéro : un résultat calculé pour une génération donnée peut donc être
+	 * réutilisé tant que ce numéro n'a pas changé.
+	 * 
+	 * @return Numéro de génération.
+	 */
+	public long getGeneration() {
+		long result = generation;
+		if (result == 0) {
+			result = GENERATIONS.incrementAndGet();
+			generation = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Signale une modification de cet index, en lui attribuant un nouveau
+	 * numéro de génération. Les méthodes de cette classe et
+	 * {@link #addEntry(IndexEntry, int)} l'appellent elles-mêmes ; une
+	 * modification faite directement dans une entrée de l'index doit être
+	 * signalée explicitement.
+	 */
+	public void incrementGeneration() {
+		generation = GENERATIONS.incrementAndGet();
+	}
+
 	// //////////////////////////////////////////////////
 	// TERMES
 	// //////////////////////////////////////////////////
@@ -262,6 +338,93 @@ public abstract class AbstractIndex implements Serializable {
 				.println("Index written, duration=" + (end - start) + " ms\n");
 	}
 
+	/**
+	 * Libère les ressources associées à cet index, et notamment la mémoire
+	 * occupée par les postings stockés hors du tas ou le fichier des postings
+	 * lus à la demande. L'index ne doit plus être utilisé après l'appel de
+	 * cette méthode.
+	 * 
+	 * @throws IOException
+	 *             Problème lors de la fermeture d'un fichier.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (postingStore != null) {
+			postingStore.close();
+		}
+		if (postingFile != null) {
+			postingFile.close();
+		}
+	}
+
+	// //////////////////////////////////////////////////
+	// POSTINGS
+	// //////////////////////////////////////////////////
+	/** Zone hors du tas contenant les postings (optionnelle) */
+	private OffHeapPostingStore postingStore;
+
+	/**
+	 * Renvoie la zone hors du tas contenant les postings de cet index.
+	 * 
+	 * @return Zone de stockage des postings, ou {@code null} si les postings
+	 *         sont stockés dans le tas.
+	 */
+	public OffHeapPostingStore getPostingStore() {
+		return postingStore;
+	}
+
+	/**
+	 * Associe à cet index la zone hors du tas contenant ses postings, qui sera
+	 * libérée lors de la fermeture de l'index.
+	 * 
+	 * @param postingStore
+	 *            Zone de stockage des postings.
+	 */
+	public void setPostingStore(OffHeapPostingStore postingStore) {
+		this.postingStore = postingStore;
+		incrementGeneration();
+	}
+
+	/** Fichier contenant les postings lus à la demande (optionnel) */
+	private PostingFile postingFile;
+
+	/**
+	 * Renvoie le fichier contenant les postings de cet index, lorsque ceux-ci
+	 * ne sont lus qu'à la demande.
+	 * 
+	 * @return Fichier des postings, ou {@code null} si les postings sont
+	 *         gardés en mémoire.
+	 */
+	public PostingFile getPostingFile() {
+		return postingFile;
+	}
+
+	/**
+	 * Associe à cet index le fichier contenant ses postings, qui sera fermé
+	 * lors de la fermeture de l'index.
+	 * 
+	 * @param postingFile
+	 *            Fichier des postings.
+	 */
+	public void setPostingFile(PostingFile postingFile) {
+		this.postingFile = postingFile;
+		incrementGeneration();
+	}
+
+	/**
+	 * Renvoie le cache des listes de postings lues sur disque, qui permet
+	 * notamment d'en consulter les statistiques (taux de succès, évictions,
+	 * octets occupés).
+	 * 
+	 * @return Cache de postings, ou {@code null} si cet index n'en utilise
+	 *         pas.
+	 */
+	public PostingCache getPostingCache() {
+		if (postingFile == null)
+			return null;
+		return postingFile.getCache();
+	}
+
 	// //////////////////////////////////////////////////
 	// AFFICHAGE
 	// //////////////////////////////////////////////////
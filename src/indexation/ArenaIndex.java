@@ -0,0 +1,153 @@
+package indexation;
+
+import java.util.Arrays;
+
+import indexation.content.IndexEntry;
+import indexation.content.Posting;
+import indexation.lexicon.ArenaHashLexicon;
+
+/**
+ * Objet représentant un index sous la forme d'un fichier inverse simple, dont
+ * le lexique est stocké dans une table de hachage à adressage ouvert, les
+ * termes eux-mêmes étant regroupés dans une zone d'octets contiguë (cf.
+ * {@link ArenaHashLexicon}). Les entrées ne conservent pas leur terme sous
+ * forme de chaîne, mais son enregistrement dans cette zone (cf.
+ * {@link IndexEntry#moveTermToArena(indexation.lexicon.TermArena, int)}) :
+ * on évite ainsi tout objet {@link String} par terme.
+ */
+public class ArenaIndex extends AbstractIndex {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construit un nouvel index vide, de la taille indiquée en paramètre.
+	 *
+	 * @param size Taille de l'index (exprimée en nombre de termes).
+	 */
+	public ArenaIndex(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Size cannot be negative.");
+		}
+		lexicon = new ArenaHashLexicon(size);
+		data = new IndexEntry[Math.max(size, 1)];
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Lexique de l'index */
+	private ArenaHashLexicon lexicon;
+	/** Postings de l'index, indexés par numéro de terme */
+	private IndexEntry[] data;
+
+	@Override
+	public void addEntry(IndexEntry indexEntry, int rank) {
+		int id = lexicon.add(indexEntry.getTerm());
+		if (id >= data.length) {
+			data = Arrays.copyOf(data, Math.max(id + 1, data.length * 2));
+		}
+		data[id] = indexEntry;
+		indexEntry.moveTermToArena(lexicon.getArena(), lexicon.getRecord(id));
+		incrementGeneration();
+	}
+
+	@Override
+	public IndexEntry getEntry(String term) {
+		return getEntry((CharSequence) term);
+	}
+
+	/**
+	 * Renvoie l'entrée correspondant au terme passé en paramètre, sans créer
+	 * de chaîne de caractères. Si une telle entrée n'existe pas, alors la
+	 * méthode renvoie {@code null}.
+	 *
+	 * @param term Terme à rechercher.
+	 * @return Entrée associée au terme.
+	 */
+	public IndexEntry getEntry(CharSequence term) {
+		if (term == null) {
+			return null;
+		}
+		int id = lexicon.find(term);
+		return (id < 0) ? null : data[id];
+	}
+
+	/**
+	 * Renvoie l'entrée correspondant au terme passé en paramètre, sous sa forme
+	 * encodée en UTF-8. Si une telle entrée n'existe pas, alors la méthode
+	 * renvoie {@code null}.
+	 *
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @return Entrée associée au terme.
+	 */
+	public IndexEntry getEntry(byte[] term, int offset, int length) {
+		int id = lexicon.find(term, offset, length);
+		return (id < 0) ? null : data[id];
+	}
+
+	@Override
+	public int getSize() {
+		return lexicon.getSize();
+	}
+
+	////////////////////////////////////////////////////
+	// AFFICHAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Affiche le contenu de l'index.
+	 */
+	@Override
+	public void print() {
+		for (int i = 0; i < lexicon.getSize(); i++) {
+			System.out.println(data[i]);
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		// test du constructeur
+		Posting posting1 = new Posting(5);
+		Posting posting2 = new Posting(10);
+
+		IndexEntry indexEntry1 = new IndexEntry("maison");
+		indexEntry1.addPosting(posting1);
+		indexEntry1.addPosting(posting2);
+
+		IndexEntry indexEntry2 = new IndexEntry("électricité");
+		indexEntry2.addPosting(posting2);
+
+		IndexEntry indexEntry3 = new IndexEntry("lambda");
+
+		ArenaIndex arenaIndex = new ArenaIndex(1);
+
+		// test de print
+		arenaIndex.print();
+
+		// test de addEntry
+		arenaIndex.addEntry(indexEntry1, 0);
+		arenaIndex.addEntry(indexEntry2, 1);
+		arenaIndex.print();
+		System.out.println("getSize: " + arenaIndex.getSize());
+
+		// test de getEntry
+		System.out.println("getEntry on existing element: " + arenaIndex.getEntry(indexEntry2.getTerm()));
+		System.out.println("getEntry on non existing element: " + arenaIndex.getEntry(indexEntry3.getTerm()));
+		byte[] utf8 = "maison".getBytes("UTF-8");
+		System.out.println("getEntry with bytes: " + arenaIndex.getEntry(utf8, 0, utf8.length));
+
+		// test de getSize
+		arenaIndex.addEntry(indexEntry1, 0);
+		System.out.println("getSize: " + arenaIndex.getSize());
+	}
+}
@@ -1,9 +1,8 @@
 package indexation;
 
-import java.util.Arrays;
-
 import indexation.content.IndexEntry;
 import indexation.content.Posting;
+import indexation.lexicon.EytzingerLexicon;
 
 /**
  * Objet représentant un index sous la forme d'un fichier inverse simple, dont
@@ -30,6 +29,11 @@ public class ArrayIndex extends AbstractIndex {
 	////////////////////////////////////////////////////
 	/** Lexique et postings de l'index */
 	private IndexEntry[] data;
+	/**
+	 * Disposition du lexique utilisée pour les recherches, construite lors de
+	 * la première recherche et invalidée à chaque ajout d'entrée
+	 */
+	private transient volatile EytzingerLexicon lexicon;
 
 	@Override
 	public void addEntry(IndexEntry indexEntry, int rank) {
@@ -42,6 +46,8 @@ public class ArrayIndex extends AbstractIndex {
 		}
 
 		data[rank] = indexEntry;
+		lexicon = null;
+		incrementGeneration();
 	}
 
 	@Override
@@ -50,7 +56,13 @@ public class ArrayIndex extends AbstractIndex {
 			return null;
 		}
 
-		int searchResult = Arrays.binarySearch(data, new IndexEntry(term));
+		EytzingerLexicon lexicon = this.lexicon;
+		if (lexicon == null) {
+			lexicon = EytzingerLexicon.fromEntries(data);
+			this.lexicon = lexicon;
+		}
+
+		int searchResult = lexicon.find(term);
 		if (searchResult < 0) {
 			return null;
 		}
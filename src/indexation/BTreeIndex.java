@@ -0,0 +1,320 @@
+package indexation;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import indexation.content.IndexEntry;
+import indexation.content.Posting;
+import indexation.content.PostingCache;
+import indexation.content.PostingFile;
+import indexation.lexicon.BTreeCursor;
+import indexation.lexicon.BTreeLexicon;
+import indexation.lexicon.BTreeLexiconWriter;
+import indexation.lexicon.TermArena;
+import tools.Configuration;
+import tools.FileTools;
+
+/**
+ * Objet représentant un index sous la forme d'un fichier inverse simple, dont
+ * le lexique est stocké sur disque dans un arbre B+ (cf. {@link BTreeLexicon})
+ * et les postings dans un fichier séparé (cf. {@link PostingFile}). Seules les
+ * pages internes de l'arbre sont gardées en mémoire : ce type d'index permet
+ * donc de traiter des lexiques plus gros que le tas. <br/>
+ * Les entrées doivent être ajoutées dans l'ordre lexicographique, ce que fait
+ * {@link indexation.processing.Builder}. L'index devient accessible en lecture
+ * seule dès la première recherche. La sérialisation de l'index n'enregistre
+ * que les chemins des deux fichiers. <br/>
+ * Les termes dont l'encodage UTF-8 dépasse
+ * {@link BTreeLexicon#MAX_TERM_LENGTH} octets (typiquement des chaînes
+ * aberrantes extraites de pages web) ne tiennent pas dans une page de l'arbre :
+ * ils sont ignorés lors de la construction, sans interrompre celle-ci, et
+ * comptés par {@link #getSkippedTermNumber()}. Une recherche portant sur l'un
+ * d'eux ne renvoie donc aucune entrée.
+ */
+public class BTreeIndex extends AbstractIndex {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construit un nouvel index vide, utilisant les fichiers définis par la
+	 * configuration courante.
+	 */
+	public BTreeIndex() {
+		this(FileTools.getLexiconFile(), FileTools.getPostingsFile());
+	}
+
+	/**
+	 * Construit un nouvel index vide, utilisant les fichiers spécifiés.
+	 *
+	 * @param lexiconFile  Chemin du fichier contenant l'arbre B+.
+	 * @param postingsFile Chemin du fichier contenant les postings.
+	 */
+	public BTreeIndex(String lexiconFile, String postingsFile) {
+		this.lexiconFile = lexiconFile;
+		this.postingsFile = postingsFile;
+		built = false;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Chemin du fichier du lexique */
+	private String lexiconFile;
+	/** Chemin du fichier des postings */
+	private String postingsFile;
+	/** Indique si la construction des fichiers est terminée */
+	private boolean built;
+	/** Nombre de termes ignorés car trop longs */
+	private int skippedTerms;
+	/** Lexique ouvert en lecture */
+	private transient volatile BTreeLexicon lexicon;
+	/** Objet utilisé pour écrire le lexique lors de la construction */
+	private transient BTreeLexiconWriter writer;
+	/** Fichier de postings */
+	private transient PostingFile postings;
+	/** Dernière entrée ajoutée, dont la liste de postings peut encore changer */
+	private transient IndexEntry pending;
+
+	@Override
+	public synchronized void addEntry(IndexEntry indexEntry, int rank) {
+		if (built) {
+			throw new IllegalStateException("The index is read-only once built.");
+		}
+		try {
+			if (writer == null) {
+				writer = new BTreeLexiconWriter(lexiconFile);
+				postings = new PostingFile(postingsFile);
+			}
+			flushPending();
+			pending = indexEntry;
+			incrementGeneration();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Enregistre sur disque l'entrée en attente, dont la liste de postings est
+	 * désormais complète.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	private void flushPending() throws IOException {
+		if (pending != null) {
+			String term = pending.getTerm();
+			if (TermArena.utf8Length(term) > BTreeLexicon.MAX_TERM_LENGTH) {
+				skippedTerms++;
+			} else {
+				long offset = postings.write(pending);
+				writer.add(term, offset);
+			}
+			pending = null;
+		}
+	}
+
+	/**
+	 * Renvoie le nombre de termes ignorés lors de la construction, car trop
+	 * longs pour être stockés dans l'arbre.
+	 *
+	 * @return Nombre de termes ignorés.
+	 */
+	public synchronized int getSkippedTermNumber() {
+		return skippedTerms;
+	}
+
+	/**
+	 * Renvoie le lexique ouvert en lecture, sans synchronisation une fois
+	 * qu'il a été ouvert.
+	 *
+	 * @return Le lexique ouvert en lecture.
+	 */
+	private BTreeLexicon getLexicon() {
+		BTreeLexicon result = lexicon;
+		if (result == null) {
+			result = openLexicon();
+		}
+		return result;
+	}
+
+	/**
+	 * Termine si besoin la construction de l'index, puis ouvre le lexique en
+	 * lecture.
+	 *
+	 * @return Le lexique ouvert en lecture.
+	 */
+	private synchronized BTreeLexicon openLexicon() {
+		try {
+			if (!built) {
+				if (writer == null) {
+					writer = new BTreeLexiconWriter(lexiconFile);
+					postings = new PostingFile(postingsFile);
+				}
+				flushPending();
+				writer.close();
+				writer = null;
+				postings.finishWriting();
+				built = true;
+			}
+			if (lexicon == null) {
+				if (postings == null) {
+					postings = new PostingFile(postingsFile);
+				}
+				// publié en dernier : les lectures sans verrou voient les postings
+				lexicon = new BTreeLexicon(lexiconFile, BTreeLexicon.DEFAULT_CACHE_SIZE);
+			}
+			return lexicon;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public IndexEntry getEntry(String term) {
+		if (term == null) {
+			return null;
+		}
+		BTreeLexicon lexicon = getLexicon();
+		try {
+			long offset = lexicon.find(term);
+			if (offset < 0) {
+				return null;
+			}
+			return postings.read(term, offset);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Renvoie, dans l'ordre lexicographique, les entrées dont les termes sont
+	 * compris entre les deux bornes spécifiées.
+	 *
+	 * @param from Borne inférieure (incluse), ou {@code null}.
+	 * @param to   Borne supérieure (exclue), ou {@code null}.
+	 * @return Liste des entrées correspondantes.
+	 */
+	public List<IndexEntry> getEntries(String from, String to) {
+		List<IndexEntry> result = new ArrayList<IndexEntry>();
+		BTreeLexicon lexicon = getLexicon();
+		try {
+			BTreeCursor cursor = lexicon.seek(from);
+			while (cursor.next() && (to == null || cursor.compareTo(to) < 0)) {
+				result.add(postings.read(cursor.getTerm(), cursor.getValue()));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return result;
+	}
+
+	@Override
+	public int getSize() {
+		return getLexicon().getSize();
+	}
+
+	@Override
+	public PostingCache getPostingCache() {
+		getLexicon();
+		return postings.getCache();
+	}
+
+	////////////////////////////////////////////////////
+	// STOCKAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Termine la construction de l'index avant de le sérialiser.
+	 *
+	 * @param out Flux de sérialisation.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		getLexicon();
+		out.defaultWriteObject();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		super.close();
+		if (lexicon != null) {
+			lexicon.close();
+			lexicon = null;
+		}
+		if (postings != null) {
+			postings.close();
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// AFFICHAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Affiche le contenu de l'index.
+	 */
+	@Override
+	public void print() {
+		for (IndexEntry indexEntry : getEntries(null, null)) {
+			System.out.println(indexEntry);
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		Configuration.setCorpusName("wp_test");
+
+		// test du constructeur
+		IndexEntry indexEntry1 = new IndexEntry("autre");
+		IndexEntry indexEntry2 = new IndexEntry("maison");
+		IndexEntry indexEntry3 = new IndexEntry("voiture");
+		StringBuilder longTerm = new StringBuilder("tr");
+		while (longTerm.length() <= BTreeLexicon.MAX_TERM_LENGTH) {
+			longTerm.append('o');
+		}
+		IndexEntry indexEntryLong = new IndexEntry(longTerm.toString());
+		indexEntryLong.addPosting(new Posting(7, 1));
+
+		BTreeIndex bTreeIndex = new BTreeIndex();
+
+		// test de addEntry (les postings peuvent être ajoutés après l'entrée)
+		bTreeIndex.addEntry(indexEntry1, 0);
+		indexEntry1.addPosting(new Posting(2, 1));
+		indexEntry1.addPosting(new Posting(5, 3));
+		bTreeIndex.addEntry(indexEntry2, 1);
+		indexEntry2.addPosting(new Posting(10, 2));
+		bTreeIndex.addEntry(indexEntryLong, 2);
+		bTreeIndex.addEntry(indexEntry3, 3);
+
+		// test de print
+		bTreeIndex.print();
+
+		// test de getEntry
+		System.out.println("getEntry on existing element: " + bTreeIndex.getEntry("maison"));
+		System.out.println("getEntry on non existing element: " + bTreeIndex.getEntry("lambda"));
+		System.out.println("getEntry on skipped element: " + bTreeIndex.getEntry(indexEntryLong.getTerm())
+				+ ", getSkippedTermNumber: " + bTreeIndex.getSkippedTermNumber());
+
+		// test de getEntries
+		System.out.println("getEntries from b to w: " + bTreeIndex.getEntries("b", "w"));
+
+		// test de getSize
+		System.out.println("getSize: " + bTreeIndex.getSize());
+		try {
+			bTreeIndex.addEntry(indexEntry1, 0);
+		} catch (IllegalStateException e) {
+			System.out.println("Exception catched : " + e.getMessage());
+		}
+		bTreeIndex.close();
+	}
+}
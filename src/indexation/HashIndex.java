@@ -35,6 +35,7 @@ public class HashIndex extends AbstractIndex {
 	@Override
 	public void addEntry(IndexEntry indexEntry, int rank) {
 		data.put(indexEntry.getTerm(), indexEntry);
+		incrementGeneration();
 	}
 
 	@Override
@@ -30,6 +30,7 @@ public class TreeIndex extends AbstractIndex {
 	@Override
 	public void addEntry(IndexEntry indexEntry, int rank) {
 		data.put(indexEntry.getTerm(), indexEntry);
+		incrementGeneration();
 	}
 
 	@Override
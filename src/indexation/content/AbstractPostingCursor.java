@@ -0,0 +1,99 @@
+package indexation.content;
+
+/**
+ * Curseur permettant de parcourir une liste de postings dans l'ordre des
+ * docIds, sans créer d'objet {@link Posting}. Le curseur est initialement
+ * positionné avant le premier posting : il faut appeler {@link #next()} pour
+ * accéder à chaque posting. Une fois le parcours terminé, le curseur ne doit
+ * plus être déplacé. <br/>
+ * Les opérateurs booléens ({@link ConjunctionPostingCursor},
+ * {@link DisjunctionPostingCursor}, {@link ExclusionPostingCursor}) sont
+ * eux-mêmes des curseurs, construits sur des curseurs quelconques : ils
+ * peuvent donc être composés pour évaluer une requête document par document,
+ * sans construire de liste intermédiaire.
+ */
+public abstract class AbstractPostingCursor {
+	/**
+	 * Passe au posting suivant.
+	 *
+	 * @return {@code true} s'il existe un posting suivant, {@code false} si le
+	 *         parcours est terminé.
+	 */
+	public abstract boolean next();
+
+	/**
+	 * Avance jusqu'au premier posting suivant dont le docId est supérieur ou
+	 * égal au docId spécifié. Le curseur avance toujours d'au moins un
+	 * posting. Cette implémentation parcourt simplement les postings un par
+	 * un.
+	 *
+	 * @param target
+	 *            DocId à atteindre.
+	 * @return {@code true} si un tel posting existe, {@code false} si le
+	 *         parcours est terminé.
+	 */
+	public boolean advance(int target) {
+		while (next()) {
+			if (getDocId() >= target)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Renvoie le docId du posting courant.
+	 *
+	 * @return DocId du posting courant.
+	 */
+	public abstract int getDocId();
+
+	/**
+	 * Renvoie la fréquence du posting courant.
+	 *
+	 * @return Fréquence du terme dans le document courant.
+	 */
+	public abstract int getFrequency();
+
+	/**
+	 * Renvoie le nombre total de postings de la liste parcourue.
+	 *
+	 * @return Longueur de la liste.
+	 */
+	public abstract int getSize();
+
+	/**
+	 * Renvoie le coût estimé du parcours complet de ce curseur, qui est aussi
+	 * le nombre maximal de postings qu'il peut produire. Il permet d'ordonner
+	 * les opérandes d'un opérateur (cf. {@link ConjunctionPostingCursor}).
+	 * Cette implémentation renvoie la longueur de la liste.
+	 *
+	 * @return Coût du parcours.
+	 */
+	public long cost() {
+		return getSize();
+	}
+
+	/**
+	 * Renvoie l'ensemble compressé des docIds de la liste parcourue, s'il
+	 * existe. Il permet de combiner deux listes denses mot par mot, sans les
+	 * parcourir posting par posting.
+	 *
+	 * @return Ensemble des docIds, ou {@code null} si la liste n'est pas
+	 *         stockée sous cette forme.
+	 */
+	public RoaringDocIdSet getDocIdSet() {
+		return null;
+	}
+
+	/**
+	 * Renvoie la liste parcourue, si elle est stockée dans le tas sous forme
+	 * de tableaux. Elle permet de combiner plusieurs listes directement sur
+	 * leurs tableaux de docIds (cf. {@link DocIdIntersector}).
+	 *
+	 * @return Liste complète parcourue, qui ne doit pas être modifiée, ou
+	 *         {@code null} si la liste n'est pas stockée sous cette forme.
+	 */
+	public PostingList getPostingList() {
+		return null;
+	}
+}
@@ -0,0 +1,72 @@
+package indexation.content;
+
+/**
+ * Curseur parcourant une {@link PostingList} stockée dans le tas.
+ */
+public class ArrayPostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée un curseur positionné avant le premier posting de la liste
+	 * spécifiée.
+	 *
+	 * @param list Liste à parcourir.
+	 */
+	public ArrayPostingCursor(PostingList list) {
+		this.list = list;
+		docIds = list.getDocIds();
+		frequencies = list.getFrequencies();
+		size = list.size();
+		index = -1;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Liste parcourue */
+	private PostingList list;
+	/** DocIds de la liste parcourue */
+	private int[] docIds;
+	/** Fréquences de la liste parcourue */
+	private int[] frequencies;
+	/** Nombre de postings de la liste */
+	private int size;
+	/** Position du posting courant */
+	private int index;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		return ++index < size;
+	}
+
+	/**
+	 * {@inheritDoc} Cette implémentation utilise une recherche exponentielle
+	 * (cf. {@link DocIdIntersector#gallop(int[], int, int, int)}).
+	 */
+	@Override
+	public boolean advance(int target) {
+		index = DocIdIntersector.gallop(docIds, index + 1, size, target);
+		return index < size;
+	}
+
+	@Override
+	public int getDocId() {
+		return docIds[index];
+	}
+
+	@Override
+	public int getFrequency() {
+		return frequencies[index];
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+
+	@Override
+	public PostingList getPostingList() {
+		return list;
+	}
+}
@@ -0,0 +1,175 @@
+package indexation.content;
+
+import java.io.Serializable;
+
+/**
+ * Bornes supérieures des contributions d'un terme aux scores des documents,
+ * utilisées pour l'élagage dynamique lors de l'évaluation document par
+ * document (MaxScore, Block-Max WAND). <br/>
+ * La contribution d'un terme au cosinus d'un document étant proportionnelle
+ * à son poids tf-idf divisé par la norme du document, on stocke le maximum de
+ * ce rapport sur toute la liste de postings, ainsi que sur chaque bloc de
+ * {@value #BLOCK_SIZE} postings consécutifs. Chaque bloc est délimité par le
+ * docId de son dernier posting : le bloc {@code b} couvre les docIds compris
+ * entre le dernier docId du bloc {@code b-1} (exclu) et le sien (inclus).
+ */
+public class BlockMaxScores implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée des bornes à partir de leurs tableaux.
+	 *
+	 * @param maxScore     Maximum sur toute la liste.
+	 * @param lastDocIds   Dernier docId de chaque bloc.
+	 * @param blockScores  Maximum sur chaque bloc.
+	 */
+	private BlockMaxScores(float maxScore, int[] lastDocIds, float[] blockScores) {
+		this.maxScore = maxScore;
+		this.lastDocIds = lastDocIds;
+		this.blockScores = blockScores;
+	}
+
+	/**
+	 * Calcule les bornes d'une liste de postings. Les normes des documents
+	 * doivent être complètes.
+	 *
+	 * @param postings   Curseur sur la liste de postings du terme.
+	 * @param idf        Fréquence de document inverse du terme.
+	 * @param statistics Statistiques des documents, contenant leurs normes.
+	 * @return Bornes de la liste.
+	 */
+	public static BlockMaxScores build(AbstractPostingCursor postings, float idf, DocumentStatistics statistics) {
+		int blockNumber = (postings.getSize() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int[] lastDocIds = new int[blockNumber];
+		float[] blockScores = new float[blockNumber];
+		float maxScore = 0;
+		int n = 0;
+		while (postings.next()) {
+			int docId = postings.getDocId();
+			float norm = statistics.getNorm(docId);
+			float score = 0;
+			if (norm > 0)
+				score = DocumentStatistics.processWf(postings.getFrequency()) * idf / norm;
+			int block = n / BLOCK_SIZE;
+			lastDocIds[block] = docId;
+			blockScores[block] = Math.max(blockScores[block], score);
+			maxScore = Math.max(maxScore, score);
+			n++;
+		}
+		return new BlockMaxScores(maxScore, lastDocIds, blockScores);
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre de postings par bloc */
+	public static final int BLOCK_SIZE = 64;
+
+	/** Maximum du poids divisé par la norme, sur toute la liste */
+	private float maxScore;
+	/** Dernier docId de chaque bloc */
+	private int[] lastDocIds;
+	/** Maximum du poids divisé par la norme, sur chaque bloc */
+	private float[] blockScores;
+
+	/**
+	 * Renvoie le maximum, sur toute la liste, du poids tf-idf du terme divisé
+	 * par la norme du document.
+	 *
+	 * @return Borne de la liste.
+	 */
+	public float getMaxScore() {
+		return maxScore;
+	}
+
+	/**
+	 * Renvoie le nombre de blocs de la liste.
+	 *
+	 * @return Nombre de blocs.
+	 */
+	public int getBlockNumber() {
+		return lastDocIds.length;
+	}
+
+	/**
+	 * Renvoie le dernier docId d'un bloc.
+	 *
+	 * @param block Numéro du bloc.
+	 * @return Plus grand docId du bloc.
+	 */
+	public int getLastDocId(int block) {
+		return lastDocIds[block];
+	}
+
+	/**
+	 * Renvoie le maximum, sur un bloc, du poids tf-idf du terme divisé par la
+	 * norme du document.
+	 *
+	 * @param block Numéro du bloc.
+	 * @return Borne du bloc.
+	 */
+	public float getBlockScore(int block) {
+		return blockScores[block];
+	}
+
+	/**
+	 * Recherche le bloc pouvant contenir le docId spécifié, à partir d'un bloc
+	 * donné.
+	 *
+	 * @param docId DocId recherché.
+	 * @param from  Premier bloc à examiner.
+	 * @return Numéro du premier bloc dont le dernier docId est supérieur ou
+	 *         égal au docId recherché, ou le nombre de blocs s'il n'y en a pas.
+	 */
+	public int findBlock(int docId, int from) {
+		int block = from;
+		while (block < lastDocIds.length && lastDocIds[block] < docId)
+			block++;
+		return block;
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "{max=" + maxScore + ", blocks=" + lastDocIds.length + "}";
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		int docNbr = 200;
+		DocumentStatistics statistics = new DocumentStatistics(docNbr);
+		PostingList postings = new PostingList();
+		for (int i = 0; i < docNbr; i += 2)
+			postings.add(i, 1 + i % 7);
+		statistics.addPostings(postings.size(), postings.cursor());
+		PostingList other = new PostingList();
+		for (int i = 0; i < docNbr; i += 3)
+			other.add(i, 1);
+		statistics.addPostings(other.size(), other.cursor());
+		statistics.complete();
+
+		// test de build
+		float idf = DocumentStatistics.processIdf(postings.size(), docNbr);
+		BlockMaxScores scores = build(postings.cursor(), idf, statistics);
+		System.out.println("build: " + scores);
+		for (int b = 0; b < scores.getBlockNumber(); b++)
+			System.out.println("block " + b + ": last=" + scores.getLastDocId(b) + ", max="
+					+ scores.getBlockScore(b));
+
+		// test de findBlock
+		System.out.println("findBlock(130)=" + scores.findBlock(130, 0) + ", findBlock(500)="
+				+ scores.findBlock(500, 0));
+	}
+}
@@ -0,0 +1,176 @@
+package indexation.content;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Curseur produisant l'intersection de plusieurs curseurs, sans la construire.
+ * Les opérandes sont ordonnés par coût croissant : le moins coûteux guide le
+ * parcours, et chacun des autres avance directement jusqu'au document
+ * candidat (cf. {@link AbstractPostingCursor#advance(int)}). Lorsqu'un opérande
+ * dépasse le candidat, le premier le rattrape. <br/>
+ * Les fréquences produites sont celles de l'opérande le moins coûteux. La
+ * longueur renvoyée par {@link #getSize()} n'est qu'une borne supérieure.
+ */
+public class ConjunctionPostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée l'intersection des curseurs spécifiés, qui doivent être positionnés
+	 * avant leur premier posting. À coût égal, l'ordre de la liste est
+	 * conservé.
+	 *
+	 * @param cursors Opérandes de l'intersection (au moins un).
+	 */
+	public ConjunctionPostingCursor(List<AbstractPostingCursor> cursors) {
+		List<AbstractPostingCursor> sorted = new ArrayList<AbstractPostingCursor>(cursors);
+		Collections.sort(sorted, COMPARATOR);
+		this.cursors = sorted.toArray(new AbstractPostingCursor[sorted.size()]);
+		lead = this.cursors[0];
+		started = false;
+		exhausted = false;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Comparateur ordonnant les curseurs par coût croissant */
+	public static final Comparator<AbstractPostingCursor> COMPARATOR = new Comparator<AbstractPostingCursor>() {
+		@Override
+		public int compare(AbstractPostingCursor c1, AbstractPostingCursor c2) {
+			return Long.compare(c1.cost(), c2.cost());
+		}
+	};
+
+	/** Opérandes, par coût croissant */
+	private AbstractPostingCursor[] cursors;
+	/** Opérande guidant le parcours */
+	private AbstractPostingCursor lead;
+	/** Indique si les opérandes autres que le premier ont été positionnés */
+	private boolean started;
+	/** Indique si le parcours est terminé */
+	private boolean exhausted;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		if (exhausted || !lead.next())
+			return finish();
+		return align(lead.getDocId());
+	}
+
+	@Override
+	public boolean advance(int target) {
+		if (exhausted || !lead.advance(target))
+			return finish();
+		return align(lead.getDocId());
+	}
+
+	/**
+	 * Fait avancer tous les opérandes jusqu'au premier document commun,
+	 * à partir du document courant du premier opérande.
+	 *
+	 * @param docId Document candidat, sur lequel est positionné le premier
+	 *              opérande.
+	 * @return {@code true} si un document commun a été trouvé.
+	 */
+	private boolean align(int docId) {
+		if (!started) {
+			started = true;
+			for (int i = 1; i < cursors.length; i++)
+				if (!cursors[i].next())
+					return finish();
+		}
+		int i = 1;
+		while (i < cursors.length) {
+			AbstractPostingCursor cursor = cursors[i];
+			if (cursor.getDocId() < docId && !cursor.advance(docId))
+				return finish();
+			if (cursor.getDocId() > docId) {
+				// le premier opérande rattrape celui qui a dépassé le candidat
+				if (!lead.advance(cursor.getDocId()))
+					return finish();
+				docId = lead.getDocId();
+				i = 1;
+			} else
+				i++;
+		}
+		return true;
+	}
+
+	/**
+	 * Termine le parcours.
+	 *
+	 * @return {@code false}.
+	 */
+	private boolean finish() {
+		exhausted = true;
+		return false;
+	}
+
+	@Override
+	public int getDocId() {
+		return lead.getDocId();
+	}
+
+	@Override
+	public int getFrequency() {
+		return lead.getFrequency();
+	}
+
+	@Override
+	public int getSize() {
+		return lead.getSize();
+	}
+
+	@Override
+	public long cost() {
+		return lead.cost();
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		PostingList list3 = new PostingList();
+		for (int i = 0; i < 100; i++) {
+			if (i % 2 == 0)
+				list1.add(i, 1);
+			if (i % 3 == 0)
+				list2.add(i, 2);
+			if (i % 5 == 0)
+				list3.add(i, 3);
+		}
+		List<AbstractPostingCursor> cursors = new ArrayList<AbstractPostingCursor>();
+		cursors.add(list1.cursor());
+		cursors.add(list2.cursor());
+		cursors.add(list3.cursor());
+
+		// test de next
+		System.out.println("next: " + PostingList.copyOf(new ConjunctionPostingCursor(cursors)));
+
+		// test de advance
+		cursors.clear();
+		cursors.add(list1.cursor());
+		cursors.add(list2.cursor());
+		ConjunctionPostingCursor conjunction = new ConjunctionPostingCursor(cursors);
+		System.out.print("advance(40):");
+		boolean more = conjunction.advance(40);
+		while (more) {
+			System.out.print(" " + conjunction.getDocId());
+			more = conjunction.next();
+		}
+		System.out.println();
+	}
+}
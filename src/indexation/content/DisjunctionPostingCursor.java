@@ -0,0 +1,446 @@
+package indexation.content;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Curseur produisant l'union de plusieurs curseurs, sans la construire. Les
+ * opérandes sont fusionnés à l'aide d'un tas binaire minimal, chaque élément
+ * du tas étant un entier {@code long} combinant le docId courant d'un
+ * opérande (32 bits de poids fort) et son numéro (32 bits de poids faible).
+ * Les opérandes positionnés sur le document courant restent dans le tas : ils
+ * ne sont avancés qu'au déplacement suivant du curseur. <br/>
+ * Pour un document présent dans plusieurs opérandes, la fréquence produite est
+ * celle du premier d'entre eux, qui est au sommet du tas. Les opérandes
+ * contenant le document courant peuvent être énumérés (cf.
+ * {@link #getMatches(int[])}), par exemple pour calculer un score. <br/>
+ * Un nombre minimal {@code k} d'opérandes devant contenir chaque document
+ * peut être spécifié (<i>minimum-should-match</i>). Le {@code k}-ième plus
+ * petit docId courant des opérandes est alors le premier document pouvant
+ * encore convenir : les {@code k-1} opérandes qui le précèdent dans le tas
+ * avancent directement jusqu'à lui, sans que les documents intermédiaires
+ * soient examinés, jusqu'à ce que les {@code k} premiers opérandes soient
+ * positionnés sur le même document.
+ */
+public class DisjunctionPostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée l'union des curseurs spécifiés, qui doivent être positionnés avant
+	 * leur premier posting. Les opérandes sont numérotés dans l'ordre de la
+	 * liste.
+	 *
+	 * @param cursors Opérandes de l'union.
+	 */
+	public DisjunctionPostingCursor(List<AbstractPostingCursor> cursors) {
+		this(cursors, 1);
+	}
+
+	/**
+	 * Crée un curseur produisant les documents contenus dans au moins
+	 * {@code minimumMatch} des curseurs spécifiés, qui doivent être
+	 * positionnés avant leur premier posting. Les opérandes sont numérotés
+	 * dans l'ordre de la liste.
+	 *
+	 * @param cursors      Opérandes.
+	 * @param minimumMatch Nombre minimal d'opérandes contenant chaque document
+	 *                     produit, au moins égal à un.
+	 *
+	 * @throws IllegalArgumentException Le nombre minimal est inférieur à un.
+	 */
+	public DisjunctionPostingCursor(List<AbstractPostingCursor> cursors, int minimumMatch) {
+		if (minimumMatch < 1)
+			throw new IllegalArgumentException("The minimum number of matching cursors must be at least 1: "
+					+ minimumMatch);
+		this.minimumMatch = minimumMatch;
+		tail = new long[Math.min(minimumMatch, cursors.size() + 1) - 1];
+		this.cursors = cursors.toArray(new AbstractPostingCursor[cursors.size()]);
+		heap = new long[this.cursors.length];
+		size = 0;
+		docId = -1;
+		started = false;
+		long cost = 0;
+		for (AbstractPostingCursor cursor : this.cursors)
+			cost += cursor.cost();
+		this.cost = cost;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Opérandes */
+	private AbstractPostingCursor[] cursors;
+	/** Nombre minimal d'opérandes contenant chaque document produit */
+	private int minimumMatch;
+	/** Éléments retirés temporairement du tas, pour chercher un candidat */
+	private long[] tail;
+	/** Tas des opérandes non-terminés */
+	private long[] heap;
+	/** Nombre d'éléments du tas */
+	private int size;
+	/** DocId courant */
+	private int docId;
+	/** Indique si les opérandes ont été positionnés */
+	private boolean started;
+	/** Somme des coûts des opérandes */
+	private long cost;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		if (!started) {
+			started = true;
+			for (int i = 0; i < cursors.length; i++)
+				if (cursors[i].next())
+					push(i);
+		} else {
+			// les opérandes positionnés sur le document courant avancent
+			while (size > 0 && (int) (heap[0] >>> 32) == docId) {
+				int i = (int) heap[0];
+				if (cursors[i].next())
+					replaceTop(i);
+				else
+					removeTop();
+			}
+		}
+		return update();
+	}
+
+	@Override
+	public boolean advance(int target) {
+		if (!started) {
+			started = true;
+			for (int i = 0; i < cursors.length; i++)
+				if (cursors[i].advance(target))
+					push(i);
+		} else {
+			// le curseur avance toujours d'au moins un posting
+			int limit = Math.max(target, docId + 1);
+			while (size > 0 && (int) (heap[0] >>> 32) < limit) {
+				int i = (int) heap[0];
+				if (cursors[i].advance(limit))
+					replaceTop(i);
+				else
+					removeTop();
+			}
+		}
+		return update();
+	}
+
+	/**
+	 * Met à jour le document courant d'après le sommet du tas, après avoir
+	 * cherché le premier document contenu dans assez d'opérandes.
+	 *
+	 * @return {@code true} s'il reste un document.
+	 */
+	private boolean update() {
+		if (size < minimumMatch || (minimumMatch > 1 && !align())) {
+			docId = Integer.MAX_VALUE;
+			return false;
+		}
+		docId = (int) (heap[0] >>> 32);
+		return true;
+	}
+
+	/**
+	 * Fait avancer les opérandes jusqu'au premier document contenu dans au
+	 * moins {@link #minimumMatch} d'entre eux. Les {@code k-1} premiers
+	 * éléments du tas sont retirés : le sommet restant est alors le premier
+	 * document candidat, et les opérandes retirés qui le précèdent avancent
+	 * jusqu'à lui avant d'être remis dans le tas.
+	 *
+	 * @return {@code true} si un tel document existe.
+	 */
+	private boolean align() {
+		int k = tail.length;
+		while (size >= minimumMatch) {
+			for (int i = 0; i < k; i++) {
+				tail[i] = heap[0];
+				removeTop();
+			}
+			int candidate = (int) (heap[0] >>> 32);
+			boolean aligned = true;
+			for (int i = 0; i < k; i++) {
+				int index = (int) tail[i];
+				if ((int) (tail[i] >>> 32) == candidate)
+					restore(tail[i]);
+				else {
+					aligned = false;
+					if (cursors[index].advance(candidate))
+						push(index);
+				}
+			}
+			if (aligned)
+				return true;
+		}
+		return false;
+	}
+
+	@Override
+	public int getDocId() {
+		return docId;
+	}
+
+	@Override
+	public int getFrequency() {
+		return cursors[(int) heap[0]].getFrequency();
+	}
+
+	@Override
+	public int getSize() {
+		return (int) Math.min(cost, Integer.MAX_VALUE - 8);
+	}
+
+	@Override
+	public long cost() {
+		return cost;
+	}
+
+	////////////////////////////////////////////////////
+	// OPÉRANDES
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie l'opérande de numéro spécifié.
+	 *
+	 * @param index Numéro de l'opérande.
+	 * @return Curseur correspondant.
+	 */
+	public AbstractPostingCursor getCursor(int index) {
+		return cursors[index];
+	}
+
+	/**
+	 * Renvoie le nombre d'opérandes de cette union.
+	 *
+	 * @return Nombre d'opérandes.
+	 */
+	public int getCursorNumber() {
+		return cursors.length;
+	}
+
+	/**
+	 * Énumère les opérandes positionnés sur le document courant, par numéro
+	 * croissant.
+	 *
+	 * @param indices Tableau à remplir avec les numéros de ces opérandes, de
+	 *                taille au moins égale au nombre d'opérandes.
+	 * @return Nombre d'opérandes contenant le document courant.
+	 */
+	public int getMatches(int[] indices) {
+		int count = collect(0, indices, 0);
+		// tri par insertion : il y a généralement peu d'opérandes
+		for (int i = 1; i < count; i++) {
+			int index = indices[i];
+			int j = i - 1;
+			while (j >= 0 && indices[j] > index) {
+				indices[j + 1] = indices[j];
+				j--;
+			}
+			indices[j + 1] = index;
+		}
+		return count;
+	}
+
+	/**
+	 * Parcourt le sous-arbre du tas contenant les opérandes positionnés sur le
+	 * document courant.
+	 *
+	 * @param position Racine du sous-arbre.
+	 * @param indices  Tableau à remplir.
+	 * @param count    Nombre d'opérandes déjà trouvés.
+	 * @return Nouveau nombre d'opérandes trouvés.
+	 */
+	private int collect(int position, int[] indices, int count) {
+		if (position >= size || (int) (heap[position] >>> 32) != docId)
+			return count;
+		indices[count++] = (int) heap[position];
+		count = collect(2 * position + 1, indices, count);
+		return collect(2 * position + 2, indices, count);
+	}
+
+	////////////////////////////////////////////////////
+	// TAS
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute un opérande au tas.
+	 *
+	 * @param index Numéro de l'opérande.
+	 */
+	private void push(int index) {
+		restore(pack(cursors[index].getDocId(), index));
+	}
+
+	/**
+	 * Remplace le sommet du tas par la nouvelle position de l'opérande qui s'y
+	 * trouvait.
+	 *
+	 * @param index Numéro de l'opérande.
+	 */
+	private void replaceTop(int index) {
+		heap[0] = pack(cursors[index].getDocId(), index);
+		siftDown(heap, 0, size);
+	}
+
+	/**
+	 * Remet dans le tas un élément qui en avait été retiré.
+	 *
+	 * @param element Élément à remettre.
+	 */
+	private void restore(long element) {
+		heap[size] = element;
+		siftUp(heap, size);
+		size++;
+	}
+
+	/**
+	 * Retire le sommet du tas.
+	 */
+	private void removeTop() {
+		size--;
+		heap[0] = heap[size];
+		siftDown(heap, 0, size);
+	}
+
+	/**
+	 * Combine un docId et un numéro d'opérande dans un entier {@code long}, de
+	 * manière à ce que l'ordre des entiers soit celui des docIds, puis des
+	 * numéros d'opérande.
+	 *
+	 * @param docId DocId positif ou nul.
+	 * @param index Numéro de l'opérande.
+	 * @return Entier combinant les deux valeurs.
+	 */
+	static long pack(int docId, int index) {
+		return ((long) docId << 32) | index;
+	}
+
+	/**
+	 * Fait remonter un élément du tas jusqu'à sa place.
+	 *
+	 * @param heap  Tas.
+	 * @param index Position de l'élément.
+	 */
+	static void siftUp(long[] heap, int index) {
+		long key = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (heap[parent] <= key)
+				break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = key;
+	}
+
+	/**
+	 * Fait descendre un élément du tas jusqu'à sa place.
+	 *
+	 * @param heap  Tas.
+	 * @param index Position de l'élément.
+	 * @param size  Nombre d'éléments du tas.
+	 */
+	static void siftDown(long[] heap, int index, int size) {
+		if (size == 0)
+			return;
+		long key = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if (key <= heap[child])
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = key;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		PostingList list3 = new PostingList();
+		for (int i = 0; i < 30; i++) {
+			if (i % 3 == 0)
+				list1.add(i, 1);
+			if (i % 4 == 0)
+				list2.add(i, 2);
+			if (i % 5 == 0)
+				list3.add(i, 3);
+		}
+		List<AbstractPostingCursor> cursors = new ArrayList<AbstractPostingCursor>();
+		cursors.add(list1.cursor());
+		cursors.add(list2.cursor());
+		cursors.add(list3.cursor());
+
+		// test de next et getMatches
+		DisjunctionPostingCursor disjunction = new DisjunctionPostingCursor(cursors);
+		int[] indices = new int[3];
+		System.out.print("next:");
+		while (disjunction.next()) {
+			int count = disjunction.getMatches(indices);
+			System.out.print(" " + disjunction.getDocId() + "(" + disjunction.getFrequency() + ")x" + count);
+		}
+		System.out.println();
+
+		// test de advance
+		cursors.clear();
+		cursors.add(list1.cursor());
+		cursors.add(list3.cursor());
+		disjunction = new DisjunctionPostingCursor(cursors);
+		System.out.print("advance(13):");
+		boolean more = disjunction.advance(13);
+		while (more) {
+			System.out.print(" " + disjunction.getDocId());
+			more = disjunction.advance(disjunction.getDocId() + 2);
+		}
+		System.out.println();
+
+		// test du nombre minimal d'opérandes
+		cursors.clear();
+		cursors.add(list1.cursor());
+		cursors.add(list2.cursor());
+		cursors.add(list3.cursor());
+		System.out.println("minimumMatch=2: " + PostingList.copyOf(new DisjunctionPostingCursor(cursors, 2)));
+
+		// comparaison avec un simple comptage, sur des listes aléatoires
+		Random random = new Random(0);
+		for (int round = 0; round < 1000; round++) {
+			int n = 1 + random.nextInt(6);
+			int k = 1 + random.nextInt(n + 1);
+			int[] counts = new int[200];
+			cursors.clear();
+			for (int i = 0; i < n; i++) {
+				PostingList list = new PostingList();
+				double density = random.nextDouble();
+				for (int d = 0; d < counts.length; d++)
+					if (random.nextDouble() < density) {
+						list.add(d, 1);
+						counts[d]++;
+					}
+				cursors.add(list.cursor());
+			}
+			PostingList expected = new PostingList();
+			for (int d = 0; d < counts.length; d++)
+				if (counts[d] >= k)
+					expected.add(d, 1);
+			PostingList result = PostingList.copyOf(new DisjunctionPostingCursor(cursors, k));
+			if (!Arrays.equals(Arrays.copyOf(result.getDocIds(), result.size()),
+					Arrays.copyOf(expected.getDocIds(), expected.size())))
+				throw new IllegalStateException("Wrong result for " + k + " of " + n + " lists");
+		}
+		System.out.println("minimumMatch on random lists: ok");
+	}
+}
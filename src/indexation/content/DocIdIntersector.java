@@ -0,0 +1,399 @@
+package indexation.content;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Méthodes d'intersection de listes de docIds triées, travaillant
+ * directement sur des tableaux d'entiers. La méthode utilisée dépend du
+ * rapport entre les longueurs des listes :
+ * <ul>
+ * <li>si les listes ont des longueurs comparables, elles sont fusionnées sans
+ * branchement : les deux positions avancent en fonction du résultat de la
+ * comparaison, ce qui évite les erreurs de prédiction du processeur ;</li>
+ * <li>si une liste est au moins {@value #GALLOP_RATIO} fois plus longue que
+ * l'autre, chaque docId de la liste courte est recherché dans la longue par
+ * recherche exponentielle (<i>galloping</i>), ce qui évite de parcourir la
+ * majeure partie de la liste longue.</li>
+ * </ul>
+ * Plus de deux listes sont traitées simultanément, sans résultat
+ * intermédiaire : chaque docId candidat de la liste la plus courte est
+ * recherché dans les autres listes, par longueur croissante, et le premier
+ * docId supérieur trouvé devient le candidat suivant.
+ */
+public class DocIdIntersector {
+	////////////////////////////////////////////////////
+	// PARAMÈTRES
+	////////////////////////////////////////////////////
+	/**
+	 * Rapport entre les longueurs des listes à partir duquel la recherche
+	 * exponentielle est préférée à la fusion (cf. {@link #main(String[])})
+	 */
+	public static final int GALLOP_RATIO = 16;
+
+	////////////////////////////////////////////////////
+	// RECHERCHE
+	////////////////////////////////////////////////////
+	/**
+	 * Recherche par recherche exponentielle, à partir d'une position donnée,
+	 * le premier docId supérieur ou égal au docId spécifié : on teste les
+	 * positions situées à 1, 2, 4, 8... cases de la position de départ, puis on
+	 * effectue une recherche dichotomique dans le dernier intervalle.
+	 *
+	 * @param docIds Tableau de docIds triés.
+	 * @param from   Position de départ.
+	 * @param size   Nombre de cases significatives du tableau.
+	 * @param target DocId recherché.
+	 * @return Position du premier docId supérieur ou égal, à partir de
+	 *         {@code from}, ou {@code size} s'il n'y en a pas.
+	 */
+	public static int gallop(int[] docIds, int from, int size, int target) {
+		if (from >= size || docIds[from] >= target)
+			return from;
+		// docIds[low] < target, et docIds[high] >= target si high < size
+		int low = from;
+		int step = 1;
+		int high = from + 1;
+		while (high < size && docIds[high] < target) {
+			low = high;
+			step = step << 1;
+			high = from + step;
+		}
+		if (high > size)
+			high = size;
+		while (low + 1 < high) {
+			int middle = (low + high) >>> 1;
+			if (docIds[middle] < target)
+				low = middle;
+			else
+				high = middle;
+		}
+		return high;
+	}
+
+	/**
+	 * Recherche linéairement, à partir d'une position donnée, le premier docId
+	 * supérieur ou égal au docId spécifié.
+	 *
+	 * @param docIds Tableau de docIds triés.
+	 * @param from   Position de départ.
+	 * @param size   Nombre de cases significatives du tableau.
+	 * @param target DocId recherché.
+	 * @return Position du premier docId supérieur ou égal, à partir de
+	 *         {@code from}, ou {@code size} s'il n'y en a pas.
+	 */
+	private static int scan(int[] docIds, int from, int size, int target) {
+		while (from < size && docIds[from] < target)
+			from++;
+		return from;
+	}
+
+	////////////////////////////////////////////////////
+	// INTERSECTION
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule l'intersection de deux listes, en choisissant la méthode en
+	 * fonction du rapport de leurs longueurs.
+	 *
+	 * @param docIds1   DocIds de la liste la plus courte.
+	 * @param size1     Longueur de la liste la plus courte.
+	 * @param docIds2   DocIds de la liste la plus longue.
+	 * @param size2     Longueur de la liste la plus longue.
+	 * @param positions Tableau d'au moins {@code size1} cases, recevant les
+	 *                  positions dans la première liste des docIds communs.
+	 * @return Nombre de docIds communs.
+	 */
+	public static int intersect(int[] docIds1, int size1, int[] docIds2, int size2, int[] positions) {
+		if (size2 >= (long) size1 * GALLOP_RATIO)
+			return gallopIntersect(docIds1, size1, docIds2, size2, positions);
+		return mergeIntersect(docIds1, size1, docIds2, size2, positions);
+	}
+
+	/**
+	 * Calcule l'intersection de deux listes par fusion sans branchement :
+	 * chaque itération écrit une position, puis avance les compteurs en
+	 * fonction des comparaisons, sans instruction conditionnelle.
+	 *
+	 * @param docIds1   DocIds de la première liste.
+	 * @param size1     Longueur de la première liste.
+	 * @param docIds2   DocIds de la seconde liste.
+	 * @param size2     Longueur de la seconde liste.
+	 * @param positions Tableau d'au moins {@code size1} cases, recevant les
+	 *                  positions dans la première liste des docIds communs.
+	 * @return Nombre de docIds communs.
+	 */
+	public static int mergeIntersect(int[] docIds1, int size1, int[] docIds2, int size2, int[] positions) {
+		int i = 0;
+		int j = 0;
+		int result = 0;
+		while (i < size1 && j < size2) {
+			int docId1 = docIds1[i];
+			int docId2 = docIds2[j];
+			// la position n'est conservée que si les docIds sont égaux
+			positions[result] = i;
+			result += docId1 == docId2 ? 1 : 0;
+			i += docId1 <= docId2 ? 1 : 0;
+			j += docId1 >= docId2 ? 1 : 0;
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule l'intersection de deux listes en recherchant chaque docId de la
+	 * première dans la seconde, par recherche exponentielle.
+	 *
+	 * @param docIds1   DocIds de la liste courte.
+	 * @param size1     Longueur de la liste courte.
+	 * @param docIds2   DocIds de la liste longue.
+	 * @param size2     Longueur de la liste longue.
+	 * @param positions Tableau d'au moins {@code size1} cases, recevant les
+	 *                  positions dans la première liste des docIds communs.
+	 * @return Nombre de docIds communs.
+	 */
+	public static int gallopIntersect(int[] docIds1, int size1, int[] docIds2, int size2, int[] positions) {
+		int result = 0;
+		int j = 0;
+		for (int i = 0; i < size1; i++) {
+			int docId = docIds1[i];
+			j = gallop(docIds2, j, size2, docId);
+			if (j == size2)
+				break;
+			if (docIds2[j] == docId)
+				positions[result++] = i;
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule l'intersection de plusieurs listes simultanément. Les docIds de
+	 * la première liste sont les candidats : chacun est recherché dans les
+	 * autres listes, par recherche exponentielle dans celles qui sont beaucoup
+	 * plus longues que la première, et linéairement dans les autres. Dès
+	 * qu'une liste ne contient pas le candidat, le candidat suivant est
+	 * recherché dans la première liste à partir du docId trouvé.
+	 *
+	 * @param docIds    DocIds de chaque liste, la première étant la plus
+	 *                  courte, les suivantes par longueur croissante.
+	 * @param sizes     Longueur de chaque liste.
+	 * @param positions Tableau d'au moins {@code sizes[0]} cases, recevant les
+	 *                  positions dans la première liste des docIds communs.
+	 * @return Nombre de docIds communs.
+	 */
+	public static int intersect(int[][] docIds, int[] sizes, int[] positions) {
+		int n = docIds.length;
+		if (n == 1) {
+			for (int i = 0; i < sizes[0]; i++)
+				positions[i] = i;
+			return sizes[0];
+		}
+		if (n == 2)
+			return intersect(docIds[0], sizes[0], docIds[1], sizes[1], positions);
+
+		int[] first = docIds[0];
+		int size = sizes[0];
+		int[] starts = new int[n];
+		boolean[] galloping = new boolean[n];
+		for (int l = 1; l < n; l++)
+			galloping[l] = sizes[l] >= (long) size * GALLOP_RATIO;
+		int result = 0;
+		int i = 0;
+		while (i < size) {
+			int candidate = first[i];
+			int next = candidate;
+			for (int l = 1; l < n && next == candidate; l++) {
+				int position;
+				if (galloping[l])
+					position = gallop(docIds[l], starts[l], sizes[l], candidate);
+				else
+					position = scan(docIds[l], starts[l], sizes[l], candidate);
+				// une liste est épuisée : l'intersection est complète
+				if (position == sizes[l])
+					return result;
+				starts[l] = position;
+				next = docIds[l][position];
+			}
+			if (next == candidate) {
+				positions[result++] = i;
+				i++;
+			} else
+				i = gallop(first, i + 1, size, next);
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule l'intersection de plusieurs listes de postings. Les fréquences
+	 * du résultat sont celles de la première liste.
+	 *
+	 * @param lists Listes à combiner, par longueur croissante.
+	 * @return Intersection des listes.
+	 */
+	public static PostingList intersect(PostingList[] lists) {
+		int n = lists.length;
+		int[][] docIds = new int[n][];
+		int[] sizes = new int[n];
+		for (int l = 0; l < n; l++) {
+			docIds[l] = lists[l].getDocIds();
+			sizes[l] = lists[l].size();
+		}
+		int[] positions = new int[sizes[0]];
+		int size = intersect(docIds, sizes, positions);
+		int[] frequencies = lists[0].getFrequencies();
+		int[] resultDocIds = new int[size];
+		int[] resultFrequencies = new int[size];
+		for (int i = 0; i < size; i++) {
+			resultDocIds[i] = docIds[0][positions[i]];
+			resultFrequencies[i] = frequencies[positions[i]];
+		}
+		return new PostingList(resultDocIds, resultFrequencies, size);
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe, puis comparaison des durées des
+	 * différentes méthodes d'intersection, pour plusieurs rapports de
+	 * longueurs : fusion par curseurs (méthode utilisée auparavant par les
+	 * moteurs booléens), fusion sans branchement, recherche exponentielle et
+	 * méthode adaptative. Les listes sont tirées aléatoirement parmi 2^24
+	 * docIds.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		// test de gallop
+		int[] docIds = { 1, 3, 5, 7, 9, 11, 13, 15, 17 };
+		System.out.println("gallop: 6->" + gallop(docIds, 0, docIds.length, 6) + ", 17->"
+				+ gallop(docIds, 2, docIds.length, 17) + ", 20->" + gallop(docIds, 0, docIds.length, 20));
+
+		// test de intersect
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		PostingList list3 = new PostingList();
+		for (int i = 0; i < 30; i++) {
+			if (i % 3 == 0)
+				list1.add(i, 1);
+			if (i % 2 == 0)
+				list2.add(i, 2);
+			list3.add(i, 3);
+		}
+		System.out.println("intersect: " + intersect(new PostingList[] { list1, list2, list3 }));
+
+		// comparaison des méthodes
+		Random random = new Random(0);
+		int universe = 1 << 24;
+		int[] large = randomDocIds(random, 1 << 20, universe);
+		int[] ratios = { 1, 2, 4, 8, 16, 32, 64, 256, 1024, 4096 };
+		System.out.println("ratio\tcursors\tmerge\tgallop\tadaptive (µs)");
+		for (int ratio : ratios) {
+			int[] small = randomDocIds(random, large.length / ratio, universe);
+			int[] positions = new int[small.length];
+			int expected = cursorIntersect(small, large);
+			long[] durations = new long[4];
+			int rounds = 20;
+			for (int round = 0; round < rounds + 3; round++) {
+				long[] starts = new long[5];
+				int[] found = new int[4];
+				starts[0] = System.nanoTime();
+				found[0] = cursorIntersect(small, large);
+				starts[1] = System.nanoTime();
+				found[1] = mergeIntersect(small, small.length, large, large.length, positions);
+				starts[2] = System.nanoTime();
+				found[2] = gallopIntersect(small, small.length, large, large.length, positions);
+				starts[3] = System.nanoTime();
+				found[3] = intersect(small, small.length, large, large.length, positions);
+				starts[4] = System.nanoTime();
+				for (int m = 0; m < 4; m++) {
+					if (found[m] != expected)
+						throw new IllegalStateException("Method " + m + " found " + found[m] + " docIds instead of "
+								+ expected);
+					// les premiers passages servent à la compilation à la volée
+					if (round >= 3)
+						durations[m] += starts[m + 1] - starts[m];
+				}
+			}
+			System.out.println("1:" + ratio + "\t" + durations[0] / rounds / 1000 + "\t" + durations[1] / rounds / 1000
+					+ "\t" + durations[2] / rounds / 1000 + "\t" + durations[3] / rounds / 1000);
+		}
+
+		// comparaison avec l'intersection deux par deux, pour trois listes
+		int[][] lists = { randomDocIds(random, 1 << 12, universe), randomDocIds(random, 1 << 18, universe), large };
+		int[] sizes = { lists[0].length, lists[1].length, lists[2].length };
+		int[] positions = new int[sizes[0]];
+		long pairs = 0;
+		long all = 0;
+		for (int round = 0; round < 220; round++) {
+			long start = System.nanoTime();
+			int[] partial = new int[sizes[0]];
+			int size = intersect(lists[0], sizes[0], lists[1], sizes[1], partial);
+			for (int i = 0; i < size; i++)
+				partial[i] = lists[0][partial[i]];
+			int folded = intersect(partial, size, lists[2], sizes[2], new int[size]);
+			long middle = System.nanoTime();
+			int simultaneous = intersect(lists, sizes, positions);
+			long end = System.nanoTime();
+			if (folded != simultaneous)
+				throw new IllegalStateException("Found " + simultaneous + " docIds instead of " + folded);
+			if (round >= 20) {
+				pairs += middle - start;
+				all += end - middle;
+			}
+		}
+		System.out.println("3 lists (1:64:256): pairs=" + pairs / 200000 + " µs, simultaneous=" + all / 200000 + " µs");
+	}
+
+	/**
+	 * Tire aléatoirement une liste de docIds distincts triés.
+	 *
+	 * @param random   Générateur aléatoire.
+	 * @param size     Nombre de docIds.
+	 * @param universe Nombre de docIds possibles.
+	 * @return Liste triée.
+	 */
+	private static int[] randomDocIds(Random random, int size, int universe) {
+		int[] result = new int[Math.max(1, size)];
+		for (int i = 0; i < result.length; i++)
+			result[i] = random.nextInt(universe);
+		Arrays.sort(result);
+		int n = 1;
+		for (int i = 1; i < result.length; i++)
+			if (result[i] != result[n - 1])
+				result[n++] = result[i];
+		return Arrays.copyOf(result, n);
+	}
+
+	/**
+	 * Calcule la taille de l'intersection de deux listes par fusion à l'aide
+	 * de curseurs, comme le faisaient les moteurs booléens.
+	 *
+	 * @param docIds1 Première liste.
+	 * @param docIds2 Seconde liste.
+	 * @return Nombre de docIds communs.
+	 */
+	private static int cursorIntersect(int[] docIds1, int[] docIds2) {
+		int[] frequencies1 = new int[docIds1.length];
+		int[] frequencies2 = new int[docIds2.length];
+		AbstractPostingCursor list1 = new PostingList(docIds1, frequencies1, docIds1.length).cursor();
+		AbstractPostingCursor list2 = new PostingList(docIds2, frequencies2, docIds2.length).cursor();
+		PostingList result = new PostingList(docIds1.length);
+		boolean more1 = list1.next();
+		boolean more2 = list2.next();
+		while (more1 && more2) {
+			int docId1 = list1.getDocId();
+			int docId2 = list2.getDocId();
+			if (docId1 < docId2)
+				more1 = list1.next();
+			else if (docId1 > docId2)
+				more2 = list2.next();
+			else {
+				result.add(docId1, list1.getFrequency());
+				more1 = list1.next();
+				more2 = list2.next();
+			}
+		}
+		return result.size();
+	}
+}
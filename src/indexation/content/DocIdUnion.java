@@ -0,0 +1,232 @@
+package indexation.content;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Méthodes de réunion de plusieurs listes de postings en un seul parcours,
+ * sans créer de liste intermédiaire. Pour un document présent dans plusieurs
+ * listes, la fréquence conservée est celle de la première liste qui le
+ * contient. Deux méthodes sont disponibles :
+ * <ul>
+ * <li>une fusion de toutes les listes à l'aide d'un tas binaire minimal de
+ * curseurs, qui consiste simplement à parcourir un
+ * {@link DisjunctionPostingCursor} ;</li>
+ * <li>lorsque les listes contiennent au total presque autant de postings que
+ * le corpus contient de documents, un bitmap couvrant tout le corpus, associé
+ * à un tableau des fréquences indexé par docId, ce qui évite de maintenir le
+ * tas pour chaque posting.</li>
+ * </ul>
+ */
+public class DocIdUnion {
+	////////////////////////////////////////////////////
+	// PARAMÈTRES
+	////////////////////////////////////////////////////
+	/**
+	 * Le bitmap est utilisé si le nombre total de postings multiplié par ce
+	 * rapport atteint le nombre de documents (cf. {@link #main(String[])})
+	 */
+	public static final int BITMAP_RATIO = 8;
+
+	////////////////////////////////////////////////////
+	// RÉUNION
+	////////////////////////////////////////////////////
+	/**
+	 * Réunit les listes spécifiées, en choisissant la méthode en fonction de
+	 * leur longueur totale.
+	 *
+	 * @param lists  Curseurs sur les listes à réunir, positionnés avant leur
+	 *               premier posting.
+	 * @param docNbr Nombre de documents du corpus (tous les docIds lui sont
+	 *               inférieurs).
+	 * @return Union des listes.
+	 */
+	public static PostingList union(AbstractPostingCursor[] lists, int docNbr) {
+		long total = 0;
+		for (AbstractPostingCursor list : lists)
+			total += list.getSize();
+		if (docNbr > 0 && total * BITMAP_RATIO >= docNbr)
+			return bitmapUnion(lists, docNbr);
+		return heapUnion(lists);
+	}
+
+	/**
+	 * Réunit les listes spécifiées à l'aide d'un tas de curseurs.
+	 *
+	 * @param lists Curseurs sur les listes à réunir, positionnés avant leur
+	 *              premier posting.
+	 * @return Union des listes.
+	 */
+	public static PostingList heapUnion(AbstractPostingCursor[] lists) {
+		return PostingList.copyOf(new DisjunctionPostingCursor(Arrays.asList(lists)));
+	}
+
+	/**
+	 * Réunit les listes spécifiées à l'aide d'un bitmap couvrant tout le
+	 * corpus. Les listes sont parcourues de la dernière à la première, de
+	 * manière à ce que la fréquence de la première liste contenant un document
+	 * écrase les autres.
+	 *
+	 * @param lists  Curseurs sur les listes à réunir, positionnés avant leur
+	 *               premier posting.
+	 * @param docNbr Nombre de documents du corpus.
+	 * @return Union des listes.
+	 */
+	public static PostingList bitmapUnion(AbstractPostingCursor[] lists, int docNbr) {
+		long[] words = new long[(docNbr + 63) >>> 6];
+		int[] frequencies = new int[docNbr];
+		for (int i = lists.length - 1; i >= 0; i--) {
+			AbstractPostingCursor list = lists[i];
+			while (list.next()) {
+				int docId = list.getDocId();
+				words[docId >>> 6] |= 1L << docId;
+				frequencies[docId] = list.getFrequency();
+			}
+		}
+		int n = WordKernels.cardinality(words, words.length);
+		int[] resultDocIds = new int[n];
+		int[] resultFrequencies = new int[n];
+		int k = 0;
+		for (int w = 0; w < words.length; w++) {
+			long word = words[w];
+			while (word != 0) {
+				int docId = (w << 6) | Long.numberOfTrailingZeros(word);
+				resultDocIds[k] = docId;
+				resultFrequencies[k] = frequencies[docId];
+				k++;
+				word &= word - 1;
+			}
+		}
+		return new PostingList(resultDocIds, resultFrequencies, n);
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe, puis comparaison des durées de la
+	 * réunion deux par deux (méthode utilisée auparavant par
+	 * {@code AndOrQueryEngine}), de la réunion par tas et de la réunion par
+	 * bitmap, pour différents nombres de listes et différentes densités.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		// test de heapUnion et bitmapUnion
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		PostingList list3 = new PostingList();
+		for (int i = 0; i < 20; i++) {
+			if (i % 3 == 0)
+				list1.add(i, 1);
+			if (i % 4 == 0)
+				list2.add(i, 2);
+			if (i % 5 == 0)
+				list3.add(i, 3);
+		}
+		PostingList[] test = { list1, list2, list3 };
+		System.out.println("heapUnion: " + heapUnion(cursors(test)));
+		System.out.println("bitmapUnion: " + bitmapUnion(cursors(test), 20));
+
+		// comparaison des méthodes
+		Random random = new Random(0);
+		int docNbr = 1 << 20;
+		int[] listNumbers = { 2, 4, 16, 64 };
+		double[] densities = { 0.001, 0.01, 0.05, 0.25 };
+		System.out.println("lists\tdensity\tpairs\theap\tbitmap (us)");
+		for (int listNumber : listNumbers) {
+			for (double density : densities) {
+				PostingList[] lists = new PostingList[listNumber];
+				for (int i = 0; i < listNumber; i++)
+					lists[i] = randomList(random, docNbr, density * (i + 1) / listNumber);
+				long[] durations = new long[3];
+				int rounds = 10;
+				for (int round = 0; round < rounds + 3; round++) {
+					PostingList[] results = new PostingList[3];
+					for (int m = 0; m < 3; m++) {
+						long start = System.nanoTime();
+						if (m == 0)
+							results[m] = pairUnion(lists);
+						else if (m == 1)
+							results[m] = heapUnion(cursors(lists));
+						else
+							results[m] = bitmapUnion(cursors(lists), docNbr);
+						// les premiers passages servent à la compilation à la volée
+						if (round >= 3)
+							durations[m] += System.nanoTime() - start;
+					}
+					if (!results[0].toString().equals(results[1].toString())
+							|| !results[0].toString().equals(results[2].toString()))
+						throw new IllegalStateException("The methods give different results");
+				}
+				System.out.println(listNumber + "\t" + density + "\t" + durations[0] / rounds / 1000 + "\t"
+						+ durations[1] / rounds / 1000 + "\t" + durations[2] / rounds / 1000);
+			}
+		}
+	}
+
+	/**
+	 * Crée des curseurs sur les listes spécifiées.
+	 *
+	 * @param lists Listes à parcourir.
+	 * @return Curseurs correspondants.
+	 */
+	private static AbstractPostingCursor[] cursors(PostingList[] lists) {
+		AbstractPostingCursor[] result = new AbstractPostingCursor[lists.length];
+		for (int i = 0; i < lists.length; i++)
+			result[i] = lists[i].cursor();
+		return result;
+	}
+
+	/**
+	 * Tire aléatoirement une liste de postings de densité spécifiée, dont les
+	 * fréquences sont aléatoires.
+	 *
+	 * @param random  Générateur aléatoire.
+	 * @param docNbr  Nombre de documents.
+	 * @param density Probabilité de chaque document.
+	 * @return Liste correspondante.
+	 */
+	private static PostingList randomList(Random random, int docNbr, double density) {
+		PostingList result = new PostingList();
+		for (int docId = 0; docId < docNbr; docId++)
+			if (random.nextDouble() < density)
+				result.add(docId, 1 + random.nextInt(10));
+		return result;
+	}
+
+	/**
+	 * Réunit les listes deux par deux, en fusionnant le résultat courant avec
+	 * chaque nouvelle liste, comme le faisait {@code AndOrQueryEngine}.
+	 *
+	 * @param lists Listes à réunir.
+	 * @return Union des listes.
+	 */
+	private static PostingList pairUnion(PostingList[] lists) {
+		PostingList result = lists[0];
+		for (int l = 1; l < lists.length; l++) {
+			AbstractPostingCursor list1 = result.cursor();
+			AbstractPostingCursor list2 = lists[l].cursor();
+			PostingList union = new PostingList(list1.getSize() + list2.getSize());
+			boolean more1 = list1.next();
+			boolean more2 = list2.next();
+			while (more1 || more2) {
+				int docId1 = more1 ? list1.getDocId() : Integer.MAX_VALUE;
+				int docId2 = more2 ? list2.getDocId() : Integer.MAX_VALUE;
+				if (docId1 <= docId2) {
+					union.add(docId1, list1.getFrequency());
+					more1 = list1.next();
+					if (docId1 == docId2)
+						more2 = list2.next();
+				} else {
+					union.add(docId2, list2.getFrequency());
+					more2 = list2.next();
+				}
+			}
+			result = union;
+		}
+		return result;
+	}
+}
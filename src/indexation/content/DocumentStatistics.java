@@ -0,0 +1,199 @@
+package indexation.content;
+
+import java.io.Serializable;
+
+/**
+ * Statistiques calculées pour chaque document lors de l'indexation, et
+ * enregistrées avec l'index : la norme du vecteur tf-idf complet du document,
+ * et sa longueur exprimée en nombre d'occurrences de termes. Elles sont
+ * stockées dans deux tableaux indexés par docId, soit 8 octets par document.
+ * <br/>
+ * Grâce aux normes, le calcul du cosinus entre une requête et un document ne
+ * demande plus qu'une division par document candidat, au lieu d'accumuler les
+ * normes des documents à chaque requête (ce qui ne donnait d'ailleurs que la
+ * norme restreinte aux termes de la requête).
+ */
+public class DocumentStatistics implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée des statistiques vides pour le nombre de documents spécifié. Elles
+	 * sont ensuite complétées terme par terme, grâce à
+	 * {@link #addPostings(int, AbstractPostingCursor)}, puis terminées par
+	 * {@link #complete()}.
+	 *
+	 * @param docNbr Nombre de documents du corpus.
+	 */
+	public DocumentStatistics(int docNbr) {
+		this.docNbr = docNbr;
+		squaredNorms = new double[docNbr];
+		norms = new float[docNbr];
+		lengths = new int[docNbr];
+		totalLength = 0;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre de documents du corpus */
+	private int docNbr;
+	/** Sommes des carrés des poids, pendant la construction */
+	private transient double[] squaredNorms;
+	/** Normes des vecteurs tf-idf des documents */
+	private float[] norms;
+	/** Longueurs des documents, en nombre d'occurrences de termes */
+	private int[] lengths;
+	/** Somme des longueurs de tous les documents */
+	private long totalLength;
+
+	/**
+	 * Renvoie le nombre de documents concernés par ces statistiques.
+	 *
+	 * @return Nombre de documents du corpus.
+	 */
+	public int getDocumentNumber() {
+		return docNbr;
+	}
+
+	/**
+	 * Renvoie la norme du vecteur tf-idf du document spécifié.
+	 *
+	 * @param docId Numéro du document.
+	 * @return Norme du document, nulle s'il ne contient aucun terme
+	 *         discriminant.
+	 */
+	public float getNorm(int docId) {
+		return norms[docId];
+	}
+
+	/**
+	 * Renvoie la longueur du document spécifié.
+	 *
+	 * @param docId Numéro du document.
+	 * @return Nombre d'occurrences de termes dans le document.
+	 */
+	public int getLength(int docId) {
+		return lengths[docId];
+	}
+
+	/**
+	 * Renvoie la longueur moyenne des documents du corpus.
+	 *
+	 * @return Nombre moyen d'occurrences de termes par document.
+	 */
+	public float getAverageLength() {
+		if (docNbr == 0)
+			return 0;
+		return (float) totalLength / docNbr;
+	}
+
+	////////////////////////////////////////////////////
+	// POIDS
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule la pondération log-fréquence associée à un terme dans un
+	 * document.
+	 *
+	 * @param tf Fréquence du terme dans le document à traiter.
+	 * @return Poids correspondant au document.
+	 */
+	public static float processWf(int tf) {
+		float result = 0;
+		if (tf > 0)
+			result = 1 + (float) Math.log10(tf);
+		return result;
+	}
+
+	/**
+	 * Calcule la fréquence de document inverse associée à un terme dans une
+	 * collection.
+	 *
+	 * @param df     Nombre de documents contenant le terme.
+	 * @param docNbr Nombre de documents de la collection.
+	 * @return Fréquence inverse correspondante.
+	 */
+	public static float processIdf(int df, int docNbr) {
+		return (float) Math.log10(docNbr / (float) df);
+	}
+
+	////////////////////////////////////////////////////
+	// CONSTRUCTION
+	////////////////////////////////////////////////////
+	/**
+	 * Prend en compte la liste de postings complète d'un terme : le poids
+	 * tf-idf du terme est ajouté à la norme de chaque document de la liste, et
+	 * sa fréquence à la longueur du document.
+	 *
+	 * @param df       Nombre de documents contenant le terme.
+	 * @param postings Curseur sur la liste de postings du terme.
+	 */
+	public void addPostings(int df, AbstractPostingCursor postings) {
+		if (squaredNorms == null) {
+			throw new IllegalStateException("Document statistics are already complete.");
+		}
+		float idf = processIdf(df, docNbr);
+		while (postings.next()) {
+			int docId = postings.getDocId();
+			int tf = postings.getFrequency();
+			float weight = processWf(tf) * idf;
+			squaredNorms[docId] += weight * weight;
+			lengths[docId] += tf;
+			totalLength += tf;
+		}
+	}
+
+	/**
+	 * Termine le calcul des normes, une fois tous les termes pris en compte.
+	 */
+	public void complete() {
+		if (squaredNorms != null) {
+			for (int i = 0; i < docNbr; i++)
+				norms[i] = (float) Math.sqrt(squaredNorms[i]);
+			squaredNorms = null;
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "{documents=" + docNbr + ", average length=" + getAverageLength() + "}";
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		DocumentStatistics statistics = new DocumentStatistics(4);
+
+		// test de addPostings : "soleil" dans les documents 0 et 2, "maison"
+		// dans le document 0, "panneau" dans tous les documents
+		PostingList soleil = new PostingList();
+		soleil.add(0, 3);
+		soleil.add(2, 1);
+		statistics.addPostings(soleil.size(), soleil.cursor());
+		PostingList maison = new PostingList();
+		maison.add(0, 10);
+		statistics.addPostings(maison.size(), maison.cursor());
+		PostingList panneau = new PostingList();
+		for (int i = 0; i < 4; i++)
+			panneau.add(i, 1);
+		statistics.addPostings(panneau.size(), panneau.cursor());
+
+		// test de complete
+		statistics.complete();
+		for (int i = 0; i < 4; i++)
+			System.out.println("document " + i + ": norm=" + statistics.getNorm(i) + ", length="
+					+ statistics.getLength(i));
+		System.out.println("statistics: " + statistics);
+	}
+}
@@ -0,0 +1,124 @@
+package indexation.content;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Curseur produisant les postings d'un curseur dont le docId n'apparaît pas
+ * dans un autre curseur (opérateur ET-NON). Le curseur exclu n'est parcouru
+ * que jusqu'aux documents candidats, à l'aide de
+ * {@link AbstractPostingCursor#advance(int)}. Les fréquences et le coût sont
+ * ceux du curseur inclus.
+ */
+public class ExclusionPostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée la différence des curseurs spécifiés, qui doivent être positionnés
+	 * avant leur premier posting.
+	 *
+	 * @param include Curseur dont les postings sont produits.
+	 * @param exclude Curseur dont les docIds sont exclus.
+	 */
+	public ExclusionPostingCursor(AbstractPostingCursor include, AbstractPostingCursor exclude) {
+		this.include = include;
+		this.exclude = exclude;
+		excludedDocId = -1;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Curseur dont les postings sont produits */
+	private AbstractPostingCursor include;
+	/** Curseur dont les docIds sont exclus */
+	private AbstractPostingCursor exclude;
+	/**
+	 * DocId courant du curseur exclu ({@code -1} avant le début du parcours,
+	 * {@link Integer#MAX_VALUE} à la fin)
+	 */
+	private int excludedDocId;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		return include.next() && skipExcluded();
+	}
+
+	@Override
+	public boolean advance(int target) {
+		return include.advance(target) && skipExcluded();
+	}
+
+	/**
+	 * Avance le curseur inclus tant que son document courant est exclu.
+	 *
+	 * @return {@code true} s'il reste un document.
+	 */
+	private boolean skipExcluded() {
+		while (true) {
+			int docId = include.getDocId();
+			if (excludedDocId < docId)
+				excludedDocId = exclude.advance(docId) ? exclude.getDocId() : Integer.MAX_VALUE;
+			if (excludedDocId != docId)
+				return true;
+			if (!include.next())
+				return false;
+		}
+	}
+
+	@Override
+	public int getDocId() {
+		return include.getDocId();
+	}
+
+	@Override
+	public int getFrequency() {
+		return include.getFrequency();
+	}
+
+	@Override
+	public int getSize() {
+		return include.getSize();
+	}
+
+	@Override
+	public long cost() {
+		return include.cost();
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		PostingList list3 = new PostingList();
+		for (int i = 0; i < 30; i++) {
+			if (i % 2 == 0)
+				list1.add(i, 1);
+			if (i % 3 == 0)
+				list2.add(i, 2);
+			if (i % 5 == 0)
+				list3.add(i, 3);
+		}
+
+		// test de next
+		System.out.println("next: " + PostingList.copyOf(new ExclusionPostingCursor(list1.cursor(), list2.cursor())));
+
+		// test de la composition des opérateurs : (list1 OR list3) NOT list2
+		List<AbstractPostingCursor> cursors = new ArrayList<AbstractPostingCursor>();
+		cursors.add(list1.cursor());
+		cursors.add(list3.cursor());
+		AbstractPostingCursor cursor = new ExclusionPostingCursor(new DisjunctionPostingCursor(cursors),
+				list2.cursor());
+		System.out.println("composition: " + PostingList.copyOf(cursor));
+	}
+}
@@ -0,0 +1,139 @@
+package indexation.content;
+
+/**
+ * Estimateur approximatif de la fréquence d'accès à des clés entières, de
+ * type <i>Count-Min sketch</i>. Chaque clé est associée à quatre compteurs de
+ * quatre bits, choisis par des fonctions de hachage différentes, et sa
+ * fréquence estimée est le minimum de ces compteurs. Tous les compteurs sont
+ * régulièrement divisés par deux, de manière à oublier progressivement les
+ * accès anciens. <br/>
+ * Cet objet n'est pas synchronisé.
+ */
+public class FrequencySketch {
+	/**
+	 * Crée un estimateur adapté au nombre de clés distinctes spécifié.
+	 *
+	 * @param capacity Nombre approximatif de clés à suivre.
+	 */
+	public FrequencySketch(int capacity) {
+		int length = Integer.highestOneBit(Math.max(8, Math.min(capacity, 1 << 20)) - 1) << 1;
+		table = new long[length];
+		mask = length * COUNTERS_PER_WORD - 1;
+		sampleSize = 10 * Math.max(capacity, 8);
+		additions = 0;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre de compteurs de quatre bits dans un mot */
+	private static final int COUNTERS_PER_WORD = 16;
+	/** Valeur maximale d'un compteur */
+	private static final int MAX_COUNT = 15;
+	/** Germes des quatre fonctions de hachage */
+	private static final long[] SEEDS = { 0x97CB3127L, 0xB0F6F7A3L, 0x8B2D8C55L, 0xC2B2AE3DL };
+	/** Masque conservant les trois bits de poids faible de chaque compteur */
+	private static final long HALF_MASK = 0x7777777777777777L;
+
+	/** Compteurs, regroupés par mots de 64 bits */
+	private long[] table;
+	/** Masque appliqué aux positions des compteurs */
+	private int mask;
+	/** Nombre d'incrémentations au-delà duquel les compteurs sont divisés */
+	private int sampleSize;
+	/** Nombre d'incrémentations depuis la dernière division */
+	private int additions;
+
+	////////////////////////////////////////////////////
+	// COMPTAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Enregistre un accès à la clé spécifiée.
+	 *
+	 * @param key Clé accédée.
+	 */
+	public void increment(long key) {
+		boolean added = false;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int position = position(key, i);
+			int index = position >>> 4;
+			int shift = (position & 15) << 2;
+			if (((table[index] >>> shift) & 0xF) < MAX_COUNT) {
+				table[index] += 1L << shift;
+				added = true;
+			}
+		}
+		if (added && ++additions >= sampleSize) {
+			reset();
+		}
+	}
+
+	/**
+	 * Renvoie la fréquence estimée de la clé spécifiée.
+	 *
+	 * @param key Clé concernée.
+	 * @return Nombre d'accès récents estimé (au plus {@value #MAX_COUNT}).
+	 */
+	public int frequency(long key) {
+		int result = MAX_COUNT;
+		for (int i = 0; i < SEEDS.length; i++) {
+			int position = position(key, i);
+			int count = (int) ((table[position >>> 4] >>> ((position & 15) << 2)) & 0xF);
+			result = Math.min(result, count);
+		}
+		return result;
+	}
+
+	/**
+	 * Divise tous les compteurs par deux.
+	 */
+	private void reset() {
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (table[i] >>> 1) & HALF_MASK;
+		}
+		additions = additions / 2;
+	}
+
+	/**
+	 * Calcule la position du compteur associé à une clé pour l'une des
+	 * fonctions de hachage.
+	 *
+	 * @param key  Clé concernée.
+	 * @param hash Numéro de la fonction de hachage.
+	 * @return Position du compteur.
+	 */
+	private int position(long key, int hash) {
+		long h = (key + SEEDS[hash]) * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		h *= SEEDS[hash];
+		return (int) (h ^ (h >>> 29)) & mask;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		FrequencySketch sketch = new FrequencySketch(1000);
+
+		// test de increment et frequency
+		for (int i = 0; i < 10; i++) {
+			sketch.increment(42);
+		}
+		sketch.increment(7);
+		System.out.println("frequency: 42=" + sketch.frequency(42) + ", 7=" + sketch.frequency(7) + ", 3="
+				+ sketch.frequency(3));
+
+		// test du vieillissement
+		for (int i = 0; i < 20000; i++) {
+			sketch.increment(1000 + i % 5000);
+		}
+		System.out.println("frequency after aging: 42=" + sketch.frequency(42));
+	}
+}
@@ -0,0 +1,223 @@
+package indexation.content;
+
+import java.io.Serializable;
+
+/**
+ * Copie d'une liste de postings dans laquelle le poids tf-idf de chaque
+ * posting a été précalculé et quantifié sur 8 bits (son <i>impact</i>). Les
+ * docIds sont regroupés en segments de même impact, classés par impact
+ * décroissant, et triés par docId croissant à l'intérieur de chaque segment.
+ * <br/>
+ * Cette organisation permet une évaluation <i>score-at-a-time</i> : les
+ * segments de tous les termes de la requête sont traités par contribution
+ * décroissante, ce qui permet de s'arrêter avant la fin lorsque le temps
+ * alloué à la requête est écoulé, en ayant déjà pris en compte les postings
+ * les plus importants. <br/>
+ * Chaque liste possède son propre pas de quantification, égal au poids
+ * maximal de la liste divisé par {@value #MAX_IMPACT}.
+ */
+public class ImpactList implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée une liste d'impacts à partir de ses tableaux.
+	 *
+	 * @param impacts Impact de chaque segment, par ordre décroissant.
+	 * @param starts  Position du début de chaque segment, suivie de la
+	 *                longueur totale.
+	 * @param docIds  DocIds regroupés par segment.
+	 * @param scale   Poids correspondant à un impact de 1.
+	 */
+	private ImpactList(byte[] impacts, int[] starts, int[] docIds, float scale) {
+		this.impacts = impacts;
+		this.starts = starts;
+		this.docIds = docIds;
+		this.scale = scale;
+	}
+
+	/**
+	 * Calcule les impacts des postings spécifiés, et les range par impact
+	 * décroissant. Le poids d'un posting est le produit de sa pondération
+	 * log-fréquence et de l'idf du terme.
+	 *
+	 * @param postings Curseur sur la liste de postings du terme.
+	 * @param idf      Fréquence de document inverse du terme.
+	 * @return Liste d'impacts correspondante.
+	 */
+	public static ImpactList build(AbstractPostingCursor postings, float idf) {
+		int size = postings.getSize();
+		int[] docIds = new int[size];
+		float[] weights = new float[size];
+		float maxWeight = 0;
+		int n = 0;
+		while (postings.next()) {
+			docIds[n] = postings.getDocId();
+			weights[n] = DocumentStatistics.processWf(postings.getFrequency()) * idf;
+			maxWeight = Math.max(maxWeight, weights[n]);
+			n++;
+		}
+
+		// quantification, puis tri par dénombrement des impacts
+		float scale = maxWeight > 0 ? maxWeight / MAX_IMPACT : 1;
+		int[] quantized = new int[n];
+		int[] counts = new int[MAX_IMPACT + 1];
+		for (int i = 0; i < n; i++) {
+			int impact = Math.round(weights[i] / scale);
+			if (impact == 0 && weights[i] > 0)
+				impact = 1;
+			quantized[i] = impact;
+			counts[impact]++;
+		}
+		int segmentNumber = 0;
+		for (int impact = MAX_IMPACT; impact >= 0; impact--)
+			if (counts[impact] > 0)
+				segmentNumber++;
+		byte[] impacts = new byte[segmentNumber];
+		int[] starts = new int[segmentNumber + 1];
+		int[] positions = new int[MAX_IMPACT + 1];
+		int segment = 0;
+		int position = 0;
+		for (int impact = MAX_IMPACT; impact >= 0; impact--) {
+			if (counts[impact] > 0) {
+				impacts[segment] = (byte) impact;
+				starts[segment] = position;
+				positions[impact] = position;
+				position += counts[impact];
+				segment++;
+			}
+		}
+		starts[segmentNumber] = n;
+		int[] sorted = new int[n];
+		for (int i = 0; i < n; i++)
+			sorted[positions[quantized[i]]++] = docIds[i];
+		return new ImpactList(impacts, starts, sorted, scale);
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Impact maximal d'un posting */
+	public static final int MAX_IMPACT = 255;
+
+	/** Impact de chaque segment, non signé, par ordre décroissant */
+	private byte[] impacts;
+	/** Début de chaque segment dans {@link #docIds}, puis longueur totale */
+	private int[] starts;
+	/** DocIds regroupés par segment */
+	private int[] docIds;
+	/** Poids correspondant à un impact de 1 */
+	private float scale;
+
+	/**
+	 * Renvoie le nombre de segments de cette liste, c'est-à-dire le nombre
+	 * d'impacts distincts.
+	 *
+	 * @return Nombre de segments.
+	 */
+	public int getSegmentNumber() {
+		return impacts.length;
+	}
+
+	/**
+	 * Renvoie l'impact quantifié des postings d'un segment.
+	 *
+	 * @param segment Numéro du segment.
+	 * @return Impact, entre 0 et {@value #MAX_IMPACT}.
+	 */
+	public int getImpact(int segment) {
+		return impacts[segment] & 0xFF;
+	}
+
+	/**
+	 * Renvoie le poids tf-idf (approché) des postings d'un segment.
+	 *
+	 * @param segment Numéro du segment.
+	 * @return Poids correspondant à l'impact du segment.
+	 */
+	public float getWeight(int segment) {
+		return getImpact(segment) * scale;
+	}
+
+	/**
+	 * Renvoie la position du premier docId d'un segment.
+	 *
+	 * @param segment Numéro du segment.
+	 * @return Position de début (incluse).
+	 */
+	public int getSegmentStart(int segment) {
+		return starts[segment];
+	}
+
+	/**
+	 * Renvoie la position suivant le dernier docId d'un segment.
+	 *
+	 * @param segment Numéro du segment.
+	 * @return Position de fin (exclue).
+	 */
+	public int getSegmentEnd(int segment) {
+		return starts[segment + 1];
+	}
+
+	/**
+	 * Renvoie le docId situé à la position spécifiée.
+	 *
+	 * @param index Position dans la liste.
+	 * @return DocId correspondant.
+	 */
+	public int getDocId(int index) {
+		return docIds[index];
+	}
+
+	/**
+	 * Renvoie le nombre de postings de cette liste.
+	 *
+	 * @return Longueur de la liste.
+	 */
+	public int size() {
+		return docIds.length;
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for (int s = 0; s < impacts.length; s++) {
+			if (s > 0)
+				result.append(", ");
+			result.append(getImpact(s)).append(":");
+			for (int i = starts[s]; i < starts[s + 1]; i++)
+				result.append(" ").append(docIds[i]);
+		}
+		result.append("]");
+		return result.toString();
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList postings = new PostingList();
+		int[] frequencies = { 1, 10, 3, 1, 100, 3 };
+		for (int i = 0; i < frequencies.length; i++)
+			postings.add(i * 2, frequencies[i]);
+
+		// test de build
+		ImpactList impacts = build(postings.cursor(), 0.5f);
+		System.out.println("build: " + impacts + ", segments=" + impacts.getSegmentNumber());
+
+		// test de getWeight
+		for (int s = 0; s < impacts.getSegmentNumber(); s++)
+			System.out.println("segment " + s + ": impact=" + impacts.getImpact(s) + ", weight="
+					+ impacts.getWeight(s));
+	}
+}
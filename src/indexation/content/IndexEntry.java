@@ -1,8 +1,10 @@
 package indexation.content;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.UncheckedIOException;
+
+import indexation.lexicon.TermArena;
 
 /**
  * Représente une entrée de l'index, comprenant un terme, une liste de postings
@@ -19,50 +21,309 @@ public class IndexEntry implements Serializable, Comparable<IndexEntry> {
 	 */
 	public IndexEntry(String term) {
 		this.term = term;
-		this.postings = new ArrayList<Posting>();
+		this.postings = new PostingList();
 		this.frequency = 0;
 	}
 
+	/**
+	 * Crée une nouvelle entrée d'index, à partir du terme et de la liste de
+	 * postings complète passés en paramètres.
+	 * 
+	 * @param term     Terme inséré dans l'index.
+	 * @param postings Liste des postings contenant le terme.
+	 */
+	public IndexEntry(String term, PostingList postings) {
+		this.term = term;
+		this.postings = postings;
+		this.frequency = postings.size();
+	}
+
 	////////////////////////////////////////////////////
 	// TERME
 	////////////////////////////////////////////////////
-	/** Terme concerné par ce posting */
+	/** Terme concerné par ce posting, ou {@code null} s'il est stocké dans une zone */
 	private String term;
+	/** Zone contenant le terme, ou {@code null} */
+	private TermArena termArena;
+	/** Offset de l'enregistrement du terme dans la zone */
+	private int termRecord;
 
 	/**
-	 * Renvoie le terme associé à cette entrée de l'index.
+	 * Renvoie le terme associé à cette entrée de l'index. Si le terme est
+	 * stocké dans une zone de termes, la chaîne est recréée lors de chaque
+	 * appel.
 	 * 
 	 * @return Le terme de cette entrée.
 	 */
 	public String getTerm() {
+		if (termArena != null) {
+			return termArena.getTerm(termRecord);
+		}
 		return term;
 	}
 
+	/**
+	 * Remplace le terme de cette entrée par son enregistrement dans la zone
+	 * spécifiée, qui le contient déjà : l'entrée ne conserve alors plus
+	 * d'objet {@link String}. Un surrogate isolé étant stocké sous la forme
+	 * {@code '?'}, {@link #getTerm()} le renvoie ensuite sous cette forme.
+	 * 
+	 * @param arena  Zone contenant le terme.
+	 * @param record Offset de l'enregistrement du terme dans la zone.
+	 */
+	public void moveTermToArena(TermArena arena, int record) {
+		this.termArena = arena;
+		this.termRecord = record;
+		term = null;
+	}
+
 	////////////////////////////////////////////////////
 	// POSTINGS
 	////////////////////////////////////////////////////
-	/** Liste des postings contenant le terme */
-	private List<Posting> postings;
+	/**
+	 * Liste des postings contenant le terme, ou {@code null} si elle est
+	 * stockée hors du tas, sur disque ou sous forme d'ensemble compressé
+	 */
+	private PostingList postings;
+	/** Ensemble compressé des docIds, pour les termes fréquents, ou {@code null} */
+	private RoaringDocIdSet docIdSet;
+	/** Fréquences associées aux docIds de l'ensemble compressé */
+	private int[] docIdSetFrequencies;
+	/** Zone hors du tas contenant les postings, ou {@code null} */
+	private OffHeapPostingStore store;
+	/** Adresse des postings dans la zone hors du tas */
+	private long address;
+	/** Fichier contenant les postings, lus à la demande, ou {@code null} */
+	private PostingFile file;
+	/** Position des postings dans le fichier */
+	private long offset;
+	/** Postings lus dans le fichier lors du premier accès, ou {@code null} */
+	private transient volatile PostingList loaded;
 
 	/**
-	 * Renvoie la liste de postings associée à cette entrée de l'index.
+	 * Renvoie la liste de postings associée à cette entrée de l'index. Si les
+	 * postings sont stockés hors du tas, la liste renvoyée est une copie
+	 * temporaire. S'ils sont stockés sur disque, ils sont lus lors du premier
+	 * appel puis gardés en mémoire, soit par l'entrée elle-même, soit par le
+	 * cache du fichier de postings s'il en possède un. Enfin, s'ils sont
+	 * stockés sous forme d'ensemble compressé, la liste renvoyée est une copie
+	 * décompressée.
 	 * 
 	 * @return La liste de postings de cette entrée.
 	 */
-	public List<Posting> getPostings() {
+	public PostingList getPostings() {
+		if (docIdSet != null) {
+			return new PostingList(docIdSet.toArray(), docIdSetFrequencies, frequency);
+		}
+		if (store != null) {
+			return store.load(address, frequency);
+		}
+		if (file != null) {
+			return loadPostings();
+		}
 		return postings;
 	}
 
+	/**
+	 * Lit dans le fichier les postings de cette entrée, s'ils ne l'ont pas
+	 * encore été. Deux threads peuvent lire la même liste simultanément : l'une
+	 * des deux copies est alors simplement perdue. Lorsque le fichier possède
+	 * un cache, c'est lui qui décide de garder ou pas la liste.
+	 * 
+	 * @return La liste de postings de cette entrée.
+	 */
+	private PostingList loadPostings() {
+		PostingList result = loaded;
+		if (result == null) {
+			try {
+				result = file.readPostings(offset);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (file.getCache() == null)
+				loaded = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Indique si les postings de cette entrée sont disponibles en mémoire (dans
+	 * le tas ou en dehors), ou s'ils doivent être lus sur disque (ou dans le
+	 * cache du fichier de postings).
+	 * 
+	 * @return {@code true} si les postings sont disponibles en mémoire.
+	 */
+	public boolean isLoaded() {
+		return file == null || loaded != null;
+	}
+
+	/**
+	 * Renvoie un curseur permettant de parcourir les postings de cette entrée
+	 * sans les recopier, qu'ils soient stockés dans le tas ou en dehors. Pour
+	 * un ensemble compressé, le curseur donne accès à l'ensemble (cf.
+	 * {@link AbstractPostingCursor#getDocIdSet()}).
+	 * 
+	 * @return Curseur positionné avant le premier posting de cette entrée.
+	 */
+	public AbstractPostingCursor getPostingCursor() {
+		if (docIdSet != null) {
+			return docIdSet.cursor(docIdSetFrequencies);
+		}
+		if (store != null) {
+			return store.cursor(address, frequency);
+		}
+		if (file != null) {
+			return loadPostings().cursor();
+		}
+		return postings.cursor();
+	}
+
 	/**
 	 * Ajoute le posting spécifié à la liste associée à cette entrée de l'index.
 	 * 
 	 * @param posting Posting à ajouter à la liste de cette entrée.
 	 */
 	public void addPosting(Posting posting) {
-		postings.add(posting);
+		addPosting(posting.getDocId(), posting.getFrequency());
+	}
+
+	/**
+	 * Ajoute un posting à la fin de la liste associée à cette entrée de
+	 * l'index.
+	 * 
+	 * @param docId     Numéro du document contenant le terme.
+	 * @param frequency Fréquence du terme dans ce document.
+	 */
+	public void addPosting(int docId, int frequency) {
+		if (postings == null) {
+			throw new IllegalStateException("Postings stored off-heap, on disk or compressed cannot be modified.");
+		}
+		postings.add(docId, frequency);
 		incrementFrequency();
 	}
 
+	/**
+	 * Réduit la place occupée par la liste de postings, une fois celle-ci
+	 * complète.
+	 */
+	public void trimPostings() {
+		if (postings != null) {
+			postings.trim();
+		}
+	}
+
+	/**
+	 * Remplace les docIds de la liste de postings de cette entrée par un
+	 * ensemble compressé, qui représente chaque tranche de docIds sous la forme
+	 * la plus compacte (tableau, bitmap ou plages). Seules les fréquences sont
+	 * conservées dans un tableau. L'entrée ne peut plus être modifiée.
+	 */
+	public void compressDocIds() {
+		if (postings != null) {
+			postings.trim();
+			docIdSet = RoaringDocIdSet.fromSortedDocIds(postings.getDocIds(), postings.size());
+			docIdSetFrequencies = postings.getFrequencies();
+			postings = null;
+		}
+	}
+
+	/**
+	 * Indique si les docIds de cette entrée sont stockés sous forme d'ensemble
+	 * compressé.
+	 * 
+	 * @return {@code true} si les docIds sont compressés.
+	 */
+	public boolean isCompressed() {
+		return docIdSet != null;
+	}
+
+	/**
+	 * Déplace la liste de postings de cette entrée dans la zone hors du tas
+	 * spécifiée. L'entrée ne conserve alors que l'adresse de la liste (sa
+	 * longueur étant donnée par la fréquence), et ne peut plus être modifiée.
+	 * 
+	 * @param store Zone de stockage hors du tas.
+	 */
+	public void moveOffHeap(OffHeapPostingStore store) {
+		if (postings != null) {
+			address = store.add(postings);
+			this.store = store;
+			postings = null;
+		}
+	}
+
+	/**
+	 * Écrit la liste de postings de cette entrée dans le fichier spécifié.
+	 * L'entrée ne conserve alors que la position de la liste, et ne la relira
+	 * dans le fichier que lorsqu'elle sera demandée. Elle ne peut plus être
+	 * modifiée.
+	 * 
+	 * @param file Fichier de postings en cours d'écriture.
+	 * 
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	public void moveToFile(PostingFile file) throws IOException {
+		if (postings != null) {
+			offset = file.write(postings);
+			this.file = file;
+			postings = null;
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// IMPACTS
+	////////////////////////////////////////////////////
+	/** Copie de la liste triée par impact décroissant, ou {@code null} */
+	private ImpactList impacts;
+
+	/**
+	 * Renvoie la copie de la liste de postings de cette entrée dans laquelle
+	 * les postings sont associés à leurs impacts précalculés, et triés par
+	 * impact décroissant.
+	 * 
+	 * @return Liste d'impacts, ou {@code null} si les impacts n'ont pas été
+	 *         calculés lors de l'indexation.
+	 */
+	public ImpactList getImpacts() {
+		return impacts;
+	}
+
+	/**
+	 * Associe à cette entrée la liste d'impacts calculée à partir de ses
+	 * postings.
+	 * 
+	 * @param impacts Liste d'impacts de cette entrée.
+	 */
+	public void setImpacts(ImpactList impacts) {
+		this.impacts = impacts;
+	}
+
+	////////////////////////////////////////////////////
+	// SCORES MAXIMAUX
+	////////////////////////////////////////////////////
+	/** Bornes des contributions du terme aux scores, ou {@code null} */
+	private BlockMaxScores maxScores;
+
+	/**
+	 * Renvoie les bornes supérieures des contributions du terme de cette
+	 * entrée aux scores des documents, sur toute la liste et par bloc.
+	 * 
+	 * @return Bornes du terme, ou {@code null} si elles n'ont pas été
+	 *         calculées lors de l'indexation.
+	 */
+	public BlockMaxScores getMaxScores() {
+		return maxScores;
+	}
+
+	/**
+	 * Associe à cette entrée les bornes calculées à partir de ses postings.
+	 * 
+	 * @param maxScores Bornes du terme de cette entrée.
+	 */
+	public void setMaxScores(BlockMaxScores maxScores) {
+		this.maxScores = maxScores;
+	}
+
 	////////////////////////////////////////////////////
 	// FREQUENCE
 	////////////////////////////////////////////////////
@@ -91,7 +352,7 @@ public class IndexEntry implements Serializable, Comparable<IndexEntry> {
 	////////////////////////////////////////////////////
 	@Override
 	public int compareTo(IndexEntry entry) {
-		return term.compareTo(entry.getTerm());
+		return getTerm().compareTo(entry.getTerm());
 	}
 
 	////////////////////////////////////////////////////
@@ -100,12 +361,13 @@ public class IndexEntry implements Serializable, Comparable<IndexEntry> {
 	@Override
 	public String toString() {
 		StringBuilder postingsString = new StringBuilder();
-		for (Posting posting : postings) {
-			postingsString.append(posting.toString());
+		AbstractPostingCursor cursor = getPostingCursor();
+		while (cursor.next()) {
+			postingsString.append("<" + cursor.getDocId() + " [" + cursor.getFrequency() + "]>");
 			postingsString.append(" ");
 		}
 		
-		return ("<"+term+" ["+frequency+"] ( "+postingsString+")>");
+		return ("<"+getTerm()+" ["+frequency+"] ( "+postingsString+")>");
 	}
 
 	@Override
@@ -160,5 +422,26 @@ public class IndexEntry implements Serializable, Comparable<IndexEntry> {
 		System.out.println("toString n°1 : " + indexEntry1);
 		System.out.println("toString n°2 : " + indexEntry2);
 		System.out.println("toString n°3 : " + indexEntry3);
+
+		// test de moveToFile et du chargement à la demande
+		java.io.File tempFile = java.io.File.createTempFile("postings", ".data");
+		tempFile.deleteOnExit();
+		PostingFile file = new PostingFile(tempFile.getPath());
+		indexEntry2.moveToFile(file);
+		file.finishWriting();
+		System.out.println("isLoaded before access: " + indexEntry2.isLoaded());
+		System.out.println("getPostings: " + indexEntry2.getPostings() + ", isLoaded: " + indexEntry2.isLoaded());
+		file.close();
+
+		// test de compressDocIds
+		IndexEntry indexEntry5 = new IndexEntry("soleil");
+		for (int i = 0; i < 100; i++) {
+			indexEntry5.addPosting(i, i % 3 + 1);
+		}
+		indexEntry5.addPosting(500, 7);
+		indexEntry5.compressDocIds();
+		System.out.println("compressDocIds: " + indexEntry5.isCompressed() + ", getPostings: "
+				+ indexEntry5.getPostings().size() + " postings, last frequency: "
+				+ indexEntry5.getPostings().getFrequency(100));
 	}
 }
@@ -0,0 +1,83 @@
+package indexation.content;
+
+/**
+ * Curseur parcourant une liste de postings stockée dans un
+ * {@link OffHeapPostingStore}. Les postings sont copiés dans le tas par blocs
+ * de taille fixe : la zone n'est donc consultée (et son état vérifié) qu'une
+ * fois par bloc, et jamais pendant la lecture d'un posting. Si la zone a été
+ * fermée, le curseur échoue lors de la copie du bloc suivant.
+ */
+public class OffHeapPostingCursor extends AbstractPostingCursor {
+	/** Nombre de postings copiés à la fois dans le tas */
+	static final int BLOCK_SIZE = 128;
+
+	/**
+	 * Crée un curseur positionné avant le premier posting de la liste
+	 * spécifiée.
+	 *
+	 * @param store   Zone contenant la liste.
+	 * @param address Adresse de la liste dans la zone.
+	 * @param size    Nombre de postings de la liste.
+	 */
+	OffHeapPostingCursor(OffHeapPostingStore store, long address, int size) {
+		this.store = store;
+		this.address = address;
+		this.size = size;
+		int capacity = Math.min(size, BLOCK_SIZE);
+		docIds = new int[capacity];
+		frequencies = new int[capacity];
+		index = -1;
+		position = -1;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Zone contenant la liste parcourue */
+	private OffHeapPostingStore store;
+	/** Adresse de la liste dans la zone */
+	private long address;
+	/** Nombre de postings de la liste */
+	private int size;
+	/** DocIds du bloc courant */
+	private int[] docIds;
+	/** Fréquences du bloc courant */
+	private int[] frequencies;
+	/** Rang du posting courant dans la liste */
+	private int index;
+	/** Position du posting courant dans le bloc */
+	private int position;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		if (index + 1 >= size) {
+			index = size;
+			return false;
+		}
+		index++;
+		position++;
+		if (position == docIds.length || index == 0) {
+			store.read(address, index, Math.min(docIds.length, size - index), docIds, frequencies);
+			position = 0;
+		}
+		return true;
+	}
+
+	@Override
+	public int getDocId() {
+		return docIds[position];
+	}
+
+	@Override
+	public int getFrequency() {
+		return frequencies[position];
+	}
+
+	@Override
+	public int getSize() {
+		return size;
+	}
+}
@@ -0,0 +1,420 @@
+package indexation.content;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Zone de stockage des listes de postings située hors du tas Java, dans des
+ * tampons directs alloués par blocs. Chaque posting y occupe huit octets
+ * (docId puis fréquence), et chaque liste est identifiée par une adresse
+ * combinant le numéro du bloc et la position de la liste dans ce bloc. Le
+ * ramasse-miettes n'a donc plus à parcourir les postings, quel que soit leur
+ * nombre. <br/>
+ * La mémoire est libérée explicitement par {@link #close()}, généralement
+ * appelée lors de la fermeture de l'index, sans attendre le ramasse-miettes.
+ * Toutes les lectures se font sous le verrou de lecture de la zone, que
+ * {@link #close()} acquiert en écriture : la fermeture attend donc la fin des
+ * lectures en cours, et toute lecture ultérieure, y compris par un curseur
+ * créé avant la fermeture, provoque une {@link IllegalStateException}. Les
+ * curseurs copient pour cela les postings par blocs de
+ * {@link OffHeapPostingCursor#BLOCK_SIZE} dans le tas, et n'accèdent à la
+ * zone qu'une fois par bloc.
+ */
+public class OffHeapPostingStore implements Serializable, Closeable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée une zone de stockage vide, utilisant des blocs de taille par
+	 * défaut.
+	 */
+	public OffHeapPostingStore() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Crée une zone de stockage vide, utilisant des blocs de la taille
+	 * spécifiée.
+	 *
+	 * @param chunkSize Taille d'un bloc, en octets.
+	 */
+	public OffHeapPostingStore(int chunkSize) {
+		if (chunkSize < POSTING_SIZE) {
+			throw new IllegalArgumentException("Chunk size is too small.");
+		}
+		this.chunkSize = chunkSize;
+		chunks = new ArrayList<ByteBuffer>();
+		lock = new ReentrantReadWriteLock();
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Taille par défaut d'un bloc (64 Mo) */
+	public static final int DEFAULT_CHUNK_SIZE = 64 << 20;
+	/** Nombre d'octets occupés par un posting */
+	static final int POSTING_SIZE = 8;
+
+	/** Taille d'un bloc, en octets */
+	private int chunkSize;
+	/** Blocs alloués hors du tas (liste vide une fois la zone fermée) */
+	private transient List<ByteBuffer> chunks;
+	/** Indique si la mémoire a été libérée */
+	private transient boolean closed;
+	/** Verrou protégeant les lectures de la libération de la mémoire */
+	private transient ReentrantReadWriteLock lock;
+
+	/**
+	 * Renvoie le nombre d'octets alloués hors du tas par cette zone.
+	 *
+	 * @return Nombre d'octets alloués.
+	 */
+	public synchronized long getAllocatedBytes() {
+		long result = 0;
+		for (ByteBuffer chunk : chunks) {
+			result = result + chunk.capacity();
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// ÉCRITURE
+	////////////////////////////////////////////////////
+	/**
+	 * Copie la liste de postings spécifiée dans la zone de stockage.
+	 *
+	 * @param postings Liste de postings à copier.
+	 * @return Adresse de la liste dans la zone.
+	 */
+	public synchronized long add(PostingList postings) {
+		checkOpen();
+		int needed = postings.size() * POSTING_SIZE;
+		ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+		if (chunk == null || chunk.remaining() < needed) {
+			chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, needed)).order(ByteOrder.nativeOrder());
+			chunks.add(chunk);
+		}
+		long result = address(chunks.size() - 1, chunk.position());
+		for (int i = 0; i < postings.size(); i++) {
+			chunk.putInt(postings.getDocId(i));
+			chunk.putInt(postings.getFrequency(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule l'adresse correspondant à une position dans un bloc.
+	 *
+	 * @param chunk    Numéro du bloc.
+	 * @param position Position dans le bloc.
+	 * @return Adresse correspondante.
+	 */
+	private static long address(int chunk, int position) {
+		return ((long) chunk << 32) | position;
+	}
+
+	////////////////////////////////////////////////////
+	// LECTURE
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie le docId d'un posting de la liste située à l'adresse spécifiée.
+	 *
+	 * @param address Adresse de la liste.
+	 * @param index   Rang du posting dans la liste.
+	 * @return DocId du posting.
+	 */
+	public int getDocId(long address, int index) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return getChunk(address).getInt((int) address + index * POSTING_SIZE);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Renvoie la fréquence d'un posting de la liste située à l'adresse
+	 * spécifiée.
+	 *
+	 * @param address Adresse de la liste.
+	 * @param index   Rang du posting dans la liste.
+	 * @return Fréquence du terme dans le document du posting.
+	 */
+	public int getFrequency(long address, int index) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return getChunk(address).getInt((int) address + index * POSTING_SIZE + 4);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Recrée, dans le tas, la liste de postings située à l'adresse spécifiée.
+	 *
+	 * @param address Adresse de la liste.
+	 * @param length  Nombre de postings de la liste.
+	 * @return Copie de la liste de postings.
+	 */
+	public PostingList load(long address, int length) {
+		int[] docIds = new int[length];
+		int[] frequencies = new int[length];
+		read(address, 0, length, docIds, frequencies);
+		return new PostingList(docIds, frequencies, length);
+	}
+
+	/**
+	 * Copie dans le tas une partie de la liste de postings située à l'adresse
+	 * spécifiée.
+	 *
+	 * @param address     Adresse de la liste.
+	 * @param from        Rang du premier posting à copier.
+	 * @param length      Nombre de postings à copier.
+	 * @param docIds      Tableau recevant les docIds.
+	 * @param frequencies Tableau recevant les fréquences.
+	 */
+	void read(long address, int from, int length, int[] docIds, int[] frequencies) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			ByteBuffer chunk = getChunk(address);
+			int position = (int) address + from * POSTING_SIZE;
+			for (int i = 0; i < length; i++) {
+				docIds[i] = chunk.getInt(position);
+				frequencies[i] = chunk.getInt(position + 4);
+				position = position + POSTING_SIZE;
+			}
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * Renvoie un curseur parcourant la liste de postings située à l'adresse
+	 * spécifiée, sans la recopier entièrement dans le tas (cf.
+	 * {@link OffHeapPostingCursor}).
+	 *
+	 * @param address Adresse de la liste.
+	 * @param length  Nombre de postings de la liste.
+	 * @return Curseur positionné avant le premier posting de la liste.
+	 */
+	public AbstractPostingCursor cursor(long address, int length) {
+		Lock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			checkOpen();
+		} finally {
+			readLock.unlock();
+		}
+		return new OffHeapPostingCursor(this, address, length);
+	}
+
+	/**
+	 * Renvoie le bloc contenant l'adresse spécifiée. L'appelant doit détenir
+	 * le verrou de lecture, ou être synchronisé.
+	 *
+	 * @param address Adresse d'une liste.
+	 * @return Bloc contenant la liste.
+	 */
+	private ByteBuffer getChunk(long address) {
+		checkOpen();
+		return chunks.get((int) (address >>> 32));
+	}
+
+	/**
+	 * Vérifie que la mémoire n'a pas encore été libérée.
+	 */
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("The posting store has been closed.");
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// LIBÉRATION
+	////////////////////////////////////////////////////
+	/**
+	 * Libère la mémoire occupée par cette zone. Lorsque la machine virtuelle le
+	 * permet, les tampons directs sont désalloués immédiatement, sans attendre
+	 * le ramasse-miettes. La méthode attend que les lectures en cours (y
+	 * compris la copie d'un bloc par un curseur) soient terminées : aucune
+	 * lecture ne peut donc accéder à la mémoire libérée.
+	 */
+	@Override
+	public synchronized void close() {
+		Lock writeLock = lock.writeLock();
+		writeLock.lock();
+		try {
+			if (!closed) {
+				closed = true;
+				for (ByteBuffer chunk : chunks) {
+					release(chunk);
+				}
+				chunks = new ArrayList<ByteBuffer>();
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Désalloue immédiatement un tampon direct, en utilisant l'API interne de
+	 * la machine virtuelle (méthode {@code invokeCleaner} à partir de Java 9,
+	 * méthode {@code cleaner()} du tampon pour Java 8). Si aucune n'est
+	 * accessible, la libération est laissée au ramasse-miettes.
+	 *
+	 * @param buffer Tampon à libérer.
+	 */
+	private static void release(ByteBuffer buffer) {
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			invokeCleaner.invoke(field.get(null), buffer);
+			return;
+		} catch (Exception e) {
+			// méthode absente avant Java 9 : on essaie l'approche suivante
+		}
+		try {
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if (cleaner != null) {
+				Method clean = cleaner.getClass().getMethod("clean");
+				clean.setAccessible(true);
+				clean.invoke(cleaner);
+			}
+		} catch (Exception e) {
+			// libération laissée au ramasse-miettes
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// SÉRIALISATION
+	////////////////////////////////////////////////////
+	/**
+	 * Écrit le contenu des blocs dans le flux de sérialisation.
+	 *
+	 * @param out Flux de sérialisation.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	private synchronized void writeObject(ObjectOutputStream out) throws IOException {
+		checkOpen();
+		out.defaultWriteObject();
+		out.writeInt(chunks.size());
+		byte[] bytes = new byte[8192];
+		for (ByteBuffer chunk : chunks) {
+			ByteBuffer view = chunk.duplicate();
+			view.flip();
+			out.writeInt(view.remaining());
+			while (view.hasRemaining()) {
+				int length = Math.min(bytes.length, view.remaining());
+				view.get(bytes, 0, length);
+				out.write(bytes, 0, length);
+			}
+		}
+	}
+
+	/**
+	 * Recrée les blocs hors du tas à partir du flux de sérialisation.
+	 *
+	 * @param in Flux de désérialisation.
+	 *
+	 * @throws IOException            Problème lors de la lecture.
+	 * @throws ClassNotFoundException Problème lors de la lecture.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		lock = new ReentrantReadWriteLock();
+		int count = in.readInt();
+		chunks = new ArrayList<ByteBuffer>(count);
+		byte[] bytes = new byte[8192];
+		for (int i = 0; i < count; i++) {
+			int used = in.readInt();
+			ByteBuffer chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, used)).order(ByteOrder.nativeOrder());
+			while (chunk.position() < used) {
+				int length = Math.min(bytes.length, used - chunk.position());
+				in.readFully(bytes, 0, length);
+				chunk.put(bytes, 0, length);
+			}
+			chunks.add(chunk);
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		OffHeapPostingStore store = new OffHeapPostingStore(64);
+		PostingList postings = new PostingList();
+		for (int i = 0; i < 5; i++) {
+			postings.add(i * 3, i + 1);
+		}
+		PostingList prefix = new PostingList(postings.getDocIds(), postings.getFrequencies(), 2);
+
+		// test de add
+		long address1 = store.add(postings);
+		long address2 = store.add(prefix);
+		long address3 = store.add(postings);
+		System.out.println("getAllocatedBytes: " + store.getAllocatedBytes());
+
+		// test de load, getDocId et getFrequency
+		System.out.println("load: " + store.load(address1, 5) + " " + store.load(address2, 2) + " "
+				+ store.load(address3, 5));
+		System.out.println("getDocId: " + store.getDocId(address3, 4) + ", getFrequency: "
+				+ store.getFrequency(address3, 4));
+
+		// test de cursor
+		AbstractPostingCursor cursor = store.cursor(address2, 2);
+		System.out.print("cursor:");
+		while (cursor.next()) {
+			System.out.print(" " + cursor.getDocId() + "/" + cursor.getFrequency());
+		}
+		System.out.println();
+
+		// test de close, y compris pour un curseur ouvert auparavant : il
+		// échoue lorsqu'il doit copier le bloc suivant
+		PostingList longList = new PostingList();
+		for (int i = 0; i < 3 * OffHeapPostingCursor.BLOCK_SIZE; i++) {
+			longList.add(i, 1);
+		}
+		cursor = store.cursor(store.add(longList), longList.size());
+		cursor.next();
+		store.close();
+		int read = 1;
+		try {
+			while (cursor.next()) {
+				read++;
+			}
+		} catch (IllegalStateException e) {
+			System.out.println("Exception catched after " + read + " postings: " + e.getMessage());
+		}
+		try {
+			store.load(address1, 5);
+		} catch (IllegalStateException e) {
+			System.out.println("Exception catched : " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,416 @@
+package indexation.content;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache de listes de postings décodées, borné par le nombre d'octets
+ * occupés, et partagé par tous les threads. Les listes sont identifiées par
+ * une clé entière, typiquement leur position dans un {@link PostingFile}.
+ * <br/>
+ * Le cache suit la politique W-TinyLFU : une liste nouvellement insérée entre
+ * d'abord dans une petite fenêtre LRU (1% de la taille). Lorsqu'elle en sort,
+ * elle n'est admise dans la zone principale que si sa fréquence d'accès
+ * estimée (cf. {@link FrequencySketch}) dépasse celle de la liste qu'elle
+ * évincerait. La zone principale est elle-même divisée en une partie
+ * probatoire et une partie protégée (80%), réservée aux listes accédées au
+ * moins deux fois. Une liste très populaire ne peut donc pas être chassée par
+ * une série de listes lues une seule fois. <br/>
+ * Les lectures n'utilisent pas de verrou : seules les mises à jour de la
+ * politique d'éviction sont sérialisées, et elles sont simplement ignorées
+ * lorsqu'un autre thread tient déjà le verrou.
+ */
+public class PostingCache {
+	/**
+	 * Crée un cache vide, pouvant occuper au plus le nombre d'octets spécifié.
+	 *
+	 * @param maxBytes Taille maximale du cache, en octets.
+	 */
+	public PostingCache(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("Cache size must be positive.");
+		}
+		this.maxBytes = maxBytes;
+		windowMax = Math.max(1, maxBytes / 100);
+		mainMax = maxBytes - windowMax;
+		protectedMax = mainMax * 4 / 5;
+		data = new ConcurrentHashMap<Long, PostingList>();
+		window = new LinkedHashMap<Long, PostingList>(16, 0.75f, true);
+		probation = new LinkedHashMap<Long, PostingList>(16, 0.75f, true);
+		protectedLists = new LinkedHashMap<Long, PostingList>(16, 0.75f, true);
+		sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_SIZE));
+		lock = new ReentrantLock();
+		hits = new LongAdder();
+		misses = new LongAdder();
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Taille supposée d'une liste, utilisée pour dimensionner l'estimateur */
+	private static final int AVERAGE_SIZE = 1024;
+	/** Coût fixe d'une liste en mémoire (objets et tableaux) */
+	private static final int LIST_OVERHEAD = 64;
+
+	/** Taille maximale du cache, en octets */
+	private long maxBytes;
+	/** Taille maximale de la fenêtre */
+	private long windowMax;
+	/** Taille maximale de la zone principale */
+	private long mainMax;
+	/** Taille maximale de la partie protégée de la zone principale */
+	private long protectedMax;
+
+	/** Listes présentes dans le cache, consultées sans verrou */
+	private ConcurrentHashMap<Long, PostingList> data;
+	/** Fenêtre d'admission, dans l'ordre des accès */
+	private LinkedHashMap<Long, PostingList> window;
+	/** Partie probatoire de la zone principale, dans l'ordre des accès */
+	private LinkedHashMap<Long, PostingList> probation;
+	/** Partie protégée de la zone principale, dans l'ordre des accès */
+	private LinkedHashMap<Long, PostingList> protectedLists;
+	/** Estimateur des fréquences d'accès */
+	private FrequencySketch sketch;
+	/** Verrou protégeant la politique d'éviction */
+	private ReentrantLock lock;
+
+	/** Octets occupés par la fenêtre */
+	private long windowBytes;
+	/** Octets occupés par la partie probatoire */
+	private long probationBytes;
+	/** Octets occupés par la partie protégée */
+	private long protectedBytes;
+
+	////////////////////////////////////////////////////
+	// ACCÈS
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie la liste associée à la clé spécifiée, si elle est dans le cache.
+	 *
+	 * @param key Clé de la liste.
+	 * @return Liste de postings, ou {@code null} si elle n'est pas en cache.
+	 */
+	public PostingList get(long key) {
+		PostingList result = data.get(key);
+		if (result == null) {
+			misses.increment();
+		} else {
+			hits.increment();
+			// sous forte concurrence, on préfère perdre l'accès qu'attendre
+			if (lock.tryLock()) {
+				try {
+					sketch.increment(key);
+					onHit(key);
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Insère dans le cache une liste qui vient d'être décodée. Si la liste est
+	 * déjà présente (chargée en parallèle par un autre thread), le cache n'est
+	 * pas modifié.
+	 *
+	 * @param key  Clé de la liste.
+	 * @param list Liste de postings.
+	 */
+	public void put(long key, PostingList list) {
+		long weight = weigh(list);
+		lock.lock();
+		try {
+			sketch.increment(key);
+			if (weight > maxBytes || data.containsKey(key)) {
+				return;
+			}
+			data.put(key, list);
+			window.put(key, list);
+			windowBytes += weight;
+			evict();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Vide complètement le cache, sans modifier les statistiques.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			data.clear();
+			window.clear();
+			probation.clear();
+			protectedLists.clear();
+			windowBytes = 0;
+			probationBytes = 0;
+			protectedBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Estime le nombre d'octets occupés en mémoire par une liste.
+	 *
+	 * @param list Liste concernée.
+	 * @return Nombre d'octets occupés.
+	 */
+	private static long weigh(PostingList list) {
+		return LIST_OVERHEAD + 8L * list.getDocIds().length;
+	}
+
+	////////////////////////////////////////////////////
+	// POLITIQUE
+	////////////////////////////////////////////////////
+	/**
+	 * Met à jour les zones du cache après un accès à une liste présente :
+	 * une liste probatoire devient protégée.
+	 *
+	 * @param key Clé de la liste accédée.
+	 */
+	private void onHit(long key) {
+		if (window.get(key) != null || protectedLists.get(key) != null) {
+			return;
+		}
+		PostingList list = probation.remove(key);
+		if (list != null) {
+			long weight = weigh(list);
+			probationBytes -= weight;
+			protectedLists.put(key, list);
+			protectedBytes += weight;
+			// la partie protégée déborde : ses listes les plus anciennes
+			// redeviennent probatoires
+			while (protectedBytes > protectedMax) {
+				Map.Entry<Long, PostingList> eldest = protectedLists.entrySet().iterator().next();
+				protectedLists.remove(eldest.getKey());
+				long eldestWeight = weigh(eldest.getValue());
+				protectedBytes -= eldestWeight;
+				probation.put(eldest.getKey(), eldest.getValue());
+				probationBytes += eldestWeight;
+			}
+		}
+	}
+
+	/**
+	 * Fait sortir de la fenêtre les listes en excès, et décide pour chacune si
+	 * elle doit remplacer des listes de la zone principale ou être abandonnée.
+	 */
+	private void evict() {
+		while (windowBytes > windowMax) {
+			Iterator<Map.Entry<Long, PostingList>> it = window.entrySet().iterator();
+			Map.Entry<Long, PostingList> candidate = it.next();
+			it.remove();
+			long candidateKey = candidate.getKey();
+			long candidateWeight = weigh(candidate.getValue());
+			windowBytes -= candidateWeight;
+
+			// on libère la place nécessaire, tant que le candidat est plus
+			// fréquent que les victimes
+			boolean admitted = true;
+			int candidateFrequency = sketch.frequency(candidateKey);
+			while (admitted && probationBytes + protectedBytes + candidateWeight > mainMax) {
+				Map<Long, PostingList> victims = probation.isEmpty() ? protectedLists : probation;
+				if (victims.isEmpty()) {
+					admitted = false;
+				} else {
+					Map.Entry<Long, PostingList> victim = victims.entrySet().iterator().next();
+					if (candidateFrequency > sketch.frequency(victim.getKey())) {
+						victims.remove(victim.getKey());
+						long victimWeight = weigh(victim.getValue());
+						if (victims == probation) {
+							probationBytes -= victimWeight;
+						} else {
+							protectedBytes -= victimWeight;
+						}
+						data.remove(victim.getKey());
+						evictions++;
+					} else {
+						admitted = false;
+					}
+				}
+			}
+
+			if (admitted) {
+				probation.put(candidateKey, candidate.getValue());
+				probationBytes += candidateWeight;
+			} else {
+				data.remove(candidateKey);
+				evictions++;
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// STATISTIQUES
+	////////////////////////////////////////////////////
+	/** Nombre de listes trouvées dans le cache */
+	private LongAdder hits;
+	/** Nombre de listes absentes du cache */
+	private LongAdder misses;
+	/** Nombre de listes évincées ou refusées */
+	private volatile long evictions;
+
+	/**
+	 * Renvoie le nombre de recherches ayant trouvé la liste dans le cache.
+	 *
+	 * @return Nombre de succès.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de recherches n'ayant pas trouvé la liste dans le
+	 * cache.
+	 *
+	 * @return Nombre d'échecs.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Renvoie la proportion de recherches ayant trouvé la liste dans le cache.
+	 *
+	 * @return Taux de succès, entre 0 et 1.
+	 */
+	public float getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		if (total == 0) {
+			return 0;
+		}
+		return hitCount / (float) total;
+	}
+
+	/**
+	 * Renvoie le nombre de listes sorties du cache, ou refusées lors de leur
+	 * sortie de la fenêtre d'admission.
+	 *
+	 * @return Nombre d'évictions.
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Renvoie le nombre d'octets occupés par les listes présentes dans le
+	 * cache.
+	 *
+	 * @return Nombre d'octets occupés.
+	 */
+	public long getResidentBytes() {
+		lock.lock();
+		try {
+			return windowBytes + probationBytes + protectedBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Renvoie la taille maximale du cache.
+	 *
+	 * @return Nombre maximal d'octets.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Renvoie le nombre de listes présentes dans le cache.
+	 *
+	 * @return Nombre de listes.
+	 */
+	public int getSize() {
+		return data.size();
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", hit ratio=" + getHitRatio()
+				+ ", evictions=" + getEvictionCount() + ", lists=" + getSize() + ", resident bytes="
+				+ getResidentBytes() + "/" + maxBytes;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe. On simule des accès à des listes dont
+	 * la popularité suit une loi de Zipf, entrecoupés de parcours de listes
+	 * lues une seule fois, et on compare le taux de succès avec celui d'un
+	 * simple cache LRU de même taille.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		int listNumber = 20000;
+		int accessNumber = 500000;
+		long maxBytes = 4L << 20;
+		PostingList[] lists = new PostingList[listNumber];
+		java.util.Random random = new java.util.Random(0);
+		for (int i = 0; i < listNumber; i++) {
+			int size = 1 + random.nextInt(256);
+			lists[i] = new PostingList(new int[size], new int[size], size);
+		}
+		double[] cumulative = new double[listNumber];
+		double total = 0;
+		for (int i = 0; i < listNumber; i++) {
+			total = total + 1.0 / (i + 1);
+			cumulative[i] = total;
+		}
+
+		PostingCache cache = new PostingCache(maxBytes);
+		final long lruMax = maxBytes;
+		final long[] lruBytes = { 0 };
+		LinkedHashMap<Integer, PostingList> lru = new LinkedHashMap<Integer, PostingList>(16, 0.75f, true);
+		long lruHits = 0;
+		for (int i = 0; i < accessNumber; i++) {
+			int key;
+			// une fois sur trois, parcours d'une liste rare
+			if (i % 3 == 0) {
+				key = random.nextInt(listNumber);
+			} else {
+				int pos = java.util.Arrays.binarySearch(cumulative, random.nextDouble() * total);
+				key = Math.min(listNumber - 1, pos < 0 ? -pos - 1 : pos);
+			}
+
+			// test de get et put
+			if (cache.get(key) == null) {
+				cache.put(key, lists[key]);
+			}
+
+			// cache LRU de référence
+			if (lru.get(key) != null) {
+				lruHits++;
+			} else {
+				lru.put(key, lists[key]);
+				lruBytes[0] += weigh(lists[key]);
+				Iterator<Map.Entry<Integer, PostingList>> it = lru.entrySet().iterator();
+				while (lruBytes[0] > lruMax) {
+					lruBytes[0] -= weigh(it.next().getValue());
+					it.remove();
+				}
+			}
+		}
+		System.out.println("W-TinyLFU: " + cache);
+		System.out.println("LRU: hit ratio=" + lruHits / (float) accessNumber);
+
+		// test de clear
+		cache.clear();
+		System.out.println("after clear: " + cache);
+	}
+}
@@ -0,0 +1,305 @@
+package indexation.content;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import tools.Configuration;
+
+/**
+ * Fichier contenant les listes de postings d'un index, les unes à la suite des
+ * autres. Chaque liste est identifiée par sa position (offset) dans le
+ * fichier, et prend la forme d'un entier donnant sa taille en octets, suivi du
+ * nombre de postings puis, pour chaque posting, de l'écart entre son docId et
+ * le précédent et de sa fréquence. Ces trois dernières valeurs sont codées
+ * sous forme d'entiers de taille variable. <br/>
+ * Le fichier est d'abord rempli séquentiellement via {@link #write(IndexEntry)},
+ * puis lu par accès direct via {@link #read(String, long)} ou
+ * {@link #readPostings(long)}. Si la configuration le demande, les listes
+ * décodées sont gardées dans un {@link PostingCache} partagé. La sérialisation
+ * de cet objet n'enregistre que le chemin du fichier.
+ */
+public class PostingFile implements Serializable, Closeable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Associe cet objet au fichier spécifié. Le fichier n'est ouvert qu'au
+	 * moment de la première lecture ou écriture.
+	 *
+	 * @param fileName Chemin du fichier de postings.
+	 */
+	public PostingFile(String fileName) {
+		this.fileName = fileName;
+		initCache();
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Chemin du fichier */
+	private String fileName;
+	/** Flux utilisé lors de l'écriture */
+	private transient DataOutputStream output;
+	/** Position de la prochaine liste écrite */
+	private transient long position;
+	/** Fichier ouvert en lecture */
+	private transient RandomAccessFile input;
+	/** Canal utilisé pour les lectures positionnelles */
+	private transient FileChannel channel;
+	/** Tampon utilisé pour encoder les listes */
+	private transient byte[] buffer;
+	/** Cache des listes décodées, ou {@code null} */
+	private transient PostingCache cache;
+
+	/**
+	 * Renvoie le chemin du fichier de postings.
+	 *
+	 * @return Chemin du fichier.
+	 */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/**
+	 * Renvoie le cache des listes décodées.
+	 *
+	 * @return Cache utilisé par ce fichier, ou {@code null} s'il n'y en a pas.
+	 */
+	public PostingCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Crée le cache des listes décodées, si la configuration en spécifie un.
+	 */
+	private void initCache() {
+		long cacheSize = Configuration.getPostingCacheSize();
+		if (cacheSize > 0) {
+			cache = new PostingCache(cacheSize);
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// ÉCRITURE
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute la liste de postings de l'entrée spécifiée à la fin du fichier.
+	 * Lors du premier appel, le contenu éventuel du fichier est écrasé.
+	 *
+	 * @param entry Entrée dont on veut enregistrer les postings.
+	 * @return Position de la liste dans le fichier.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	public long write(IndexEntry entry) throws IOException {
+		return write(entry.getPostings());
+	}
+
+	/**
+	 * Ajoute la liste de postings spécifiée à la fin du fichier. Lors du
+	 * premier appel, le contenu éventuel du fichier est écrasé.
+	 *
+	 * @param postings Liste de postings, triée par docId.
+	 * @return Position de la liste dans le fichier.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	public long write(PostingList postings) throws IOException {
+		if (output == null) {
+			output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+			position = 0;
+			buffer = new byte[256];
+		}
+		int length = 0;
+		length = writeVarint(postings.size(), length);
+		int previous = 0;
+		for (int i = 0; i < postings.size(); i++) {
+			int docId = postings.getDocId(i);
+			length = writeVarint(docId - previous, length);
+			length = writeVarint(postings.getFrequency(i), length);
+			previous = docId;
+		}
+		long result = position;
+		output.writeInt(length);
+		output.write(buffer, 0, length);
+		position = position + 4 + length;
+		return result;
+	}
+
+	/**
+	 * Termine l'écriture du fichier.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	public void finishWriting() throws IOException {
+		if (output != null) {
+			output.close();
+			output = null;
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Écrit un entier de taille variable dans le tampon d'encodage.
+	 *
+	 * @param value Entier positif à écrire.
+	 * @param pos   Position d'écriture.
+	 * @return Position suivant le dernier octet écrit.
+	 */
+	private int writeVarint(int value, int pos) {
+		if (pos + 5 > buffer.length) {
+			buffer = Arrays.copyOf(buffer, buffer.length * 2);
+		}
+		while ((value & ~0x7F) != 0) {
+			buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+		return pos;
+	}
+
+	////////////////////////////////////////////////////
+	// LECTURE
+	////////////////////////////////////////////////////
+	/**
+	 * Lit la liste de postings située à la position spécifiée, et renvoie
+	 * l'entrée d'index correspondante.
+	 *
+	 * @param term     Terme associé à la liste.
+	 * @param offset   Position de la liste dans le fichier.
+	 * @return Entrée d'index contenant la liste de postings.
+	 *
+	 * @throws IOException Problème lors de la lecture.
+	 */
+	public IndexEntry read(String term, long offset) throws IOException {
+		return new IndexEntry(term, readPostings(offset));
+	}
+
+	/**
+	 * Lit et décode la liste de postings située à la position spécifiée.
+	 *
+	 * @param offset Position de la liste dans le fichier.
+	 * @return Liste de postings lue.
+	 *
+	 * @throws IOException Problème lors de la lecture.
+	 */
+	public PostingList readPostings(long offset) throws IOException {
+		if (cache != null) {
+			PostingList cached = cache.get(offset);
+			if (cached != null) {
+				return cached;
+			}
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(4);
+		readFully(header, offset);
+		int length = header.getInt(0);
+		byte[] bytes = new byte[length];
+		readFully(ByteBuffer.wrap(bytes), offset + 4);
+
+		int[] pos = { 0 };
+		int size = readVarint(bytes, pos);
+		int[] docIds = new int[size];
+		int[] frequencies = new int[size];
+		int docId = 0;
+		for (int i = 0; i < size; i++) {
+			docId = docId + readVarint(bytes, pos);
+			docIds[i] = docId;
+			frequencies[i] = readVarint(bytes, pos);
+		}
+		PostingList result = new PostingList(docIds, frequencies, size);
+		if (cache != null) {
+			cache.put(offset, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Remplit le tampon spécifié à partir de la position indiquée du fichier.
+	 *
+	 * @param dest     Tampon à remplir.
+	 * @param position Position de lecture dans le fichier.
+	 *
+	 * @throws IOException Problème lors de la lecture.
+	 */
+	private void readFully(ByteBuffer dest, long position) throws IOException {
+		FileChannel channel = getChannel();
+		while (dest.hasRemaining()) {
+			int read = channel.read(dest, position + dest.position());
+			if (read < 0) {
+				throw new EOFException("Truncated posting file: " + fileName);
+			}
+		}
+	}
+
+	/**
+	 * Renvoie le canal de lecture, en ouvrant le fichier si besoin.
+	 *
+	 * @return Canal de lecture du fichier.
+	 *
+	 * @throws IOException Problème lors de l'ouverture du fichier.
+	 */
+	private synchronized FileChannel getChannel() throws IOException {
+		if (channel == null) {
+			finishWriting();
+			input = new RandomAccessFile(fileName, "r");
+			channel = input.getChannel();
+		}
+		return channel;
+	}
+
+	/**
+	 * Lit un entier de taille variable.
+	 *
+	 * @param bytes Tableau à lire.
+	 * @param pos   Position de lecture, mise à jour par la méthode.
+	 * @return Entier lu.
+	 */
+	private static int readVarint(byte[] bytes, int[] pos) {
+		int result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[pos[0]++];
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * Recrée le cache après la désérialisation de cet objet.
+	 *
+	 * @param in Flux de désérialisation.
+	 *
+	 * @throws IOException            Problème lors de la lecture.
+	 * @throws ClassNotFoundException Problème lors de la lecture.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		initCache();
+	}
+
+	////////////////////////////////////////////////////
+	// FERMETURE
+	////////////////////////////////////////////////////
+	@Override
+	public synchronized void close() throws IOException {
+		finishWriting();
+		if (input != null) {
+			input.close();
+			input = null;
+			channel = null;
+		}
+	}
+}
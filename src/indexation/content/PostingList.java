@@ -0,0 +1,314 @@
+package indexation.content;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Liste de postings stockée sous la forme de deux tableaux d'entiers
+ * parallèles, contenant respectivement les docIds et les fréquences. Par
+ * rapport à une liste d'objets {@link Posting}, cette représentation évite un
+ * en-tête d'objet et une référence par posting (environ 8 octets par posting
+ * au lieu de 28 à 32), et permet de parcourir les postings séquentiellement
+ * en mémoire. <br/>
+ * Les postings sont ajoutés dans l'ordre des docIds, puis lus par position ou
+ * via un curseur (cf. {@link #cursor()}).
+ */
+public class PostingList implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée une liste de postings vide.
+	 */
+	public PostingList() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Crée une liste de postings vide, pouvant contenir le nombre de postings
+	 * spécifié sans être agrandie.
+	 *
+	 * @param capacity Capacité initiale de la liste.
+	 */
+	public PostingList(int capacity) {
+		docIds = new int[capacity];
+		frequencies = new int[capacity];
+		size = 0;
+	}
+
+	/**
+	 * Crée une liste de postings utilisant directement les tableaux spécifiés
+	 * (sans copie).
+	 *
+	 * @param docIds      Tableau des docIds, triés par ordre croissant.
+	 * @param frequencies Tableau des fréquences.
+	 * @param size        Nombre de postings contenus dans les tableaux.
+	 */
+	public PostingList(int[] docIds, int[] frequencies, int size) {
+		this.docIds = docIds;
+		this.frequencies = frequencies;
+		this.size = size;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Capacité initiale par défaut */
+	private static final int DEFAULT_CAPACITY = 4;
+
+	/** DocIds des postings */
+	private transient int[] docIds;
+	/** Fréquences des postings */
+	private transient int[] frequencies;
+	/** Nombre de postings */
+	private int size;
+
+	/**
+	 * Renvoie le nombre de postings de cette liste.
+	 *
+	 * @return Nombre de postings.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Indique si cette liste est vide.
+	 *
+	 * @return {@code true} si la liste ne contient aucun posting.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Renvoie le docId du posting situé à la position spécifiée.
+	 *
+	 * @param index Position du posting.
+	 * @return DocId du posting.
+	 */
+	public int getDocId(int index) {
+		return docIds[index];
+	}
+
+	/**
+	 * Renvoie la fréquence du posting situé à la position spécifiée.
+	 *
+	 * @param index Position du posting.
+	 * @return Fréquence du terme dans le document du posting.
+	 */
+	public int getFrequency(int index) {
+		return frequencies[index];
+	}
+
+	/**
+	 * Renvoie le tableau des docIds. Seules les {@link #size()} premières
+	 * cases sont significatives, et le tableau ne doit pas être modifié.
+	 *
+	 * @return Tableau des docIds.
+	 */
+	public int[] getDocIds() {
+		return docIds;
+	}
+
+	/**
+	 * Renvoie le tableau des fréquences. Seules les {@link #size()} premières
+	 * cases sont significatives, et le tableau ne doit pas être modifié.
+	 *
+	 * @return Tableau des fréquences.
+	 */
+	public int[] getFrequencies() {
+		return frequencies;
+	}
+
+	////////////////////////////////////////////////////
+	// MODIFICATION
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute un posting à la fin de cette liste.
+	 *
+	 * @param docId     DocId du posting.
+	 * @param frequency Fréquence du terme dans le document.
+	 */
+	public void add(int docId, int frequency) {
+		if (size == docIds.length) {
+			int capacity = Math.max(DEFAULT_CAPACITY, size + (size >> 1));
+			docIds = Arrays.copyOf(docIds, capacity);
+			frequencies = Arrays.copyOf(frequencies, capacity);
+		}
+		docIds[size] = docId;
+		frequencies[size] = frequency;
+		size++;
+	}
+
+	/**
+	 * Réduit la taille des tableaux au nombre de postings, une fois la liste
+	 * complète.
+	 */
+	public void trim() {
+		if (docIds.length != size) {
+			docIds = Arrays.copyOf(docIds, size);
+			frequencies = Arrays.copyOf(frequencies, size);
+		}
+	}
+
+	/**
+	 * Trie les postings de cette liste par docId croissant.
+	 */
+	public void sort() {
+		long[] packed = new long[size];
+		for (int i = 0; i < size; i++) {
+			packed[i] = ((long) docIds[i] << 32) | (frequencies[i] & 0xFFFFFFFFL);
+		}
+		Arrays.sort(packed);
+		for (int i = 0; i < size; i++) {
+			docIds[i] = (int) (packed[i] >>> 32);
+			frequencies[i] = (int) packed[i];
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie un nouveau curseur positionné avant le premier posting de cette
+	 * liste.
+	 *
+	 * @return Curseur sur cette liste.
+	 */
+	public AbstractPostingCursor cursor() {
+		return new ArrayPostingCursor(this);
+	}
+
+	/**
+	 * Crée une liste contenant les postings restant à parcourir avec le curseur
+	 * spécifié.
+	 *
+	 * @param cursor Curseur à parcourir.
+	 * @return Liste des postings parcourus.
+	 */
+	public static PostingList copyOf(AbstractPostingCursor cursor) {
+		PostingList result = new PostingList(Math.max(cursor.getSize(), 1));
+		while (cursor.next()) {
+			result.add(cursor.getDocId(), cursor.getFrequency());
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// SÉRIALISATION
+	////////////////////////////////////////////////////
+	/**
+	 * N'écrit que les postings significatifs dans le flux de sérialisation.
+	 *
+	 * @param out Flux de sérialisation.
+	 *
+	 * @throws IOException Problème lors de l'écriture.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		for (int i = 0; i < size; i++) {
+			out.writeInt(docIds[i]);
+			out.writeInt(frequencies[i]);
+		}
+	}
+
+	/**
+	 * Recrée les tableaux à partir du flux de sérialisation.
+	 *
+	 * @param in Flux de désérialisation.
+	 *
+	 * @throws IOException            Problème lors de la lecture.
+	 * @throws ClassNotFoundException Problème lors de la lecture.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		docIds = new int[size];
+		frequencies = new int[size];
+		for (int i = 0; i < size; i++) {
+			docIds[i] = in.readInt();
+			frequencies[i] = in.readInt();
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("[");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				result.append(", ");
+			}
+			result.append("<").append(docIds[i]).append(" [").append(frequencies[i]).append("]>");
+		}
+		result.append("]");
+		return result.toString();
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		// test de add
+		PostingList list = new PostingList();
+		for (int i = 0; i < 10; i++) {
+			list.add(i * 3, i + 1);
+		}
+		System.out.println("size: " + list.size() + ", list: " + list);
+
+		// test de cursor
+		AbstractPostingCursor cursor = list.cursor();
+		System.out.print("cursor:");
+		while (cursor.next()) {
+			System.out.print(" " + cursor.getDocId() + "/" + cursor.getFrequency());
+		}
+		System.out.println();
+
+		// test de sort et trim
+		PostingList unsorted = new PostingList();
+		unsorted.add(8, 1);
+		unsorted.add(2, 2);
+		unsorted.add(5, 3);
+		unsorted.sort();
+		unsorted.trim();
+		System.out.println("sort: " + unsorted + ", capacity: " + unsorted.getDocIds().length);
+
+		// test de copyOf
+		System.out.println("copyOf: " + PostingList.copyOf(unsorted.cursor()));
+
+		// comparaison de l'empreinte mémoire avec une liste d'objets Posting
+		int n = 2000000;
+		Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		long before = runtime.totalMemory() - runtime.freeMemory();
+		java.util.List<Posting> objects = new java.util.ArrayList<Posting>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(new Posting(i, 1));
+		}
+		System.gc();
+		long objectBytes = runtime.totalMemory() - runtime.freeMemory() - before;
+		objects = null;
+		System.gc();
+		before = runtime.totalMemory() - runtime.freeMemory();
+		PostingList arrays = new PostingList(n);
+		for (int i = 0; i < n; i++) {
+			arrays.add(i, 1);
+		}
+		System.gc();
+		long arrayBytes = runtime.totalMemory() - runtime.freeMemory() - before;
+		System.out.println("bytes per posting: objects=" + objectBytes / n + ", arrays=" + arrayBytes / n
+				+ " (" + arrays.size() + " postings)");
+	}
+}
@@ -0,0 +1,79 @@
+package indexation.content;
+
+/**
+ * Curseur produisant tous les documents du corpus, avec une fréquence nulle.
+ * Associé à un {@link ExclusionPostingCursor}, il permet d'évaluer une
+ * négation isolée.
+ */
+public class RangePostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée un curseur sur les documents {@code 0} à {@code docNbr-1}.
+	 *
+	 * @param docNbr Nombre de documents du corpus.
+	 */
+	public RangePostingCursor(int docNbr) {
+		this.docNbr = docNbr;
+		docId = -1;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre de documents du corpus */
+	private int docNbr;
+	/** DocId courant */
+	private int docId;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		docId++;
+		return docId < docNbr;
+	}
+
+	@Override
+	public boolean advance(int target) {
+		docId = Math.max(target, docId + 1);
+		return docId < docNbr;
+	}
+
+	@Override
+	public int getDocId() {
+		return docId;
+	}
+
+	@Override
+	public int getFrequency() {
+		return 0;
+	}
+
+	@Override
+	public int getSize() {
+		return docNbr;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList list = new PostingList();
+		for (int i = 0; i < 10; i += 3)
+			list.add(i, 1);
+
+		// test de next
+		System.out.println("next: " + PostingList.copyOf(new RangePostingCursor(10)));
+
+		// test de la négation
+		System.out.println("negation of " + list + ": "
+				+ PostingList.copyOf(new ExclusionPostingCursor(new RangePostingCursor(10), list.cursor())));
+	}
+}
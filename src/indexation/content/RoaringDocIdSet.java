@@ -0,0 +1,776 @@
+package indexation.content;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Ensemble de docIds compressé à la manière des <i>Roaring bitmaps</i> : les
+ * docIds sont regroupés par tranches de 65536 valeurs (selon leurs 16 bits de
+ * poids fort), et chaque tranche est représentée par le conteneur le plus
+ * compact parmi trois :
+ * <ul>
+ * <li>un tableau trié des 16 bits de poids faible (2 octets par docId), pour
+ * les tranches peu denses ;</li>
+ * <li>un bitmap (1 bit par docId possible), pour les tranches denses ;</li>
+ * <li>une liste de plages (début, longueur), pour les tranches contenant de
+ * longues séquences de docIds consécutifs.</li>
+ * </ul>
+ * Les opérations ET et OU entre deux bitmaps sont réalisées 64 docIds à la
+ * fois, par des opérations sur des mots de type {@code long}, à l'aide de
+ * boucles vectorisables lorsque la JVM le permet (cf. {@link WordKernels}).
+ * <br/>
+ * Un ensemble n'est jamais modifié après sa création.
+ */
+public class RoaringDocIdSet implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée un ensemble vide, que les méthodes de cette classe remplissent
+	 * ensuite tranche par tranche.
+	 */
+	private RoaringDocIdSet() {
+		keys = new char[4];
+		types = new byte[4];
+		arrays = new char[4][];
+		bitmaps = new long[4][];
+		cardinalities = new int[4];
+		size = 0;
+		cardinality = 0;
+	}
+
+	/**
+	 * Crée l'ensemble contenant les docIds spécifiés.
+	 *
+	 * @param docIds Tableau de docIds distincts, triés par ordre croissant.
+	 * @param length Nombre de docIds à prendre dans le tableau.
+	 * @return Ensemble correspondant.
+	 */
+	public static RoaringDocIdSet fromSortedDocIds(int[] docIds, int length) {
+		RoaringDocIdSet result = new RoaringDocIdSet();
+		char[] values = new char[Math.min(length, CHUNK_SIZE)];
+		int i = 0;
+		while (i < length) {
+			int key = docIds[i] >>> 16;
+			int n = 0;
+			while (i < length && (docIds[i] >>> 16) == key) {
+				values[n++] = (char) docIds[i];
+				i++;
+			}
+			result.appendValues((char) key, values, n);
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Conteneur de type tableau trié */
+	static final byte ARRAY = 0;
+	/** Conteneur de type bitmap */
+	static final byte BITMAP = 1;
+	/** Conteneur de type liste de plages */
+	static final byte RUN = 2;
+	/** Nombre de docIds possibles dans une tranche */
+	private static final int CHUNK_SIZE = 1 << 16;
+	/** Nombre de mots d'un bitmap complet */
+	private static final int CHUNK_WORDS = CHUNK_SIZE / 64;
+
+	/** 16 bits de poids fort des docIds de chaque tranche, par ordre croissant */
+	private char[] keys;
+	/** Type du conteneur de chaque tranche */
+	private byte[] types;
+	/**
+	 * Contenu des conteneurs de type tableau (valeurs triées) ou liste de
+	 * plages (couples début, longueur moins un)
+	 */
+	private char[][] arrays;
+	/** Contenu des conteneurs de type bitmap */
+	private long[][] bitmaps;
+	/** Nombre de docIds de chaque tranche */
+	private int[] cardinalities;
+	/** Nombre de tranches non-vides */
+	private int size;
+	/** Nombre total de docIds */
+	private int cardinality;
+
+	/**
+	 * Renvoie le nombre de docIds de cet ensemble.
+	 *
+	 * @return Cardinalité de l'ensemble.
+	 */
+	public int getCardinality() {
+		return cardinality;
+	}
+
+	/**
+	 * Indique si cet ensemble est vide.
+	 *
+	 * @return {@code true} si l'ensemble ne contient aucun docId.
+	 */
+	public boolean isEmpty() {
+		return cardinality == 0;
+	}
+
+	/**
+	 * Renvoie une estimation de la place occupée en mémoire par cet ensemble.
+	 *
+	 * @return Nombre d'octets occupés.
+	 */
+	public long getSizeInBytes() {
+		long result = 64;
+		for (int i = 0; i < size; i++) {
+			result = result + 32 + (types[i] == BITMAP ? 8L * bitmaps[i].length : 2L * arrays[i].length);
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre de conteneurs de chaque type.
+	 *
+	 * @return Tableau contenant les nombres de tableaux, de bitmaps et de
+	 *         listes de plages.
+	 */
+	public int[] getContainerCounts() {
+		int[] result = new int[3];
+		for (int i = 0; i < size; i++) {
+			result[types[i]]++;
+		}
+		return result;
+	}
+
+	/** @return Nombre de tranches non-vides. */
+	int getContainerNumber() {
+		return size;
+	}
+
+	/**
+	 * @param container Numéro de la tranche.
+	 * @return 16 bits de poids fort des docIds de la tranche.
+	 */
+	char getKey(int container) {
+		return keys[container];
+	}
+
+	/**
+	 * @param container Numéro de la tranche.
+	 * @return Type du conteneur de la tranche.
+	 */
+	byte getType(int container) {
+		return types[container];
+	}
+
+	/**
+	 * @param container Numéro de la tranche.
+	 * @return Contenu du conteneur, s'il s'agit d'un tableau ou de plages.
+	 */
+	char[] getArray(int container) {
+		return arrays[container];
+	}
+
+	/**
+	 * @param container Numéro de la tranche.
+	 * @return Contenu du conteneur, s'il s'agit d'un bitmap.
+	 */
+	long[] getBitmap(int container) {
+		return bitmaps[container];
+	}
+
+	////////////////////////////////////////////////////
+	// CONSTRUCTION
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute une tranche à la fin de cet ensemble, à partir de ses valeurs
+	 * triées, en choisissant le conteneur le plus compact.
+	 *
+	 * @param key    16 bits de poids fort des docIds de la tranche.
+	 * @param values Valeurs distinctes et triées (16 bits de poids faible).
+	 * @param n      Nombre de valeurs.
+	 */
+	private void appendValues(char key, char[] values, int n) {
+		if (n == 0) {
+			return;
+		}
+		int runs = 1;
+		for (int i = 1; i < n; i++) {
+			if (values[i] != values[i - 1] + 1) {
+				runs++;
+			}
+		}
+		int wordNumber = (values[n - 1] >>> 6) + 1;
+		byte type = chooseType(n, wordNumber, runs);
+		if (type == ARRAY) {
+			append(key, ARRAY, Arrays.copyOf(values, n), null, n);
+		} else if (type == RUN) {
+			char[] pairs = new char[2 * runs];
+			int r = 0;
+			int start = values[0];
+			for (int i = 1; i <= n; i++) {
+				if (i == n || values[i] != values[i - 1] + 1) {
+					pairs[r++] = (char) start;
+					pairs[r++] = (char) (values[i - 1] - start);
+					if (i < n) {
+						start = values[i];
+					}
+				}
+			}
+			append(key, RUN, pairs, null, n);
+		} else {
+			long[] words = new long[wordNumber];
+			for (int i = 0; i < n; i++) {
+				words[values[i] >>> 6] |= 1L << values[i];
+			}
+			append(key, BITMAP, null, words, n);
+		}
+	}
+
+	/**
+	 * Ajoute une tranche à la fin de cet ensemble, à partir de son bitmap, en
+	 * choisissant le conteneur le plus compact.
+	 *
+	 * @param key    16 bits de poids fort des docIds de la tranche.
+	 * @param words  Bitmap de la tranche.
+	 * @param length Nombre de mots significatifs dans le bitmap.
+	 */
+	private void appendWords(char key, long[] words, int length) {
+		if (WordKernels.isEnabled()) {
+			appendWordsWithKernels(key, words, length);
+			return;
+		}
+		int n = 0;
+		int runs = 0;
+		long previous = 0;
+		int wordNumber = 0;
+		for (int i = 0; i < length; i++) {
+			long word = words[i];
+			if (word != 0) {
+				n += Long.bitCount(word);
+				wordNumber = i + 1;
+			}
+			// un bit à 1 précédé d'un bit à 0 commence une plage
+			runs += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+			previous = word;
+		}
+		if (n == 0) {
+			return;
+		}
+		byte type = chooseType(n, wordNumber, runs);
+		if (type == BITMAP) {
+			append(key, BITMAP, null, Arrays.copyOf(words, wordNumber), n);
+		} else {
+			char[] values = new char[n];
+			int k = 0;
+			for (int i = 0; i < wordNumber; i++) {
+				long word = words[i];
+				while (word != 0) {
+					values[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			appendValues(key, values, n);
+		}
+	}
+
+	/**
+	 * Ajoute une tranche à la fin de cet ensemble, à partir de son bitmap, de
+	 * la même manière que {@link #appendWords(char, long[], int)}, mais en
+	 * utilisant des boucles sans branchement (cf. {@link WordKernels}).
+	 *
+	 * @param key    16 bits de poids fort des docIds de la tranche.
+	 * @param words  Bitmap de la tranche.
+	 * @param length Nombre de mots significatifs du bitmap.
+	 */
+	private void appendWordsWithKernels(char key, long[] words, int length) {
+		int wordNumber = WordKernels.wordNumber(words, length);
+		int n = WordKernels.cardinality(words, wordNumber);
+		if (n == 0) {
+			return;
+		}
+		int runs = WordKernels.runCount(words, wordNumber);
+		byte type = chooseType(n, wordNumber, runs);
+		if (type == BITMAP) {
+			append(key, BITMAP, null, Arrays.copyOf(words, wordNumber), n);
+		} else {
+			char[] values = new char[n + 4];
+			WordKernels.decode(words, wordNumber, values);
+			appendValues(key, values, n);
+		}
+	}
+
+	/**
+	 * Choisit le type de conteneur le plus compact pour une tranche.
+	 *
+	 * @param n          Nombre de valeurs de la tranche.
+	 * @param wordNumber Nombre de mots nécessaires pour un bitmap.
+	 * @param runs       Nombre de plages de valeurs consécutives.
+	 * @return Type de conteneur.
+	 */
+	private static byte chooseType(int n, int wordNumber, int runs) {
+		long arrayBytes = 2L * n;
+		long bitmapBytes = 8L * wordNumber;
+		long runBytes = 4L * runs;
+		if (runBytes < arrayBytes && runBytes < bitmapBytes) {
+			return RUN;
+		}
+		if (bitmapBytes < arrayBytes) {
+			return BITMAP;
+		}
+		return ARRAY;
+	}
+
+	/**
+	 * Ajoute un conteneur à la fin de cet ensemble.
+	 *
+	 * @param key         16 bits de poids fort des docIds de la tranche.
+	 * @param type        Type du conteneur.
+	 * @param array       Contenu (tableau ou plages), ou {@code null}.
+	 * @param bitmap      Contenu (bitmap), ou {@code null}.
+	 * @param cardinality Nombre de valeurs du conteneur.
+	 */
+	private void append(char key, byte type, char[] array, long[] bitmap, int cardinality) {
+		if (size == keys.length) {
+			int capacity = size * 2;
+			keys = Arrays.copyOf(keys, capacity);
+			types = Arrays.copyOf(types, capacity);
+			arrays = Arrays.copyOf(arrays, capacity);
+			bitmaps = Arrays.copyOf(bitmaps, capacity);
+			cardinalities = Arrays.copyOf(cardinalities, capacity);
+		}
+		keys[size] = key;
+		types[size] = type;
+		arrays[size] = array;
+		bitmaps[size] = bitmap;
+		cardinalities[size] = cardinality;
+		size++;
+		this.cardinality += cardinality;
+	}
+
+	/**
+	 * Écrit le contenu d'un conteneur dans un bitmap.
+	 *
+	 * @param container Numéro de la tranche.
+	 * @param words     Bitmap destination, de {@value #CHUNK_WORDS} mots, mis
+	 *                  à zéro au préalable.
+	 * @return Nombre de mots significatifs écrits.
+	 */
+	private int toWords(int container, long[] words) {
+		switch (types[container]) {
+		case BITMAP:
+			long[] bitmap = bitmaps[container];
+			System.arraycopy(bitmap, 0, words, 0, bitmap.length);
+			return bitmap.length;
+		case ARRAY:
+			char[] values = arrays[container];
+			for (char value : values) {
+				words[value >>> 6] |= 1L << value;
+			}
+			return (values[values.length - 1] >>> 6) + 1;
+		default:
+			char[] pairs = arrays[container];
+			int last = 0;
+			for (int r = 0; r < pairs.length; r += 2) {
+				int start = pairs[r];
+				last = start + pairs[r + 1];
+				setRange(words, start, last);
+			}
+			return (last >>> 6) + 1;
+		}
+	}
+
+	/**
+	 * Met à 1 les bits d'une plage dans un bitmap.
+	 *
+	 * @param words Bitmap à modifier.
+	 * @param from  Premier bit de la plage.
+	 * @param to    Dernier bit de la plage (inclus).
+	 */
+	private static void setRange(long[] words, int from, int to) {
+		int first = from >>> 6;
+		int last = to >>> 6;
+		long firstMask = -1L << from;
+		long lastMask = -1L >>> (63 - (to & 63));
+		if (first == last) {
+			words[first] |= firstMask & lastMask;
+		} else {
+			words[first] |= firstMask;
+			for (int i = first + 1; i < last; i++) {
+				words[i] = -1L;
+			}
+			words[last] |= lastMask;
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// RECHERCHE
+	////////////////////////////////////////////////////
+	/**
+	 * Indique si le docId spécifié appartient à cet ensemble.
+	 *
+	 * @param docId DocId recherché.
+	 * @return {@code true} si le docId appartient à l'ensemble.
+	 */
+	public boolean contains(int docId) {
+		int container = findContainer((char) (docId >>> 16));
+		return container >= 0 && containsLow(container, (char) docId);
+	}
+
+	/**
+	 * Recherche la tranche correspondant aux 16 bits de poids fort spécifiés.
+	 *
+	 * @param key 16 bits de poids fort.
+	 * @return Numéro de la tranche, ou une valeur négative si elle est vide.
+	 */
+	private int findContainer(char key) {
+		int low = 0;
+		int high = size - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (keys[middle] < key) {
+				low = middle + 1;
+			} else if (keys[middle] > key) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Indique si une tranche contient la valeur spécifiée.
+	 *
+	 * @param container Numéro de la tranche.
+	 * @param value     16 bits de poids faible du docId.
+	 * @return {@code true} si la tranche contient la valeur.
+	 */
+	private boolean containsLow(int container, char value) {
+		switch (types[container]) {
+		case BITMAP:
+			long[] bitmap = bitmaps[container];
+			int index = value >>> 6;
+			return index < bitmap.length && (bitmap[index] & (1L << value)) != 0;
+		case ARRAY:
+			return Arrays.binarySearch(arrays[container], value) >= 0;
+		default:
+			char[] pairs = arrays[container];
+			int low = 0;
+			int high = pairs.length / 2 - 1;
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int start = pairs[2 * middle];
+				if (value < start) {
+					high = middle - 1;
+				} else if (value > start + pairs[2 * middle + 1]) {
+					low = middle + 1;
+				} else {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// OPÉRATIONS
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule l'intersection de cet ensemble avec l'ensemble spécifié. Deux
+	 * bitmaps sont combinés mot par mot, et un tableau est filtré en testant
+	 * l'appartenance de chacune de ses valeurs à l'autre conteneur.
+	 *
+	 * @param other Second ensemble.
+	 * @return Intersection des deux ensembles.
+	 */
+	public RoaringDocIdSet and(RoaringDocIdSet other) {
+		RoaringDocIdSet result = new RoaringDocIdSet();
+		long[] words1 = null;
+		long[] words2 = null;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			char key1 = keys[i];
+			char key2 = other.keys[j];
+			if (key1 < key2) {
+				i++;
+			} else if (key1 > key2) {
+				j++;
+			} else {
+				byte type1 = types[i];
+				byte type2 = other.types[j];
+				if (type1 == ARRAY || type2 == ARRAY) {
+					// on filtre le plus petit tableau
+					boolean filterThis = type1 == ARRAY
+							&& (type2 != ARRAY || cardinalities[i] <= other.cardinalities[j]);
+					RoaringDocIdSet source = filterThis ? this : other;
+					RoaringDocIdSet target = filterThis ? other : this;
+					int sourceContainer = filterThis ? i : j;
+					int targetContainer = filterThis ? j : i;
+					char[] values = source.arrays[sourceContainer];
+					char[] kept = new char[values.length];
+					int n = 0;
+					for (char value : values) {
+						if (target.containsLow(targetContainer, value)) {
+							kept[n++] = value;
+						}
+					}
+					result.appendValues(key1, kept, n);
+				} else if (type1 == BITMAP && type2 == BITMAP) {
+					long[] bitmap1 = bitmaps[i];
+					long[] bitmap2 = other.bitmaps[j];
+					int length = Math.min(bitmap1.length, bitmap2.length);
+					if (words1 == null) {
+						words1 = new long[CHUNK_WORDS];
+					}
+					if (WordKernels.isEnabled()) {
+						// une tranche vide n'a pas besoin d'être analysée
+						if (WordKernels.and(bitmap1, bitmap2, words1, length) > 0) {
+							result.appendWords(key1, words1, length);
+						}
+					} else {
+						for (int k = 0; k < length; k++) {
+							words1[k] = bitmap1[k] & bitmap2[k];
+						}
+						result.appendWords(key1, words1, length);
+					}
+				} else {
+					if (words1 == null) {
+						words1 = new long[CHUNK_WORDS];
+					}
+					if (words2 == null) {
+						words2 = new long[CHUNK_WORDS];
+					}
+					Arrays.fill(words1, 0);
+					Arrays.fill(words2, 0);
+					int length = Math.min(toWords(i, words1), other.toWords(j, words2));
+					if (WordKernels.isEnabled()) {
+						if (WordKernels.and(words1, words2, words1, length) > 0) {
+							result.appendWords(key1, words1, length);
+						}
+					} else {
+						for (int k = 0; k < length; k++) {
+							words1[k] &= words2[k];
+						}
+						result.appendWords(key1, words1, length);
+					}
+				}
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule l'union de cet ensemble avec l'ensemble spécifié. Les tranches
+	 * présentes des deux côtés sont combinées mot par mot sous forme de
+	 * bitmaps.
+	 *
+	 * @param other Second ensemble.
+	 * @return Union des deux ensembles.
+	 */
+	public RoaringDocIdSet or(RoaringDocIdSet other) {
+		RoaringDocIdSet result = new RoaringDocIdSet();
+		long[] words1 = null;
+		long[] words2 = null;
+		int i = 0;
+		int j = 0;
+		while (i < size || j < other.size) {
+			if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+				result.append(keys[i], types[i], arrays[i], bitmaps[i], cardinalities[i]);
+				i++;
+			} else if (i == size || keys[i] > other.keys[j]) {
+				result.append(other.keys[j], other.types[j], other.arrays[j], other.bitmaps[j],
+						other.cardinalities[j]);
+				j++;
+			} else {
+				if (words1 == null) {
+					words1 = new long[CHUNK_WORDS];
+					words2 = new long[CHUNK_WORDS];
+				}
+				int length;
+				if (types[i] == BITMAP && other.types[j] == BITMAP) {
+					long[] bitmap1 = bitmaps[i];
+					long[] bitmap2 = other.bitmaps[j];
+					if (WordKernels.isEnabled()) {
+						length = WordKernels.or(bitmap1, bitmap1.length, bitmap2, bitmap2.length, words1);
+					} else {
+						length = Math.max(bitmap1.length, bitmap2.length);
+						for (int k = 0; k < length; k++) {
+							long word1 = k < bitmap1.length ? bitmap1[k] : 0;
+							long word2 = k < bitmap2.length ? bitmap2[k] : 0;
+							words1[k] = word1 | word2;
+						}
+					}
+				} else {
+					Arrays.fill(words1, 0);
+					Arrays.fill(words2, 0);
+					int length1 = toWords(i, words1);
+					int length2 = other.toWords(j, words2);
+					if (WordKernels.isEnabled()) {
+						length = WordKernels.or(words1, length1, words2, length2, words1);
+					} else {
+						length = Math.max(length1, length2);
+						for (int k = 0; k < length; k++) {
+							words1[k] |= words2[k];
+						}
+					}
+				}
+				result.appendWords(keys[i], words1, length);
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie un curseur sur les docIds de cet ensemble, dont les fréquences
+	 * sont toutes nulles.
+	 *
+	 * @return Curseur positionné avant le premier docId.
+	 */
+	public AbstractPostingCursor cursor() {
+		return new RoaringPostingCursor(this, null);
+	}
+
+	/**
+	 * Renvoie un curseur sur les docIds de cet ensemble, associés aux
+	 * fréquences spécifiées.
+	 *
+	 * @param frequencies Fréquences des docIds, dans l'ordre croissant des
+	 *                    docIds.
+	 * @return Curseur positionné avant le premier docId.
+	 */
+	public AbstractPostingCursor cursor(int[] frequencies) {
+		return new RoaringPostingCursor(this, frequencies);
+	}
+
+	/**
+	 * Renvoie les docIds de cet ensemble, par ordre croissant.
+	 *
+	 * @return Tableau des docIds.
+	 */
+	public int[] toArray() {
+		int[] result = new int[cardinality];
+		AbstractPostingCursor cursor = cursor();
+		int i = 0;
+		while (cursor.next()) {
+			result[i++] = cursor.getDocId();
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// OBJECT
+	////////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		int[] counts = getContainerCounts();
+		return "{cardinality=" + cardinality + ", arrays=" + counts[ARRAY] + ", bitmaps=" + counts[BITMAP]
+				+ ", runs=" + counts[RUN] + ", bytes=" + getSizeInBytes() + "}";
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : les résultats des opérations sont
+	 * comparés avec ceux obtenus à l'aide de {@link java.util.BitSet}, puis
+	 * la durée d'une intersection est comparée avec celle d'une fusion de
+	 * tableaux triés.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		java.util.Random random = new java.util.Random(0);
+		int universe = 1 << 20;
+		double[] densities = { 0.001, 0.05, 0.5, 0.9 };
+		RoaringDocIdSet[] sets = new RoaringDocIdSet[densities.length + 1];
+		java.util.BitSet[] references = new java.util.BitSet[densities.length + 1];
+		int[][] arrays = new int[densities.length + 1][];
+		for (int d = 0; d <= densities.length; d++) {
+			java.util.BitSet reference = new java.util.BitSet(universe);
+			if (d < densities.length) {
+				for (int i = 0; i < universe; i++) {
+					if (random.nextDouble() < densities[d]) {
+						reference.set(i);
+					}
+				}
+			} else {
+				// longues séquences de docIds consécutifs
+				for (int start = 0; start < universe; start += 10000) {
+					reference.set(start, start + 3000);
+				}
+			}
+			int[] docIds = reference.stream().toArray();
+
+			// test de fromSortedDocIds
+			sets[d] = fromSortedDocIds(docIds, docIds.length);
+			references[d] = reference;
+			arrays[d] = docIds;
+			System.out.println("fromSortedDocIds " + (d < densities.length ? densities[d] : "runs") + ": "
+					+ sets[d] + ", int array bytes=" + 4L * docIds.length);
+		}
+
+		// test de and, or, contains et toArray
+		int errors = 0;
+		for (int d1 = 0; d1 < sets.length; d1++) {
+			for (int d2 = 0; d2 < sets.length; d2++) {
+				java.util.BitSet and = (java.util.BitSet) references[d1].clone();
+				and.and(references[d2]);
+				java.util.BitSet or = (java.util.BitSet) references[d1].clone();
+				or.or(references[d2]);
+				if (!Arrays.equals(sets[d1].and(sets[d2]).toArray(), and.stream().toArray())) {
+					errors++;
+				}
+				if (!Arrays.equals(sets[d1].or(sets[d2]).toArray(), or.stream().toArray())) {
+					errors++;
+				}
+			}
+			for (int k = 0; k < 1000; k++) {
+				int docId = random.nextInt(universe);
+				if (sets[d1].contains(docId) != references[d1].get(docId)) {
+					errors++;
+				}
+			}
+		}
+		System.out.println("and/or/contains errors: " + errors);
+
+		// comparaison des durées d'intersection entre deux listes denses
+		int repeat = 50;
+		long start = System.nanoTime();
+		int total = 0;
+		for (int r = 0; r < repeat; r++) {
+			total += sets[2].and(sets[3]).getCardinality();
+		}
+		long roaring = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int r = 0; r < repeat; r++) {
+			int[] a = arrays[2];
+			int[] b = arrays[3];
+			int i = 0;
+			int j = 0;
+			int n = 0;
+			while (i < a.length && j < b.length) {
+				if (a[i] < b[j]) {
+					i++;
+				} else if (a[i] > b[j]) {
+					j++;
+				} else {
+					n++;
+					i++;
+					j++;
+				}
+			}
+			total -= n;
+		}
+		long merge = System.nanoTime() - start;
+		System.out.println("dense intersection: bitmap=" + roaring / repeat / 1000 + " us, merge=" + merge / repeat
+				/ 1000 + " us (check=" + total + ")");
+	}
+}
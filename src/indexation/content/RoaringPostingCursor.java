@@ -0,0 +1,135 @@
+package indexation.content;
+
+/**
+ * Curseur parcourant les docIds d'un {@link RoaringDocIdSet}, associés
+ * éventuellement à un tableau de fréquences parallèle.
+ */
+public class RoaringPostingCursor extends AbstractPostingCursor {
+	/**
+	 * Crée un curseur positionné avant le premier docId de l'ensemble
+	 * spécifié.
+	 *
+	 * @param set         Ensemble à parcourir.
+	 * @param frequencies Fréquences des docIds dans l'ordre croissant, ou
+	 *                    {@code null} si elles sont toutes nulles.
+	 */
+	public RoaringPostingCursor(RoaringDocIdSet set, int[] frequencies) {
+		this.set = set;
+		this.frequencies = frequencies;
+		index = -1;
+		container = -1;
+		type = -1;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Ensemble parcouru */
+	private RoaringDocIdSet set;
+	/** Fréquences des docIds, ou {@code null} */
+	private int[] frequencies;
+	/** Position du docId courant dans l'ensemble */
+	private int index;
+	/** DocId courant */
+	private int docId;
+	/** Numéro de la tranche courante */
+	private int container;
+	/** Type du conteneur courant */
+	private byte type;
+	/** 16 bits de poids fort de la tranche courante, déjà décalés */
+	private int high;
+	/** Contenu du conteneur courant (tableau ou plages) */
+	private char[] array;
+	/** Contenu du conteneur courant (bitmap) */
+	private long[] words;
+	/** Position courante dans le tableau ou dans le bitmap */
+	private int position;
+	/** Bits du mot courant restant à parcourir */
+	private long word;
+	/** Valeur courante dans la plage courante */
+	private int value;
+	/** Dernière valeur de la plage courante */
+	private int runEnd;
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	@Override
+	public boolean next() {
+		while (type < 0 || !nextInContainer()) {
+			if (++container >= set.getContainerNumber()) {
+				type = -1;
+				return false;
+			}
+			type = set.getType(container);
+			high = set.getKey(container) << 16;
+			array = set.getArray(container);
+			words = set.getBitmap(container);
+			position = type == RoaringDocIdSet.RUN ? -2 : -1;
+			word = 0;
+			value = 0;
+			runEnd = -1;
+		}
+		index++;
+		return true;
+	}
+
+	/**
+	 * Passe à la valeur suivante du conteneur courant.
+	 *
+	 * @return {@code true} si le conteneur contient une valeur suivante.
+	 */
+	private boolean nextInContainer() {
+		switch (type) {
+		case RoaringDocIdSet.ARRAY:
+			if (++position < array.length) {
+				docId = high | array[position];
+				return true;
+			}
+			return false;
+		case RoaringDocIdSet.BITMAP:
+			while (word == 0) {
+				if (++position >= words.length) {
+					return false;
+				}
+				word = words[position];
+			}
+			docId = high | (position << 6) | Long.numberOfTrailingZeros(word);
+			word &= word - 1;
+			return true;
+		default:
+			if (value < runEnd) {
+				value++;
+			} else {
+				position += 2;
+				if (position >= array.length) {
+					return false;
+				}
+				value = array[position];
+				runEnd = value + array[position + 1];
+			}
+			docId = high | value;
+			return true;
+		}
+	}
+
+	@Override
+	public int getDocId() {
+		return docId;
+	}
+
+	@Override
+	public int getFrequency() {
+		return frequencies == null ? 0 : frequencies[index];
+	}
+
+	@Override
+	public int getSize() {
+		return set.getCardinality();
+	}
+
+	@Override
+	public RoaringDocIdSet getDocIdSet() {
+		return set;
+	}
+}
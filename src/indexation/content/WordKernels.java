@@ -0,0 +1,279 @@
+package indexation.content;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Noyaux de calcul combinant des bitmaps représentés par des tableaux de
+ * mots de type {@code long}, soit 64 docIds par opération. Les boucles sont
+ * écrites sans branchement ni dépendance entre les itérations, de manière à
+ * ce que le compilateur à la volée de la JVM les vectorise automatiquement
+ * (instructions SIMD du processeur, sur x86 comme sur ARM), et le comptage
+ * des bits utilise l'instruction matérielle correspondante. <br/>
+ * Ces deux optimisations dépendant de la JVM, leur disponibilité est
+ * vérifiée une fois au chargement de la classe (cf. {@link #isSupported()}) :
+ * si elles ne sont pas disponibles, {@link RoaringDocIdSet} utilise ses
+ * boucles scalaires d'origine.
+ */
+public class WordKernels {
+	////////////////////////////////////////////////////
+	// DISPONIBILITÉ
+	////////////////////////////////////////////////////
+	/** Indique si la JVM vectorise les boucles et compte les bits en matériel */
+	private static final boolean SUPPORTED = checkSupport();
+	/** Indique si les noyaux doivent être utilisés */
+	private static volatile boolean enabled = SUPPORTED;
+
+	/**
+	 * Vérifie que la JVM est une HotSpot dont la vectorisation automatique
+	 * des boucles ({@code UseSuperWord}) et l'utilisation de l'instruction
+	 * matérielle de comptage des bits ({@code UsePopCountInstruction}) sont
+	 * activées.
+	 *
+	 * @return {@code true} si les deux optimisations sont disponibles.
+	 */
+	private static boolean checkSupport() {
+		try {
+			com.sun.management.HotSpotDiagnosticMXBean bean = ManagementFactory
+					.getPlatformMXBean(com.sun.management.HotSpotDiagnosticMXBean.class);
+			return bean != null && "true".equals(bean.getVMOption("UseSuperWord").getValue())
+					&& "true".equals(bean.getVMOption("UsePopCountInstruction").getValue());
+		} catch (Throwable e) {
+			// JVM différente de HotSpot, ou option inconnue
+			return false;
+		}
+	}
+
+	/**
+	 * Indique si la JVM courante permet d'exécuter efficacement ces noyaux.
+	 *
+	 * @return {@code true} si les boucles sont vectorisées et le comptage des
+	 *         bits effectué en matériel.
+	 */
+	public static boolean isSupported() {
+		return SUPPORTED;
+	}
+
+	/**
+	 * Indique si les noyaux doivent être utilisés. Par défaut, ils le sont si
+	 * la JVM le permet.
+	 *
+	 * @return {@code true} pour utiliser les noyaux, {@code false} pour les
+	 *         boucles scalaires.
+	 */
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Permet d'activer ou de désactiver les noyaux, par exemple pour comparer
+	 * leurs performances avec celles des boucles scalaires. Ils ne peuvent
+	 * être activés que si la JVM le permet.
+	 *
+	 * @param enabled {@code true} pour utiliser les noyaux.
+	 */
+	public static void setEnabled(boolean enabled) {
+		WordKernels.enabled = enabled && SUPPORTED;
+	}
+
+	////////////////////////////////////////////////////
+	// NOYAUX
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule le ET de deux bitmaps, mot par mot, puis le nombre de bits à 1
+	 * du résultat. Le tableau résultat peut être l'un des deux opérandes.
+	 *
+	 * @param words1 Premier bitmap.
+	 * @param words2 Second bitmap.
+	 * @param result Bitmap résultat.
+	 * @param length Nombre de mots à combiner.
+	 * @return Nombre de docIds du résultat.
+	 */
+	public static int and(long[] words1, long[] words2, long[] result, int length) {
+		for (int k = 0; k < length; k++)
+			result[k] = words1[k] & words2[k];
+		return cardinality(result, length);
+	}
+
+	/**
+	 * Calcule le OU de deux bitmaps de longueurs éventuellement différentes,
+	 * mot par mot. La partie commune est combinée, puis la fin du plus long
+	 * est recopiée, sans test dans la boucle. Le tableau résultat peut être
+	 * l'un des deux opérandes.
+	 *
+	 * @param words1  Premier bitmap.
+	 * @param length1 Nombre de mots du premier bitmap.
+	 * @param words2  Second bitmap.
+	 * @param length2 Nombre de mots du second bitmap.
+	 * @param result  Bitmap résultat, d'au moins {@code max(length1, length2)}
+	 *                mots.
+	 * @return Nombre de mots du résultat.
+	 */
+	public static int or(long[] words1, int length1, long[] words2, int length2, long[] result) {
+		int common = Math.min(length1, length2);
+		for (int k = 0; k < common; k++)
+			result[k] = words1[k] | words2[k];
+		if (length1 > common)
+			System.arraycopy(words1, common, result, common, length1 - common);
+		else if (length2 > common)
+			System.arraycopy(words2, common, result, common, length2 - common);
+		return Math.max(length1, length2);
+	}
+
+	/**
+	 * Compte les bits à 1 d'un bitmap.
+	 *
+	 * @param words  Bitmap.
+	 * @param length Nombre de mots à considérer.
+	 * @return Nombre de docIds du bitmap.
+	 */
+	public static int cardinality(long[] words, int length) {
+		int result = 0;
+		for (int k = 0; k < length; k++)
+			result += Long.bitCount(words[k]);
+		return result;
+	}
+
+	/**
+	 * Compte les plages de bits à 1 consécutifs d'un bitmap : un bit à 1
+	 * précédé d'un bit à 0 commence une plage.
+	 *
+	 * @param words  Bitmap.
+	 * @param length Nombre de mots à considérer.
+	 * @return Nombre de plages.
+	 */
+	public static int runCount(long[] words, int length) {
+		int result = 0;
+		long previous = 0;
+		for (int k = 0; k < length; k++) {
+			long word = words[k];
+			result += Long.bitCount(word & ~((word << 1) | (previous >>> 63)));
+			previous = word;
+		}
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre de mots significatifs d'un bitmap, c'est-à-dire la
+	 * position suivant son dernier mot non-nul.
+	 *
+	 * @param words  Bitmap.
+	 * @param length Nombre de mots à considérer.
+	 * @return Nombre de mots significatifs.
+	 */
+	public static int wordNumber(long[] words, int length) {
+		while (length > 0 && words[length - 1] == 0)
+			length--;
+		return length;
+	}
+
+	/**
+	 * Extrait les positions des bits à 1 d'un bitmap peu dense. Quatre
+	 * positions sont écrites pour chaque mot, qu'elles soient significatives
+	 * ou pas, et seul le nombre de bits à 1 du mot fait avancer la position
+	 * d'écriture : le parcours ne dépend pas du contenu des mots tant qu'ils
+	 * ont au plus quatre bits à 1, ce qui évite les erreurs de prédiction du
+	 * processeur.
+	 *
+	 * @param words  Bitmap.
+	 * @param length Nombre de mots à considérer.
+	 * @param values Tableau résultat, d'au moins {@code n + 4} cases si le
+	 *               bitmap contient {@code n} bits à 1.
+	 * @return Nombre de positions extraites.
+	 */
+	public static int decode(long[] words, int length, char[] values) {
+		int n = 0;
+		for (int k = 0; k < length; k++) {
+			long word = words[k];
+			int prefix = k << 6;
+			int count = Long.bitCount(word);
+			values[n] = (char) (prefix | Long.numberOfTrailingZeros(word));
+			word &= word - 1;
+			values[n + 1] = (char) (prefix | Long.numberOfTrailingZeros(word));
+			word &= word - 1;
+			values[n + 2] = (char) (prefix | Long.numberOfTrailingZeros(word));
+			word &= word - 1;
+			values[n + 3] = (char) (prefix | Long.numberOfTrailingZeros(word));
+			word &= word - 1;
+			if (count > 4) {
+				int i = n + 4;
+				while (word != 0) {
+					values[i++] = (char) (prefix | Long.numberOfTrailingZeros(word));
+					word &= word - 1;
+				}
+			}
+			n += count;
+		}
+		return n;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe, puis comparaison des durées des
+	 * opérations de {@link RoaringDocIdSet} entre des ensembles formés de
+	 * bitmaps, avec et sans les noyaux.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		System.out.println("supported=" + isSupported());
+
+		// test de and, or et cardinality
+		long[] words1 = { 0xFL, 0xF0L, -1L };
+		long[] words2 = { 0x3L, 0x0FL };
+		long[] result = new long[3];
+		System.out.println("and: " + and(words1, words2, result, 2) + " bits, or: "
+				+ or(words1, 3, words2, 2, result) + " words, " + cardinality(result, 3) + " bits");
+
+		// comparaison sur des ensembles denses
+		java.util.Random random = new java.util.Random(0);
+		int universe = 1 << 24;
+		double[][] densities = { { 0.1, 0.1 }, { 0.1, 0.3 }, { 0.5, 0.5 }, { 0.1, 0.9 } };
+		System.out.println("densities\tand scalar\tand kernels\tor scalar\tor kernels (µs)");
+		for (double[] pair : densities) {
+			RoaringDocIdSet set1 = randomSet(random, universe, pair[0]);
+			RoaringDocIdSet set2 = randomSet(random, universe, pair[1]);
+			long[] durations = new long[4];
+			RoaringDocIdSet[] sets = new RoaringDocIdSet[4];
+			int rounds = 100;
+			for (int round = 0; round < rounds + 20; round++) {
+				for (int m = 0; m < 4; m++) {
+					setEnabled(m % 2 == 1);
+					long start = System.nanoTime();
+					sets[m] = m < 2 ? set1.and(set2) : set1.or(set2);
+					long duration = System.nanoTime() - start;
+					// les premiers passages servent à la compilation à la volée
+					if (round >= 20)
+						durations[m] += duration;
+				}
+			}
+			if (!java.util.Arrays.equals(sets[0].toArray(), sets[1].toArray())
+					|| !java.util.Arrays.equals(sets[2].toArray(), sets[3].toArray()))
+				throw new IllegalStateException("Kernels and scalar loops give different results");
+			setEnabled(true);
+			System.out.println(pair[0] + "/" + pair[1] + "\t\t" + durations[0] / rounds / 1000 + "\t\t"
+					+ durations[1] / rounds / 1000 + "\t\t" + durations[2] / rounds / 1000 + "\t\t"
+					+ durations[3] / rounds / 1000);
+		}
+	}
+
+	/**
+	 * Tire aléatoirement un ensemble de docIds de densité spécifiée.
+	 *
+	 * @param random   Générateur aléatoire.
+	 * @param universe Nombre de docIds possibles.
+	 * @param density  Probabilité de chaque docId.
+	 * @return Ensemble correspondant.
+	 */
+	private static RoaringDocIdSet randomSet(java.util.Random random, int universe, double density) {
+		int[] docIds = new int[universe];
+		int n = 0;
+		for (int i = 0; i < universe; i++)
+			if (random.nextDouble() < density)
+				docIds[n++] = i;
+		return RoaringDocIdSet.fromSortedDocIds(docIds, n);
+	}
+}
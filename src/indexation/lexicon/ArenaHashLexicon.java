@@ -0,0 +1,273 @@
+package indexation.lexicon;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Lexique modifiable associant à chaque terme un numéro (dans l'ordre
+ * d'insertion). Les termes sont stockés dans une unique {@link TermArena}, et
+ * la table de hachage est un simple tableau d'entiers utilisant l'adressage
+ * ouvert avec sondage linéaire. <br/>
+ * Chaque case de la table occupe trois entiers consécutifs : l'offset de
+ * l'enregistrement du terme dans la zone (ou {@code -1} si la case est vide),
+ * son code de hachage (conservé pour éviter de comparer les octets en cas de
+ * collision) et le numéro du terme. Par rapport à une {@code HashMap<String,
+ * ?>}, on économise ainsi un nœud par terme, ainsi qu'un objet {@link String}
+ * si les entrées de l'index ne conservent pas non plus le terme (cf.
+ * {@link indexation.content.IndexEntry#moveTermToArena(TermArena, int)}).
+ * <br/>
+ * La table ne peut pas dépasser {@link #MAX_CAPACITY} cases : au-delà de la
+ * moitié de cette capacité, le taux de remplissage n'est plus borné.
+ */
+public class ArenaHashLexicon implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Construit un nouveau lexique vide, dimensionné pour contenir le nombre de
+	 * termes indiqué sans redimensionnement.
+	 *
+	 * @param size Nombre de termes attendus.
+	 */
+	public ArenaHashLexicon(int size) {
+		if (size < 0) {
+			throw new IllegalArgumentException("Size cannot be negative.");
+		}
+		// calculs en long, pour les vocabulaires de très grande taille
+		long required = Math.min(Math.max(size * 2L, 8), MAX_CAPACITY);
+		int capacity = Integer.highestOneBit((int) required - 1) << 1;
+		table = new int[capacity * SLOT];
+		Arrays.fill(table, -1);
+		mask = capacity - 1;
+		records = new int[Math.max(size, 8)];
+		arena = new TermArena((int) Math.min(size * 8L, MAX_ARENA_CAPACITY));
+		count = 0;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre d'entiers occupés par une case de la table */
+	private static final int SLOT = 3;
+	/** Position de l'offset de l'enregistrement dans une case */
+	private static final int RECORD = 0;
+	/** Position du code de hachage dans une case */
+	private static final int HASH = 1;
+	/** Position du numéro du terme dans une case */
+	private static final int ID = 2;
+	/** Nombre maximal de cases de la table (puissance de deux) */
+	public static final int MAX_CAPACITY = 1 << 29;
+	/** Capacité initiale maximale de la zone des termes (en octets) */
+	private static final int MAX_ARENA_CAPACITY = 1 << 30;
+
+	/** Zone contenant les octets de tous les termes */
+	private TermArena arena;
+	/** Table de hachage à adressage ouvert */
+	private int[] table;
+	/** Masque utilisé pour calculer la case associée à un code de hachage */
+	private int mask;
+	/** Offset de l'enregistrement de chaque terme, indexé par numéro */
+	private int[] records;
+	/** Nombre de termes dans le lexique */
+	private int count;
+
+	/**
+	 * Renvoie le nombre de termes contenus dans ce lexique.
+	 *
+	 * @return Nombre de termes.
+	 */
+	public int getSize() {
+		return count;
+	}
+
+	/**
+	 * Renvoie la zone contenant les octets des termes de ce lexique.
+	 *
+	 * @return Zone de stockage des termes.
+	 */
+	public TermArena getArena() {
+		return arena;
+	}
+
+	////////////////////////////////////////////////////
+	// INSERTION
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute le terme spécifié au lexique, s'il n'y est pas déjà, et renvoie
+	 * son numéro.
+	 *
+	 * @param term Terme à ajouter.
+	 * @return Numéro du terme (nouveau ou existant).
+	 */
+	public int add(CharSequence term) {
+		int hash = TermArena.hash(term);
+		int slot = hash & mask;
+		while (table[slot * SLOT + RECORD] != -1) {
+			int i = slot * SLOT;
+			if (table[i + HASH] == hash && arena.equals(table[i + RECORD], term)) {
+				return table[i + ID];
+			}
+			slot = (slot + 1) & mask;
+		}
+		int record = arena.add(term);
+		return insert(slot, record, hash);
+	}
+
+	/**
+	 * Enregistre un nouveau terme dans la case spécifiée (supposée vide), puis
+	 * redimensionne la table si besoin.
+	 *
+	 * @param slot   Case de la table à utiliser.
+	 * @param record Offset de l'enregistrement du terme.
+	 * @param hash   Code de hachage du terme.
+	 * @return Numéro attribué au terme.
+	 */
+	private int insert(int slot, int record, int hash) {
+		if (count == MAX_CAPACITY - 1) {
+			throw new IllegalStateException("Lexicon is full.");
+		}
+		int id = count;
+		int i = slot * SLOT;
+		table[i + RECORD] = record;
+		table[i + HASH] = hash;
+		table[i + ID] = id;
+		if (id == records.length) {
+			records = Arrays.copyOf(records, (int) Math.min(id * 2L, MAX_CAPACITY));
+		}
+		records[id] = record;
+		count++;
+
+		// on garde un taux de remplissage inférieur à 1/2
+		if (count * 2L > mask + 1 && mask + 1 < MAX_CAPACITY) {
+			rehash((mask + 1) * 2);
+		}
+		return id;
+	}
+
+	/**
+	 * Reconstruit la table avec la capacité indiquée. Les codes de hachage
+	 * étant conservés, les termes n'ont pas besoin d'être relus.
+	 *
+	 * @param capacity Nouvelle capacité (puissance de deux).
+	 */
+	private void rehash(int capacity) {
+		int[] oldTable = table;
+		table = new int[capacity * SLOT];
+		Arrays.fill(table, -1);
+		mask = capacity - 1;
+		for (int i = 0; i < oldTable.length; i += SLOT) {
+			if (oldTable[i + RECORD] != -1) {
+				int slot = oldTable[i + HASH] & mask;
+				while (table[slot * SLOT + RECORD] != -1) {
+					slot = (slot + 1) & mask;
+				}
+				System.arraycopy(oldTable, i, table, slot * SLOT, SLOT);
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// RECHERCHE
+	////////////////////////////////////////////////////
+	/**
+	 * Recherche le terme spécifié, sans allocation.
+	 *
+	 * @param term Terme à rechercher.
+	 * @return Numéro du terme, ou {@code -1} s'il n'est pas dans le lexique.
+	 */
+	public int find(CharSequence term) {
+		int hash = TermArena.hash(term);
+		int slot = hash & mask;
+		while (table[slot * SLOT + RECORD] != -1) {
+			int i = slot * SLOT;
+			if (table[i + HASH] == hash && arena.equals(table[i + RECORD], term)) {
+				return table[i + ID];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Recherche le terme spécifié, déjà encodé en UTF-8, sans allocation.
+	 *
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @return Numéro du terme, ou {@code -1} s'il n'est pas dans le lexique.
+	 */
+	public int find(byte[] term, int offset, int length) {
+		int hash = TermArena.hash(term, offset, length);
+		int slot = hash & mask;
+		while (table[slot * SLOT + RECORD] != -1) {
+			int i = slot * SLOT;
+			if (table[i + HASH] == hash && arena.equals(table[i + RECORD], term, offset, length)) {
+				return table[i + ID];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Renvoie le terme associé au numéro spécifié (ce qui implique
+	 * l'allocation d'une chaîne de caractères).
+	 *
+	 * @param id Numéro du terme.
+	 * @return Le terme correspondant.
+	 */
+	public String getTerm(int id) {
+		if (id < 0 || id >= count) {
+			throw new IllegalArgumentException("Unknown term id: " + id);
+		}
+		return arena.getTerm(records[id]);
+	}
+
+	/**
+	 * Renvoie l'offset de l'enregistrement du terme associé au numéro
+	 * spécifié, dans la zone du lexique (cf. {@link #getArena()}).
+	 *
+	 * @param id Numéro du terme.
+	 * @return Offset de l'enregistrement du terme.
+	 */
+	public int getRecord(int id) {
+		if (id < 0 || id >= count) {
+			throw new IllegalArgumentException("Unknown term id: " + id);
+		}
+		return records[id];
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		ArenaHashLexicon lexicon = new ArenaHashLexicon(2);
+
+		// test de add
+		System.out.println("add: " + lexicon.add("maison") + " " + lexicon.add("bateau") + " "
+				+ lexicon.add("électricité") + " " + lexicon.add("maison"));
+		for (int i = 0; i < 1000; i++) {
+			lexicon.add("terme" + i);
+		}
+		System.out.println("getSize: " + lexicon.getSize());
+
+		// test de find
+		StringBuilder sb = new StringBuilder("terme");
+		sb.append(500);
+		System.out.println("find on existing element: " + lexicon.find("électricité") + " " + lexicon.find(sb));
+		System.out.println("find on non existing element: " + lexicon.find("voiture"));
+		byte[] utf8 = "électricité".getBytes("UTF-8");
+		System.out.println("find with bytes: " + lexicon.find(utf8, 0, utf8.length));
+
+		// test de getTerm
+		System.out.println("getTerm: " + lexicon.getTerm(2) + " " + lexicon.getTerm(503) + " "
+				+ lexicon.getArena().getTerm(lexicon.getRecord(2)));
+	}
+}
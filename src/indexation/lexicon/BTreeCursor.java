@@ -0,0 +1,135 @@
+package indexation.lexicon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Curseur permettant de parcourir dans l'ordre les termes d'un
+ * {@link BTreeLexicon}, en suivant le chaînage de ses feuilles. Le curseur est
+ * initialement positionné avant le premier terme : il faut appeler
+ * {@link #next()} pour accéder à chaque terme.
+ */
+public class BTreeCursor {
+	/**
+	 * Crée un curseur sur la feuille spécifiée.
+	 *
+	 * @param lexicon Lexique parcouru.
+	 * @param leaf    Numéro de la première feuille à parcourir.
+	 * @param from    Borne inférieure du parcours, ou {@code null}.
+	 *
+	 * @throws IOException Problème lors de la lecture de la feuille.
+	 */
+	BTreeCursor(BTreeLexicon lexicon, int leaf, CharSequence from) throws IOException {
+		this.lexicon = lexicon;
+		this.from = from;
+		load(leaf);
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Lexique parcouru */
+	private BTreeLexicon lexicon;
+	/** Borne inférieure restant à atteindre, ou {@code null} */
+	private CharSequence from;
+	/** Feuille courante */
+	private byte[] page;
+	/** Nombre d'entrées dans la feuille courante */
+	private int count;
+	/** Numéro de la prochaine entrée à lire dans la feuille */
+	private int index;
+	/** Position de lecture dans la feuille */
+	private int pos;
+	/** Numéro de la feuille suivante, ou {@code -1} */
+	private int nextLeaf;
+	/** Position du terme courant dans la feuille */
+	private int termStart;
+	/** Longueur (en octets) du terme courant */
+	private int termLength;
+	/** Valeur associée au terme courant */
+	private long value;
+
+	/**
+	 * Charge la feuille spécifiée.
+	 *
+	 * @param leaf Numéro de la feuille.
+	 *
+	 * @throws IOException Problème lors de la lecture de la feuille.
+	 */
+	private void load(int leaf) throws IOException {
+		page = lexicon.readPage(leaf);
+		ByteBuffer buffer = ByteBuffer.wrap(page);
+		count = buffer.getShort(1) & 0xFFFF;
+		nextLeaf = buffer.getInt(3);
+		index = 0;
+		pos = BTreeLexicon.PAGE_HEADER;
+	}
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	/**
+	 * Passe au terme suivant.
+	 *
+	 * @return {@code true} s'il existe un terme suivant, {@code false} si le
+	 *         parcours est terminé.
+	 *
+	 * @throws IOException Problème lors de la lecture d'une feuille.
+	 */
+	public boolean next() throws IOException {
+		while (true) {
+			while (index >= count) {
+				if (nextLeaf < 0) {
+					return false;
+				}
+				load(nextLeaf);
+			}
+			termLength = BTreeLexicon.readLength(page, pos);
+			termStart = pos + BTreeLexicon.lengthSize(termLength);
+			pos = termStart + termLength;
+			value = ByteBuffer.wrap(page, pos, 8).getLong();
+			pos += 8;
+			index++;
+
+			// on ignore les termes situés avant la borne inférieure
+			if (from != null) {
+				if (compareTo(from) < 0) {
+					continue;
+				}
+				from = null;
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * Renvoie le terme courant (ce qui implique une allocation).
+	 *
+	 * @return Terme courant.
+	 */
+	public String getTerm() {
+		return new String(page, termStart, termLength, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Renvoie la valeur associée au terme courant.
+	 *
+	 * @return Valeur associée au terme courant.
+	 */
+	public long getValue() {
+		return value;
+	}
+
+	/**
+	 * Compare le terme courant avec le terme spécifié, sans allocation. Permet
+	 * notamment de tester la borne supérieure d'un parcours.
+	 *
+	 * @param term Terme à comparer.
+	 * @return Entier négatif, nul ou positif selon que le terme courant est
+	 *         inférieur, égal ou supérieur au terme spécifié.
+	 */
+	public int compareTo(CharSequence term) {
+		return TermArena.compare(page, termStart, termLength, term);
+	}
+}
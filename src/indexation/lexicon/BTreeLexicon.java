@@ -0,0 +1,347 @@
+package indexation.lexicon;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lexique stocké sur disque sous la forme d'un arbre B+ en pages de taille
+ * fixe, associant une valeur entière (typiquement une position dans un
+ * fichier de postings) à chaque terme. Seules les pages internes de l'arbre
+ * sont gardées en mémoire, dans un cache de taille bornée : le lexique peut
+ * donc être bien plus gros que le tas. <br/>
+ * Le fichier est créé par un {@link BTreeLexiconWriter}. Sa page zéro contient
+ * l'en-tête. Chaque autre page commence par son type, son nombre d'entrées et
+ * (pour les feuilles) le numéro de la feuille suivante. Une feuille contient
+ * ensuite des couples (terme, valeur), et une page interne le numéro de son
+ * premier fils suivi de couples (premier terme du fils, numéro du fils). Les
+ * termes sont encodés en UTF-8, précédés de leur longueur.
+ */
+public class BTreeLexicon implements Closeable {
+	/**
+	 * Ouvre en lecture le lexique contenu dans le fichier spécifié.
+	 *
+	 * @param fileName   Chemin du fichier du lexique.
+	 * @param cacheSize  Nombre maximal de pages internes gardées en mémoire.
+	 *
+	 * @throws IOException Problème lors de la lecture de l'en-tête.
+	 */
+	public BTreeLexicon(String fileName, int cacheSize) throws IOException {
+		file = new RandomAccessFile(fileName, "r");
+		channel = file.getChannel();
+		this.cacheSize = cacheSize;
+		cache = new LinkedHashMap<Integer, byte[]>(16, 0.75f, true) {
+			/** Class id (juste pour éviter le warning) */
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+				return size() > BTreeLexicon.this.cacheSize;
+			}
+		};
+
+		ByteBuffer header = ByteBuffer.wrap(readPage(0));
+		if (header.getInt() != MAGIC || header.getInt() != PAGE_SIZE) {
+			file.close();
+			throw new IOException("Not a B+tree lexicon file: " + fileName);
+		}
+		root = header.getInt();
+		height = header.getInt();
+		size = header.getInt();
+		firstLeaf = header.getInt();
+	}
+
+	////////////////////////////////////////////////////
+	// FORMAT
+	////////////////////////////////////////////////////
+	/** Nombre magique identifiant le format du fichier */
+	static final int MAGIC = 0x42544C58;
+	/** Taille d'une page, en octets */
+	static final int PAGE_SIZE = 4096;
+	/** Taille de l'en-tête d'une page (type, nombre d'entrées, suivante) */
+	static final int PAGE_HEADER = 7;
+	/** Longueur maximale d'un terme, en octets */
+	public static final int MAX_TERM_LENGTH = 1024;
+	/** Type d'une page interne */
+	static final byte INTERNAL = 0;
+	/** Type d'une feuille */
+	static final byte LEAF = 1;
+	/** Taille par défaut du cache de pages internes */
+	public static final int DEFAULT_CACHE_SIZE = 1024;
+
+	/**
+	 * Écrit un terme encodé, précédé de sa longueur, dans une page.
+	 *
+	 * @param page   Page destination.
+	 * @param pos    Position d'écriture.
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param length Nombre d'octets du terme.
+	 * @return Position suivant le dernier octet écrit.
+	 */
+	static int writeTerm(byte[] page, int pos, byte[] term, int length) {
+		int l = length;
+		while ((l & ~0x7F) != 0) {
+			page[pos++] = (byte) ((l & 0x7F) | 0x80);
+			l >>>= 7;
+		}
+		page[pos++] = (byte) l;
+		System.arraycopy(term, 0, page, pos, length);
+		return pos + length;
+	}
+
+	/**
+	 * Lit la longueur d'un terme dans une page.
+	 *
+	 * @param page Page à lire.
+	 * @param pos  Position de lecture.
+	 * @return Longueur du terme.
+	 */
+	static int readLength(byte[] page, int pos) {
+		int result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = page[pos++];
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre d'octets utilisés pour coder une longueur.
+	 *
+	 * @param length Longueur codée.
+	 * @return Nombre d'octets.
+	 */
+	static int lengthSize(int length) {
+		int result = 1;
+		while ((length & ~0x7F) != 0) {
+			length >>>= 7;
+			result++;
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Fichier du lexique */
+	private RandomAccessFile file;
+	/** Canal utilisé pour les lectures positionnelles */
+	private FileChannel channel;
+	/** Pages internes récemment lues */
+	private Map<Integer, byte[]> cache;
+	/** Nombre maximal de pages dans le cache */
+	private int cacheSize;
+	/** Numéro de la page racine */
+	private int root;
+	/** Hauteur de l'arbre (1 si la racine est une feuille) */
+	private int height;
+	/** Nombre de termes */
+	private int size;
+	/** Numéro de la première feuille */
+	private int firstLeaf;
+
+	/**
+	 * Renvoie le nombre de termes contenus dans ce lexique.
+	 *
+	 * @return Nombre de termes.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Renvoie la hauteur de l'arbre.
+	 *
+	 * @return Nombre de niveaux de l'arbre (1 si la racine est une feuille).
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * Lit la page spécifiée, en passant par le cache s'il s'agit d'une page
+	 * interne. Les feuilles ne sont jamais mises en cache.
+	 *
+	 * @param number Numéro de la page.
+	 * @return Contenu de la page.
+	 *
+	 * @throws IOException Problème lors de la lecture de la page.
+	 */
+	byte[] readPage(int number) throws IOException {
+		synchronized (cache) {
+			byte[] cached = cache.get(number);
+			if (cached != null) {
+				return cached;
+			}
+		}
+		byte[] result = new byte[PAGE_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(result);
+		long position = (long) number * PAGE_SIZE;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException("Truncated B+tree lexicon file.");
+			}
+		}
+		if (number != 0 && result[0] == INTERNAL) {
+			synchronized (cache) {
+				cache.put(number, result);
+			}
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////
+	// RECHERCHE
+	////////////////////////////////////////////////////
+	/**
+	 * Recherche le terme spécifié.
+	 *
+	 * @param term Terme à rechercher.
+	 * @return Valeur associée au terme, ou {@code -1} s'il n'est pas dans le
+	 *         lexique.
+	 *
+	 * @throws IOException Problème lors de la lecture d'une page.
+	 */
+	public long find(CharSequence term) throws IOException {
+		byte[] page = readPage(findLeaf(term));
+		int count = ByteBuffer.wrap(page, 1, 2).getShort() & 0xFFFF;
+		int pos = PAGE_HEADER;
+		for (int i = 0; i < count; i++) {
+			int length = readLength(page, pos);
+			pos += lengthSize(length);
+			int comp = TermArena.compare(page, pos, length, term);
+			pos += length;
+			if (comp == 0) {
+				return ByteBuffer.wrap(page, pos, 8).getLong();
+			}
+			if (comp > 0) {
+				break;
+			}
+			pos += 8;
+		}
+		return -1;
+	}
+
+	/**
+	 * Descend dans l'arbre jusqu'à la feuille susceptible de contenir le terme
+	 * spécifié.
+	 *
+	 * @param term Terme à rechercher.
+	 * @return Numéro de la feuille.
+	 *
+	 * @throws IOException Problème lors de la lecture d'une page.
+	 */
+	private int findLeaf(CharSequence term) throws IOException {
+		int number = root;
+		for (int level = 1; level < height; level++) {
+			byte[] page = readPage(number);
+			ByteBuffer buffer = ByteBuffer.wrap(page);
+			int count = buffer.getShort(1) & 0xFFFF;
+			int pos = PAGE_HEADER;
+			int child = buffer.getInt(pos);
+			pos += 4;
+			for (int i = 0; i < count; i++) {
+				int length = readLength(page, pos);
+				pos += lengthSize(length);
+				if (TermArena.compare(page, pos, length, term) > 0) {
+					break;
+				}
+				pos += length;
+				child = buffer.getInt(pos);
+				pos += 4;
+			}
+			number = child;
+		}
+		return number;
+	}
+
+	////////////////////////////////////////////////////
+	// PARCOURS
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie un curseur positionné juste avant le premier terme supérieur ou
+	 * égal au terme spécifié, permettant de parcourir le lexique dans l'ordre.
+	 *
+	 * @param from Borne inférieure du parcours, ou {@code null} pour partir du
+	 *             premier terme.
+	 * @return Curseur correspondant.
+	 *
+	 * @throws IOException Problème lors de la lecture d'une page.
+	 */
+	public BTreeCursor seek(CharSequence from) throws IOException {
+		if (from == null) {
+			return new BTreeCursor(this, firstLeaf, null);
+		}
+		return new BTreeCursor(this, findLeaf(from), from);
+	}
+
+	////////////////////////////////////////////////////
+	// FERMETURE
+	////////////////////////////////////////////////////
+	@Override
+	public void close() throws IOException {
+		file.close();
+		synchronized (cache) {
+			cache.clear();
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		java.io.File tempFile = java.io.File.createTempFile("lexicon", ".data");
+		tempFile.deleteOnExit();
+		int n = 100000;
+		String[] terms = new String[n];
+		for (int i = 0; i < n; i++) {
+			terms[i] = "terme" + i;
+		}
+		java.util.Arrays.sort(terms);
+
+		// test de l'écriture
+		BTreeLexiconWriter writer = new BTreeLexiconWriter(tempFile.getPath());
+		for (int i = 0; i < n; i++) {
+			writer.add(terms[i], i);
+		}
+		writer.close();
+
+		// test de find
+		BTreeLexicon lexicon = new BTreeLexicon(tempFile.getPath(), 16);
+		System.out.println("getSize: " + lexicon.getSize() + ", getHeight: " + lexicon.getHeight());
+		int errors = 0;
+		for (int i = 0; i < n; i++) {
+			if (lexicon.find(terms[i]) != i) {
+				errors++;
+			}
+		}
+		System.out.println("find on existing elements, errors: " + errors);
+		System.out.println("find on non existing element: " + lexicon.find("maison") + " " + lexicon.find("a")
+				+ " " + lexicon.find("zzz"));
+
+		// test de seek
+		BTreeCursor cursor = lexicon.seek("terme9999");
+		System.out.print("seek from terme9999:");
+		for (int i = 0; i < 5 && cursor.next(); i++) {
+			System.out.print(" " + cursor.getTerm() + "=" + cursor.getValue());
+		}
+		System.out.println();
+		lexicon.close();
+	}
+}
@@ -0,0 +1,219 @@
+package indexation.lexicon;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Objet construisant le fichier d'un {@link BTreeLexicon}, par chargement en
+ * masse : les termes doivent être ajoutés dans l'ordre de
+ * {@link String#compareTo(String)}. Les feuilles sont écrites au fur et à
+ * mesure, puis les niveaux internes sont construits lors de la fermeture. Seul
+ * le premier terme de chaque feuille est conservé en mémoire pendant la
+ * construction.
+ */
+public class BTreeLexiconWriter implements Closeable {
+	/**
+	 * Crée le fichier spécifié (en écrasant son éventuel contenu), et prépare
+	 * l'écriture de la première feuille.
+	 *
+	 * @param fileName Chemin du fichier à créer.
+	 *
+	 * @throws IOException Problème lors de la création du fichier.
+	 */
+	public BTreeLexiconWriter(String fileName) throws IOException {
+		file = new RandomAccessFile(fileName, "rw");
+		file.setLength(0);
+		nextPage = 1;
+		page = new byte[BTreeLexicon.PAGE_SIZE];
+		startPage(BTreeLexicon.LEAF);
+		separators = new ArrayList<byte[]>();
+		children = new int[16];
+		childCount = 0;
+		termCount = 0;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Fichier en cours d'écriture */
+	private RandomAccessFile file;
+	/** Numéro de la prochaine page à écrire */
+	private int nextPage;
+	/** Page en cours de remplissage */
+	private byte[] page;
+	/** Position d'écriture dans la page courante */
+	private int pos;
+	/** Nombre d'entrées dans la page courante */
+	private int count;
+	/** Premier terme (encodé) de chaque page du niveau en cours */
+	private List<byte[]> separators;
+	/** Numéro de chaque page du niveau en cours */
+	private int[] children;
+	/** Nombre de pages du niveau en cours */
+	private int childCount;
+	/** Nombre de termes ajoutés */
+	private int termCount;
+	/** Dernier terme ajouté, pour vérifier l'ordre */
+	private String lastTerm;
+	/** Tampon utilisé pour encoder les termes */
+	private byte[] buffer = new byte[64];
+
+	////////////////////////////////////////////////////
+	// FEUILLES
+	////////////////////////////////////////////////////
+	/**
+	 * Ajoute un terme et sa valeur associée au lexique.
+	 *
+	 * @param term  Terme à ajouter, supérieur à tous ceux déjà ajoutés.
+	 * @param value Valeur associée au terme (positive ou nulle).
+	 *
+	 * @throws IOException Problème lors de l'écriture d'une page.
+	 */
+	public void add(String term, long value) throws IOException {
+		if (lastTerm != null && lastTerm.compareTo(term) >= 0) {
+			throw new IllegalArgumentException("Terms must be added in strictly increasing order.");
+		}
+		if (value < 0) {
+			throw new IllegalArgumentException("Value cannot be negative.");
+		}
+		int length = TermArena.utf8Length(term);
+		if (length > BTreeLexicon.MAX_TERM_LENGTH) {
+			throw new IllegalArgumentException("Term is too long: " + length + " bytes.");
+		}
+		if (buffer.length < length) {
+			buffer = new byte[length * 2];
+		}
+		TermArena.encode(term, buffer, 0);
+
+		// si la feuille est pleine, on l'écrit et on en commence une autre
+		if (pos + 5 + length + 8 > BTreeLexicon.PAGE_SIZE) {
+			flushPage(nextPage + 1);
+			startPage(BTreeLexicon.LEAF);
+		}
+		if (count == 0) {
+			addChild(Arrays.copyOf(buffer, length), nextPage);
+		}
+		pos = BTreeLexicon.writeTerm(page, pos, buffer, length);
+		ByteBuffer.wrap(page, pos, 8).putLong(value);
+		pos += 8;
+		count++;
+		termCount++;
+		lastTerm = term;
+	}
+
+	////////////////////////////////////////////////////
+	// FERMETURE
+	////////////////////////////////////////////////////
+	/**
+	 * Écrit la dernière feuille, construit les niveaux internes de l'arbre,
+	 * puis l'en-tête du fichier, avant de le fermer.
+	 *
+	 * @throws IOException Problème lors de l'écriture du fichier.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (file == null) {
+			return;
+		}
+		int firstLeaf = 1;
+		if (childCount == 0) {
+			addChild(new byte[0], nextPage);
+		}
+		flushPage(-1);
+		int height = 1;
+
+		// on construit les niveaux internes jusqu'à obtenir une racine
+		while (childCount > 1) {
+			List<byte[]> levelSeparators = separators;
+			int[] levelChildren = Arrays.copyOf(children, childCount);
+			separators = new ArrayList<byte[]>();
+			childCount = 0;
+			startPage(BTreeLexicon.INTERNAL);
+			addChild(levelSeparators.get(0), nextPage);
+			ByteBuffer.wrap(page, pos, 4).putInt(levelChildren[0]);
+			pos += 4;
+			for (int i = 1; i < levelChildren.length; i++) {
+				byte[] separator = levelSeparators.get(i);
+				if (pos + 5 + separator.length + 4 > BTreeLexicon.PAGE_SIZE) {
+					flushPage(-1);
+					startPage(BTreeLexicon.INTERNAL);
+					addChild(separator, nextPage);
+					ByteBuffer.wrap(page, pos, 4).putInt(levelChildren[i]);
+					pos += 4;
+				} else {
+					pos = BTreeLexicon.writeTerm(page, pos, separator, separator.length);
+					ByteBuffer.wrap(page, pos, 4).putInt(levelChildren[i]);
+					pos += 4;
+					count++;
+				}
+			}
+			flushPage(-1);
+			height++;
+		}
+
+		// en-tête
+		ByteBuffer header = ByteBuffer.allocate(BTreeLexicon.PAGE_SIZE);
+		header.putInt(BTreeLexicon.MAGIC);
+		header.putInt(BTreeLexicon.PAGE_SIZE);
+		header.putInt(children[0]);
+		header.putInt(height);
+		header.putInt(termCount);
+		header.putInt(firstLeaf);
+		header.putInt(nextPage);
+		file.seek(0);
+		file.write(header.array());
+		file.close();
+		file = null;
+	}
+
+	////////////////////////////////////////////////////
+	// PAGES
+	////////////////////////////////////////////////////
+	/**
+	 * Réinitialise la page courante.
+	 *
+	 * @param type Type de la page ({@link BTreeLexicon#LEAF} ou
+	 *             {@link BTreeLexicon#INTERNAL}).
+	 */
+	private void startPage(byte type) {
+		Arrays.fill(page, (byte) 0);
+		page[0] = type;
+		pos = BTreeLexicon.PAGE_HEADER;
+		count = 0;
+	}
+
+	/**
+	 * Écrit la page courante à la suite du fichier.
+	 *
+	 * @param next Numéro de la feuille suivante (pour une feuille), ou
+	 *             {@code -1}.
+	 *
+	 * @throws IOException Problème lors de l'écriture de la page.
+	 */
+	private void flushPage(int next) throws IOException {
+		ByteBuffer.wrap(page, 1, 6).putShort((short) count).putInt(next);
+		file.seek((long) nextPage * BTreeLexicon.PAGE_SIZE);
+		file.write(page);
+		nextPage++;
+	}
+
+	/**
+	 * Mémorise une page du niveau en cours, pour construire le niveau
+	 * supérieur.
+	 *
+	 * @param separator Premier terme (encodé) de la page.
+	 * @param pageNumber Numéro de la page.
+	 */
+	private void addChild(byte[] separator, int pageNumber) {
+		separators.add(separator);
+		if (childCount == children.length) {
+			children = Arrays.copyOf(children, childCount * 2);
+		}
+		children[childCount++] = pageNumber;
+	}
+}
@@ -0,0 +1,312 @@
+package indexation.lexicon;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import indexation.content.IndexEntry;
+
+/**
+ * Lexique statique permettant de retrouver le rang d'un terme dans un tableau
+ * trié, sans allocation. Les termes sont disposés selon l'ordre d'Eytzinger
+ * (parcours en largeur de l'arbre binaire de recherche implicite) : la case
+ * {@code k} a pour fils les cases {@code 2k} et {@code 2k+1}. Les premiers
+ * niveaux de l'arbre, visités par toutes les recherches, occupent ainsi le
+ * début des tableaux et restent en cache, contrairement à une recherche
+ * dichotomique classique qui saute d'un bout à l'autre du tableau. <br/>
+ * Pour chaque case, on stocke dans des tableaux de types primitifs une clé
+ * préservant l'ordre (les quatre premiers caractères du terme), l'offset du
+ * terme dans une {@link TermArena} et le rang du terme dans le tableau
+ * d'origine. Les octets du terme ne sont consultés qu'en cas d'égalité des
+ * clés. <br/>
+ * Les surrogates isolés étant stockés sous la forme {@code '?'} (cf.
+ * {@link TermArena#encode(CharSequence, byte[], int)}), les clés et les
+ * comparaisons les lisent ainsi, et les termes en contenant sont replacés
+ * selon cet ordre lors de la construction.
+ */
+public class EytzingerLexicon {
+	/**
+	 * Construit le lexique à partir du tableau de termes triés passé en
+	 * paramètre. Les cases {@code null} du tableau sont ignorées.
+	 *
+	 * @param terms Termes triés selon {@link String#compareTo(String)}.
+	 */
+	public EytzingerLexicon(String[] terms) {
+		int[] positions = new int[terms.length];
+		int n = 0;
+		for (int i = 0; i < terms.length; i++) {
+			if (terms[i] != null) {
+				positions[n++] = i;
+			}
+		}
+		sortStored(terms, positions, n);
+		size = n;
+		keys = new long[n + 1];
+		records = new int[n + 1];
+		ranks = new int[n + 1];
+		arena = new TermArena(n * 8);
+
+		// on détermine la position triée associée à chaque case
+		fill(positions, 0, 1);
+		// on stocke les termes dans l'ordre des cases, pour la localité
+		for (int k = 1; k <= n; k++) {
+			String term = terms[ranks[k]];
+			keys[k] = key(term);
+			records[k] = arena.add(term);
+		}
+		arena.trim();
+	}
+
+	/**
+	 * Construit le lexique à partir des entrées triées passées en paramètre.
+	 * Les cases {@code null} du tableau sont ignorées.
+	 *
+	 * @param entries Entrées triées d'un index.
+	 * @return Le lexique correspondant.
+	 */
+	public static EytzingerLexicon fromEntries(IndexEntry[] entries) {
+		String[] terms = new String[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			if (entries[i] != null) {
+				terms[i] = entries[i].getTerm();
+			}
+		}
+		return new EytzingerLexicon(terms);
+	}
+
+	/**
+	 * Trie les positions des termes selon l'ordre de leur forme stockée, qui
+	 * ne diffère de l'ordre du tableau que si certains termes contiennent des
+	 * surrogates isolés. Le tri n'est réalisé que dans ce cas.
+	 *
+	 * @param terms     Termes triés selon {@link String#compareTo(String)}.
+	 * @param positions Positions des termes non-nuls dans le tableau.
+	 * @param n         Nombre de termes non-nuls.
+	 */
+	private static void sortStored(final String[] terms, int[] positions, int n) {
+		boolean sorted = true;
+		for (int i = 1; i < n && sorted; i++) {
+			sorted = compareStored(terms[positions[i - 1]], terms[positions[i]]) <= 0;
+		}
+		if (!sorted) {
+			Integer[] boxed = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				boxed[i] = positions[i];
+			}
+			Arrays.sort(boxed, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer p1, Integer p2) {
+					return compareStored(terms[p1], terms[p2]);
+				}
+			});
+			for (int i = 0; i < n; i++) {
+				positions[i] = boxed[i];
+			}
+		}
+	}
+
+	/**
+	 * Compare deux termes selon l'ordre de {@link String#compareTo(String)},
+	 * appliqué à leur forme stockée (cf. {@link TermArena#charAt(CharSequence, int)}).
+	 *
+	 * @param term1 Premier terme.
+	 * @param term2 Second terme.
+	 * @return Entier négatif, nul ou positif selon que le premier terme est
+	 *         inférieur, égal ou supérieur au second.
+	 */
+	private static int compareStored(String term1, String term2) {
+		int n = Math.min(term1.length(), term2.length());
+		for (int i = 0; i < n; i++) {
+			int diff = TermArena.charAt(term1, i) - TermArena.charAt(term2, i);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		return term1.length() - term2.length();
+	}
+
+	/**
+	 * Affecte récursivement les positions triées aux cases de l'arbre, selon
+	 * un parcours infixe.
+	 *
+	 * @param positions Positions des termes non-nuls dans le tableau d'origine.
+	 * @param i         Prochaine position triée à affecter.
+	 * @param k         Case de l'arbre à traiter.
+	 * @return Prochaine position triée à affecter après ce sous-arbre.
+	 */
+	private int fill(int[] positions, int i, int k) {
+		if (k <= size) {
+			i = fill(positions, i, 2 * k);
+			ranks[k] = positions[i++];
+			i = fill(positions, i, 2 * k + 1);
+		}
+		return i;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Nombre de termes */
+	private final int size;
+	/** Clés préservant l'ordre, dans l'ordre d'Eytzinger (case 0 inutilisée) */
+	private final long[] keys;
+	/** Offsets des termes dans la zone, dans l'ordre d'Eytzinger */
+	private final int[] records;
+	/** Rangs des termes dans le tableau d'origine, dans l'ordre d'Eytzinger */
+	private final int[] ranks;
+	/** Zone contenant les octets de tous les termes */
+	private final TermArena arena;
+
+	/**
+	 * Renvoie le nombre de termes contenus dans ce lexique.
+	 *
+	 * @return Nombre de termes.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Calcule la clé associée au terme spécifié : ses quatre premières unités
+	 * UTF-16 (sous leur forme stockée), complétées par des zéros. Le bit de signe est inversé pour que la
+	 * comparaison signée des clés respecte l'ordre de
+	 * {@link String#compareTo(String)} : si deux clés diffèrent, les termes sont
+	 * dans le même ordre qu'elles.
+	 *
+	 * @param term Terme à traiter.
+	 * @return Clé du terme.
+	 */
+	private static long key(CharSequence term) {
+		long result = 0;
+		int n = Math.min(term.length(), 4);
+		for (int i = 0; i < 4; i++) {
+			result = result << 16;
+			if (i < n) {
+				result = result | TermArena.charAt(term, i);
+			}
+		}
+		return result ^ Long.MIN_VALUE;
+	}
+
+	////////////////////////////////////////////////////
+	// RECHERCHE
+	////////////////////////////////////////////////////
+	/**
+	 * Recherche le terme spécifié, sans allocation. La descente dans l'arbre ne
+	 * comporte pas de test d'égalité : on calcule la borne inférieure du terme,
+	 * puis on vérifie à la fin si elle lui correspond.
+	 *
+	 * @param term Terme à rechercher.
+	 * @return Rang du terme dans le tableau d'origine, ou {@code -1} s'il n'est
+	 *         pas dans le lexique.
+	 */
+	public int find(CharSequence term) {
+		long key = key(term);
+		int k = 1;
+		while (k <= size) {
+			long current = keys[k];
+			int less = (current < key) ? 1
+					: (current > key) ? 0 : (arena.compare(records[k], term) < 0) ? 1 : 0;
+			k = 2 * k + less;
+		}
+		// on remonte jusqu'au dernier ancêtre dont on est parti vers la gauche
+		k = k >>> (Integer.numberOfTrailingZeros(~k) + 1);
+		if (k == 0 || keys[k] != key || arena.compare(records[k], term) != 0) {
+			return -1;
+		}
+		return ranks[k];
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe, puis comparaison des temps de
+	 * recherche avec {@link Arrays#binarySearch(Object[], Object)} (tel
+	 * qu'utilisé auparavant par {@code ArrayIndex}), pour des lexiques de
+	 * différentes tailles.
+	 *
+	 * @param args Tailles de lexique à tester (par défaut : 10^5, 10^6 et 10^7
+	 *             termes).
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		String[] terms = { "bateau", "maison", null, "électricité", "énergie" };
+		EytzingerLexicon lexicon = new EytzingerLexicon(terms);
+
+		// test de find
+		System.out.println("find on existing element: " + lexicon.find("bateau") + " " + lexicon.find("maison") + " "
+				+ lexicon.find("électricité") + " " + lexicon.find("énergie"));
+		System.out.println("find on non existing element: " + lexicon.find("avion") + " " + lexicon.find("lambda")
+				+ " " + lexicon.find("zèbre") + " " + lexicon.find("bat"));
+
+		// test des surrogates isolés, stockés sous la forme '?'
+		String[] lone = { "a>", "a@", "ab\uD800c", "ab\uD800d", "a\uD800" };
+		lexicon = new EytzingerLexicon(lone);
+		System.out.println("find with lone surrogates: " + lexicon.find("a\uD800") + " " + lexicon.find("a>") + " "
+				+ lexicon.find("a@") + " " + lexicon.find("ab\uD800c") + " " + lexicon.find("ab\uD800d"));
+
+		// comparaison avec la recherche dichotomique
+		int[] sizes = { 100000, 1000000, 10000000 };
+		if (args.length > 0) {
+			sizes = new int[args.length];
+			for (int i = 0; i < args.length; i++) {
+				sizes[i] = Integer.parseInt(args[i]);
+			}
+		}
+		for (int size : sizes) {
+			benchmark(size, 1000000);
+		}
+	}
+
+	/**
+	 * Compare les temps de recherche de ce lexique et de la recherche
+	 * dichotomique sur un tableau d'entrées, pour un lexique aléatoire de la
+	 * taille indiquée.
+	 *
+	 * @param size    Nombre de termes du lexique.
+	 * @param queries Nombre de recherches à effectuer.
+	 */
+	private static void benchmark(int size, int queries) {
+		Random random = new Random(size);
+		String[] terms = new String[size];
+		for (int i = 0; i < size; i++) {
+			terms[i] = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+		}
+		Arrays.sort(terms);
+		IndexEntry[] entries = new IndexEntry[size];
+		for (int i = 0; i < size; i++) {
+			entries[i] = new IndexEntry(terms[i]);
+		}
+		EytzingerLexicon lexicon = new EytzingerLexicon(terms);
+
+		// moitié de termes présents, moitié de termes absents
+		String[] probes = new String[queries];
+		for (int i = 0; i < queries; i++) {
+			probes[i] = (i % 2 == 0) ? terms[random.nextInt(size)]
+					: Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+		}
+
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			int found1 = 0;
+			for (String probe : probes) {
+				if (Arrays.binarySearch(entries, new IndexEntry(probe)) >= 0) {
+					found1++;
+				}
+			}
+			long middle = System.nanoTime();
+			int found2 = 0;
+			for (String probe : probes) {
+				if (lexicon.find(probe) >= 0) {
+					found2++;
+				}
+			}
+			long end = System.nanoTime();
+			System.out.println("size=" + size + " round=" + round + " binarySearch="
+					+ ((middle - start) / queries) + " ns/query (" + found1 + " found), eytzinger="
+					+ ((end - middle) / queries) + " ns/query (" + found2 + " found)");
+		}
+	}
+}
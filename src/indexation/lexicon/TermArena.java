@@ -0,0 +1,566 @@
+package indexation.lexicon;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Zone mémoire contiguë stockant les termes d'un lexique, encodés en UTF-8.
+ * Chaque terme est représenté par un enregistrement composé de sa longueur en
+ * octets (entier de taille variable) suivie de ses octets. Un terme est
+ * identifié par la position (offset) de son enregistrement dans la zone.
+ * <br/>
+ * Les méthodes de comparaison travaillent directement sur les octets stockés,
+ * ce qui permet de rechercher un terme sans créer d'objet {@link String}.
+ */
+public class TermArena implements Serializable {
+	/** Class id (juste pour éviter le warning) */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Crée une nouvelle zone vide, de la capacité initiale indiquée.
+	 *
+	 * @param capacity Capacité initiale de la zone (exprimée en octets).
+	 */
+	public TermArena(int capacity) {
+		if (capacity < 0) {
+			throw new IllegalArgumentException("Capacity cannot be negative.");
+		}
+		bytes = new byte[Math.max(capacity, 16)];
+		size = 0;
+	}
+
+	////////////////////////////////////////////////////
+	// DONNÉES
+	////////////////////////////////////////////////////
+	/** Octets de tous les enregistrements */
+	private byte[] bytes;
+	/** Nombre d'octets utilisés dans la zone */
+	private int size;
+
+	/**
+	 * Ajoute le terme spécifié à la fin de la zone.
+	 *
+	 * @param term Terme à ajouter.
+	 * @return Offset de l'enregistrement créé.
+	 */
+	public int add(CharSequence term) {
+		int length = utf8Length(term);
+		int result = size;
+		ensureCapacity(size + 5 + length);
+		size = writeLength(length, size);
+		size = encode(term, bytes, size);
+		return result;
+	}
+
+	/**
+	 * Ajoute le terme spécifié (déjà encodé en UTF-8) à la fin de la zone.
+	 *
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @return Offset de l'enregistrement créé.
+	 */
+	public int add(byte[] term, int offset, int length) {
+		int result = size;
+		ensureCapacity(size + 5 + length);
+		size = writeLength(length, size);
+		System.arraycopy(term, offset, bytes, size, length);
+		size = size + length;
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre d'octets occupés par la zone.
+	 *
+	 * @return Taille de la zone, en octets.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Réduit le tableau sous-jacent à la taille réellement utilisée.
+	 */
+	public void trim() {
+		if (bytes.length > size) {
+			bytes = Arrays.copyOf(bytes, size);
+		}
+	}
+
+	/**
+	 * Agrandit si besoin le tableau sous-jacent.
+	 *
+	 * @param capacity Nombre d'octets nécessaires.
+	 */
+	private void ensureCapacity(int capacity) {
+		if (capacity > bytes.length) {
+			int newCapacity = Math.max(capacity, bytes.length + (bytes.length >> 1));
+			bytes = Arrays.copyOf(bytes, newCapacity);
+		}
+	}
+
+	////////////////////////////////////////////////////
+	// ENREGISTREMENTS
+	////////////////////////////////////////////////////
+	/**
+	 * Renvoie la longueur (en octets) du terme dont l'enregistrement commence à
+	 * l'offset indiqué.
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @return Longueur du terme, en octets.
+	 */
+	public int getLength(int record) {
+		int result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = bytes[record++];
+			result |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return result;
+	}
+
+	/**
+	 * Renvoie la position du premier octet du terme dont l'enregistrement
+	 * commence à l'offset indiqué.
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @return Position du premier octet du terme.
+	 */
+	public int getStart(int record) {
+		while (bytes[record] < 0) {
+			record++;
+		}
+		return record + 1;
+	}
+
+	/**
+	 * Renvoie le terme dont l'enregistrement commence à l'offset indiqué, sous
+	 * la forme d'une chaîne de caractères (ce qui implique une allocation).
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @return Terme correspondant.
+	 */
+	public String getTerm(int record) {
+		int length = getLength(record);
+		int start = getStart(record);
+		return new String(bytes, start, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Écrit la longueur d'un terme sous forme d'entier de taille variable.
+	 *
+	 * @param length Longueur à écrire.
+	 * @param pos    Position d'écriture.
+	 * @return Position suivant le dernier octet écrit.
+	 */
+	private int writeLength(int length, int pos) {
+		while ((length & ~0x7F) != 0) {
+			bytes[pos++] = (byte) ((length & 0x7F) | 0x80);
+			length >>>= 7;
+		}
+		bytes[pos++] = (byte) length;
+		return pos;
+	}
+
+	////////////////////////////////////////////////////
+	// COMPARAISONS
+	////////////////////////////////////////////////////
+	/**
+	 * Indique si l'enregistrement spécifié contient le terme passé en
+	 * paramètre. L'encodage UTF-8 du terme est réalisé à la volée, sans
+	 * allocation.
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @param term   Terme à comparer.
+	 * @return {@code true} si les deux termes sont identiques.
+	 */
+	public boolean equals(int record, CharSequence term) {
+		int length = getLength(record);
+		int pos = getStart(record);
+		int end = pos + length;
+		int n = term.length();
+		for (int i = 0; i < n; i++) {
+			int c = term.charAt(i);
+			if (c < 0x80) {
+				if (pos >= end || bytes[pos++] != (byte) c) {
+					return false;
+				}
+				continue;
+			}
+			if (Character.isHighSurrogate((char) c) && i + 1 < n
+					&& Character.isLowSurrogate(term.charAt(i + 1))) {
+				c = Character.toCodePoint((char) c, term.charAt(++i));
+			} else if (Character.isSurrogate((char) c)) {
+				c = '?';
+			}
+			int required = (c < 0x80) ? 1 : (c < 0x800) ? 2 : (c < 0x10000) ? 3 : 4;
+			if (pos + required > end) {
+				return false;
+			}
+			switch (required) {
+			case 1:
+				if (bytes[pos++] != (byte) c) {
+					return false;
+				}
+				break;
+			case 2:
+				if (bytes[pos++] != (byte) (0xC0 | (c >> 6))
+						|| bytes[pos++] != (byte) (0x80 | (c & 0x3F))) {
+					return false;
+				}
+				break;
+			case 3:
+				if (bytes[pos++] != (byte) (0xE0 | (c >> 12))
+						|| bytes[pos++] != (byte) (0x80 | ((c >> 6) & 0x3F))
+						|| bytes[pos++] != (byte) (0x80 | (c & 0x3F))) {
+					return false;
+				}
+				break;
+			default:
+				if (bytes[pos++] != (byte) (0xF0 | (c >> 18))
+						|| bytes[pos++] != (byte) (0x80 | ((c >> 12) & 0x3F))
+						|| bytes[pos++] != (byte) (0x80 | ((c >> 6) & 0x3F))
+						|| bytes[pos++] != (byte) (0x80 | (c & 0x3F))) {
+					return false;
+				}
+				break;
+			}
+		}
+		return pos == end;
+	}
+
+	/**
+	 * Indique si l'enregistrement spécifié contient le terme (déjà encodé en
+	 * UTF-8) passé en paramètre.
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @return {@code true} si les deux termes sont identiques.
+	 */
+	public boolean equals(int record, byte[] term, int offset, int length) {
+		if (getLength(record) != length) {
+			return false;
+		}
+		int start = getStart(record);
+		for (int i = 0; i < length; i++) {
+			if (bytes[start + i] != term[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Compare le terme de l'enregistrement spécifié avec celui passé en
+	 * paramètre. L'ordre utilisé est celui de {@link String#compareTo(String)}
+	 * (ordre des unités UTF-16), de manière à rester cohérent avec le tri du
+	 * lexique : les octets stockés sont donc décodés à la volée. Les
+	 * surrogates isolés du terme passé en paramètre sont lus comme
+	 * {@code '?'}, puisqu'ils ont été stockés ainsi (cf.
+	 * {@link #encode(CharSequence, byte[], int)}).
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @param term   Terme à comparer.
+	 * @return Entier négatif, nul ou positif selon que le terme stocké est
+	 *         inférieur, égal ou supérieur au terme passé en paramètre.
+	 */
+	public int compare(int record, CharSequence term) {
+		return compare(bytes, getStart(record), getLength(record), term);
+	}
+
+	/**
+	 * Compare le terme encodé en UTF-8 contenu dans le tableau spécifié avec
+	 * celui passé en paramètre, selon l'ordre de
+	 * {@link String#compareTo(String)}.
+	 *
+	 * @param bytes  Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @param term   Terme à comparer.
+	 * @return Entier négatif, nul ou positif selon que le terme encodé est
+	 *         inférieur, égal ou supérieur au terme passé en paramètre.
+	 */
+	public static int compare(byte[] bytes, int offset, int length, CharSequence term) {
+		int pos = offset;
+		int end = offset + length;
+		int n = term.length();
+		int i = 0;
+		while (pos < end && i < n) {
+			int b = bytes[pos] & 0xFF;
+			int c;
+			if (b < 0x80) {
+				c = b;
+				pos++;
+			} else if (b < 0xE0) {
+				c = ((b & 0x1F) << 6) | (bytes[pos + 1] & 0x3F);
+				pos += 2;
+			} else if (b < 0xF0) {
+				c = ((b & 0x0F) << 12) | ((bytes[pos + 1] & 0x3F) << 6)
+						| (bytes[pos + 2] & 0x3F);
+				pos += 3;
+			} else {
+				// caractère hors du plan de base : deux unités UTF-16
+				int cp = ((b & 0x07) << 18) | ((bytes[pos + 1] & 0x3F) << 12)
+						| ((bytes[pos + 2] & 0x3F) << 6) | (bytes[pos + 3] & 0x3F);
+				pos += 4;
+				int diff = Character.highSurrogate(cp) - charAt(term, i++);
+				if (diff != 0) {
+					return diff;
+				}
+				if (i == n) {
+					return 1;
+				}
+				c = Character.lowSurrogate(cp);
+			}
+			int diff = c - charAt(term, i++);
+			if (diff != 0) {
+				return diff;
+			}
+		}
+		if (pos < end) {
+			return 1;
+		}
+		return (i < n) ? -1 : 0;
+	}
+
+	/**
+	 * Renvoie l'unité UTF-16 du terme située à la position spécifiée, telle
+	 * qu'elle est stockée : un surrogate isolé (qui n'appartient pas à une
+	 * paire valide) est remplacé par {@code '?'}, comme lors de l'encodage.
+	 *
+	 * @param term Terme à lire.
+	 * @param i    Position de l'unité dans le terme.
+	 * @return Unité UTF-16 stockée pour cette position.
+	 */
+	public static char charAt(CharSequence term, int i) {
+		char c = term.charAt(i);
+		if (Character.isHighSurrogate(c)) {
+			if (i + 1 < term.length() && Character.isLowSurrogate(term.charAt(i + 1))) {
+				return c;
+			}
+			return '?';
+		}
+		if (Character.isLowSurrogate(c)) {
+			if (i > 0 && Character.isHighSurrogate(term.charAt(i - 1))) {
+				return c;
+			}
+			return '?';
+		}
+		return c;
+	}
+
+	////////////////////////////////////////////////////
+	// HACHAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule le code de hachage du terme passé en paramètre, tel qu'il serait
+	 * calculé sur son encodage UTF-8. Aucune allocation n'est réalisée.
+	 *
+	 * @param term Terme à traiter.
+	 * @return Code de hachage du terme.
+	 */
+	public static int hash(CharSequence term) {
+		int h = FNV_OFFSET;
+		int n = term.length();
+		for (int i = 0; i < n; i++) {
+			int c = term.charAt(i);
+			if (c < 0x80) {
+				h = (h ^ c) * FNV_PRIME;
+				continue;
+			}
+			if (Character.isHighSurrogate((char) c) && i + 1 < n
+					&& Character.isLowSurrogate(term.charAt(i + 1))) {
+				c = Character.toCodePoint((char) c, term.charAt(++i));
+			} else if (Character.isSurrogate((char) c)) {
+				c = '?';
+			}
+			// comme pour l'encodage, le '?' de substitution occupe un octet
+			if (c < 0x80) {
+				h = (h ^ c) * FNV_PRIME;
+				continue;
+			}
+			if (c < 0x800) {
+				h = (h ^ (0xC0 | (c >> 6))) * FNV_PRIME;
+			} else {
+				if (c < 0x10000) {
+					h = (h ^ (0xE0 | (c >> 12))) * FNV_PRIME;
+				} else {
+					h = (h ^ (0xF0 | (c >> 18))) * FNV_PRIME;
+					h = (h ^ (0x80 | ((c >> 12) & 0x3F))) * FNV_PRIME;
+				}
+				h = (h ^ (0x80 | ((c >> 6) & 0x3F))) * FNV_PRIME;
+			}
+			h = (h ^ (0x80 | (c & 0x3F))) * FNV_PRIME;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Calcule le code de hachage du terme passé en paramètre (déjà encodé en
+	 * UTF-8).
+	 *
+	 * @param term   Tableau contenant le terme encodé.
+	 * @param offset Position du premier octet du terme.
+	 * @param length Nombre d'octets du terme.
+	 * @return Code de hachage du terme.
+	 */
+	public static int hash(byte[] term, int offset, int length) {
+		int h = FNV_OFFSET;
+		for (int i = offset; i < offset + length; i++) {
+			h = (h ^ (term[i] & 0xFF)) * FNV_PRIME;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * Calcule le code de hachage du terme contenu dans l'enregistrement
+	 * spécifié.
+	 *
+	 * @param record Offset de l'enregistrement.
+	 * @return Code de hachage du terme.
+	 */
+	public int hash(int record) {
+		return hash(bytes, getStart(record), getLength(record));
+	}
+
+	/**
+	 * Mélange final des bits du code de hachage (fonction de finalisation de
+	 * MurmurHash3), pour mieux répartir les termes courts.
+	 *
+	 * @param h Code de hachage brut.
+	 * @return Code de hachage mélangé.
+	 */
+	private static int mix(int h) {
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/** Valeur initiale du hachage FNV-1a */
+	private static final int FNV_OFFSET = 0x811C9DC5;
+	/** Multiplicateur du hachage FNV-1a */
+	private static final int FNV_PRIME = 0x01000193;
+
+	////////////////////////////////////////////////////
+	// ENCODAGE
+	////////////////////////////////////////////////////
+	/**
+	 * Calcule la longueur de l'encodage UTF-8 du terme spécifié.
+	 *
+	 * @param term Terme à traiter.
+	 * @return Nombre d'octets nécessaires pour encoder le terme.
+	 */
+	public static int utf8Length(CharSequence term) {
+		int result = 0;
+		int n = term.length();
+		for (int i = 0; i < n; i++) {
+			char c = term.charAt(i);
+			if (c < 0x80) {
+				result++;
+			} else if (c < 0x800) {
+				result += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < n
+					&& Character.isLowSurrogate(term.charAt(i + 1))) {
+				result += 4;
+				i++;
+			} else {
+				result += Character.isSurrogate(c) ? 1 : 3;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Encode le terme spécifié en UTF-8 dans le tableau passé en paramètre. Les
+	 * surrogates isolés sont remplacés par {@code '?'}, comme le fait
+	 * {@link String#getBytes(java.nio.charset.Charset)}.
+	 *
+	 * @param term Terme à encoder.
+	 * @param dest Tableau destination.
+	 * @param pos  Position d'écriture.
+	 * @return Position suivant le dernier octet écrit.
+	 */
+	public static int encode(CharSequence term, byte[] dest, int pos) {
+		int n = term.length();
+		for (int i = 0; i < n; i++) {
+			int c = term.charAt(i);
+			if (c < 0x80) {
+				dest[pos++] = (byte) c;
+				continue;
+			}
+			if (Character.isHighSurrogate((char) c) && i + 1 < n
+					&& Character.isLowSurrogate(term.charAt(i + 1))) {
+				c = Character.toCodePoint((char) c, term.charAt(++i));
+			} else if (Character.isSurrogate((char) c)) {
+				c = '?';
+			}
+			if (c < 0x80) {
+				dest[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				dest[pos++] = (byte) (0xC0 | (c >> 6));
+				dest[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (c < 0x10000) {
+				dest[pos++] = (byte) (0xE0 | (c >> 12));
+				dest[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				dest[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else {
+				dest[pos++] = (byte) (0xF0 | (c >> 18));
+				dest[pos++] = (byte) (0x80 | ((c >> 12) & 0x3F));
+				dest[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				dest[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return pos;
+	}
+
+	////////////////////////////////////////////////////
+	// TEST
+	////////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args Pas utilisé.
+	 *
+	 * @throws Exception Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		TermArena arena = new TermArena(0);
+		int r1 = arena.add("maison");
+		int r2 = arena.add("électricité");
+		int r3 = arena.add("😀smiley");
+
+		// test de getTerm
+		System.out.println("getTerm: " + arena.getTerm(r1) + " / " + arena.getTerm(r2) + " / " + arena.getTerm(r3));
+
+		// test de equals
+		System.out.println("equals with identical: " + arena.equals(r2, "électricité"));
+		System.out.println("equals with different: " + arena.equals(r2, "electricite"));
+		byte[] utf8 = "électricité".getBytes(StandardCharsets.UTF_8);
+		System.out.println("equals with bytes: " + arena.equals(r2, utf8, 0, utf8.length));
+
+		// test de hash
+		System.out.println("hash consistency: " + (hash("électricité") == hash(utf8, 0, utf8.length))
+				+ " " + (hash("😀smiley") == arena.hash(r3)));
+
+		// test des surrogates isolés, stockés sous la forme '?'
+		int r4 = arena.add("ab\uD800c");
+		byte[] lone = "ab\uD800c".getBytes(StandardCharsets.UTF_8);
+		System.out.println("lone surrogate: getTerm=" + arena.getTerm(r4) + ", hash consistency="
+				+ (hash("ab\uD800c") == hash(lone, 0, lone.length)) + " " + (hash("ab\uD800c") == arena.hash(r4))
+				+ ", equals=" + arena.equals(r4, "ab\uD800c") + ", compare=" + arena.compare(r4, "ab\uD800c")
+				+ " " + Integer.signum(arena.compare(r4, "ab\uD800d")));
+
+		// test de compare
+		System.out.println("compare with identical: " + arena.compare(r1, "maison"));
+		System.out.println("compare with higher: " + Integer.signum(arena.compare(r1, "voiture")));
+		System.out.println("compare with lower: " + Integer.signum(arena.compare(r1, "bateau")));
+	}
+}
@@ -23,4 +23,14 @@ public abstract class AbstractStemmer implements Serializable
 	 * 		La chaîne après traitement : la racine du type.
 	 */
 	public abstract String stemType(String string);
+	
+	/**
+	 * Crée un nouveau racinisateur du même type que celui-ci. Un racinisateur
+	 * utilise des tampons internes : il ne peut donc pas être partagé par
+	 * plusieurs threads, qui doivent chacun utiliser le leur.
+	 * 
+	 * @return
+	 * 		Un racinisateur indépendant de celui-ci.
+	 */
+	public abstract AbstractStemmer newStemmer();
 }
@@ -2,13 +2,21 @@ package indexation.processing;
 
 import indexation.AbstractIndex;
 import indexation.AbstractIndex.LexiconType;
+import indexation.ArenaIndex;
 import indexation.ArrayIndex;
+import indexation.BTreeIndex;
 import indexation.HashIndex;
 import indexation.TreeIndex;
+import indexation.content.BlockMaxScores;
+import indexation.content.DocumentStatistics;
+import indexation.content.ImpactList;
 import indexation.content.IndexEntry;
-import indexation.content.Posting;
+import indexation.content.OffHeapPostingStore;
+import indexation.content.PostingFile;
 import indexation.content.Token;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -16,6 +24,7 @@ import java.util.LinkedList;
 import java.util.List;
 
 import tools.Configuration;
+import tools.FileTools;
 
 /**
  * Objet construisant un index prenant la forme d'un fichier inversé. Il a pour
@@ -23,7 +32,16 @@ import tools.Configuration;
  */
 public class Builder {
 	/**
-	 * Construit l'index à partir des tokens passés en paramètres.
+	 * Un terme apparaissant dans au moins un document sur
+	 * {@value #DENSE_POSTINGS_RATIO} voit ses docIds stockés sous forme
+	 * d'ensemble compressé (un bit par document au plus, contre 32 dans une
+	 * liste de postings)
+	 */
+	private static final int DENSE_POSTINGS_RATIO = 8;
+
+	/**
+	 * Construit l'index à partir des tokens passés en paramètres. Le nombre de
+	 * documents est déduit du plus grand docId rencontré.
 	 * 
 	 * @param tokens
 	 *            Liste normalisée de tokens à traiter.
@@ -32,6 +50,27 @@ public class Builder {
 	 * @return L'index produit.
 	 */
 	public AbstractIndex buildIndex(List<Token> tokens, LexiconType lexiconType) {
+		int docNbr = 0;
+		for (Token token : tokens)
+			docNbr = Math.max(docNbr, token.getDocId() + 1);
+		return buildIndex(tokens, lexiconType, docNbr);
+	}
+
+	/**
+	 * Construit l'index à partir des tokens passés en paramètres. Les
+	 * statistiques des documents (normes et longueurs) sont calculées en même
+	 * temps que les listes de postings, et associées à l'index.
+	 * 
+	 * @param tokens
+	 *            Liste normalisée de tokens à traiter.
+	 * @param lexiconType
+	 *            Type de structure de données utilisée pour stocker le lexique.
+	 * @param docNbr
+	 *            Nombre de documents du corpus.
+	 * @return L'index produit.
+	 */
+	public AbstractIndex buildIndex(List<Token> tokens,
+			LexiconType lexiconType, int docNbr) {
 		int indexSize;
 		AbstractIndex result = null;
 		List<Integer> frequencies = new LinkedList<Integer>();
@@ -63,11 +102,50 @@ public class Builder {
 		case TREE:
 			result = new TreeIndex();
 			break;
+		case ARENA:
+			result = new ArenaIndex(indexSize);
+			break;
+		case BTREE:
+			result = new BTreeIndex();
+			break;
+		}
+		// les postings d'un index sur disque ne sont jamais gardés en mémoire
+		OffHeapPostingStore store = null;
+		PostingFile file = null;
+		boolean compressing = false;
+		boolean computingImpacts = false;
+		List<IndexEntry> entries = null;
+		if (lexiconType != LexiconType.BTREE) {
+			computingImpacts = Configuration.isPrecomputingImpacts();
+			// les bornes sont calculées après les normes, ce qui demande de
+			// relire les postings : on ne le fait pas s'ils sont sur disque
+			if (Configuration.isStoringMaxScores()
+					&& !Configuration.isLoadingPostingsLazily())
+				entries = new ArrayList<IndexEntry>(indexSize);
+			if (Configuration.isLoadingPostingsLazily()) {
+				file = new PostingFile(FileTools.getPostingsFile());
+				result.setPostingFile(file);
+			} else if (Configuration.isStoringPostingsOffHeap()) {
+				store = new OffHeapPostingStore();
+				result.setPostingStore(store);
+			} else
+				compressing = true;
 		}
-		int postingNumber = buildPostings(tokens, frequencies, result);
+		DocumentStatistics statistics = new DocumentStatistics(docNbr);
+		int postingNumber = buildPostings(tokens, frequencies, result, store,
+				file, statistics, computingImpacts, compressing ? docNbr : 0,
+				entries);
+		statistics.complete();
+		result.setDocumentStatistics(statistics);
+		if (entries != null)
+			computeMaxScores(entries, statistics);
 		end = System.currentTimeMillis();
 		System.out.println(" " + postingNumber + " postings listed, lexicon="
-				+ lexiconType + ", duration=" + (end - start) + " ms\n");
+				+ lexiconType + ", off-heap=" + (store != null) + ", lazy="
+				+ (file != null) + ", compressed=" + compressing
+				+ ", impacts=" + computingImpacts + ", max scores="
+				+ (entries != null) + ", duration="
+				+ (end - start) + " ms\n");
 
 		// TODO méthode à modifier (TP2-ex8)
 		return result;
@@ -167,21 +245,28 @@ public class Builder {
 		int result = 0;
 		int i = 0;
 		IndexEntry entry = null;
+		// terme de l'entrée courante (que l'index peut ne pas conserver sous
+		// forme de chaîne, cf. IndexEntry#moveTermToArena)
+		String term = null;
 
 		for (Token token : tokens) {
 			String type = token.getType();
 
-			if (entry == null || !entry.getTerm().equals(type)) {
+			if (entry == null || !term.equals(type)) {
+				if (entry != null)
+					entry.trimPostings();
 				entry = new IndexEntry(type);
+				term = type;
 				index.addEntry(entry, i);
 				i++;
 			}
 
 			int docId = token.getDocId();
-			Posting posting = new Posting(docId);
-			entry.addPosting(posting);
+			entry.addPosting(docId, 0);
 			result++;
 		}
+		if (entry != null)
+			entry.trimPostings();
 
 		return result;
 	}
@@ -199,13 +284,37 @@ public class Builder {
 	 *            La liste des fréquences associées à ces tokens.
 	 * @param index
 	 *            L'index obtenu, sous forme de fichier inverse.
+	 * @param store
+	 *            Zone hors du tas dans laquelle chaque liste de postings est
+	 *            déplacée dès qu'elle est complète, ou {@code null} pour garder
+	 *            les postings dans le tas.
+	 * @param file
+	 *            Fichier dans lequel chaque liste de postings est écrite dès
+	 *            qu'elle est complète, pour n'être relue qu'à la demande, ou
+	 *            {@code null} pour garder les postings en mémoire.
+	 * @param statistics
+	 *            Statistiques des documents, complétées avec chaque liste de
+	 *            postings.
+	 * @param computingImpacts
+	 *            Indique s'il faut précalculer les impacts des postings.
+	 * @param docNumber
+	 *            Nombre de documents du corpus, utilisé pour compresser les
+	 *            listes denses, ou 0 pour ne jamais les compresser.
+	 * @param entries
+	 *            Liste à compléter avec toutes les entrées créées, ou
+	 *            {@code null}.
 	 * @return Nombre de postings listés.
 	 */
 	private int buildPostings(List<Token> tokens, List<Integer> frequencies,
-			AbstractIndex index) {
+			AbstractIndex index, OffHeapPostingStore store, PostingFile file,
+			DocumentStatistics statistics, boolean computingImpacts,
+			int docNumber, List<IndexEntry> entries) {
 		int result = 0;
 		int i = 0;
 		IndexEntry entry = null;
+		// terme de l'entrée courante (que l'index peut ne pas conserver sous
+		// forme de chaîne, cf. IndexEntry#moveTermToArena)
+		String term = null;
 		
 		// on traite chaque token séparément
 		Iterator<Token> itTok = tokens.iterator();
@@ -217,22 +326,104 @@ public class Builder {
 			String type = token.getType();
 			
 			// si besoin, on crée une nouvelle entrée
-			if (entry == null || !entry.getTerm().equals(type)) {
+			if (entry == null || !term.equals(type)) {
+				// la liste précédente est complète : on peut la compacter
+				// ou la déplacer
+				if (entry != null)
+					completePostings(entry, store, file, statistics,
+							computingImpacts, docNumber);
 				entry = new IndexEntry(type);
+				term = type;
 				index.addEntry(entry, i);
+				if (entries != null)
+					entries.add(entry);
 				i++;
 			}
 			
 			// dans tous les cas, on met à jour la liste de postings
 			int docId = token.getDocId();
-			Posting posting = new Posting(docId, frequency);
-			entry.addPosting(posting);
+			entry.addPosting(docId, frequency);
 			result++;
 		}
+		if (entry != null)
+			completePostings(entry, store, file, statistics,
+					computingImpacts, docNumber);
+		if (file != null) {
+			try {
+				file.finishWriting();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
 		
 		return result;
 	}
 
+	/**
+	 * Termine la liste de postings de l'entrée spécifiée, en la prenant en
+	 * compte dans les statistiques des documents, puis en l'écrivant dans
+	 * le fichier ou en la déplaçant hors du tas si l'un des deux est fourni.
+	 * Sinon, la liste est compressée si elle est dense, ou ses tableaux sont
+	 * réduits à la taille exacte.
+	 * 
+	 * @param entry
+	 *            Entrée dont la liste de postings est complète.
+	 * @param store
+	 *            Zone hors du tas, ou {@code null}.
+	 * @param file
+	 *            Fichier des postings lus à la demande, ou {@code null}.
+	 * @param statistics
+	 *            Statistiques des documents.
+	 * @param computingImpacts
+	 *            Indique s'il faut précalculer les impacts des postings.
+	 * @param docNumber
+	 *            Nombre de documents du corpus, ou 0.
+	 */
+	private void completePostings(IndexEntry entry, OffHeapPostingStore store,
+			PostingFile file, DocumentStatistics statistics,
+			boolean computingImpacts, int docNumber) {
+		int df = entry.getFrequency();
+		statistics.addPostings(df, entry.getPostingCursor());
+		if (computingImpacts)
+			entry.setImpacts(ImpactList.build(entry.getPostingCursor(),
+					DocumentStatistics.processIdf(df,
+							statistics.getDocumentNumber())));
+		if (file != null) {
+			try {
+				entry.moveToFile(file);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		} else if (store != null)
+			entry.moveOffHeap(store);
+		else if (docNumber > 0
+				&& (long) entry.getFrequency() * DENSE_POSTINGS_RATIO >= docNumber)
+			entry.compressDocIds();
+		else
+			entry.trimPostings();
+	}
+
+	/**
+	 * Calcule les bornes supérieures des contributions de chaque terme aux
+	 * scores des documents, sur toute sa liste et par bloc de postings, une
+	 * fois les normes des documents connues.
+	 * 
+	 * @param entries
+	 *            Toutes les entrées de l'index.
+	 * @param statistics
+	 *            Statistiques complètes des documents.
+	 */
+	private void computeMaxScores(List<IndexEntry> entries,
+			DocumentStatistics statistics) {
+		int docNbr = statistics.getDocumentNumber();
+		for (IndexEntry entry : entries) {
+			float idf = DocumentStatistics.processIdf(entry.getFrequency(),
+					docNbr);
+			entry.setMaxScores(BlockMaxScores.build(entry.getPostingCursor(),
+					idf, statistics));
+		}
+	}
+
 	// //////////////////////////////////////////////////
 	// TEST
 	// //////////////////////////////////////////////////
@@ -19,7 +19,9 @@ import tools.FileTools;
 
 /**
  * Objet normalisant des tokens en supprimant les signes diacritiques et en les
- * passant en minuscules.
+ * passant en minuscules. <br/>
+ * Le même normalisateur peut être utilisé simultanément par plusieurs threads :
+ * chacun d'eux utilise son propre racinisateur.
  */
 public class Normalizer implements Serializable {
 	/** Class id (juste pour éviter le warning) */
@@ -74,7 +76,7 @@ public class Normalizer implements Serializable {
 				.replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
 				.toLowerCase();
 
-		return (result.isEmpty()) ? null : (stemmer != null) ? stemmer
+		return (result.isEmpty()) ? null : (stemmer != null) ? getStemmer()
 				.stemType(result) : (result != null && stopWords
 				.contains(result)) ? null : result;
 	}
@@ -84,6 +86,8 @@ public class Normalizer implements Serializable {
 	// //////////////////////////////////////////////////
 	/** Stemmeur utilisé lors de la normalistion (optionnel) */
 	private AbstractStemmer stemmer;
+	/** Copies du racinisateur utilisées par chaque thread */
+	private transient volatile ThreadLocal<AbstractStemmer> stemmers;
 
 	/**
 	 * Met en place le racinisateur utilisé par ce normalisateur. En l'absence
@@ -96,6 +100,29 @@ public class Normalizer implements Serializable {
 			stemmer = null;
 	}
 
+	/**
+	 * Renvoie le racinisateur propre au thread courant, créé lors de son
+	 * premier appel. Si deux threads créent simultanément les copies (par
+	 * exemple après la lecture de l'index), les copies de l'un sont simplement
+	 * perdues, sans jamais être partagées.
+	 * 
+	 * @return Racinisateur du thread courant.
+	 */
+	private AbstractStemmer getStemmer() {
+		ThreadLocal<AbstractStemmer> result = stemmers;
+		if (result == null) {
+			final AbstractStemmer prototype = stemmer;
+			result = new ThreadLocal<AbstractStemmer>() {
+				@Override
+				protected AbstractStemmer initialValue() {
+					return prototype.newStemmer();
+				}
+			};
+			stemmers = result;
+		}
+		return result.get();
+	}
+
 	// //////////////////////////////////////////////////
 	// MOTS-VIDES
 	// //////////////////////////////////////////////////
@@ -23,6 +23,11 @@ public class PorterStemmer extends AbstractStemmer
 		return result;
 	}
 	
+	@Override
+	public AbstractStemmer newStemmer()
+	{	return new PorterStemmer();
+	}
+	
 	////////////////////////////////////////////////////
 	//	CODE OFFICIEL DE PORTER
 	////////////////////////////////////////////////////
@@ -8,6 +8,7 @@ import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -17,7 +18,7 @@ import javax.xml.parsers.ParserConfigurationException;
 import org.xml.sax.SAXException;
 
 import tools.FileTools;
-import indexation.content.Posting;
+import indexation.content.PostingList;
 
 /**
  * Classe utilisée pour mettre en commun les méthodes et champs nécessaires à
@@ -89,17 +90,22 @@ public abstract class AbstractEvaluator {
 	 *         résultat.
 	 */
 	protected Map<MeasureName, Float> evaluateQueryAnswer(int queryId,
-			List<Posting> answer) {
-		List<Posting> reference = groundTruth.getPostingList(queryId);
-		// on pourrait plutot utiliser la méthode processConjunction
-		// du moteur de recherche, mais ici, la vitesse n'est pas une priorité
-		List<Posting> inter = new ArrayList<Posting>(reference);
-		inter.retainAll(answer);
+			PostingList answer) {
+		PostingList reference = groundTruth.getPostingList(queryId);
+		// on marque les documents de la réponse, qui n'est pas forcément
+		// triée par docId, puis on compte les documents pertinents marqués
+		BitSet answered = new BitSet();
+		for (int i = 0; i < answer.size(); i++)
+			answered.set(answer.getDocId(i));
+		int tp = 0;
+		for (int i = 0; i < reference.size(); i++) {
+			if (answered.get(reference.getDocId(i)))
+				tp++;
+		}
 
 		float precision = 0;
 		float recall = 1;
 		float fmeasure = 0;
-		int tp = inter.size();
 		int fp = answer.size() - tp;
 		int fn = reference.size() - tp;
 
@@ -131,7 +137,7 @@ public abstract class AbstractEvaluator {
 	 *         terrain, sauf la dernière, qui contient les valeurs moyennes.
 	 */
 	protected List<Map<MeasureName, Float>> evaluateQueryAnswers(
-			List<List<Posting>> answers) {
+			List<PostingList> answers) {
 		List<Map<MeasureName, Float>> result = new ArrayList<Map<MeasureName, Float>>();
 		float totalPre = 0;
 		float totalRec = 0;
@@ -139,7 +145,7 @@ public abstract class AbstractEvaluator {
 
 		// on traite chaque requête de la vérité terrain
 		int queryId = 0;
-		for (List<Posting> answer : answers) {
+		for (PostingList answer : answers) {
 			Map<MeasureName, Float> map = evaluateQueryAnswer(queryId, answer);
 			totalPre = totalPre + map.get(MeasureName.PRECISION);
 			totalRec = totalRec + map.get(MeasureName.RECALL);
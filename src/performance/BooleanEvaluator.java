@@ -1,6 +1,6 @@
 package performance;
 
-import indexation.content.Posting;
+import indexation.content.PostingList;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -59,11 +59,11 @@ public class BooleanEvaluator extends AbstractEvaluator {
 		System.out.println("Evaluating the search engine");
 		
 		// on traite chaque requête d'évaluation
-		List<List<Posting>> answers = new ArrayList<List<Posting>>();
+		List<PostingList> answers = new ArrayList<PostingList>();
 		List<String> queries = groundTruth.getQueries();
 		
 		for (String query : queries) {
-			List<Posting> answer = engine.processQuery(query);
+			PostingList answer = engine.processQuery(query);
 			answers.add(answer);
 		}
 		
@@ -0,0 +1,130 @@
+package performance;
+
+import indexation.AbstractIndex;
+import indexation.AbstractIndex.LexiconType;
+import indexation.AbstractIndex.TokenListType;
+import indexation.content.PostingList;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import query.AndOrQueryEngine;
+import tools.Configuration;
+
+/**
+ * Classe utilisée pour mesurer l'effet de la factorisation des requêtes ET/OU
+ * (cf. {@link AndOrQueryEngine#setFactoringQueries(boolean)}) : on compte le
+ * nombre de postings lus avec et sans factorisation, et on vérifie que les
+ * documents renvoyés sont les mêmes. <br/>
+ * Deux jeux de requêtes sont utilisés : les requêtes de la vérité terrain
+ * telles quelles, puis des requêtes élargies, dans lesquelles chaque requête
+ * de la vérité terrain est réunie avec ses variantes obtenues en remplaçant
+ * son dernier mot par chacun des mots des autres requêtes (par exemple
+ * {@code "solar panels, solar energy, solar roman"}).
+ */
+public class FactoringBenchmark {
+	/**
+	 * Indexe le corpus spécifié dans la configuration (ou en paramètre), puis
+	 * compare l'évaluation des requêtes avec et sans factorisation.
+	 *
+	 * @param args
+	 *            Nom du corpus (optionnel).
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0)
+			Configuration.setCorpusName(args[0]);
+		AbstractIndex index = AbstractIndex.indexCorpus(TokenListType.ARRAY,
+				LexiconType.HASH);
+		List<String> queries = new GroundTruth().getQueries();
+		List<String> expanded = expandQueries(queries);
+
+		// on évite que les messages du moteur faussent les mesures
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new java.io.OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		String report = "queries\t\treads (flat)\treads (factored)\tsaved\tidentical\n"
+				+ compare(index, "ground truth", queries)
+				+ compare(index, "expanded", expanded);
+		System.setOut(out);
+		System.out.println("Expanded queries: " + expanded);
+		System.out.print(report);
+	}
+
+	/**
+	 * Élargit chaque requête spécifiée en la réunissant avec ses variantes
+	 * obtenues en remplaçant son dernier mot par chacun des mots des autres
+	 * requêtes.
+	 *
+	 * @param queries
+	 *            Requêtes à élargir.
+	 * @return Requêtes élargies.
+	 */
+	private static List<String> expandQueries(List<String> queries) {
+		List<String> result = new ArrayList<String>();
+		for (int q = 0; q < queries.size(); q++) {
+			List<String> words = Arrays.asList(queries.get(q).trim().split("\\s+"));
+			StringBuilder query = new StringBuilder(queries.get(q).trim());
+			String prefix = "";
+			for (String word : words.subList(0, words.size() - 1))
+				prefix = prefix + word + " ";
+			for (int other = 0; other < queries.size(); other++) {
+				if (other == q)
+					continue;
+				for (String word : queries.get(other).trim().split("\\s+"))
+					query.append(", ").append(prefix).append(word);
+			}
+			result.add(query.toString());
+		}
+		return result;
+	}
+
+	/**
+	 * Traite les requêtes spécifiées avec et sans factorisation, et décrit le
+	 * résultat de la comparaison.
+	 *
+	 * @param index
+	 *            Index interrogé.
+	 * @param name
+	 *            Nom du jeu de requêtes.
+	 * @param queries
+	 *            Requêtes à traiter.
+	 * @return Ligne du rapport correspondant à ce jeu de requêtes.
+	 */
+	private static String compare(AbstractIndex index, String name, List<String> queries) {
+		List<PostingList> expected = new ArrayList<PostingList>();
+		AndOrQueryEngine flat = new AndOrQueryEngine(index);
+		for (String query : queries)
+			expected.add(flat.processQuery(query));
+
+		AndOrQueryEngine factored = new AndOrQueryEngine(index);
+		factored.setFactoringQueries(true);
+		boolean identical = true;
+		for (int q = 0; q < queries.size(); q++) {
+			PostingList result = factored.processQuery(queries.get(q));
+			identical = identical && Arrays.equals(getDocIds(result), getDocIds(expected.get(q)));
+		}
+
+		long saved = flat.getPostingReads() - factored.getPostingReads();
+		return name + "\t" + flat.getPostingReads() + "\t\t" + factored.getPostingReads() + "\t\t\t" + saved
+				+ "\t" + identical + "\n";
+	}
+
+	/**
+	 * Renvoie les docIds d'une liste de postings.
+	 *
+	 * @param list
+	 *            Liste de postings.
+	 * @return Tableau de ses docIds.
+	 */
+	private static int[] getDocIds(PostingList list) {
+		return Arrays.copyOf(list.getDocIds(), list.size());
+	}
+}
@@ -2,7 +2,6 @@ package performance;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -15,7 +14,7 @@ import org.w3c.dom.NodeList;
 import org.xml.sax.SAXException;
 
 import tools.FileTools;
-import indexation.content.Posting;
+import indexation.content.PostingList;
 
 /**
  * Classe utilisée pour représenter une vérité terrain, i.e. une séquence de
@@ -41,7 +40,7 @@ public class GroundTruth {
 
 		// initialisation des listes
 		queries = new ArrayList<String>();
-		postingLists = new ArrayList<List<Posting>>();
+		postingLists = new ArrayList<PostingList>();
 
 		// ouverture du fichier XML en lecture et parsing
 		DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory
@@ -73,9 +72,9 @@ public class GroundTruth {
 			}
 			
 			// on convertit les noms de fichiers en postings
-			List<Posting> postingList = FileTools
+			PostingList postingList = FileTools
 					.getPostingsFromFileNames(nameList);
-			Collections.sort(postingList);
+			postingList.sort();
 			postingLists.add(postingList);
 		}
 		System.out.println(")");
@@ -101,7 +100,7 @@ public class GroundTruth {
 	// DOCUMENTS
 	// //////////////////////////////////////////////////
 	/** Liste de documents pertinents pour chaque requête d'évaluation */
-	private List<List<Posting>> postingLists;
+	private List<PostingList> postingLists;
 
 	/**
 	 * Renvoie la liste de postings associée à larequête d'évaluation dont le
@@ -111,8 +110,8 @@ public class GroundTruth {
 	 *            Numéro de la requête concernée.
 	 * @return Liste de liste de postings.
 	 */
-	public List<Posting> getPostingList(int queryId) {
-		List<Posting> result = postingLists.get(queryId);
+	public PostingList getPostingList(int queryId) {
+		PostingList result = postingLists.get(queryId);
 		return result;
 	}
 
@@ -0,0 +1,89 @@
+package performance;
+
+import indexation.AbstractIndex;
+import indexation.AbstractIndex.LexiconType;
+import indexation.AbstractIndex.TokenListType;
+
+import java.io.PrintStream;
+import java.util.List;
+
+import query.RankingQueryEngine;
+import query.RankingQueryEngine.RankingStrategy;
+import query.TopDocs;
+import tools.Configuration;
+
+/**
+ * Classe utilisée pour comparer les méthodes d'évaluation des requêtes
+ * vectorielles sur les requêtes de la vérité terrain : pour chaque méthode, on
+ * mesure le nombre de postings évalués et la durée moyenne d'une requête, et
+ * on vérifie que les documents renvoyés sont les mêmes qu'avec l'évaluation
+ * exhaustive.
+ */
+public class RankingBenchmark {
+	/** Nombre de documents demandés pour chaque requête */
+	private static final int K = 10;
+	/** Nombre de passages sur le jeu de requêtes, pour chaque méthode */
+	private static final int ROUNDS = 20;
+
+	/**
+	 * Indexe le corpus spécifié dans la configuration (ou en paramètre), puis
+	 * compare les méthodes d'évaluation.
+	 * 
+	 * @param args
+	 *            Nom du corpus (optionnel).
+	 * 
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0)
+			Configuration.setCorpusName(args[0]);
+		Configuration.setStoringMaxScores(true);
+		AbstractIndex index = AbstractIndex.indexCorpus(TokenListType.ARRAY,
+				LexiconType.HASH);
+		RankingQueryEngine engine = new RankingQueryEngine(index);
+		List<String> queries = new GroundTruth().getQueries();
+
+		// on évite que les messages du moteur faussent les mesures
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new java.io.OutputStream() {
+			@Override
+			public void write(int b) {
+			}
+		}));
+		TopDocs[] expected = new TopDocs[queries.size()];
+		for (int q = 0; q < queries.size(); q++)
+			expected[q] = engine.processTopDocsQuery(queries.get(q), K,
+					RankingStrategy.EXHAUSTIVE);
+
+		StringBuilder report = new StringBuilder();
+		report.append("strategy\tpostings scored\tlatency (µs)\tidentical\n");
+		for (RankingStrategy strategy : RankingStrategy.values()) {
+			long postings = 0;
+			boolean identical = true;
+			// premier passage pour la compilation à la volée
+			for (int q = 0; q < queries.size(); q++)
+				engine.processTopDocsQuery(queries.get(q), K, strategy);
+			long start = System.nanoTime();
+			for (int round = 0; round < ROUNDS; round++) {
+				for (int q = 0; q < queries.size(); q++) {
+					TopDocs result = engine.processTopDocsQuery(
+							queries.get(q), K, strategy);
+					if (round == 0) {
+						postings = postings + result.getScoredPostings();
+						identical = identical
+								&& result.toString().equals(
+										expected[q].toString());
+					}
+				}
+			}
+			long duration = System.nanoTime() - start;
+			long latency = duration / (1000L * ROUNDS * Math.max(1, queries.size()));
+			report.append(strategy + "\t" + postings + "\t\t" + latency
+					+ "\t\t" + identical + "\n");
+		}
+		System.setOut(out);
+		System.out.println(queries.size() + " queries, k=" + K);
+		System.out.print(report);
+	}
+}
@@ -1,7 +1,7 @@
 package performance;
 
 import indexation.AbstractIndex;
-import indexation.content.Posting;
+import indexation.content.PostingList;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -15,8 +15,11 @@ import javax.xml.parsers.ParserConfigurationException;
 
 import org.xml.sax.SAXException;
 
+import query.BM25Similarity;
+import query.CosineSimilarity;
 import query.DocScore;
 import query.RankingQueryEngine;
+import query.Similarity;
 
 /**
  * Classe utilisée pour évaluer la performance d'un index vectoriel sur un jeu
@@ -61,11 +64,12 @@ public class RankingEvaluator extends AbstractEvaluator {
 	 */
 	private List<Map<MeasureName, Float>> evaluateQueryAnswers(
 			List<List<DocScore>> answers, int k) {
-		List<List<Posting>> convAnswers = new ArrayList<List<Posting>>();
+		List<PostingList> convAnswers = new ArrayList<PostingList>();
 
 		// on convertit chaque réponse séparément
 		for (List<DocScore> answer : answers) {
-			List<Posting> convAnswer = new ArrayList<Posting>();
+			PostingList convAnswer = new PostingList(Math.max(1,
+					Math.min(k, answer.size())));
 			convAnswers.add(convAnswer);
 
 			Iterator<DocScore> it = answer.iterator();
@@ -74,8 +78,7 @@ public class RankingEvaluator extends AbstractEvaluator {
 			while (it.hasNext() && i < k) {
 				DocScore docScore = it.next();
 				int docId = docScore.getDocId();
-				Posting posting = new Posting(docId);
-				convAnswer.add(posting);
+				convAnswer.add(docId, 0);
 				i++;
 			}
 		}
@@ -149,7 +152,19 @@ public class RankingEvaluator extends AbstractEvaluator {
 	public static void main(String[] args) throws Exception {
 		// TODO méthode à compléter (TP6-ex14)
 
-		// test de evaluateEngine
-		// TODO méthode à compléter (TP6-ex15)
+		// test de evaluateEngine, pour chaque fonction de similarité
+		AbstractIndex index = AbstractIndex.read();
+		RankingEvaluator evaluator = new RankingEvaluator();
+		Similarity[] similarities = { new CosineSimilarity(),
+				new BM25Similarity() };
+		for (Similarity similarity : similarities) {
+			RankingQueryEngine engine = new RankingQueryEngine(index,
+					similarity);
+			List<Map<MeasureName, Float>> perfs = evaluator
+					.evaluateEngine(engine);
+			int k = Math.min(10, perfs.size());
+			System.out.println(similarity + ", k=" + k + ": "
+					+ perfs.get(k - 1));
+		}
 	}
 }
@@ -0,0 +1,122 @@
+package performance;
+
+import indexation.AbstractIndex;
+import indexation.AbstractIndex.LexiconType;
+import indexation.AbstractIndex.TokenListType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import query.BM25Similarity;
+import query.RankingQueryEngine.RankingStrategy;
+import query.SearchService;
+import tools.Configuration;
+
+/**
+ * Test de charge de {@link SearchService} : les requêtes de la vérité terrain
+ * sont soumises en grand nombre à des services utilisant de 1 thread jusqu'au
+ * nombre de processeurs disponibles, et on mesure le débit obtenu (nombre de
+ * requêtes traitées par seconde). Tant que les threads ne se gênent pas, le
+ * débit doit croître presque linéairement avec leur nombre. <br/>
+ * Les requêtes sont traitées alternativement comme des requêtes booléennes
+ * (conjonctions de leurs termes) et comme des requêtes vectorielles, sans cache
+ * des résultats.
+ */
+public class SearchBenchmark {
+	/** Nombre de documents demandés pour chaque requête vectorielle */
+	private static final int K = 10;
+	/** Nombre de passages sur le jeu de requêtes, pour chaque mesure */
+	private static final int ROUNDS = 500;
+
+	/**
+	 * Indexe le corpus spécifié dans la configuration (ou en paramètre), puis
+	 * mesure le débit du service pour chaque nombre de threads.
+	 *
+	 * @param args
+	 *            Nom du corpus (optionnel), puis nombre maximal de threads
+	 *            (optionnel, par défaut le nombre de processeurs).
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0)
+			Configuration.setCorpusName(args[0]);
+		int maxThreadNbr = Runtime.getRuntime().availableProcessors();
+		if (args.length > 1)
+			maxThreadNbr = Integer.parseInt(args[1]);
+		AbstractIndex index = AbstractIndex.indexCorpus(TokenListType.ARRAY,
+				LexiconType.HASH);
+		List<String> queries = new GroundTruth().getQueries();
+
+		// premier passage pour la compilation à la volée
+		SearchService warmup = new SearchService(index, new BM25Similarity(), maxThreadNbr);
+		run(warmup, queries, ROUNDS);
+		warmup.close();
+
+		StringBuilder report = new StringBuilder();
+		report.append("threads\tqueries/s\tspeedup\n");
+		double reference = 0;
+		for (int threadNbr = 1; threadNbr <= maxThreadNbr; threadNbr = nextThreadNumber(threadNbr, maxThreadNbr)) {
+			SearchService service = new SearchService(index, new BM25Similarity(), threadNbr);
+			long start = System.nanoTime();
+			int processed = run(service, queries, ROUNDS);
+			long duration = System.nanoTime() - start;
+			service.close();
+
+			double throughput = processed * 1e9 / duration;
+			if (threadNbr == 1)
+				reference = throughput;
+			report.append(threadNbr + "\t" + String.format("%.0f", throughput) + "\t\t"
+					+ String.format("%.2f", throughput / reference) + "\n");
+		}
+		System.out.print(report);
+	}
+
+	/**
+	 * Renvoie le nombre de threads de la mesure suivante : on double le nombre
+	 * de threads, sans dépasser le maximum, qui est toujours mesuré.
+	 *
+	 * @param threadNbr
+	 *            Nombre de threads de la mesure précédente.
+	 * @param maxThreadNbr
+	 *            Nombre maximal de threads.
+	 * @return Nombre de threads de la mesure suivante.
+	 */
+	private static int nextThreadNumber(int threadNbr, int maxThreadNbr) {
+		if (threadNbr < maxThreadNbr)
+			return Math.min(threadNbr * 2, maxThreadNbr);
+		return threadNbr + 1;
+	}
+
+	/**
+	 * Soumet toutes les requêtes au service le nombre de fois spécifié, puis
+	 * attend leurs résultats.
+	 *
+	 * @param service
+	 *            Service à interroger.
+	 * @param queries
+	 *            Requêtes à soumettre.
+	 * @param rounds
+	 *            Nombre de passages sur le jeu de requêtes.
+	 * @return Nombre de requêtes traitées.
+	 *
+	 * @throws Exception
+	 *             Problème lors du traitement d'une requête.
+	 */
+	private static int run(SearchService service, List<String> queries, int rounds) throws Exception {
+		List<Future<?>> results = new ArrayList<Future<?>>();
+		for (int round = 0; round < rounds; round++) {
+			for (String query : queries) {
+				if (results.size() % 2 == 0)
+					results.add(service.submitBooleanQuery(query));
+				else
+					results.add(service.submitRankingQuery(query, K, RankingStrategy.EXHAUSTIVE));
+			}
+		}
+		for (Future<?> result : results)
+			result.get();
+		return results.size();
+	}
+}
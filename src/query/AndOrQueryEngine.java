@@ -1,17 +1,26 @@
 package query;
 
 import indexation.AbstractIndex;
+import indexation.content.AbstractPostingCursor;
+import indexation.content.ConjunctionPostingCursor;
+import indexation.content.DisjunctionPostingCursor;
+import indexation.content.DocIdIntersector;
+import indexation.content.DocIdUnion;
 import indexation.content.IndexEntry;
-import indexation.content.Posting;
+import indexation.content.PostingList;
+import indexation.content.RoaringDocIdSet;
 import indexation.processing.Normalizer;
 import indexation.processing.Tokenizer;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Objet capable de traiter une requête booléenne sur un index.
@@ -40,66 +49,406 @@ public class AndOrQueryEngine {
 	 *            Requête à traiter.
 	 * @return Liste des documents concernés.
 	 */
-	public List<Posting> processQuery(String query) {
+	public PostingList processQuery(String query) {
 		System.out.println("Processing query \"" + query + "\"");
 		long start = System.currentTimeMillis();
+
+		// on décompose la requête en conjonctions de termes, ou on réutilise
+		// son plan
+		CompiledQuery plan = compileQuery(query);
+		boolean factoring = factoringQueries;
+
+		// on consulte le cache des résultats
+		String key = null;
+		long generation = index.getGeneration();
+		PostingList result = null;
+		if (resultCache != null) {
+			key = QueryResultCache.createKey(factoring ? FACTORED_ENGINE_TYPE : ENGINE_TYPE, 0,
+					joinBranches(plan.branches));
+			// le cache conserve sa propre copie, que l'appelant peut modifier
+			PostingList cached = (PostingList) resultCache.get(key, generation);
+			if (cached != null)
+				result = PostingList.copyOf(cached.cursor());
+		}
+
+		if (result == null) {
+			if (factoring)
+				result = processFactoredQuery(plan);
+			else
+				result = processFlatQuery(plan);
+			if (resultCache != null)
+				resultCache.put(key, PostingList.copyOf(result.cursor()), generation);
+		}
+		long end = System.currentTimeMillis();
+		System.out
+				.println("Query processed, duration=" + (end - start) + " ms");
 		
-		// on décompose la requête et identifie les termes
-		List<List<List<Posting>>> postings = new LinkedList<List<List<Posting>>>();
-		splitOrQuery(query, postings);
-		// System.out.println(postings);
-		
-		// on traite les opérateurs ET
-		List<List<Posting>> partialResults = new LinkedList<List<Posting>>();
-		for (List<List<Posting>> list : postings) {
-			List<Posting> partialResult;
-			if (list.size() == 1)
+		return result;
+	}
+
+	/**
+	 * Plan compilé d'une requête : ses conjonctions de termes normalisés, les
+	 * entrées de l'index correspondant à ces termes, et l'ordre dans lequel
+	 * les listes de chaque conjonction doivent être combinées. Une fois
+	 * construit, un plan n'est plus modifié : il peut donc être réutilisé,
+	 * y compris par plusieurs threads, tant que l'index n'est pas modifié.
+	 */
+	private static class CompiledQuery {
+		/**
+		 * Compile la requête dont les conjonctions sont spécifiées.
+		 * 
+		 * @param branches
+		 *            Conjonctions de termes obtenues par
+		 *            {@link AndOrQueryEngine#splitOrTerms(String, List)}.
+		 * @param index
+		 *            Index dans lequel les termes sont cherchés.
+		 */
+		public CompiledQuery(List<List<String>> branches, AbstractIndex index) {
+			this.branches = branches;
+			entries = new HashMap<String, IndexEntry>();
+			for (List<String> terms : branches)
+				for (String term : terms)
+					if (!entries.containsKey(term))
+						entries.put(term, index.getEntry(term));
+
+			// les termes de chaque conjonction sont ordonnés par fréquence de
+			// document, comme le seront leurs listes
+			Comparator<String> comparator = new Comparator<String>() {
+				@Override
+				public int compare(String t1, String t2) {
+					return getFrequency(t1) - getFrequency(t2);
+				}
+			};
+			orderedBranches = new ArrayList<List<String>>();
+			for (List<String> terms : branches) {
+				List<String> ordered = new ArrayList<String>(terms);
+				Collections.sort(ordered, comparator);
+				orderedBranches.add(ordered);
+			}
+		}
+
+		/** Conjonctions de termes, dans l'ordre de la requête */
+		private final List<List<String>> branches;
+		/** Conjonctions de termes, ordonnées par fréquence de document */
+		private final List<List<String>> orderedBranches;
+		/** Entrées de l'index associées aux termes, ou {@code null} si absent */
+		private final Map<String, IndexEntry> entries;
+
+		/**
+		 * Renvoie la fréquence de document du terme spécifié.
+		 * 
+		 * @param term
+		 *            Terme de la requête.
+		 * @return Nombre de documents contenant le terme.
+		 */
+		private int getFrequency(String term) {
+			IndexEntry entry = entries.get(term);
+			if (entry == null)
+				return 0;
+			return entry.getFrequency();
+		}
+	}
+
+	/**
+	 * Renvoie le plan compilé de la requête spécifiée : s'il se trouve dans le
+	 * cache des plans, la requête n'est ni décomposée, ni normalisée, et ses
+	 * termes ne sont pas cherchés dans l'index.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @return Plan de la requête.
+	 */
+	private CompiledQuery compileQuery(String query) {
+		String key = null;
+		long generation = index.getGeneration();
+		if (planCache != null) {
+			key = QueryResultCache.createKey(PLAN_TYPE, 0, query);
+			CompiledQuery result = (CompiledQuery) planCache.get(key, generation);
+			if (result != null)
+				return result;
+		}
+
+		List<List<String>> branches = new ArrayList<List<String>>();
+		splitOrTerms(query, branches);
+		CompiledQuery result = new CompiledQuery(branches, index);
+		if (planCache != null)
+			planCache.put(key, result, generation);
+		return result;
+	}
+
+	/**
+	 * Traite la requête passée en paramètre en évaluant séparément chacune de
+	 * ses conjonctions, puis en réunissant leurs résultats.
+	 * 
+	 * @param plan
+	 *            Plan de la requête.
+	 * @return Liste des documents concernés.
+	 */
+	private PostingList processFlatQuery(CompiledQuery plan) {
+		// on traite les opérateurs ET, en réutilisant si possible
+		// l'intersection des deux listes les plus courtes
+		List<AbstractPostingCursor> partialResults = new LinkedList<AbstractPostingCursor>();
+		for (List<String> terms : plan.orderedBranches) {
+			List<AbstractPostingCursor> list = new LinkedList<AbstractPostingCursor>();
+			for (String term : terms)
+				list.add(getPostingCursor(plan.entries.get(term)));
+			if (intersectionCache != null && list.size() > 1)
+				intersectionCache.processShortestPair(terms, list, index.getGeneration());
+			AbstractPostingCursor partialResult;
+			if (list.isEmpty())
+				continue;
+			else if (list.size() == 1)
 				partialResult = list.get(0);
-			else
-				partialResult = processConjunctions(list);
+			else {
+				partialResult = processConjunctions(list).cursor();
+				// le résultat de la conjonction est relu par la disjonction
+				postingReads = postingReads + partialResult.getSize();
+			}
 			partialResults.add(partialResult);
 		}
 		
 		// on traite les opérateurs OU
-		List<Posting> result;
-		if (postings.isEmpty())
-			result = new ArrayList<Posting>();
-		else if (partialResults.size() == 1)
-			result = partialResults.get(0);
+		return processPartialResults(partialResults);
+	}
+
+	/**
+	 * Traite la requête passée en paramètre après avoir mis en facteur les
+	 * termes communs à plusieurs de ses conjonctions : par exemple, la requête
+	 * {@code "solar panels, solar energy, wind"} est évaluée comme
+	 * {@code (solar ET (panels OU energy)) OU wind}. La liste de postings d'un
+	 * terme commun n'est ainsi lue qu'une fois, au lieu d'une fois par
+	 * conjonction. Une conjonction réduite au terme commun absorbe les autres
+	 * conjonctions le contenant. <br/>
+	 * Les documents obtenus sont les mêmes que sans factorisation, mais leurs
+	 * fréquences peuvent différer, puisque les conjonctions combinées ne sont
+	 * plus les mêmes : la factorisation n'est donc utilisée que si elle a été
+	 * activée (cf. {@link #setFactoringQueries(boolean)}).
+	 * 
+	 * @param plan
+	 *            Plan de la requête.
+	 * @return Liste des documents concernés.
+	 */
+	private PostingList processFactoredQuery(CompiledQuery plan) {
+		// on ne garde que des conjonctions de termes distincts
+		List<List<String>> branches = new ArrayList<List<String>>();
+		for (List<String> terms : plan.branches) {
+			if (!terms.isEmpty())
+				branches.add(new ArrayList<String>(new LinkedHashSet<String>(terms)));
+		}
+
+		// on traite les conjonctions, factorisées ou pas
+		List<List<AbstractPostingCursor>> conjunctions = new LinkedList<List<AbstractPostingCursor>>();
+		processFactoredConjunctions(branches, plan.entries, conjunctions);
+		List<AbstractPostingCursor> partialResults = new LinkedList<AbstractPostingCursor>();
+		for (List<AbstractPostingCursor> conjunction : conjunctions)
+			partialResults.add(processConjunction(conjunction));
+
+		// on traite les opérateurs OU
+		return processPartialResults(partialResults);
+	}
+
+	/**
+	 * Met en facteur, tant que c'est possible, le terme apparaissant dans le
+	 * plus grand nombre de conjonctions, et évalue le facteur avec les restes
+	 * des conjonctions qui le contiennent. Ces restes sont eux-mêmes
+	 * factorisés récursivement. Les conjonctions qui n'ont plus de terme en
+	 * commun ne sont pas évaluées.
+	 * 
+	 * @param branches
+	 *            Conjonctions à traiter, chacune sous forme de liste de termes
+	 *            distincts et non-vide.
+	 * @param entries
+	 *            Entrées de l'index associées aux termes.
+	 * @param result
+	 *            Liste à compléter avec des conjonctions de curseurs, dont
+	 *            l'union est celle des conjonctions de termes.
+	 */
+	private void processFactoredConjunctions(List<List<String>> branches, Map<String, IndexEntry> entries,
+			List<List<AbstractPostingCursor>> result) {
+		List<List<String>> remaining = removeAbsorbed(branches);
+		String term;
+		while ((term = getMostSharedTerm(remaining)) != null) {
+			// on retire le terme commun des conjonctions qui le contiennent
+			List<List<String>> rests = new ArrayList<List<String>>();
+			List<List<String>> others = new ArrayList<List<String>>();
+			for (List<String> branch : remaining) {
+				if (branch.contains(term)) {
+					List<String> rest = new ArrayList<String>(branch);
+					rest.remove(term);
+					rests.add(rest);
+				} else
+					others.add(branch);
+			}
+
+			// le terme commun n'est lu qu'une fois pour toutes ces conjonctions
+			List<List<AbstractPostingCursor>> restConjunctions = new LinkedList<List<AbstractPostingCursor>>();
+			processFactoredConjunctions(rests, entries, restConjunctions);
+			List<AbstractPostingCursor> conjunction = new LinkedList<AbstractPostingCursor>();
+			conjunction.add(processFactor(getPostingCursor(entries.get(term)), restConjunctions));
+			result.add(conjunction);
+			remaining = others;
+		}
+
+		// les conjonctions restantes n'ont plus de terme en commun
+		for (List<String> branch : remaining) {
+			List<AbstractPostingCursor> conjunction = new LinkedList<AbstractPostingCursor>();
+			for (String t : branch)
+				conjunction.add(getPostingCursor(entries.get(t)));
+			result.add(conjunction);
+		}
+	}
+
+	/**
+	 * Évalue une conjonction de curseurs. Si les listes sont toutes
+	 * compressées, elles sont combinées mot par mot ; sinon, la conjonction
+	 * n'est pas construite : elle sera parcourue par l'opérateur qui
+	 * l'utilise.
+	 * 
+	 * @param conjunction
+	 *            Curseurs à combiner.
+	 * @return Curseur sur le résultat de la conjonction.
+	 */
+	private AbstractPostingCursor processConjunction(List<AbstractPostingCursor> conjunction) {
+		if (conjunction.size() == 1)
+			return conjunction.get(0);
+		if (areCompressed(conjunction)) {
+			Collections.sort(conjunction, COMPARATOR);
+			PostingList result = processDenseConjunctions(conjunction);
+			postingReads = postingReads + result.size();
+			return result.cursor();
+		}
+		return new ConjunctionPostingCursor(conjunction);
+	}
+
+	/**
+	 * Combine un terme commun avec la disjonction des restes des conjonctions
+	 * qui le contenaient, sans construire ni les restes ni leur disjonction :
+	 * la liste du terme et la disjonction sont parcourues par un
+	 * {@link ConjunctionPostingCursor}. Si la liste du terme est plus courte
+	 * que l'ensemble des restes, elle guide le parcours, et les listes de
+	 * chaque reste avancent directement jusqu'à ses documents ; sinon, c'est
+	 * la disjonction qui guide le parcours.
+	 * 
+	 * @param factor
+	 *            Curseur sur la liste du terme commun.
+	 * @param rests
+	 *            Restes des conjonctions, chacun sous forme de conjonction de
+	 *            curseurs. Un reste vide signifie que la conjonction était
+	 *            réduite au terme commun.
+	 * @return Curseur sur les documents du terme commun présents dans l'un
+	 *         des restes.
+	 */
+	private AbstractPostingCursor processFactor(AbstractPostingCursor factor,
+			List<List<AbstractPostingCursor>> rests) {
+		List<AbstractPostingCursor> restResults = new ArrayList<AbstractPostingCursor>();
+		for (List<AbstractPostingCursor> rest : rests) {
+			if (rest.isEmpty())
+				return factor;
+			restResults.add(processConjunction(rest));
+		}
+		List<AbstractPostingCursor> lists = new ArrayList<AbstractPostingCursor>();
+		lists.add(factor);
+		if (restResults.size() == 1)
+			lists.add(restResults.get(0));
 		else
-			result = processDisjunctions(partialResults);
-		long end = System.currentTimeMillis();
-		System.out
-				.println("Query processed, duration=" + (end - start) + " ms");
-		
+			lists.add(new DisjunctionPostingCursor(restResults));
+		return new ConjunctionPostingCursor(lists);
+	}
+
+	/**
+	 * Supprime les conjonctions contenant tous les termes d'une autre
+	 * conjonction, qui n'ajoutent aucun document à la disjonction (par
+	 * exemple {@code "solar panels"} dans {@code "solar, solar panels"}).
+	 * 
+	 * @param branches
+	 *            Conjonctions de termes distincts.
+	 * @return Conjonctions restantes, dans le même ordre.
+	 */
+	private static List<List<String>> removeAbsorbed(List<List<String>> branches) {
+		List<List<String>> result = new ArrayList<List<String>>();
+		for (int i = 0; i < branches.size(); i++) {
+			List<String> branch = branches.get(i);
+			boolean absorbed = false;
+			for (int j = 0; j < branches.size() && !absorbed; j++) {
+				List<String> other = branches.get(j);
+				// entre deux conjonctions identiques, on garde la première
+				if (j != i && branch.containsAll(other)
+						&& (other.size() < branch.size() || j < i))
+					absorbed = true;
+			}
+			if (!absorbed)
+				result.add(branch);
+		}
+		return result;
+	}
+
+	/**
+	 * Recherche le terme apparaissant dans le plus grand nombre de
+	 * conjonctions. En cas d'égalité, le premier terme rencontré est choisi.
+	 * 
+	 * @param branches
+	 *            Conjonctions de termes distincts.
+	 * @return Terme commun au plus grand nombre de conjonctions, ou
+	 *         {@code null} si aucun terme n'apparaît dans plusieurs
+	 *         conjonctions.
+	 */
+	private static String getMostSharedTerm(List<List<String>> branches) {
+		Map<String, Integer> counts = new LinkedHashMap<String, Integer>();
+		for (List<String> branch : branches) {
+			for (String term : branch) {
+				Integer count = counts.get(term);
+				counts.put(term, count == null ? 1 : count + 1);
+			}
+		}
+		String result = null;
+		int max = 1;
+		for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+			if (entry.getValue() > max) {
+				result = entry.getKey();
+				max = entry.getValue();
+			}
+		}
 		return result;
 	}
 
+	/**
+	 * Réunit les résultats partiels d'une requête.
+	 * 
+	 * @param partialResults
+	 *            Curseurs sur les résultats des conjonctions de la requête.
+	 * @return Union de ces résultats.
+	 */
+	private PostingList processPartialResults(List<AbstractPostingCursor> partialResults) {
+		if (partialResults.isEmpty())
+			return new PostingList();
+		if (partialResults.size() == 1)
+			return PostingList.copyOf(partialResults.get(0));
+		return processDisjunctions(partialResults);
+	}
+
 	/**
 	 * Comparateur traitant deux listes de postings. On utilise simplement leurs
 	 * longueurs.
 	 */
-	private static final Comparator<List<Posting>> COMPARATOR = new Comparator<List<Posting>>() {
+	private static final Comparator<AbstractPostingCursor> COMPARATOR = new Comparator<AbstractPostingCursor>() {
 		@Override
-		public int compare(List<Posting> l1, List<Posting> l2) {
-			int result = l1.size() - l2.size();
+		public int compare(AbstractPostingCursor l1, AbstractPostingCursor l2) {
+			int result = l1.getSize() - l2.getSize();
 			return result;
 		}
 	};
 
 	/**
 	 * Tokénise et normalise la requête, de manière à obtenir une liste de
-	 * termes. Ces termes sont ensuite traités pour récupérer les entrées
-	 * correspondantes dans l'index, et surtout leurs listes de postings.
+	 * termes.
 	 * 
 	 * @param query
 	 *            Requête à traiter.
 	 * @param result
-	 *            Liste résultat à compléter, qui doit contenir à la fin du
-	 *            traitement les postings de l'index correspondant aux termes
-	 *            obtenus après nettoyage de la requête.
+	 *            Liste résultat à compléter avec les termes obtenus après
+	 *            nettoyage de la requête.
 	 */
-	private void splitAndQuery(String query, List<List<Posting>> result) {
+	private void splitAndTerms(String query, List<String> result) {
 		Tokenizer tokenizer = index.getTokenizer();
 		List<String> types = tokenizer.tokenizeString(query);
 		// on normalise chaque type
@@ -107,73 +456,106 @@ public class AndOrQueryEngine {
 		for (String type : types) { // la normalisation du type donne le terme
 									// (ou null)
 			String term = normalizer.normalizeType(type);
-			if (term != null) { // on récupére l'entrée associée au terme dans
-								// l'index
-				IndexEntry entry = index.getEntry(term);
-				// si pas dans l'index, on utilise une liste vide
-				if (entry == null)
-					result.add(new ArrayList<Posting>());
-				// sinon, on prend sa liste de postings
-				else {
-					List<Posting> postings = entry.getPostings();
-					result.add(postings);
-				}
-			}
+			if (term != null)
+				result.add(term);
 		}
+	}
 
-		// TODO méthode à modifier (TP4-ex10)
+	/**
+	 * Renvoie un curseur sur la liste de postings d'un terme.
+	 * 
+	 * @param entry
+	 *            Entrée de l'index associée au terme, résolue par le plan de
+	 *            la requête.
+	 * @return Curseur sur les postings du terme, ou sur une liste vide si le
+	 *         terme n'est pas dans l'index.
+	 */
+	private AbstractPostingCursor getPostingCursor(IndexEntry entry) {
+		// si pas dans l'index, on utilise une liste vide
+		if (entry == null)
+			return new PostingList().cursor();
+		// sinon, on parcourt sa liste de postings
+		AbstractPostingCursor result = entry.getPostingCursor();
+		postingReads = postingReads + result.getSize();
+		return result;
 	}
 
-	private void splitOrQuery(String query, List<List<List<Posting>>> result) {
+	/**
+	 * Décompose la requête en conjonctions, puis tokénise et normalise
+	 * chacune d'elles, de manière à obtenir une liste de termes par
+	 * conjonction.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @param result
+	 *            Liste résultat à compléter avec les termes de chaque
+	 *            conjonction, éventuellement vide.
+	 */
+	private void splitOrTerms(String query, List<List<String>> result) {
 		String[] strings = query.split(",");
 		// on nettoie chaque sous-chaîne obtenue
 		for (String string : strings) {
-			List<List<Posting>> list = new LinkedList<List<Posting>>();
-			splitAndQuery(string, list);
-			result.add(list);
+			List<String> terms = new ArrayList<String>();
+			splitAndTerms(string, terms);
+			result.add(terms);
 		}
 	}
 
+	/**
+	 * Reconstitue une requête à partir des termes normalisés de ses
+	 * conjonctions.
+	 * 
+	 * @param branches
+	 *            Conjonctions de termes obtenues par
+	 *            {@link #splitOrTerms(String, List)}.
+	 * @return Conjonctions séparées par des virgules.
+	 */
+	private static String joinBranches(List<List<String>> branches) {
+		StringBuilder result = new StringBuilder();
+		for (List<String> terms : branches) {
+			if (result.length() > 0)
+				result.append(", ");
+			result.append(QueryResultCache.joinTerms(terms));
+		}
+		return result.toString();
+	}
+
 	// //////////////////////////////////////////////////
 	// CONJONCTIONS
 	// //////////////////////////////////////////////////
 	/**
 	 * Combine les deux listes de postings passées en paramètre en utilisant
-	 * l'opérateur ET.
+	 * l'opérateur ET. Les fréquences du résultat sont celles de la première
+	 * liste.
 	 * 
 	 * @param list1
-	 *            Première liste de postings.
+	 *            Curseur sur la première liste de postings.
 	 * @param list2
-	 *            Seconde liste de postings.
+	 *            Curseur sur la seconde liste de postings.
 	 * @return Le résultat de ET sur ces deux listes.
 	 */
-	private List<Posting> processConjunction(List<Posting> list1,
-			List<Posting> list2) {
-		List<Posting> result = new LinkedList<Posting>();
-		Iterator<Posting> it1 = list1.iterator();
-		Iterator<Posting> it2 = list2.iterator();
-		// on fusionne le début des listes
-		Posting posting1 = null;
-		Posting posting2 = null;
-		while ((it1.hasNext() || posting1 != null)
-				&& (it2.hasNext() || posting2 != null)) {
-			if (posting1 == null)
-				posting1 = it1.next();
-			if (posting2 == null)
-				posting2 = it2.next();
-			int comp = posting1.compareTo(posting2);
+	private PostingList processConjunction(AbstractPostingCursor list1,
+			AbstractPostingCursor list2) {
+		PostingList result = new PostingList(Math.min(list1.getSize(),
+				list2.getSize()));
+		// on fusionne les listes
+		boolean more1 = list1.next();
+		boolean more2 = list2.next();
+		while (more1 && more2) {
+			int docId1 = list1.getDocId();
+			int docId2 = list2.getDocId();
 			// posting1 < posting2
-			if (comp < 0)
-				posting1 = null;
+			if (docId1 < docId2)
+				more1 = list1.next();
+			// posting1 > posting2
+			else if (docId1 > docId2)
+				more2 = list2.next();
 			// posting1 == posting2
-			else if (comp == 0) {
-				result.add(posting1);
-				posting1 = null;
-				posting2 = null;
+			else {
+				result.add(docId1, list1.getFrequency());
+				more1 = list1.next();
+				more2 = list2.next();
 			}
-			// posting1 > posting2
-			else if (comp > 0)
-				posting2 = null;
 		}
 		return result;
 	}
@@ -182,97 +564,167 @@ public class AndOrQueryEngine {
 	 * Traite une conjonction de plus de deux termes.
 	 * 
 	 * @param lists
-	 *            Liste de listes de postings de l'index, correspondant aux
-	 *            termes à traiter.
+	 *            Curseurs sur les listes de postings de l'index, correspondant
+	 *            aux termes à traiter.
 	 * @return Intersection de toutes les listes de postings.
 	 */
-	private List<Posting> processConjunctions(List<List<Posting>> lists) {
+	private PostingList processConjunctions(List<AbstractPostingCursor> lists) {
 		// on ordonne la liste de postings
 		Collections.sort(lists, COMPARATOR);
-		// on traite les deux premières
-		List<Posting> list1 = lists.get(0);
-		lists.remove(0);
-		List<Posting> list2 = lists.get(0);
-		lists.remove(0);
-		List<Posting> result = processConjunction(list1, list2);
-		// on traite chaque liste restante une par une
-		Iterator<List<Posting>> it = lists.iterator();
-		while (it.hasNext() && !result.isEmpty()) {
-			List<Posting> list = it.next();
-			result = processConjunction(result, list);
-		}
+		// les listes denses sont combinées mot par mot
+		if (areCompressed(lists))
+			return processDenseConjunctions(lists);
+		// les listes stockées dans le tas sont toutes combinées simultanément
+		if (areArrays(lists))
+			return processArrayConjunctions(lists);
+		// les autres sont parcourues ensemble, sans être recopiées
+		return processLazyConjunctions(lists);
+	}
+
+	/**
+	 * Traite une conjonction de listes stockées sous forme de tableaux :
+	 * toutes les listes sont combinées simultanément, de manière adaptative
+	 * (cf. {@link DocIdIntersector}). Les fréquences du résultat sont celles de
+	 * la liste la plus courte.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à combiner, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processArrayConjunctions(List<AbstractPostingCursor> lists) {
+		PostingList[] postingLists = new PostingList[lists.size()];
+		int i = 0;
+		for (AbstractPostingCursor list : lists)
+			postingLists[i++] = list.getPostingList();
+		PostingList result = DocIdIntersector.intersect(postingLists);
+		System.out.println(" Processing conjunction: " + lists.size()
+				+ " lists >> (" + result.size() + ")");
 		return result;
 	}
 
-	private List<Posting> processDisjunction(List<Posting> list1,
-			List<Posting> list2) {
-		List<Posting> result = new LinkedList<Posting>();
-		Iterator<Posting> it1 = list1.iterator();
-		Iterator<Posting> it2 = list2.iterator();
-
-		// on fusionne le début des listes
-		Posting posting1 = null;
-		Posting posting2 = null;
-		while ((it1.hasNext() || posting1 != null)
-				&& (it2.hasNext() || posting2 != null)) {
-			if (posting1 == null)
-				posting1 = it1.next();
-			if (posting2 == null)
-				posting2 = it2.next();
-			int comp = posting1.compareTo(posting2);
-			// posting1 < posting2
-			if (comp < 0) {
-				result.add(posting1);
-				posting1 = null;
-			}
-			// posting1 == posting2
-			else if (comp == 0) {
-				result.add(posting1);
-				posting1 = null;
-				posting2 = null;
-			}
-			// posting1 > posting2
-			else if (comp > 0) {
-				result.add(posting2);
-				posting2 = null;
-			}
-		}
+	/**
+	 * Traite une conjonction de listes dont certaines ne sont pas stockées
+	 * dans le tas (listes compressées ou hors du tas) : toutes les listes
+	 * sont parcourues ensemble par un {@link ConjunctionPostingCursor}, sans
+	 * être recopiées. Les fréquences du résultat sont celles de la liste la
+	 * plus courte.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à combiner, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processLazyConjunctions(List<AbstractPostingCursor> lists) {
+		PostingList result = PostingList.copyOf(new ConjunctionPostingCursor(lists));
+		System.out.println(" Processing conjunction: " + lists.size()
+				+ " lists >> (" + result.size() + ")");
+		return result;
+	}
 
-		// on rajoute la valeur éventuellement présente en tampon
-		if (posting1 != null)
-			result.add(posting1);
-		else if (posting2 != null)
-			result.add(posting2);
-
-		// on rajoute la fin de la liste restante
-		Iterator<Posting> it = null;
-		if (it1.hasNext())
-			it = it1;
-		else if (it2.hasNext())
-			it = it2;
-		if (it != null) {
-			while (it.hasNext()) {
-				Posting posting = it.next();
-				result.add(posting);
-			}
-		}
+	/**
+	 * Traite une conjonction de listes dont les docIds sont tous stockés sous
+	 * forme d'ensembles compressés : les ensembles sont combinés mot par mot,
+	 * puis les fréquences de la liste la plus courte sont associées au
+	 * résultat.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes compressées, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processDenseConjunctions(List<AbstractPostingCursor> lists) {
+		AbstractPostingCursor first = lists.get(0);
+		RoaringDocIdSet set = first.getDocIdSet();
+		for (int i = 1; i < lists.size() && !set.isEmpty(); i++)
+			set = set.and(lists.get(i).getDocIdSet());
+		return processConjunction(first, set.cursor());
+	}
 
-		return result;
+	/**
+	 * Indique si les docIds de toutes les listes spécifiées sont stockés sous
+	 * forme d'ensembles compressés.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à tester.
+	 * @return {@code true} si toutes les listes sont compressées.
+	 */
+	private static boolean areCompressed(List<AbstractPostingCursor> lists) {
+		for (AbstractPostingCursor list : lists)
+			if (list.getDocIdSet() == null)
+				return false;
+		return true;
 	}
 
-	private List<Posting> processDisjunctions(List<List<Posting>> postings) {
+	/**
+	 * Indique si toutes les listes spécifiées sont stockées dans le tas sous
+	 * forme de tableaux.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à tester.
+	 * @return {@code true} si toutes les listes sont des tableaux.
+	 */
+	private static boolean areArrays(List<AbstractPostingCursor> lists) {
+		for (AbstractPostingCursor list : lists)
+			if (list.getPostingList() == null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Traite une disjonction de plusieurs listes, en un seul parcours de toutes
+	 * les listes (cf. {@link DocIdUnion}). Pour un document présent dans
+	 * plusieurs listes, la fréquence conservée est celle de la plus courte
+	 * d'entre elles.
+	 * 
+	 * @param postings
+	 *            Curseurs sur les listes de postings à réunir.
+	 * @return Union de toutes les listes de postings.
+	 */
+	private PostingList processDisjunctions(List<AbstractPostingCursor> postings) {
 		// on ordonne la liste de listes de postings
 		Collections.sort(postings, COMPARATOR);
-		// on traite les deux premières
-		List<Posting> list1 = postings.get(0);
-		postings.remove(0);
-		List<Posting> list2 = postings.get(0);
-		postings.remove(0);
-		List<Posting> result = processDisjunction(list1, list2);
-		// on traite chaque liste restante une par une
-		for (List<Posting> list : postings)
-			result = processDisjunction(result, list);
+		// les listes denses sont combinées mot par mot
+		if (areCompressed(postings))
+			return processDenseDisjunctions(postings);
+		// les autres sont fusionnées simultanément
+		AbstractPostingCursor[] lists = postings.toArray(new AbstractPostingCursor[postings.size()]);
+		return DocIdUnion.union(lists, index.getDocumentNumber());
+	}
+
+	/**
+	 * Traite une disjonction de listes dont les docIds sont tous stockés sous
+	 * forme d'ensembles compressés : les ensembles sont réunis mot par mot,
+	 * puis chaque document du résultat reçoit la fréquence de la première
+	 * liste qui le contient, comme avec {@link DocIdUnion}.
+	 * 
+	 * @param postings
+	 *            Curseurs sur les listes compressées, triés par longueur.
+	 * @return Union de toutes les listes de postings.
+	 */
+	private PostingList processDenseDisjunctions(List<AbstractPostingCursor> postings) {
+		int n = postings.size();
+		AbstractPostingCursor[] lists = postings.toArray(new AbstractPostingCursor[n]);
+		RoaringDocIdSet set = lists[0].getDocIdSet();
+		for (int i = 1; i < n; i++)
+			set = set.or(lists[i].getDocIdSet());
 
+		// on parcourt toutes les listes en parallèle avec le résultat
+		PostingList result = new PostingList(set.getCardinality());
+		boolean[] more = new boolean[n];
+		for (int i = 0; i < n; i++)
+			more[i] = lists[i].next();
+		AbstractPostingCursor all = set.cursor();
+		while (all.next()) {
+			int docId = all.getDocId();
+			boolean found = false;
+			for (int i = 0; i < n; i++) {
+				if (more[i] && lists[i].getDocId() == docId) {
+					if (!found) {
+						result.add(docId, lists[i].getFrequency());
+						found = true;
+					}
+					more[i] = lists[i].next();
+				}
+			}
+		}
 		return result;
 	}
 
@@ -281,6 +733,11 @@ public class AndOrQueryEngine {
 	// //////////////////////////////////////////////////
 	/** Index de référence */
 	private AbstractIndex index;
+	/**
+	 * Nombre de postings lus par ce moteur depuis sa création, en comptant la
+	 * longueur complète de chaque liste lue
+	 */
+	private long postingReads;
 
 	/**
 	 * Renvoie l'index associé à ce moteur.
@@ -291,6 +748,146 @@ public class AndOrQueryEngine {
 		return index;
 	}
 
+	/**
+	 * Renvoie le nombre de postings lus par ce moteur depuis sa création. On
+	 * compte la longueur complète de chaque liste de l'index ouverte, même si
+	 * l'intersection n'en parcourt qu'une partie, ainsi que celle de chaque
+	 * résultat intermédiaire construit puis relu par un autre opérateur : ce
+	 * nombre mesure donc la quantité de données que les requêtes ont dû
+	 * combiner.
+	 * 
+	 * @return Nombre de postings lus.
+	 */
+	public long getPostingReads() {
+		return postingReads;
+	}
+
+	// //////////////////////////////////////////////////
+	// FACTORISATION
+	// //////////////////////////////////////////////////
+	/**
+	 * Indique si les termes communs à plusieurs conjonctions d'une requête
+	 * sont mis en facteur avant son évaluation
+	 */
+	private boolean factoringQueries = false;
+
+	/**
+	 * Indique si ce moteur met en facteur les termes communs à plusieurs
+	 * conjonctions d'une requête avant de l'évaluer ({@code true}) ou pas (
+	 * {@code false}).
+	 * 
+	 * @return Factoriser les requêtes ({@code true}) ou pas ({@code false}).
+	 */
+	public boolean isFactoringQueries() {
+		return factoringQueries;
+	}
+
+	/**
+	 * Permet d'indiquer si ce moteur doit mettre en facteur les termes communs
+	 * à plusieurs conjonctions d'une requête avant son évaluation (
+	 * {@code true}), de manière à ne lire leurs postings qu'une fois, ou pas (
+	 * {@code false}, valeur par défaut). Les documents renvoyés sont les
+	 * mêmes, mais leurs fréquences peuvent différer.
+	 * 
+	 * @param factoringQueries
+	 *            Factoriser les requêtes ({@code true}) ou pas ({@code false}).
+	 */
+	public void setFactoringQueries(boolean factoringQueries) {
+		this.factoringQueries = factoringQueries;
+	}
+
+	// //////////////////////////////////////////////////
+	// CACHE
+	// //////////////////////////////////////////////////
+	/** Type de moteur utilisé dans les clés du cache des résultats */
+	private static final String ENGINE_TYPE = "AND-OR";
+	/**
+	 * Type de moteur utilisé dans les clés du cache des résultats, lorsque les
+	 * requêtes sont factorisées (les fréquences obtenues diffèrent)
+	 */
+	private static final String FACTORED_ENGINE_TYPE = "AND-OR factored";
+	/** Type d'objet utilisé dans les clés du cache des plans */
+	private static final String PLAN_TYPE = "AND-OR plan";
+	/** Cache des résultats des requêtes (optionnel) */
+	private QueryResultCache resultCache;
+
+	/**
+	 * Renvoie le cache des résultats utilisé par ce moteur.
+	 * 
+	 * @return Cache des résultats, ou {@code null} s'il n'y en a pas.
+	 */
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Modifie le cache des résultats utilisé par ce moteur. Une requête dont
+	 * le résultat est dans le cache n'est pas réévaluée, et ses postings ne
+	 * sont donc pas comptés par {@link #getPostingReads()} : on renvoie alors
+	 * une copie de la liste conservée dans le cache.
+	 * 
+	 * @param resultCache
+	 *            Cache des résultats, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/** Cache des plans compilés des requêtes (optionnel) */
+	private QueryResultCache planCache;
+
+	/**
+	 * Renvoie le cache des plans compilés utilisé par ce moteur.
+	 * 
+	 * @return Cache des plans, ou {@code null} s'il n'y en a pas.
+	 */
+	public QueryResultCache getPlanCache() {
+		return planCache;
+	}
+
+	/**
+	 * Modifie le cache des plans compilés utilisé par ce moteur. Le plan d'une
+	 * requête est identifié par la chaîne de caractères de la requête
+	 * elle-même : une requête déjà rencontrée n'est ni décomposée, ni
+	 * normalisée, et ses termes ne sont pas cherchés dans l'index. Les plans
+	 * peuvent être stockés dans le même cache que les résultats.
+	 * 
+	 * @param planCache
+	 *            Cache des plans, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setPlanCache(QueryResultCache planCache) {
+		this.planCache = planCache;
+	}
+
+	/** Cache des intersections de paires de termes (optionnel) */
+	private IntersectionCache intersectionCache;
+
+	/**
+	 * Renvoie le cache des intersections de paires de termes utilisé par ce
+	 * moteur.
+	 * 
+	 * @return Cache des intersections, ou {@code null} s'il n'y en a pas.
+	 */
+	public IntersectionCache getIntersectionCache() {
+		return intersectionCache;
+	}
+
+	/**
+	 * Modifie le cache des intersections de paires de termes utilisé par ce
+	 * moteur : dans chaque conjonction d'une requête non-factorisée,
+	 * l'intersection des deux listes les plus courtes y est cherchée avant
+	 * d'être calculée. Les listes de l'index sont toujours ouvertes, et donc
+	 * comptées par {@link #getPostingReads()}, puisque leurs longueurs
+	 * désignent la paire concernée.
+	 * 
+	 * @param intersectionCache
+	 *            Cache des intersections, ou {@code null} pour ne pas en
+	 *            utiliser.
+	 */
+	public void setIntersectionCache(IntersectionCache intersectionCache) {
+		this.intersectionCache = intersectionCache;
+	}
+
 	// //////////////////////////////////////////////////
 	// TEST
 	// //////////////////////////////////////////////////
@@ -1,15 +1,17 @@
 package query;
 
 import indexation.AbstractIndex;
+import indexation.content.AbstractPostingCursor;
+import indexation.content.ConjunctionPostingCursor;
+import indexation.content.DocIdIntersector;
 import indexation.content.IndexEntry;
-import indexation.content.Posting;
+import indexation.content.PostingList;
+import indexation.content.RoaringDocIdSet;
 import indexation.processing.Normalizer;
 import indexation.processing.Tokenizer;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -40,21 +42,52 @@ public class AndQueryEngine {
 	 *            Requête à traiter.
 	 * @return Liste des documents concernés.
 	 */
-	public List<Posting> processQuery(String query) {
+	public PostingList processQuery(String query) {
 		System.out.println("Processing query \"" + query + "\"");
 		long start = System.currentTimeMillis();
 
-		// on décompose la requête et identifie les termes
-		List<List<Posting>> postings = new LinkedList<List<Posting>>();
-		splitQuery(query, postings);
-		// System.out.println(postings);
-
-		// on traite les opérateurs ET
-		List<Posting> result;
-		if (postings.size() == 1) {
-			result = postings.get(0);
-		} else {
-			result = processConjunctions(postings);
+		// on tokénise et normalise la requête
+		List<String> terms = new LinkedList<String>();
+		splitTerms(query, terms);
+
+		// on consulte le cache des résultats
+		String key = null;
+		long generation = index.getGeneration();
+		PostingList result = null;
+		if (resultCache != null) {
+			key = QueryResultCache.createKey(ENGINE_TYPE, 0, QueryResultCache.joinTerms(terms));
+			// le cache conserve sa propre copie, que l'appelant peut modifier
+			PostingList cached = (PostingList) resultCache.get(key, generation);
+			if (cached != null)
+				result = PostingList.copyOf(cached.cursor());
+		}
+
+		if (result == null) {
+			// on identifie les termes
+			List<AbstractPostingCursor> postings = new LinkedList<AbstractPostingCursor>();
+			splitQuery(terms, postings);
+			// System.out.println(postings);
+
+			// on réutilise si possible l'intersection des deux listes les plus
+			// courtes
+			if (intersectionCache != null && postings.size() > 1) {
+				List<String> pairTerms = new LinkedList<String>();
+				for (String term : terms)
+					if (term != null)
+						pairTerms.add(term);
+				intersectionCache.processShortestPair(pairTerms, postings, generation);
+			}
+
+			// on traite les opérateurs ET
+			if (postings.isEmpty()) {
+				result = new PostingList();
+			} else if (postings.size() == 1) {
+				result = PostingList.copyOf(postings.get(0));
+			} else {
+				result = processConjunctions(postings);
+			}
+			if (resultCache != null)
+				resultCache.put(key, PostingList.copyOf(result.cursor()), generation);
 		}
 
 		long end = System.currentTimeMillis();
@@ -67,36 +100,50 @@ public class AndQueryEngine {
 	 * Comparateur traitant deux listes de postings. On utilise simplement leurs
 	 * longueurs.
 	 */
-	private static final Comparator<List<Posting>> COMPARATOR = new Comparator<List<Posting>>() {
+	private static final Comparator<AbstractPostingCursor> COMPARATOR = new Comparator<AbstractPostingCursor>() {
 		@Override
-		public int compare(List<Posting> l1, List<Posting> l2) {
-			int result = l1.size() - l2.size();
+		public int compare(AbstractPostingCursor l1, AbstractPostingCursor l2) {
+			int result = l1.getSize() - l2.getSize();
 			return result;
 		}
 	};
 
 	/**
 	 * Tokénise et normalise la requête, de manière à obtenir une liste de
-	 * termes. Ces termes sont ensuite traités pour récupérer les entrées
-	 * correspondantes dans l'index, et surtout leurs listes de postings.
+	 * termes.
 	 * 
 	 * @param query
 	 *            Requête à traiter.
 	 * @param result
-	 *            Liste résultat à compléter, qui doit contenir à la fin du
-	 *            traitement les postings de l'index correspondant aux termes
-	 *            obtenus après nettoyage de la requête.
+	 *            Liste résultat à compléter avec les termes obtenus après
+	 *            nettoyage de la requête, {@code null} pour les mots vides.
 	 */
-	private void splitQuery(String query, List<List<Posting>> result) {
+	private void splitTerms(String query, List<String> result) {
 		// on tokénize la requête
 		Tokenizer tokenizer = index.getTokenizer();
 		List<String> types = tokenizer.tokenizeString(query);
 		// on normalise chaque type
 		Normalizer normalizer = index.getNormalizer();
+		for (String type : types)
+			result.add(normalizer.normalizeType(type));
+	}
+
+	/**
+	 * Traite les termes de la requête pour récupérer les entrées
+	 * correspondantes dans l'index, et surtout leurs listes de postings.
+	 * 
+	 * @param terms
+	 *            Termes obtenus par {@link #splitTerms(String, List)}.
+	 * @param result
+	 *            Liste résultat à compléter, qui doit contenir à la fin du
+	 *            traitement des curseurs sur les postings de l'index
+	 *            correspondant aux termes obtenus après nettoyage de la
+	 *            requête.
+	 */
+	private void splitQuery(List<String> terms, List<AbstractPostingCursor> result) {
 		System.out.print(" Normalizing:");
 
-		for (String type : types) {
-			String term = normalizer.normalizeType(type);
+		for (String term : terms) {
 			int postNbr = 0;
 
 			if (term != null) {
@@ -104,12 +151,12 @@ public class AndQueryEngine {
 
 				// si pas dans l'index, on utilise une liste vide
 				if (entry == null)
-					result.add(new ArrayList<Posting>());
-				// sinon, on prend sa liste de postings
+					result.add(new PostingList().cursor());
+				// sinon, on parcourt sa liste de postings
 				else {
-					List<Posting> postings = entry.getPostings();
+					AbstractPostingCursor postings = entry.getPostingCursor();
 					result.add(postings);
-					postNbr = postings.size();
+					postNbr = postings.getSize();
 				}
 			}
 			System.out.print(" \"" + term + "\"" + "(" + postNbr + ")");
@@ -122,48 +169,42 @@ public class AndQueryEngine {
 	// //////////////////////////////////////////////////
 	/**
 	 * Combine les deux listes de postings passées en paramètre en utilisant
-	 * l'opérateur ET.
+	 * l'opérateur ET. Les fréquences du résultat sont celles de la première
+	 * liste.
 	 * 
 	 * @param list1
-	 *            Première liste de postings.
+	 *            Curseur sur la première liste de postings.
 	 * @param list2
-	 *            Seconde liste de postings.
+	 *            Curseur sur la seconde liste de postings.
 	 * @return Le résultat de ET sur ces deux listes.
 	 */
-	private List<Posting> processConjunction(List<Posting> list1,
-			List<Posting> list2) {
-		List<Posting> result = new LinkedList<Posting>();
-		Iterator<Posting> it1 = list1.iterator();
-		Iterator<Posting> it2 = list2.iterator();
-
-		// on fusionne le début des listes
-		Posting posting1 = null;
-		Posting posting2 = null;
-
-		while ((it1.hasNext() || posting1 != null)
-				&& (it2.hasNext() || posting2 != null)) {
-			if (posting1 == null)
-				posting1 = it1.next();
-			if (posting2 == null)
-				posting2 = it2.next();
-			int comp = posting1.compareTo(posting2);
+	private PostingList processConjunction(AbstractPostingCursor list1,
+			AbstractPostingCursor list2) {
+		PostingList result = new PostingList(Math.min(list1.getSize(),
+				list2.getSize()));
 
+		// on fusionne les listes
+		boolean more1 = list1.next();
+		boolean more2 = list2.next();
+		while (more1 && more2) {
+			int docId1 = list1.getDocId();
+			int docId2 = list2.getDocId();
 			// posting1 < posting2
-			if (comp < 0)
-				posting1 = null;
+			if (docId1 < docId2)
+				more1 = list1.next();
+			// posting1 > posting2
+			else if (docId1 > docId2)
+				more2 = list2.next();
 			// posting1 == posting2
-			else if (comp == 0) {
-				result.add(posting1);
-				posting1 = null;
-				posting2 = null;
+			else {
+				result.add(docId1, list1.getFrequency());
+				more1 = list1.next();
+				more2 = list2.next();
 			}
-			// posting1 > posting2
-			else if (comp > 0)
-				posting2 = null;
 		}
 
-		System.out.println(" Processing conjunction: (" + list1.size()
-				+ ") AND (" + list2.size() + ") >> (" + result.size() + ")");
+		System.out.println(" Processing conjunction: (" + list1.getSize()
+				+ ") AND (" + list2.getSize() + ") >> (" + result.size() + ")");
 
 		return result;
 	}
@@ -172,36 +213,118 @@ public class AndQueryEngine {
 	 * Traite une conjonction de plus de deux termes.
 	 * 
 	 * @param lists
-	 *            Liste de listes de postings de l'index, correspondant aux
-	 *            termes à traiter.
+	 *            Curseurs sur les listes de postings de l'index, correspondant
+	 *            aux termes à traiter.
 	 * @return Intersection de toutes les listes de postings.
 	 */
-	private List<Posting> processConjunctions(List<List<Posting>> lists) {
+	private PostingList processConjunctions(List<AbstractPostingCursor> lists) {
 		// on ordonne la liste de postings
 		Collections.sort(lists, COMPARATOR);
 		System.out.print(" Ordering posting list:");
-		for (List<Posting> list : lists)
-			System.out.print(" (" + list.size() + ")");
+		for (AbstractPostingCursor list : lists)
+			System.out.print(" (" + list.getSize() + ")");
 		System.out.println();
 
-		// on traite les deux premières
-		List<Posting> list1 = lists.get(0);
-		lists.remove(0);
-		List<Posting> list2 = lists.get(0);
-		lists.remove(0);
-		List<Posting> result = processConjunction(list1, list2);
+		// les listes denses sont combinées mot par mot
+		if (areCompressed(lists))
+			return processDenseConjunctions(lists);
 
-		// on traite chaque liste restante une par une
-		Iterator<List<Posting>> it = lists.iterator();
+		// les listes stockées dans le tas sont toutes combinées simultanément
+		if (areArrays(lists))
+			return processArrayConjunctions(lists);
+		// les autres sont parcourues ensemble, sans être recopiées
+		return processLazyConjunctions(lists);
+	}
 
-		while (it.hasNext() && !result.isEmpty()) {
-			List<Posting> list = it.next();
-			result = processConjunction(result, list);
-		}
+	/**
+	 * Traite une conjonction de listes stockées sous forme de tableaux :
+	 * toutes les listes sont combinées simultanément, de manière adaptative
+	 * (cf. {@link DocIdIntersector}). Les fréquences du résultat sont celles de
+	 * la liste la plus courte.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à combiner, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processArrayConjunctions(List<AbstractPostingCursor> lists) {
+		PostingList[] postingLists = new PostingList[lists.size()];
+		int i = 0;
+		for (AbstractPostingCursor list : lists)
+			postingLists[i++] = list.getPostingList();
+		PostingList result = DocIdIntersector.intersect(postingLists);
+		System.out.println(" Processing conjunction: " + lists.size()
+				+ " lists >> (" + result.size() + ")");
+		return result;
+	}
 
+	/**
+	 * Traite une conjonction de listes dont certaines ne sont pas stockées
+	 * dans le tas (listes compressées ou hors du tas) : toutes les listes
+	 * sont parcourues ensemble par un {@link ConjunctionPostingCursor}, sans
+	 * être recopiées. Les fréquences du résultat sont celles de la liste la
+	 * plus courte.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à combiner, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processLazyConjunctions(List<AbstractPostingCursor> lists) {
+		PostingList result = PostingList.copyOf(new ConjunctionPostingCursor(lists));
+		System.out.println(" Processing conjunction: " + lists.size()
+				+ " lists >> (" + result.size() + ")");
 		return result;
 	}
 
+	/**
+	 * Traite une conjonction de listes dont les docIds sont tous stockés sous
+	 * forme d'ensembles compressés : les ensembles sont combinés mot par mot,
+	 * puis les fréquences de la liste la plus courte sont associées au
+	 * résultat.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes compressées, triés par longueur.
+	 * @return Intersection de toutes les listes de postings.
+	 */
+	private PostingList processDenseConjunctions(List<AbstractPostingCursor> lists) {
+		AbstractPostingCursor first = lists.get(0);
+		RoaringDocIdSet set = first.getDocIdSet();
+		for (int i = 1; i < lists.size() && !set.isEmpty(); i++)
+			set = set.and(lists.get(i).getDocIdSet());
+		System.out.println(" Processing bitmap conjunction: " + lists.size()
+				+ " lists >> (" + set.getCardinality() + ")");
+		return processConjunction(first, set.cursor());
+	}
+
+	/**
+	 * Indique si les docIds de toutes les listes spécifiées sont stockés sous
+	 * forme d'ensembles compressés.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à tester.
+	 * @return {@code true} si toutes les listes sont compressées.
+	 */
+	private static boolean areCompressed(List<AbstractPostingCursor> lists) {
+		for (AbstractPostingCursor list : lists)
+			if (list.getDocIdSet() == null)
+				return false;
+		return true;
+	}
+
+	/**
+	 * Indique si toutes les listes spécifiées sont stockées dans le tas sous
+	 * forme de tableaux.
+	 * 
+	 * @param lists
+	 *            Curseurs sur les listes à tester.
+	 * @return {@code true} si toutes les listes sont des tableaux.
+	 */
+	private static boolean areArrays(List<AbstractPostingCursor> lists) {
+		for (AbstractPostingCursor list : lists)
+			if (list.getPostingList() == null)
+				return false;
+		return true;
+	}
+
 	// //////////////////////////////////////////////////
 	// INDEX
 	// //////////////////////////////////////////////////
@@ -217,6 +340,62 @@ public class AndQueryEngine {
 		return index;
 	}
 
+	// //////////////////////////////////////////////////
+	// CACHE
+	// //////////////////////////////////////////////////
+	/** Type de moteur utilisé dans les clés du cache des résultats */
+	private static final String ENGINE_TYPE = "AND";
+	/** Cache des résultats des requêtes (optionnel) */
+	private QueryResultCache resultCache;
+
+	/**
+	 * Renvoie le cache des résultats utilisé par ce moteur.
+	 * 
+	 * @return Cache des résultats, ou {@code null} s'il n'y en a pas.
+	 */
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Modifie le cache des résultats utilisé par ce moteur. Une requête dont
+	 * le résultat est dans le cache n'est pas réévaluée : on renvoie alors
+	 * une copie de la liste conservée dans le cache, qui reste intacte même
+	 * si l'appelant modifie le résultat.
+	 * 
+	 * @param resultCache
+	 *            Cache des résultats, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	/** Cache des intersections de paires de termes (optionnel) */
+	private IntersectionCache intersectionCache;
+
+	/**
+	 * Renvoie le cache des intersections de paires de termes utilisé par ce
+	 * moteur.
+	 * 
+	 * @return Cache des intersections, ou {@code null} s'il n'y en a pas.
+	 */
+	public IntersectionCache getIntersectionCache() {
+		return intersectionCache;
+	}
+
+	/**
+	 * Modifie le cache des intersections de paires de termes utilisé par ce
+	 * moteur : dans chaque conjonction, l'intersection des deux listes les
+	 * plus courtes y est cherchée avant d'être calculée.
+	 * 
+	 * @param intersectionCache
+	 *            Cache des intersections, ou {@code null} pour ne pas en
+	 *            utiliser.
+	 */
+	public void setIntersectionCache(IntersectionCache intersectionCache) {
+		this.intersectionCache = intersectionCache;
+	}
+
 	// //////////////////////////////////////////////////
 	// TEST
 	// //////////////////////////////////////////////////
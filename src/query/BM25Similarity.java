@@ -0,0 +1,171 @@
+package query;
+
+import indexation.content.DocumentStatistics;
+import indexation.content.PostingList;
+
+/**
+ * Similarité Okapi BM25. La contribution d'un terme au score d'un document
+ * est :
+ * 
+ * <pre>
+ * idf * tf * (k1 + 1) / (tf + k1 * (1 - b + b * longueur / longueurMoyenne))
+ * </pre>
+ * 
+ * avec {@code idf = ln(1 + (N - df + 0.5) / (df + 0.5))}, qui reste positive
+ * même pour les termes très fréquents. Le score d'un document est la somme
+ * des contributions, sans normalisation. <br/>
+ * Le facteur de normalisation de la longueur de chaque document, ainsi que le
+ * produit {@code idf * (k1 + 1)} pour chaque fréquence de document, sont
+ * précalculés : le calcul d'une contribution se réduit alors à une addition,
+ * une multiplication et une division, sans logarithme.
+ */
+public class BM25Similarity implements Similarity {
+	/**
+	 * Crée une similarité BM25 avec les paramètres usuels ({@code k1=1.2},
+	 * {@code b=0.75}).
+	 */
+	public BM25Similarity() {
+		this(DEFAULT_K1, DEFAULT_B);
+	}
+
+	/**
+	 * Crée une similarité BM25 avec les paramètres spécifiés.
+	 * 
+	 * @param k1
+	 *            Saturation de la fréquence des termes (positif).
+	 * @param b
+	 *            Importance de la normalisation de la longueur, entre 0 et 1.
+	 */
+	public BM25Similarity(float k1, float b) {
+		if (k1 < 0)
+			throw new IllegalArgumentException("k1 must be positive or zero: "
+					+ k1);
+		if (b < 0 || b > 1)
+			throw new IllegalArgumentException("b must be between 0 and 1: "
+					+ b);
+		this.k1 = k1;
+		this.b = b;
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Valeur par défaut de k1 */
+	public static final float DEFAULT_K1 = 1.2f;
+	/** Valeur par défaut de b */
+	public static final float DEFAULT_B = 0.75f;
+
+	/** Saturation de la fréquence des termes */
+	private final float k1;
+	/** Importance de la normalisation de la longueur */
+	private final float b;
+	/** Nombre de documents du corpus */
+	private int docNbr;
+	/** Produit idf * (k1 + 1) pour chaque fréquence de document */
+	private float[] termWeights;
+	/** Facteur k1 * (1 - b + b * longueur / longueurMoyenne) de chaque document */
+	private float[] lengthFactors;
+
+	// //////////////////////////////////////////////////
+	// SIMILARITÉ
+	// //////////////////////////////////////////////////
+	@Override
+	public void prepare(DocumentStatistics statistics) {
+		docNbr = statistics.getDocumentNumber();
+		termWeights = new float[docNbr + 1];
+		for (int df = 1; df <= docNbr; df++)
+			termWeights[df] = processTermWeight(df);
+		lengthFactors = new float[docNbr];
+		float averageLength = statistics.getAverageLength();
+		for (int docId = 0; docId < docNbr; docId++) {
+			float ratio = 0;
+			if (averageLength > 0)
+				ratio = statistics.getLength(docId) / averageLength;
+			lengthFactors[docId] = k1 * (1 - b + b * ratio);
+		}
+	}
+
+	/**
+	 * Calcule le poids d'un terme, c'est-à-dire le produit de son idf par
+	 * {@code k1 + 1}.
+	 * 
+	 * @param df
+	 *            Nombre de documents contenant le terme.
+	 * @return Poids du terme.
+	 */
+	private float processTermWeight(int df) {
+		double idf = Math.log(1 + (docNbr - df + 0.5) / (df + 0.5));
+		return (float) idf * (k1 + 1);
+	}
+
+	@Override
+	public float getTermWeight(int df) {
+		if (df < termWeights.length)
+			return termWeights[df];
+		return processTermWeight(df);
+	}
+
+	@Override
+	public float score(float termWeight, int tf, int docId) {
+		return termWeight * tf / (tf + lengthFactors[docId]);
+	}
+
+	@Override
+	public float getQueryNorm(float[] termWeights) {
+		return 1;
+	}
+
+	@Override
+	public float normalize(float score, int docId, float queryNorm) {
+		return score;
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "BM25 (k1=" + k1 + ", b=" + b + ")";
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 * 
+	 * @param args
+	 *            Pas utilisé.
+	 * 
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		DocumentStatistics statistics = new DocumentStatistics(4);
+		PostingList soleil = new PostingList();
+		soleil.add(0, 3);
+		soleil.add(2, 1);
+		statistics.addPostings(soleil.size(), soleil.cursor());
+		PostingList panneau = new PostingList();
+		for (int i = 0; i < 4; i++)
+			panneau.add(i, 1 + i);
+		statistics.addPostings(panneau.size(), panneau.cursor());
+		statistics.complete();
+		Similarity similarity = new BM25Similarity();
+
+		// test de prepare et getTermWeight
+		similarity.prepare(statistics);
+		System.out.println("getTermWeight: soleil="
+				+ similarity.getTermWeight(soleil.size()) + ", panneau="
+				+ similarity.getTermWeight(panneau.size()));
+
+		// test de score : comparaison avec la formule complète
+		float weight = similarity.getTermWeight(soleil.size());
+		float idf = (float) Math.log(1 + (4 - 2 + 0.5) / (2 + 0.5));
+		float ratio = statistics.getLength(0) / statistics.getAverageLength();
+		float expected = idf * 3 * (DEFAULT_K1 + 1)
+				/ (3 + DEFAULT_K1 * (1 - DEFAULT_B + DEFAULT_B * ratio));
+		System.out.println("score: " + similarity.score(weight, 3, 0)
+				+ ", expected=" + expected);
+	}
+}
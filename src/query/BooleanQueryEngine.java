@@ -0,0 +1,573 @@
+package query;
+
+import indexation.AbstractIndex;
+import indexation.content.AbstractPostingCursor;
+import indexation.content.ConjunctionPostingCursor;
+import indexation.content.DisjunctionPostingCursor;
+import indexation.content.ExclusionPostingCursor;
+import indexation.content.PostingList;
+import indexation.content.RangePostingCursor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import query.QueryNode.Operator;
+
+/**
+ * Objet capable de traiter une requête booléenne complète, comprenant des
+ * opérateurs ET, OU et NON, des parenthèses et des phrases (cf.
+ * {@link QueryParser}). La requête est d'abord analysée, puis planifiée (cf.
+ * {@link QueryPlanner}), et enfin exécutée document par document : chaque nœud
+ * du plan devient un opérateur, lui-même curseur sur les curseurs de ses fils,
+ * et seul le résultat de la racine est construit.
+ * <ul>
+ * <li>une conjonction parcourt ses opérandes positifs simultanément, en
+ * faisant avancer chacun directement jusqu'au document candidat (cf.
+ * {@link ConjunctionPostingCursor}), puis élimine les documents contenus dans
+ * ses opérandes négatifs, qui avancent de la même façon (cf.
+ * {@link ExclusionPostingCursor}) ;</li>
+ * <li>une disjonction fusionne ses opérandes à l'aide d'un tas (cf.
+ * {@link DisjunctionPostingCursor}) ;</li>
+ * <li>un opérateur exigeant un nombre minimal d'opérandes fusionne aussi ses
+ * opérandes, en faisant avancer directement jusqu'au prochain candidat ceux
+ * qui ne peuvent plus atteindre ce nombre ;</li>
+ * <li>une négation isolée exclut son opérande de l'ensemble des documents (cf.
+ * {@link RangePostingCursor}).</li>
+ * </ul>
+ * Les fréquences du résultat sont celles de l'opérande positif le moins
+ * coûteux d'une conjonction, et celles de l'opérande le moins coûteux
+ * contenant le document pour une disjonction (cf.
+ * {@link AbstractPostingCursor#cost()}). Les documents obtenus par négation
+ * ont une fréquence nulle. <br/>
+ * L'index ne stockant pas la position des termes, une phrase est traitée
+ * comme la conjonction de ses termes. <br/>
+ * Le nombre de postings lus par un nœud est le nombre de positions atteintes
+ * par les curseurs des listes de l'index qu'il parcourt, directement ou par
+ * l'intermédiaire de ses fils : la méthode {@link #explain(String)} permet de
+ * le comparer à l'estimation du planificateur.
+ */
+public class BooleanQueryEngine {
+	/**
+	 * Initialise ce moteur de recherche avec l'index passé en paramètre, qui
+	 * sera considéré comme index de référence lors de l'évaluation des requêtes
+	 * reçues.
+	 *
+	 * @param index
+	 *            Index de référence.
+	 */
+	public BooleanQueryEngine(AbstractIndex index) {
+		this.index = index;
+		parser = new QueryParser(index.getTokenizer(), index.getNormalizer());
+		planner = new QueryPlanner(index);
+	}
+
+	// //////////////////////////////////////////////////
+	// TRAITEMENT GENERAL
+	// //////////////////////////////////////////////////
+	/**
+	 * Traite la requête passée en paramètre et renvoie la liste des documents
+	 * concernés.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @return Liste des documents concernés.
+	 *
+	 * @throws IllegalArgumentException
+	 *             La requête n'est pas conforme à la grammaire.
+	 */
+	public PostingList processQuery(String query) {
+		if (verbose)
+			System.out.println("Processing query \"" + query + "\"");
+		long start = System.currentTimeMillis();
+
+		QueryNode parsed = parser.parse(query);
+
+		// on consulte le cache des résultats, à partir de la requête analysée
+		String key = null;
+		long generation = index.getGeneration();
+		PostingList result = null;
+		if (resultCache != null) {
+			key = QueryResultCache.createKey(ENGINE_TYPE, 0, parsed.toString());
+			// le cache conserve sa propre copie, que l'appelant peut modifier
+			PostingList cached = (PostingList) resultCache.get(key, generation);
+			if (cached != null)
+				result = PostingList.copyOf(cached.cursor());
+		}
+
+		if (result == null) {
+			result = processPlan(planner.plan(parsed));
+			if (resultCache != null)
+				resultCache.put(key, PostingList.copyOf(result.cursor()), generation);
+		}
+
+		long end = System.currentTimeMillis();
+		if (verbose)
+			System.out.println("Query processed, duration=" + (end - start) + " ms");
+		return result;
+	}
+
+	/**
+	 * Analyse et planifie la requête passée en paramètre, sans l'exécuter.
+	 *
+	 * @param query
+	 *            Requête à planifier.
+	 * @return Racine du plan d'exécution.
+	 *
+	 * @throws IllegalArgumentException
+	 *             La requête n'est pas conforme à la grammaire.
+	 */
+	public QueryNode planQuery(String query) {
+		return planner.plan(parser.parse(query));
+	}
+
+	/**
+	 * Exécute un plan produit par {@link #planQuery(String)}.
+	 *
+	 * @param plan
+	 *            Racine du plan d'exécution.
+	 * @return Liste des documents concernés.
+	 */
+	public PostingList processPlan(QueryNode plan) {
+		return PostingList.copyOf(open(plan, null));
+	}
+
+	/**
+	 * Traite la requête passée en paramètre, et décrit le plan choisi : pour
+	 * chaque nœud, les nombres de documents produits et de postings lus
+	 * estimés par le planificateur sont comparés à ceux observés lors de
+	 * l'exécution. Un opérande n'étant parcouru que jusqu'aux documents
+	 * candidats de son parent, le nombre de documents observé est celui des
+	 * positions qu'il a atteintes. Les listes des termes étant lues par leur
+	 * parent, seule leur fréquence de document est indiquée.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @return Description du plan d'exécution.
+	 *
+	 * @throws IllegalArgumentException
+	 *             La requête n'est pas conforme à la grammaire.
+	 */
+	public String explain(String query) {
+		QueryNode parsed = parser.parse(query);
+		QueryNode plan = planner.plan(parsed);
+		Execution execution = new Execution(plan.getNodeNumber());
+		long start = System.nanoTime();
+		PostingList result = PostingList.copyOf(open(plan, execution));
+		long end = System.nanoTime();
+		execution.countReads(plan);
+
+		StringBuilder builder = new StringBuilder();
+		builder.append("Query: ").append(query).append("\n");
+		builder.append("Parsed: ").append(parsed).append("\n");
+		builder.append("Plan:\n");
+		explain(plan, execution, "  ", false, builder);
+		builder.append("Result: ").append(result.size()).append(" documents, duration=")
+				.append(String.format("%.3f", (end - start) / 1000000.0)).append(" ms\n");
+		return builder.toString();
+	}
+
+	/**
+	 * Décrit un nœud du plan et ses descendants.
+	 *
+	 * @param node
+	 *            Nœud à décrire.
+	 * @param execution
+	 *            Statistiques d'exécution du plan.
+	 * @param indent
+	 *            Indentation du nœud.
+	 * @param inline
+	 *            Indique si le nœud est parcouru directement par son parent,
+	 *            qui compte alors ses lectures.
+	 * @param builder
+	 *            Texte à compléter.
+	 */
+	private void explain(QueryNode node, Execution execution, String indent, boolean inline,
+			StringBuilder builder) {
+		builder.append(indent);
+		Operator operator = node.getOperator();
+		if (operator == Operator.TERM)
+			builder.append(node.getTerm()).append(" (df=").append(node.getEntry().getFrequency()).append(")");
+		else if (operator == Operator.ATLEAST)
+			builder.append(operator).append(" ").append(node.getMinimumMatch());
+		else
+			builder.append(operator);
+		int id = node.getId();
+		if (!inline) {
+			builder.append(": estimated ").append(node.getEstimatedSize()).append(" docs / ")
+					.append(node.getEstimatedReads()).append(" reads, actual ");
+			if (execution.executed[id])
+				builder.append(execution.sizes[id]).append(" docs / ").append(execution.reads[id])
+						.append(" reads");
+			else
+				builder.append("skipped");
+		}
+		builder.append("\n");
+		for (QueryNode child : node.getChildren()) {
+			boolean term = child.getOperator() == Operator.TERM;
+			boolean negation = operator == Operator.AND && child.getOperator() == Operator.NOT;
+			explain(child, execution, indent + "  ", term || negation, builder);
+		}
+	}
+
+	// //////////////////////////////////////////////////
+	// EXÉCUTION
+	// //////////////////////////////////////////////////
+	/**
+	 * Statistiques de l'exécution d'un plan, indexées par numéro de nœud.
+	 */
+	private static class Execution {
+		/**
+		 * Crée des statistiques vides.
+		 *
+		 * @param nodeNumber
+		 *            Nombre de nœuds du plan.
+		 */
+		public Execution(int nodeNumber) {
+			sizes = new int[nodeNumber];
+			reads = new long[nodeNumber];
+			executed = new boolean[nodeNumber];
+		}
+
+		/** Nombre de positions atteintes par le curseur de chaque nœud */
+		private final int[] sizes;
+		/** Nombre de postings lus par chaque nœud et ses descendants */
+		private final long[] reads;
+		/** Indique si le curseur de chaque nœud a été déplacé */
+		private final boolean[] executed;
+
+		/**
+		 * Calcule le nombre de postings lus par un nœud et ses descendants,
+		 * c'est-à-dire le nombre de positions atteintes dans les listes des
+		 * termes de ce sous-arbre.
+		 *
+		 * @param node
+		 *            Nœud exécuté.
+		 * @return Nombre de postings lus.
+		 */
+		public long countReads(QueryNode node) {
+			int id = node.getId();
+			if (node.getOperator() == Operator.TERM)
+				reads[id] = sizes[id];
+			else {
+				reads[id] = 0;
+				for (QueryNode child : node.getChildren())
+					reads[id] += countReads(child);
+			}
+			return reads[id];
+		}
+	}
+
+	/**
+	 * Curseur comptant les positions atteintes par un autre curseur, pour
+	 * renseigner les statistiques d'exécution de son nœud.
+	 */
+	private static class CountingPostingCursor extends AbstractPostingCursor {
+		/**
+		 * Crée un curseur comptant les positions atteintes par le curseur
+		 * spécifié.
+		 *
+		 * @param cursor
+		 *            Curseur à observer.
+		 * @param id
+		 *            Numéro du nœud correspondant.
+		 * @param execution
+		 *            Statistiques d'exécution à compléter.
+		 */
+		public CountingPostingCursor(AbstractPostingCursor cursor, int id, Execution execution) {
+			this.cursor = cursor;
+			this.id = id;
+			this.execution = execution;
+		}
+
+		/** Curseur observé */
+		private final AbstractPostingCursor cursor;
+		/** Numéro du nœud */
+		private final int id;
+		/** Statistiques d'exécution */
+		private final Execution execution;
+
+		@Override
+		public boolean next() {
+			return count(cursor.next());
+		}
+
+		@Override
+		public boolean advance(int target) {
+			return count(cursor.advance(target));
+		}
+
+		/**
+		 * Enregistre un déplacement du curseur observé.
+		 *
+		 * @param more
+		 *            Résultat du déplacement.
+		 * @return Ce même résultat.
+		 */
+		private boolean count(boolean more) {
+			execution.executed[id] = true;
+			if (more)
+				execution.sizes[id]++;
+			return more;
+		}
+
+		@Override
+		public int getDocId() {
+			return cursor.getDocId();
+		}
+
+		@Override
+		public int getFrequency() {
+			return cursor.getFrequency();
+		}
+
+		@Override
+		public int getSize() {
+			return cursor.getSize();
+		}
+
+		@Override
+		public long cost() {
+			return cursor.cost();
+		}
+	}
+
+	/**
+	 * Construit l'opérateur correspondant à un nœud du plan, sans le
+	 * parcourir.
+	 *
+	 * @param node
+	 *            Nœud à exécuter.
+	 * @param execution
+	 *            Statistiques d'exécution à compléter, ou {@code null} pour ne
+	 *            pas les relever.
+	 * @return Curseur sur les documents produits par ce nœud.
+	 */
+	private AbstractPostingCursor open(QueryNode node, Execution execution) {
+		AbstractPostingCursor result;
+		switch (node.getOperator()) {
+		case TERM:
+			result = node.getEntry().getPostingCursor();
+			break;
+		case AND:
+			result = openAnd(node, execution);
+			break;
+		case OR:
+			result = openOr(node, execution, 1);
+			break;
+		case ATLEAST:
+			result = openOr(node, execution, node.getMinimumMatch());
+			break;
+		case NOT:
+			result = new ExclusionPostingCursor(new RangePostingCursor(index.getDocumentNumber()),
+					open(node.getChildren().get(0), execution));
+			break;
+		case ALL:
+			result = new RangePostingCursor(index.getDocumentNumber());
+			break;
+		default:
+			result = new PostingList().cursor();
+		}
+		if (execution != null)
+			result = new CountingPostingCursor(result, node.getId(), execution);
+		return result;
+	}
+
+	/**
+	 * Construit l'opérateur correspondant à une conjonction, dont les
+	 * opérandes positifs précèdent les négations. Les négations sont
+	 * appliquées dans l'ordre du plan, aux seuls documents communs aux
+	 * opérandes positifs.
+	 *
+	 * @param node
+	 *            Conjonction à exécuter.
+	 * @param execution
+	 *            Statistiques d'exécution à compléter, ou {@code null}.
+	 * @return Curseur sur l'intersection des opérandes positifs, privée des
+	 *         opérandes négatifs.
+	 */
+	private AbstractPostingCursor openAnd(QueryNode node, Execution execution) {
+		List<AbstractPostingCursor> positives = new ArrayList<AbstractPostingCursor>();
+		List<QueryNode> negatives = new ArrayList<QueryNode>();
+		for (QueryNode child : node.getChildren()) {
+			if (child.getOperator() == Operator.NOT)
+				negatives.add(child.getChildren().get(0));
+			else
+				positives.add(open(child, execution));
+		}
+		AbstractPostingCursor result;
+		if (positives.size() == 1)
+			result = positives.get(0);
+		else
+			result = new ConjunctionPostingCursor(positives);
+		for (QueryNode negative : negatives)
+			result = new ExclusionPostingCursor(result, open(negative, execution));
+		return result;
+	}
+
+	/**
+	 * Construit l'opérateur correspondant à une disjonction, dont les
+	 * opérandes sont ordonnés par coût croissant.
+	 *
+	 * @param node
+	 *            Disjonction à exécuter.
+	 * @param execution
+	 *            Statistiques d'exécution à compléter, ou {@code null}.
+	 * @param minimumMatch
+	 *            Nombre minimal d'opérandes contenant chaque document.
+	 * @return Curseur sur les documents contenus dans assez d'opérandes.
+	 */
+	private AbstractPostingCursor openOr(QueryNode node, Execution execution, int minimumMatch) {
+		List<AbstractPostingCursor> lists = new ArrayList<AbstractPostingCursor>();
+		for (QueryNode child : node.getChildren())
+			lists.add(open(child, execution));
+		Collections.sort(lists, ConjunctionPostingCursor.COMPARATOR);
+		return new DisjunctionPostingCursor(lists, minimumMatch);
+	}
+
+	// //////////////////////////////////////////////////
+	// INDEX
+	// //////////////////////////////////////////////////
+	/** Index de référence */
+	private final AbstractIndex index;
+	/** Analyseur des requêtes */
+	private final QueryParser parser;
+	/** Planificateur des requêtes */
+	private final QueryPlanner planner;
+
+	/**
+	 * Renvoie l'index associé à ce moteur.
+	 *
+	 * @return Index associé à ce moteur.
+	 */
+	public AbstractIndex getIndex() {
+		return index;
+	}
+
+	// //////////////////////////////////////////////////
+	// CACHE
+	// //////////////////////////////////////////////////
+	/** Type de moteur utilisé dans les clés du cache des résultats */
+	private static final String ENGINE_TYPE = "BOOLEAN";
+	/** Cache des résultats des requêtes (optionnel) */
+	private QueryResultCache resultCache;
+
+	/**
+	 * Renvoie le cache des résultats utilisé par ce moteur.
+	 *
+	 * @return Cache des résultats, ou {@code null} s'il n'y en a pas.
+	 */
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Modifie le cache des résultats utilisé par {@link #processQuery(String)}.
+	 * Le résultat est identifié par l'arbre syntaxique de la requête, dont les
+	 * termes sont normalisés. Une requête dont le résultat est dans le cache
+	 * n'est ni planifiée, ni réévaluée : on renvoie alors une copie de
+	 * la liste conservée dans le cache.
+	 *
+	 * @param resultCache
+	 *            Cache des résultats, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	// //////////////////////////////////////////////////
+	// AFFICHAGE
+	// //////////////////////////////////////////////////
+	/** Indique si le traitement des requêtes est décrit sur la sortie standard */
+	private volatile boolean verbose = true;
+
+	/**
+	 * Indique si ce moteur décrit le traitement des requêtes sur la sortie
+	 * standard.
+	 *
+	 * @return {@code true} si le traitement est décrit.
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	/**
+	 * Indique si ce moteur doit décrire le traitement des requêtes sur la
+	 * sortie standard (c'est le cas par défaut). Un moteur partagé par
+	 * plusieurs threads ne devrait pas le faire : les descriptions seraient
+	 * mélangées, et les écritures sérialiseraient les traitements.
+	 *
+	 * @param verbose
+	 *            {@code true} pour décrire le traitement.
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : les requêtes sans opérateur
+	 * explicite sont comparées avec celles traitées par
+	 * {@link AndOrQueryEngine}, puis quelques plans sont décrits.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		AbstractIndex index = AbstractIndex.indexCorpus(AbstractIndex.TokenListType.ARRAY,
+				AbstractIndex.LexiconType.ARRAY);
+		BooleanQueryEngine engine = new BooleanQueryEngine(index);
+		AndOrQueryEngine reference = new AndOrQueryEngine(index);
+
+		// test de processQuery
+		String[] queries = { "solar energy", "solar, energy", "solar energy, power cell, sun" };
+		for (String query : queries) {
+			boolean identical = engine.processQuery(query).toString()
+					.equals(reference.processQuery(query).toString());
+			System.out.println("processQuery(" + query + "): identical=" + identical);
+		}
+
+		// test de l'opérateur ATLEAST : comparaison avec la disjonction de
+		// toutes les conjonctions de 3 termes parmi 5
+		String[] words = { "solar", "energy", "panels", "power", "sun" };
+		StringBuilder subsets = new StringBuilder();
+		for (int i = 0; i < words.length; i++)
+			for (int j = i + 1; j < words.length; j++)
+				for (int l = j + 1; l < words.length; l++)
+					subsets.append(subsets.length() > 0 ? ", " : "").append(words[i]).append(" ").append(words[j])
+							.append(" ").append(words[l]);
+		PostingList atLeast = engine.processQuery("(solar energy panels power sun)@3");
+		PostingList expected = reference.processQuery(subsets.toString());
+		boolean identical = Arrays.equals(Arrays.copyOf(atLeast.getDocIds(), atLeast.size()),
+				Arrays.copyOf(expected.getDocIds(), expected.size()));
+		System.out.println("processQuery((solar energy panels power sun)@3): identical=" + identical);
+
+		// test de explain
+		String[] plans = { "solar AND (energy OR power) NOT cell", "\"solar energy\" NOT NOT panel",
+				"NOT solar OR sun", "solar xyzxyz OR energy", "(solar energy panels power)@2" };
+		for (String query : plans)
+			System.out.println(engine.explain(query));
+
+		// test du cache des résultats : la casse et la ponctuation ne changent
+		// pas la requête analysée, et modifier un résultat ne modifie pas le
+		// cache
+		engine.setResultCache(new QueryResultCache(1024 * 1024));
+		PostingList first = engine.processQuery("solar AND (energy OR power)");
+		int size = first.size();
+		first.add(Integer.MAX_VALUE, 1);
+		PostingList second = engine.processQuery("Solar AND (energy OR power!)");
+		System.out.println("result cache: intact=" + (second.size() == size) + ", " + engine.getResultCache());
+		second.add(Integer.MAX_VALUE, 1);
+		PostingList third = engine.processQuery("solar AND (energy OR power)");
+		System.out.println("second hit: intact=" + (third.size() == size) + ", " + engine.getResultCache());
+		index.incrementGeneration();
+		engine.processQuery("solar AND (energy OR power)");
+		System.out.println("after index update: " + engine.getResultCache());
+	}
+}
@@ -0,0 +1,123 @@
+package query;
+
+import indexation.content.DocumentStatistics;
+import indexation.content.PostingList;
+
+/**
+ * Similarité cosinus entre le vecteur tf-idf de la requête et celui du
+ * document, utilisant la pondération log-fréquence. Le poids d'un terme dans
+ * la requête est son idf, et sa contribution au score d'un document est ce
+ * poids multiplié par son poids tf-idf dans le document. La somme est ensuite
+ * divisée par la norme du document (calculée lors de l'indexation) et par
+ * celle de la requête. <br/>
+ * Les idf sont précalculées pour toutes les fréquences de document possibles,
+ * et les pondérations log-fréquence pour les fréquences les plus courantes.
+ */
+public class CosineSimilarity implements Similarity {
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Pondérations log-fréquence des petites fréquences */
+	private static final float[] WFS = new float[256];
+	static {
+		for (int tf = 0; tf < WFS.length; tf++)
+			WFS[tf] = DocumentStatistics.processWf(tf);
+	}
+
+	/** Statistiques des documents, contenant leurs normes */
+	private DocumentStatistics statistics;
+	/** Idf correspondant à chaque fréquence de document */
+	private float[] idfs;
+
+	// //////////////////////////////////////////////////
+	// SIMILARITÉ
+	// //////////////////////////////////////////////////
+	@Override
+	public void prepare(DocumentStatistics statistics) {
+		this.statistics = statistics;
+		int docNbr = statistics.getDocumentNumber();
+		idfs = new float[docNbr + 1];
+		for (int df = 1; df <= docNbr; df++)
+			idfs[df] = DocumentStatistics.processIdf(df, docNbr);
+	}
+
+	@Override
+	public float getTermWeight(int df) {
+		if (df < idfs.length)
+			return idfs[df];
+		return DocumentStatistics.processIdf(df, statistics.getDocumentNumber());
+	}
+
+	@Override
+	public float score(float termWeight, int tf, int docId) {
+		float wf;
+		if (tf < WFS.length)
+			wf = WFS[tf];
+		else
+			wf = DocumentStatistics.processWf(tf);
+		return termWeight * (wf * termWeight);
+	}
+
+	@Override
+	public float getQueryNorm(float[] termWeights) {
+		float result = 0;
+		for (float weight : termWeights)
+			result = result + (float) Math.pow(weight, 2);
+		return (float) Math.sqrt(result);
+	}
+
+	@Override
+	public float normalize(float score, int docId, float queryNorm) {
+		return score / (statistics.getNorm(docId) * queryNorm);
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "tf-idf cosine";
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 * 
+	 * @param args
+	 *            Pas utilisé.
+	 * 
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		DocumentStatistics statistics = new DocumentStatistics(4);
+		PostingList soleil = new PostingList();
+		soleil.add(0, 3);
+		soleil.add(2, 1);
+		statistics.addPostings(soleil.size(), soleil.cursor());
+		PostingList maison = new PostingList();
+		maison.add(0, 10);
+		statistics.addPostings(maison.size(), maison.cursor());
+		statistics.complete();
+		Similarity similarity = new CosineSimilarity();
+
+		// test de prepare et getTermWeight
+		similarity.prepare(statistics);
+		float soleilWeight = similarity.getTermWeight(soleil.size());
+		float maisonWeight = similarity.getTermWeight(maison.size());
+		System.out.println("getTermWeight: soleil=" + soleilWeight
+				+ ", maison=" + maisonWeight);
+
+		// test de score et normalize, pour la requête "soleil maison"
+		float queryNorm = similarity.getQueryNorm(new float[] { soleilWeight,
+				maisonWeight });
+		float score0 = similarity.score(soleilWeight, 3, 0)
+				+ similarity.score(maisonWeight, 10, 0);
+		float score2 = similarity.score(soleilWeight, 1, 2);
+		System.out.println("normalize: document 0="
+				+ similarity.normalize(score0, 0, queryNorm) + ", document 2="
+				+ similarity.normalize(score2, 2, queryNorm));
+	}
+}
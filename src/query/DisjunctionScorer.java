@@ -0,0 +1,163 @@
+package query;
+
+import indexation.content.AbstractPostingCursor;
+import indexation.content.DisjunctionPostingCursor;
+import indexation.content.DocumentStatistics;
+import indexation.content.PostingList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opérateur de score parcourant l'union des listes de postings des termes
+ * d'une requête document par document (cf. {@link DisjunctionPostingCursor}).
+ * Le score (non normalisé) du document courant est la somme des contributions
+ * des termes qui le contiennent, calculées par une fonction de similarité et
+ * additionnées dans l'ordre de la requête : il est donc identique à celui
+ * obtenu par l'évaluation terme par terme. <br/>
+ * Contrairement à l'évaluation terme par terme, aucun accumulateur indexé par
+ * docId n'est nécessaire : chaque document est complètement évalué avant de
+ * passer au suivant.
+ */
+public class DisjunctionScorer {
+	/**
+	 * Crée un opérateur de score sur les curseurs spécifiés.
+	 *
+	 * @param cursors
+	 *            Curseurs sur les postings des termes, dans l'ordre de la
+	 *            requête, positionnés avant leur premier posting.
+	 * @param weights
+	 *            Poids des termes, dans le même ordre.
+	 * @param similarity
+	 *            Fonction de similarité utilisée pour calculer les
+	 *            contributions.
+	 */
+	public DisjunctionScorer(List<AbstractPostingCursor> cursors, float[] weights, Similarity similarity) {
+		disjunction = new DisjunctionPostingCursor(cursors);
+		this.weights = weights;
+		this.similarity = similarity;
+		matches = new int[cursors.size()];
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Union des listes des termes */
+	private final DisjunctionPostingCursor disjunction;
+	/** Poids des termes */
+	private final float[] weights;
+	/** Fonction de similarité */
+	private final Similarity similarity;
+	/** Numéros des termes contenant le document courant */
+	private final int[] matches;
+	/** Nombre de contributions calculées depuis la création de l'opérateur */
+	private long scoredPostings;
+
+	// //////////////////////////////////////////////////
+	// PARCOURS
+	// //////////////////////////////////////////////////
+	/**
+	 * Passe au document suivant.
+	 *
+	 * @return {@code true} s'il existe un document suivant, {@code false} si
+	 *         le parcours est terminé.
+	 */
+	public boolean next() {
+		return disjunction.next();
+	}
+
+	/**
+	 * Renvoie le docId du document courant.
+	 *
+	 * @return DocId du document courant.
+	 */
+	public int getDocId() {
+		return disjunction.getDocId();
+	}
+
+	/**
+	 * Calcule le score non normalisé du document courant.
+	 *
+	 * @return Somme des contributions des termes contenant le document.
+	 */
+	public float score() {
+		int docId = disjunction.getDocId();
+		int count = disjunction.getMatches(matches);
+		float result = 0;
+		for (int i = 0; i < count; i++) {
+			int term = matches[i];
+			result = result + similarity.score(weights[term], disjunction.getCursor(term).getFrequency(), docId);
+		}
+		scoredPostings = scoredPostings + count;
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre de contributions calculées depuis la création de cet
+	 * opérateur, c'est-à-dire le nombre de postings évalués.
+	 *
+	 * @return Nombre de postings évalués.
+	 */
+	public long getScoredPostings() {
+		return scoredPostings;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		PostingList list1 = new PostingList();
+		PostingList list2 = new PostingList();
+		for (int i = 0; i < 10; i++) {
+			if (i % 2 == 0)
+				list1.add(i, 1 + i);
+			if (i % 3 == 0)
+				list2.add(i, 1);
+		}
+		List<AbstractPostingCursor> cursors = new ArrayList<AbstractPostingCursor>();
+		cursors.add(list1.cursor());
+		cursors.add(list2.cursor());
+		// similarité élémentaire : poids du terme multiplié par la fréquence
+		Similarity similarity = new Similarity() {
+			@Override
+			public void prepare(DocumentStatistics statistics) {
+			}
+
+			@Override
+			public float getTermWeight(int df) {
+				return 1;
+			}
+
+			@Override
+			public float score(float termWeight, int tf, int docId) {
+				return termWeight * tf;
+			}
+
+			@Override
+			public float getQueryNorm(float[] termWeights) {
+				return 1;
+			}
+
+			@Override
+			public float normalize(float score, int docId, float queryNorm) {
+				return score;
+			}
+		};
+
+		// test de score
+		DisjunctionScorer scorer = new DisjunctionScorer(cursors, new float[] { 1, 10 }, similarity);
+		System.out.print("score:");
+		while (scorer.next())
+			System.out.print(" " + scorer.getDocId() + "=" + scorer.score());
+		System.out.println(" (" + scorer.getScoredPostings() + " postings)");
+	}
+}
@@ -0,0 +1,531 @@
+package query;
+
+import indexation.content.AbstractPostingCursor;
+import indexation.content.ConjunctionPostingCursor;
+import indexation.content.FrequencySketch;
+import indexation.content.PostingList;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cache des intersections de paires de termes, partagé par tous les threads et
+ * borné par le nombre d'octets occupés. Dans une conjonction, les deux listes
+ * les plus courtes sont combinées en premier : lorsque plusieurs requêtes
+ * différentes contiennent la même paire de termes, leur intersection peut être
+ * réutilisée au lieu d'être recalculée (cf.
+ * {@link #processShortestPair(List, List, long)}). <br/>
+ * Chaque paire est évaluée par le produit de sa fréquence d'accès récente
+ * (cf. {@link FrequencySketch}) et de son coût, c'est-à-dire le nombre de
+ * postings lus pour calculer l'intersection. Une paire absente n'est calculée
+ * séparément et insérée qu'après avoir été rencontrée au moins
+ * {@value #MIN_FREQUENCY} fois, et seulement si elle vaut plus que les paires
+ * qu'elle évincerait, choisies parmi un échantillon aléatoire des paires
+ * présentes : une paire rare ne peut donc pas chasser une paire fréquente et
+ * coûteuse. <br/>
+ * Comme pour {@link QueryResultCache}, chaque intersection est associée à la
+ * génération de l'index, et une génération plus récente vide le cache. Les
+ * lectures n'utilisent pas de verrou : seules les mises à jour de la
+ * politique d'admission et d'éviction sont sérialisées.
+ */
+public class IntersectionCache {
+	/**
+	 * Crée un cache vide, pouvant occuper au plus le nombre d'octets spécifié.
+	 *
+	 * @param maxBytes
+	 *            Taille maximale du cache, en octets.
+	 */
+	public IntersectionCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Cache size must be positive.");
+		this.maxBytes = maxBytes;
+		data = new ConcurrentHashMap<String, Entry>();
+		entries = new ArrayList<Entry>();
+		sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, maxBytes / AVERAGE_SIZE));
+		random = new Random(0);
+		lock = new ReentrantLock();
+		hits = new LongAdder();
+		misses = new LongAdder();
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Taille supposée d'une intersection, utilisée pour dimensionner l'estimateur */
+	private static final int AVERAGE_SIZE = 1024;
+	/** Coût fixe d'une intersection en mémoire (objets, tableaux et entrée) */
+	private static final int ENTRY_OVERHEAD = 64;
+	/** Nombre minimal d'accès récents pour qu'une paire soit admise */
+	public static final int MIN_FREQUENCY = 2;
+	/** Nombre de paires présentes examinées pour choisir une victime */
+	private static final int SAMPLE_SIZE = 5;
+
+	/**
+	 * Intersection stockée dans le cache.
+	 */
+	private static class Entry {
+		/**
+		 * Crée une entrée pour l'intersection spécifiée.
+		 *
+		 * @param key
+		 *            Clé de la paire.
+		 * @param list
+		 *            Intersection des deux listes.
+		 * @param cost
+		 *            Nombre de postings lus pour la calculer.
+		 * @param generation
+		 *            Génération de l'index ayant produit l'intersection.
+		 * @param weight
+		 *            Nombre d'octets occupés par l'entrée.
+		 */
+		public Entry(String key, PostingList list, long cost, long generation, long weight) {
+			this.key = key;
+			this.list = list;
+			this.cost = cost;
+			this.generation = generation;
+			this.weight = weight;
+		}
+
+		/** Clé de la paire */
+		private final String key;
+		/** Intersection des deux listes */
+		private final PostingList list;
+		/** Nombre de postings lus pour calculer l'intersection */
+		private final long cost;
+		/** Génération de l'index ayant produit l'intersection */
+		private final long generation;
+		/** Nombre d'octets occupés par l'entrée */
+		private final long weight;
+		/** Position de l'entrée dans {@link IntersectionCache#entries} */
+		private int position;
+	}
+
+	/** Taille maximale du cache, en octets */
+	private final long maxBytes;
+	/** Intersections présentes dans le cache, consultées sans verrou */
+	private final ConcurrentHashMap<String, Entry> data;
+	/** Intersections présentes dans le cache, dans lesquelles on tire les victimes */
+	private final List<Entry> entries;
+	/** Estimateur des fréquences d'accès aux paires */
+	private final FrequencySketch sketch;
+	/** Générateur utilisé pour échantillonner les victimes */
+	private final Random random;
+	/** Verrou protégeant la politique d'admission et d'éviction */
+	private final ReentrantLock lock;
+	/** Octets occupés par les intersections présentes */
+	private long residentBytes;
+	/** Génération la plus récente rencontrée */
+	private volatile long generation;
+
+	/**
+	 * Construit la clé identifiant l'intersection de deux termes. L'ordre des
+	 * termes compte, puisque les fréquences de l'intersection sont celles du
+	 * premier.
+	 *
+	 * @param first
+	 *            Terme dont la liste est la plus courte.
+	 * @param second
+	 *            Autre terme.
+	 * @return Clé de la paire.
+	 */
+	public static String createKey(String first, String second) {
+		return first + " " + second;
+	}
+
+	// //////////////////////////////////////////////////
+	// CONJONCTIONS
+	// //////////////////////////////////////////////////
+	/**
+	 * Remplace les deux listes les plus courtes d'une conjonction par leur
+	 * intersection, si celle-ci est dans le cache ou mérite d'y entrer. Les
+	 * listes sont comparées par longueur, les plus proches du début de la
+	 * conjonction passant en premier en cas d'égalité : les fréquences de
+	 * l'intersection, qui sont celles de la plus courte, sont donc celles
+	 * qu'aurait donné la conjonction complète. L'intersection est placée en
+	 * tête de la conjonction, et les deux listes sont retirées.
+	 *
+	 * @param terms
+	 *            Termes de la conjonction (pas modifiés).
+	 * @param lists
+	 *            Curseurs sur les listes de ces termes, dans le même ordre.
+	 * @param generation
+	 *            Génération actuelle de l'index.
+	 * @return {@code true} si la conjonction a été modifiée.
+	 */
+	public boolean processShortestPair(List<String> terms, List<AbstractPostingCursor> lists, long generation) {
+		if (lists.size() < 2)
+			return false;
+		// on cherche les deux listes les plus courtes
+		int first = -1;
+		int second = -1;
+		for (int i = 0; i < lists.size(); i++) {
+			int size = lists.get(i).getSize();
+			if (first < 0 || size < lists.get(first).getSize()) {
+				second = first;
+				first = i;
+			} else if (second < 0 || size < lists.get(second).getSize())
+				second = i;
+		}
+
+		String key = createKey(terms.get(first), terms.get(second));
+		PostingList pair = get(key, generation);
+		if (pair == null) {
+			if (!isAdmitted(key))
+				return false;
+			AbstractPostingCursor list1 = lists.get(first);
+			AbstractPostingCursor list2 = lists.get(second);
+			long cost = (long) list1.getSize() + list2.getSize();
+			pair = PostingList.copyOf(new ConjunctionPostingCursor(Arrays.asList(list1, list2)));
+			put(key, pair, cost, generation);
+		}
+		lists.remove(Math.max(first, second));
+		lists.remove(Math.min(first, second));
+		lists.add(0, pair.cursor());
+		return true;
+	}
+
+	// //////////////////////////////////////////////////
+	// ACCÈS
+	// //////////////////////////////////////////////////
+	/**
+	 * Renvoie l'intersection associée à la clé spécifiée, si elle a été
+	 * calculée pour la génération spécifiée. L'accès est pris en compte dans
+	 * la fréquence de la paire, qu'elle soit présente ou pas.
+	 *
+	 * @param key
+	 *            Clé construite par {@link #createKey(String, String)}.
+	 * @param generation
+	 *            Génération actuelle de l'index.
+	 * @return L'intersection, ou {@code null} si elle n'est pas dans le cache.
+	 */
+	public PostingList get(String key, long generation) {
+		if (generation > this.generation)
+			updateGeneration(generation);
+		// sous forte concurrence, on préfère perdre l'accès qu'attendre
+		if (lock.tryLock()) {
+			try {
+				sketch.increment(key.hashCode());
+			} finally {
+				lock.unlock();
+			}
+		}
+		Entry entry = data.get(key);
+		if (entry == null || entry.generation != generation) {
+			misses.increment();
+			return null;
+		}
+		hits.increment();
+		return entry.list;
+	}
+
+	/**
+	 * Indique si la paire spécifiée, absente du cache, a été rencontrée assez
+	 * souvent pour que son intersection soit calculée et proposée au cache.
+	 *
+	 * @param key
+	 *            Clé construite par {@link #createKey(String, String)}.
+	 * @return {@code true} si la paire est assez fréquente.
+	 */
+	public boolean isAdmitted(String key) {
+		lock.lock();
+		try {
+			return sketch.frequency(key.hashCode()) >= MIN_FREQUENCY;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Propose une intersection au cache. Elle n'est insérée que si la place
+	 * nécessaire peut être libérée en évinçant des paires valant moins
+	 * qu'elle, c'est-à-dire dont le produit de la fréquence par le coût est
+	 * plus petit.
+	 *
+	 * @param key
+	 *            Clé construite par {@link #createKey(String, String)}.
+	 * @param list
+	 *            Intersection des listes des deux termes.
+	 * @param cost
+	 *            Nombre de postings lus pour calculer l'intersection.
+	 * @param generation
+	 *            Génération de l'index ayant produit l'intersection.
+	 */
+	public void put(String key, PostingList list, long cost, long generation) {
+		long weight = ENTRY_OVERHEAD + 2L * key.length() + 8L * list.getDocIds().length;
+		if (weight > maxBytes)
+			return;
+		lock.lock();
+		try {
+			if (generation > this.generation)
+				updateGeneration(generation);
+			if (generation != this.generation || data.containsKey(key))
+				return;
+
+			// on libère la place nécessaire, tant que la paire vaut plus que
+			// les victimes
+			long value = score(key, cost);
+			while (residentBytes + weight > maxBytes) {
+				Entry victim = sampleVictim();
+				if (value <= score(victim.key, victim.cost)) {
+					rejections++;
+					return;
+				}
+				remove(victim);
+				evictions++;
+			}
+
+			Entry entry = new Entry(key, list, cost, generation, weight);
+			entry.position = entries.size();
+			entries.add(entry);
+			data.put(key, entry);
+			residentBytes += weight;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Vide complètement le cache, sans modifier les statistiques.
+	 */
+	public void clear() {
+		lock.lock();
+		try {
+			data.clear();
+			entries.clear();
+			residentBytes = 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Prend en compte une génération plus récente que toutes celles déjà
+	 * rencontrées, en vidant le cache.
+	 *
+	 * @param generation
+	 *            Génération actuelle de l'index.
+	 */
+	private void updateGeneration(long generation) {
+		lock.lock();
+		try {
+			if (generation > this.generation) {
+				this.generation = generation;
+				clear();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	// //////////////////////////////////////////////////
+	// POLITIQUE
+	// //////////////////////////////////////////////////
+	/**
+	 * Calcule la valeur d'une paire : le nombre de postings que sa présence
+	 * dans le cache permet d'économiser.
+	 *
+	 * @param key
+	 *            Clé de la paire.
+	 * @param cost
+	 *            Nombre de postings lus pour calculer son intersection.
+	 * @return Produit de la fréquence estimée par le coût.
+	 */
+	private long score(String key, long cost) {
+		return sketch.frequency(key.hashCode()) * cost;
+	}
+
+	/**
+	 * Tire quelques paires présentes au hasard, et renvoie celle qui a la plus
+	 * petite valeur. Le cache ne doit pas être vide.
+	 *
+	 * @return Paire à évincer.
+	 */
+	private Entry sampleVictim() {
+		Entry result = null;
+		long resultScore = Long.MAX_VALUE;
+		for (int i = 0; i < SAMPLE_SIZE; i++) {
+			Entry entry = entries.get(random.nextInt(entries.size()));
+			long score = score(entry.key, entry.cost);
+			if (score < resultScore) {
+				result = entry;
+				resultScore = score;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Retire une paire du cache, en la remplaçant dans la liste des entrées
+	 * par la dernière.
+	 *
+	 * @param entry
+	 *            Paire à retirer.
+	 */
+	private void remove(Entry entry) {
+		Entry last = entries.remove(entries.size() - 1);
+		if (last != entry) {
+			last.position = entry.position;
+			entries.set(entry.position, last);
+		}
+		data.remove(entry.key);
+		residentBytes -= entry.weight;
+	}
+
+	// //////////////////////////////////////////////////
+	// STATISTIQUES
+	// //////////////////////////////////////////////////
+	/** Nombre de paires trouvées dans le cache */
+	private final LongAdder hits;
+	/** Nombre de paires absentes du cache */
+	private final LongAdder misses;
+	/** Nombre de paires évincées */
+	private volatile long evictions;
+	/** Nombre de paires refusées faute de valoir plus que les victimes */
+	private volatile long rejections;
+
+	/**
+	 * Renvoie le nombre de paires trouvées dans le cache.
+	 *
+	 * @return Nombre de succès.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de paires absentes du cache.
+	 *
+	 * @return Nombre d'échecs.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Renvoie la proportion de paires trouvées dans le cache.
+	 *
+	 * @return Taux de succès, entre 0 et 1.
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		if (total == 0)
+			return 0;
+		return hitCount / (double) total;
+	}
+
+	/**
+	 * Renvoie le nombre de paires évincées pour faire de la place.
+	 *
+	 * @return Nombre d'évictions.
+	 */
+	public long getEvictionCount() {
+		return evictions;
+	}
+
+	/**
+	 * Renvoie le nombre de paires refusées faute de valoir plus que les paires
+	 * qu'elles auraient évincées.
+	 *
+	 * @return Nombre de refus.
+	 */
+	public long getRejectionCount() {
+		return rejections;
+	}
+
+	/**
+	 * Renvoie le nombre d'octets occupés par les intersections présentes.
+	 *
+	 * @return Taille du cache, en octets.
+	 */
+	public long getResidentBytes() {
+		lock.lock();
+		try {
+			return residentBytes;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Renvoie le nombre maximal d'octets occupés par le cache.
+	 *
+	 * @return Taille maximale du cache, en octets.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Renvoie le nombre d'intersections présentes dans le cache.
+	 *
+	 * @return Nombre de paires.
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", hit ratio="
+				+ String.format("%.3f", getHitRatio()) + ", evictions=" + getEvictionCount() + ", rejections="
+				+ getRejectionCount() + ", size=" + size() + ", bytes=" + getResidentBytes() + "/" + maxBytes;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : une paire fréquente et coûteuse est
+	 * admise, puis n'est pas chassée par une série de paires rencontrées une
+	 * seule fois, ni par une paire fréquente mais bon marché.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		IntersectionCache cache = new IntersectionCache(1024);
+		PostingList list = new PostingList(100);
+		for (int docId = 0; docId < 100; docId++)
+			list.add(docId, 1);
+
+		// une paire n'est admise qu'à partir de son deuxième accès
+		String hot = createKey("solar", "energy");
+		cache.get(hot, 1);
+		System.out.println("admitted after one access: " + cache.isAdmitted(hot));
+		cache.get(hot, 1);
+		System.out.println("admitted after two accesses: " + cache.isAdmitted(hot));
+		cache.put(hot, list, 10000, 1);
+		System.out.println("hot pair cached: " + (cache.get(hot, 1) == list));
+
+		// des paires rares ne sont même pas calculées
+		int admitted = 0;
+		for (int i = 0; i < 1000; i++)
+			if (cache.isAdmitted(createKey("rare" + i, "term" + i)))
+				admitted++;
+		System.out.println("rare pairs admitted: " + admitted);
+
+		// une paire fréquente mais bon marché ne chasse pas la paire coûteuse
+		String cheap = createKey("the", "sun");
+		for (int i = 0; i < 5; i++)
+			cache.get(cheap, 1);
+		cache.put(cheap, list, 2, 1);
+		System.out.println("hot pair kept: " + (cache.get(hot, 1) == list) + ", cheap pair cached: "
+				+ (cache.get(cheap, 1) != null));
+		System.out.println(cache);
+
+		// un changement de génération vide le cache
+		System.out.println("after index update: " + (cache.get(hot, 2) != null) + ", size=" + cache.size());
+	}
+}
@@ -0,0 +1,285 @@
+package query;
+
+import indexation.content.IndexEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Nœud de l'arbre syntaxique d'une requête booléenne, produit par un
+ * {@link QueryParser}. Le même type d'objet représente aussi le plan
+ * d'exécution obtenu à partir de cet arbre par un {@link QueryPlanner} : il
+ * porte alors l'entrée de l'index de chaque terme, ainsi que les estimations
+ * du nombre de documents produits et du nombre de postings lus par chaque
+ * nœud. <br/>
+ * Une fois planifié, un nœud n'est plus modifié : le même plan peut donc être
+ * exécuté plusieurs fois, y compris par plusieurs threads.
+ */
+public class QueryNode {
+	/**
+	 * Crée un nœud de l'opérateur spécifié, sans fils.
+	 *
+	 * @param operator
+	 *            Opérateur représenté par ce nœud.
+	 */
+	public QueryNode(Operator operator) {
+		this.operator = operator;
+		children = new ArrayList<QueryNode>();
+	}
+
+	/**
+	 * Crée une feuille représentant le terme spécifié.
+	 *
+	 * @param term
+	 *            Terme normalisé.
+	 */
+	public QueryNode(String term) {
+		this(Operator.TERM);
+		this.term = term;
+	}
+
+	// //////////////////////////////////////////////////
+	// STRUCTURE
+	// //////////////////////////////////////////////////
+	/**
+	 * Opérateurs pouvant apparaître dans une requête.
+	 */
+	public enum Operator {
+		/** Terme de l'index */
+		TERM,
+		/** Conjonction des fils, qui peuvent être des négations */
+		AND,
+		/** Disjonction des fils */
+		OR,
+		/** Documents contenus dans un nombre minimal de fils */
+		ATLEAST,
+		/** Négation du fils unique */
+		NOT,
+		/** Aucun document */
+		EMPTY,
+		/** Tous les documents */
+		ALL;
+	}
+
+	/** Opérateur représenté par ce nœud */
+	private Operator operator;
+	/** Terme représenté par une feuille */
+	private String term;
+	/** Fils de ce nœud, dans l'ordre d'évaluation */
+	private List<QueryNode> children;
+	/** Indique si ce nœud est une conjonction issue d'une phrase */
+	private boolean phrase;
+	/** Nombre minimal de fils contenant chaque document, pour ATLEAST */
+	private int minimumMatch;
+
+	/**
+	 * Renvoie l'opérateur représenté par ce nœud.
+	 *
+	 * @return Opérateur du nœud.
+	 */
+	public Operator getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Renvoie le terme représenté par cette feuille.
+	 *
+	 * @return Terme normalisé, ou {@code null} si ce nœud n'est pas un terme.
+	 */
+	public String getTerm() {
+		return term;
+	}
+
+	/**
+	 * Renvoie les fils de ce nœud.
+	 *
+	 * @return Liste des fils, éventuellement vide.
+	 */
+	public List<QueryNode> getChildren() {
+		return children;
+	}
+
+	/**
+	 * Ajoute un fils à ce nœud.
+	 *
+	 * @param child
+	 *            Nouveau dernier fils.
+	 */
+	public void addChild(QueryNode child) {
+		children.add(child);
+	}
+
+	/**
+	 * Indique si cette conjonction provient d'une phrase entre guillemets.
+	 *
+	 * @return {@code true} pour une phrase.
+	 */
+	public boolean isPhrase() {
+		return phrase;
+	}
+
+	/**
+	 * Indique si cette conjonction provient d'une phrase entre guillemets.
+	 *
+	 * @param phrase
+	 *            {@code true} pour une phrase.
+	 */
+	public void setPhrase(boolean phrase) {
+		this.phrase = phrase;
+	}
+
+	/**
+	 * Renvoie le nombre minimal de fils devant contenir chaque document
+	 * produit par ce nœud {@link Operator#ATLEAST}.
+	 *
+	 * @return Nombre minimal de fils.
+	 */
+	public int getMinimumMatch() {
+		return minimumMatch;
+	}
+
+	/**
+	 * Modifie le nombre minimal de fils devant contenir chaque document
+	 * produit par ce nœud {@link Operator#ATLEAST}.
+	 *
+	 * @param minimumMatch
+	 *            Nombre minimal de fils.
+	 */
+	public void setMinimumMatch(int minimumMatch) {
+		this.minimumMatch = minimumMatch;
+	}
+
+	// //////////////////////////////////////////////////
+	// PLAN
+	// //////////////////////////////////////////////////
+	/** Entrée de l'index correspondant au terme d'une feuille planifiée */
+	private IndexEntry entry;
+	/** Numéro du nœud dans le plan, dans l'ordre préfixe */
+	private int id;
+	/** Nombre estimé de documents produits par ce nœud */
+	private long estimatedSize;
+	/** Nombre estimé de postings lus pour évaluer ce nœud */
+	private long estimatedReads;
+
+	/**
+	 * Renvoie l'entrée de l'index correspondant au terme de cette feuille.
+	 *
+	 * @return Entrée du terme, ou {@code null} si le nœud n'est pas planifié.
+	 */
+	public IndexEntry getEntry() {
+		return entry;
+	}
+
+	/**
+	 * Associe une entrée de l'index à cette feuille.
+	 *
+	 * @param entry
+	 *            Entrée du terme.
+	 */
+	public void setEntry(IndexEntry entry) {
+		this.entry = entry;
+	}
+
+	/**
+	 * Renvoie le numéro de ce nœud dans son plan.
+	 *
+	 * @return Numéro du nœud, à partir de zéro pour la racine.
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * Numérote ce nœud et ses descendants dans l'ordre préfixe.
+	 *
+	 * @param first
+	 *            Numéro de ce nœud.
+	 * @return Premier numéro non-utilisé.
+	 */
+	public int number(int first) {
+		id = first;
+		int next = first + 1;
+		for (QueryNode child : children)
+			next = child.number(next);
+		return next;
+	}
+
+	/**
+	 * Renvoie le nombre de nœuds de ce sous-arbre.
+	 *
+	 * @return Nombre de descendants, plus un.
+	 */
+	public int getNodeNumber() {
+		int result = 1;
+		for (QueryNode child : children)
+			result += child.getNodeNumber();
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre estimé de documents produits par ce nœud.
+	 *
+	 * @return Taille estimée du résultat.
+	 */
+	public long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	/**
+	 * Renvoie le nombre estimé de postings lus pour évaluer ce nœud, y
+	 * compris ceux lus par ses descendants.
+	 *
+	 * @return Nombre estimé de postings lus.
+	 */
+	public long getEstimatedReads() {
+		return estimatedReads;
+	}
+
+	/**
+	 * Enregistre les estimations du planificateur.
+	 *
+	 * @param estimatedSize
+	 *            Nombre estimé de documents produits.
+	 * @param estimatedReads
+	 *            Nombre estimé de postings lus.
+	 */
+	public void setEstimates(long estimatedSize, long estimatedReads) {
+		this.estimatedSize = estimatedSize;
+		this.estimatedReads = estimatedReads;
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		switch (operator) {
+		case TERM:
+			return term;
+		case EMPTY:
+		case ALL:
+			return operator.toString();
+		case NOT:
+			return "NOT " + children.get(0);
+		case ATLEAST: {
+			StringBuilder result = new StringBuilder("(");
+			for (int i = 0; i < children.size(); i++) {
+				if (i > 0)
+					result.append(", ");
+				result.append(children.get(i));
+			}
+			return result.append(")@").append(minimumMatch).toString();
+		}
+		default:
+			StringBuilder result = new StringBuilder(phrase ? "\"" : "(");
+			String separator = phrase ? " " : " " + operator + " ";
+			for (int i = 0; i < children.size(); i++) {
+				if (i > 0)
+					result.append(separator);
+				result.append(children.get(i));
+			}
+			result.append(phrase ? "\"" : ")");
+			return result.toString();
+		}
+	}
+}
@@ -0,0 +1,350 @@
+package query;
+
+import indexation.processing.Normalizer;
+import indexation.processing.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import query.QueryNode.Operator;
+
+/**
+ * Analyseur syntaxique des requêtes booléennes, produisant un arbre de
+ * {@link QueryNode}. La grammaire reconnue est la suivante, par ordre de
+ * priorité croissante des opérateurs :
+ * <ul>
+ * <li>disjonction : deux expressions séparées par {@code OR} ou par une
+ * virgule ;</li>
+ * <li>conjonction : deux expressions séparées par {@code AND}, ou simplement
+ * juxtaposées ;</li>
+ * <li>négation : {@code NOT} suivi d'une expression ;</li>
+ * <li>groupement : une expression entre parenthèses, éventuellement suivie de
+ * {@code @k} pour ne garder que les documents contenant au moins {@code k}
+ * des opérandes de l'opérateur principal de l'expression (par exemple
+ * {@code (solar energy panels wind)@3}, ou {@code (solar energy, wind)@2} pour
+ * des opérandes composés) ;</li>
+ * <li>phrase : des mots entre guillemets, parmi lesquels les opérateurs ne
+ * sont pas reconnus ;</li>
+ * <li>mot : tout autre suite de caractères sans espace.</li>
+ * </ul>
+ * Les opérateurs doivent être écrits en majuscules : en minuscules, ce sont des
+ * mots comme les autres. Une requête ne contenant que des virgules et des
+ * espaces est donc interprétée comme avec {@link AndOrQueryEngine}. <br/>
+ * Chaque mot est tokénisé puis normalisé comme le texte des documents : il
+ * peut donc donner plusieurs termes (combinés par une conjonction), ou aucun
+ * (il est alors ignoré, ainsi que l'opérateur qui s'y applique).
+ */
+public class QueryParser {
+	/**
+	 * Crée un analyseur utilisant les outils spécifiés pour obtenir les termes
+	 * de la requête.
+	 *
+	 * @param tokenizer
+	 *            Objet utilisé pour découper les mots.
+	 * @param normalizer
+	 *            Objet utilisé pour normaliser les types obtenus.
+	 */
+	public QueryParser(Tokenizer tokenizer, Normalizer normalizer) {
+		this.tokenizer = tokenizer;
+		this.normalizer = normalizer;
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Marque placée devant le contenu d'une phrase, dans la liste des lexèmes */
+	private static final String PHRASE = "\"";
+	/** Préfixe du nombre minimal d'opérandes suivant une parenthèse fermante */
+	private static final String MINIMUM_MATCH = "@";
+
+	/** Objet utilisé pour découper les mots */
+	private final Tokenizer tokenizer;
+	/** Objet utilisé pour normaliser les types */
+	private final Normalizer normalizer;
+
+	// //////////////////////////////////////////////////
+	// ANALYSE
+	// //////////////////////////////////////////////////
+	/**
+	 * Analyse la requête spécifiée.
+	 *
+	 * @param query
+	 *            Requête à analyser.
+	 * @return Racine de l'arbre syntaxique, de type {@link Operator#EMPTY} si la
+	 *         requête ne contient aucun terme.
+	 *
+	 * @throws IllegalArgumentException
+	 *             La requête n'est pas conforme à la grammaire.
+	 */
+	public QueryNode parse(String query) {
+		List<String> tokens = lex(query);
+		int[] position = { 0 };
+		QueryNode result = null;
+		if (!tokens.isEmpty())
+			result = parseOr(tokens, position);
+		if (position[0] < tokens.size())
+			throw new IllegalArgumentException("Unexpected \"" + tokens.get(position[0]) + "\" in query: " + query);
+		if (result == null)
+			result = new QueryNode(Operator.EMPTY);
+		return result;
+	}
+
+	/**
+	 * Découpe la requête en lexèmes : parenthèses, virgules, phrases (dont le
+	 * contenu est précédé de {@link #PHRASE}) et mots.
+	 *
+	 * @param query
+	 *            Requête à découper.
+	 * @return Liste des lexèmes.
+	 */
+	private List<String> lex(String query) {
+		List<String> result = new ArrayList<String>();
+		int i = 0;
+		int length = query.length();
+		while (i < length) {
+			char c = query.charAt(i);
+			if (Character.isWhitespace(c)) {
+				i++;
+			} else if (c == '(' || c == ')' || c == ',') {
+				result.add(String.valueOf(c));
+				i++;
+			} else if (c == '"') {
+				int end = query.indexOf('"', i + 1);
+				if (end < 0)
+					throw new IllegalArgumentException("Unclosed quote in query: " + query);
+				result.add(PHRASE + query.substring(i + 1, end));
+				i = end + 1;
+			} else {
+				int start = i;
+				while (i < length && !Character.isWhitespace(query.charAt(i)) && "(),\"".indexOf(query.charAt(i)) < 0)
+					i++;
+				result.add(query.substring(start, i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Analyse une disjonction.
+	 *
+	 * @param tokens
+	 *            Lexèmes de la requête.
+	 * @param position
+	 *            Position du lexème courant, mise à jour.
+	 * @return Nœud obtenu, ou {@code null} si l'expression ne contient aucun
+	 *         terme.
+	 */
+	private QueryNode parseOr(List<String> tokens, int[] position) {
+		QueryNode result = new QueryNode(Operator.OR);
+		addChild(result, parseAnd(tokens, position));
+		while (position[0] < tokens.size()) {
+			String token = tokens.get(position[0]);
+			if (!token.equals(",") && !token.equals("OR"))
+				break;
+			position[0]++;
+			addChild(result, parseAnd(tokens, position));
+		}
+		return simplify(result);
+	}
+
+	/**
+	 * Analyse une conjonction.
+	 *
+	 * @param tokens
+	 *            Lexèmes de la requête.
+	 * @param position
+	 *            Position du lexème courant, mise à jour.
+	 * @return Nœud obtenu, ou {@code null} si l'expression ne contient aucun
+	 *         terme.
+	 */
+	private QueryNode parseAnd(List<String> tokens, int[] position) {
+		QueryNode result = new QueryNode(Operator.AND);
+		addChild(result, parseNot(tokens, position));
+		while (position[0] < tokens.size()) {
+			String token = tokens.get(position[0]);
+			if (token.equals("AND"))
+				position[0]++;
+			else if (token.equals(",") || token.equals("OR") || token.equals(")"))
+				break;
+			addChild(result, parseNot(tokens, position));
+		}
+		return simplify(result);
+	}
+
+	/**
+	 * Analyse une négation, ou une expression élémentaire.
+	 *
+	 * @param tokens
+	 *            Lexèmes de la requête.
+	 * @param position
+	 *            Position du lexème courant, mise à jour.
+	 * @return Nœud obtenu, ou {@code null} si l'expression ne contient aucun
+	 *         terme.
+	 */
+	private QueryNode parseNot(List<String> tokens, int[] position) {
+		if (position[0] < tokens.size() && tokens.get(position[0]).equals("NOT")) {
+			position[0]++;
+			QueryNode child = parseNot(tokens, position);
+			if (child == null)
+				return null;
+			QueryNode result = new QueryNode(Operator.NOT);
+			result.addChild(child);
+			return result;
+		}
+		return parsePrimary(tokens, position);
+	}
+
+	/**
+	 * Analyse une expression entre parenthèses, une phrase ou un mot.
+	 *
+	 * @param tokens
+	 *            Lexèmes de la requête.
+	 * @param position
+	 *            Position du lexème courant, mise à jour.
+	 * @return Nœud obtenu, ou {@code null} si l'expression ne contient aucun
+	 *         terme.
+	 */
+	private QueryNode parsePrimary(List<String> tokens, int[] position) {
+		if (position[0] >= tokens.size())
+			throw new IllegalArgumentException("Missing operand at the end of the query");
+		String token = tokens.get(position[0]);
+		if (token.equals("(")) {
+			position[0]++;
+			QueryNode result = parseOr(tokens, position);
+			if (position[0] >= tokens.size() || !tokens.get(position[0]).equals(")"))
+				throw new IllegalArgumentException("Missing closing parenthesis");
+			position[0]++;
+			if (position[0] < tokens.size() && tokens.get(position[0]).startsWith(MINIMUM_MATCH))
+				result = parseMinimumMatch(result, tokens.get(position[0]++));
+			return result;
+		}
+		if (token.equals(")") || token.equals(",") || token.equals("OR") || token.equals("AND"))
+			throw new IllegalArgumentException("Missing operand before \"" + token + "\"");
+		position[0]++;
+		if (token.startsWith(PHRASE)) {
+			QueryNode result = processWords(token.substring(PHRASE.length()));
+			if (result != null && result.getOperator() == Operator.AND)
+				result.setPhrase(true);
+			return result;
+		}
+		return processWords(token);
+	}
+
+	/**
+	 * Crée le nœud ne gardant que les documents contenant un nombre minimal
+	 * des opérandes d'une expression entre parenthèses.
+	 *
+	 * @param group
+	 *            Expression entre parenthèses, ou {@code null} si elle ne
+	 *            contient aucun terme.
+	 * @param token
+	 *            Lexème suivant la parenthèse fermante, de la forme
+	 *            {@code @k}.
+	 * @return Nœud obtenu, ou {@code null} si l'expression ne contient aucun
+	 *         terme.
+	 */
+	private QueryNode parseMinimumMatch(QueryNode group, String token) {
+		int minimumMatch;
+		try {
+			minimumMatch = Integer.parseInt(token.substring(MINIMUM_MATCH.length()));
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid minimum number of operands: " + token);
+		}
+		if (minimumMatch < 1)
+			throw new IllegalArgumentException("Invalid minimum number of operands: " + token);
+		if (group == null)
+			return null;
+		QueryNode result = new QueryNode(Operator.ATLEAST);
+		result.setMinimumMatch(minimumMatch);
+		Operator operator = group.getOperator();
+		if ((operator == Operator.AND && !group.isPhrase()) || operator == Operator.OR)
+			for (QueryNode child : group.getChildren())
+				result.addChild(child);
+		else
+			result.addChild(group);
+		return result;
+	}
+
+	/**
+	 * Tokénise et normalise un mot ou le contenu d'une phrase.
+	 *
+	 * @param words
+	 *            Texte à traiter.
+	 * @return Feuille correspondant au terme obtenu, conjonction des termes
+	 *         obtenus s'il y en a plusieurs, ou {@code null} s'il n'y en a
+	 *         aucun.
+	 */
+	private QueryNode processWords(String words) {
+		QueryNode result = new QueryNode(Operator.AND);
+		for (String type : tokenizer.tokenizeString(words)) {
+			String term = normalizer.normalizeType(type);
+			if (term != null)
+				result.addChild(new QueryNode(term));
+		}
+		return simplify(result);
+	}
+
+	/**
+	 * Ajoute un fils à un nœud s'il n'est pas {@code null}.
+	 *
+	 * @param node
+	 *            Nœud à compléter.
+	 * @param child
+	 *            Fils à ajouter, ou {@code null}.
+	 */
+	private static void addChild(QueryNode node, QueryNode child) {
+		if (child != null)
+			node.addChild(child);
+	}
+
+	/**
+	 * Remplace un opérateur n'ayant qu'un fils par ce fils.
+	 *
+	 * @param node
+	 *            Conjonction ou disjonction à simplifier.
+	 * @return Le nœud, son fils unique, ou {@code null} s'il n'a pas de fils.
+	 */
+	private static QueryNode simplify(QueryNode node) {
+		List<QueryNode> children = node.getChildren();
+		if (children.isEmpty())
+			return null;
+		if (children.size() == 1)
+			return children.get(0);
+		return node;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		QueryParser parser = new QueryParser(new Tokenizer(), new Normalizer());
+
+		// test de parse
+		String[] queries = { "solar energy, wind", "solar AND (energy OR power) NOT cell",
+				"\"solar power\" OR NOT (wind turbine)", "NOT NOT sun", "a, (b c), \"d e f\"",
+				"(solar energy panels wind)@3", "(solar energy, wind, sun)@2" };
+		for (String query : queries)
+			System.out.println("parse(" + query + "): " + parser.parse(query));
+
+		// test des erreurs
+		String[] errors = { "(solar", "solar)", "solar OR", "\"solar", "AND solar", "(solar wind)@0",
+				"(solar wind)@x" };
+		for (String query : errors) {
+			try {
+				parser.parse(query);
+				System.out.println("parse(" + query + "): no error");
+			} catch (IllegalArgumentException e) {
+				System.out.println("parse(" + query + "): " + e.getMessage());
+			}
+		}
+	}
+}
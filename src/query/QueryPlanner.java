@@ -0,0 +1,399 @@
+package query;
+
+import indexation.AbstractIndex;
+import indexation.content.IndexEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import query.QueryNode.Operator;
+
+/**
+ * Objet transformant l'arbre syntaxique d'une requête booléenne en plan
+ * d'exécution pour un index donné :
+ * <ul>
+ * <li>chaque terme est recherché dans l'index, et un terme absent est remplacé
+ * par l'ensemble vide ;</li>
+ * <li>les sous-arbres vides sont éliminés : une conjonction contenant un
+ * opérande vide est elle-même vide, et ne sera donc pas évaluée ;</li>
+ * <li>les conjonctions et disjonctions imbriquées sont aplaties, et les
+ * doubles négations supprimées ;</li>
+ * <li>les négations apparaissant dans une conjonction sont traitées par
+ * soustraction (ET-NON) lors du parcours des opérandes positifs, une négation
+ * de disjonction étant distribuée sur ses opérandes ;</li>
+ * <li>les opérandes positifs d'une conjonction sont ordonnés par nombre
+ * estimé de documents croissant ;</li>
+ * <li>un opérateur exigeant un nombre minimal d'opérandes est remplacé par une
+ * disjonction si ce nombre vaut un, et par une conjonction s'il est égal au
+ * nombre d'opérandes.</li>
+ * </ul>
+ * Le nombre de documents produits par chaque nœud est estimé en supposant les
+ * termes indépendants. Le nombre de postings lus est estimé en supposant que
+ * le premier opérande d'une conjonction est lu entièrement, et que chacun des
+ * suivants est lu au plus une fois par document restant candidat (cf.
+ * {@link BooleanQueryEngine}).
+ */
+public class QueryPlanner {
+	/**
+	 * Crée un planificateur pour l'index spécifié.
+	 *
+	 * @param index
+	 *            Index sur lequel les requêtes seront exécutées.
+	 */
+	public QueryPlanner(AbstractIndex index) {
+		this.index = index;
+		docNbr = index.getDocumentNumber();
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Index de référence */
+	private final AbstractIndex index;
+	/** Nombre de documents de l'index */
+	private final int docNbr;
+
+	/** Comparateur ordonnant les nœuds par nombre estimé de documents */
+	private static final Comparator<QueryNode> COMPARATOR = new Comparator<QueryNode>() {
+		@Override
+		public int compare(QueryNode n1, QueryNode n2) {
+			return Long.compare(n1.getEstimatedSize(), n2.getEstimatedSize());
+		}
+	};
+
+	// //////////////////////////////////////////////////
+	// PLANIFICATION
+	// //////////////////////////////////////////////////
+	/**
+	 * Construit le plan d'exécution de l'arbre syntaxique spécifié, qui n'est
+	 * pas modifié. Les nœuds du plan sont numérotés.
+	 *
+	 * @param query
+	 *            Racine de l'arbre syntaxique.
+	 * @return Racine du plan.
+	 */
+	public QueryNode plan(QueryNode query) {
+		QueryNode result = planNode(query);
+		result.number(0);
+		return result;
+	}
+
+	/**
+	 * Construit le plan d'un nœud de l'arbre syntaxique.
+	 *
+	 * @param node
+	 *            Nœud de l'arbre syntaxique.
+	 * @return Plan correspondant.
+	 */
+	private QueryNode planNode(QueryNode node) {
+		switch (node.getOperator()) {
+		case TERM:
+			return planTerm(node.getTerm());
+		case NOT:
+			return planNot(planNode(node.getChildren().get(0)));
+		case AND: {
+			List<QueryNode> children = new ArrayList<QueryNode>();
+			for (QueryNode child : node.getChildren())
+				children.add(planNode(child));
+			return planAnd(children);
+		}
+		case OR: {
+			List<QueryNode> children = new ArrayList<QueryNode>();
+			for (QueryNode child : node.getChildren())
+				children.add(planNode(child));
+			return planOr(children);
+		}
+		case ATLEAST: {
+			List<QueryNode> children = new ArrayList<QueryNode>();
+			for (QueryNode child : node.getChildren())
+				children.add(planNode(child));
+			return planAtLeast(children, node.getMinimumMatch());
+		}
+		default:
+			return createConstant(node.getOperator());
+		}
+	}
+
+	/**
+	 * Construit le plan d'un terme.
+	 *
+	 * @param term
+	 *            Terme normalisé.
+	 * @return Feuille associée à l'entrée du terme, ou ensemble vide si le
+	 *         terme n'est pas dans l'index.
+	 */
+	private QueryNode planTerm(String term) {
+		IndexEntry entry = index.getEntry(term);
+		if (entry == null)
+			return createConstant(Operator.EMPTY);
+		QueryNode result = new QueryNode(term);
+		result.setEntry(entry);
+		result.setEstimates(entry.getFrequency(), entry.getFrequency());
+		return result;
+	}
+
+	/**
+	 * Construit le plan d'une négation.
+	 *
+	 * @param child
+	 *            Plan de l'opérande.
+	 * @return Plan de la négation.
+	 */
+	private QueryNode planNot(QueryNode child) {
+		switch (child.getOperator()) {
+		case EMPTY:
+			return createConstant(Operator.ALL);
+		case ALL:
+			return createConstant(Operator.EMPTY);
+		case NOT:
+			return child.getChildren().get(0);
+		default:
+			QueryNode result = new QueryNode(Operator.NOT);
+			result.addChild(child);
+			result.setEstimates(docNbr - child.getEstimatedSize(),
+					getInputReads(child) + child.getEstimatedSize());
+			return result;
+		}
+	}
+
+	/**
+	 * Construit le plan d'une conjonction.
+	 *
+	 * @param children
+	 *            Plans des opérandes.
+	 * @return Plan de la conjonction.
+	 */
+	private QueryNode planAnd(List<QueryNode> children) {
+		List<QueryNode> positives = new ArrayList<QueryNode>();
+		List<QueryNode> negatives = new ArrayList<QueryNode>();
+		if (!splitAnd(children, positives, negatives))
+			return createConstant(Operator.EMPTY);
+		if (positives.isEmpty()) {
+			if (negatives.isEmpty())
+				return createConstant(Operator.ALL);
+			return planNot(planOr(negatives));
+		}
+		if (positives.size() == 1 && negatives.isEmpty())
+			return positives.get(0);
+
+		Collections.sort(positives, COMPARATOR);
+		Collections.sort(negatives, COMPARATOR);
+		QueryNode result = new QueryNode(Operator.AND);
+		// le premier opérande est lu entièrement
+		double size = positives.get(0).getEstimatedSize();
+		long reads = getInputReads(positives.get(0)) + positives.get(0).getEstimatedSize();
+		result.addChild(positives.get(0));
+		// les suivants ne sont lus que pour les documents encore candidats
+		for (int i = 1; i < positives.size(); i++) {
+			QueryNode child = positives.get(i);
+			reads += getInputReads(child) + (long) Math.min(child.getEstimatedSize(), size);
+			size = size * child.getEstimatedSize() / docNbr;
+			result.addChild(child);
+		}
+		for (QueryNode child : negatives) {
+			reads += getInputReads(child) + (long) Math.min(child.getEstimatedSize(), size);
+			size = size * (docNbr - child.getEstimatedSize()) / docNbr;
+			QueryNode not = new QueryNode(Operator.NOT);
+			not.addChild(child);
+			not.setEstimates(docNbr - child.getEstimatedSize(), getInputReads(child));
+			result.addChild(not);
+		}
+		result.setEstimates(Math.round(size), reads);
+		return result;
+	}
+
+	/**
+	 * Répartit les opérandes d'une conjonction en opérandes positifs et
+	 * négatifs, en aplatissant les conjonctions imbriquées et en distribuant
+	 * les négations de disjonctions.
+	 *
+	 * @param children
+	 *            Plans des opérandes.
+	 * @param positives
+	 *            Liste à compléter avec les opérandes positifs.
+	 * @param negatives
+	 *            Liste à compléter avec les opérandes des négations.
+	 * @return {@code false} si l'un des opérandes est vide.
+	 */
+	private boolean splitAnd(List<QueryNode> children, List<QueryNode> positives, List<QueryNode> negatives) {
+		for (QueryNode child : children) {
+			switch (child.getOperator()) {
+			case EMPTY:
+				return false;
+			case ALL:
+				break;
+			case AND:
+				if (!splitAnd(child.getChildren(), positives, negatives))
+					return false;
+				break;
+			case NOT: {
+				QueryNode negated = child.getChildren().get(0);
+				if (negated.getOperator() == Operator.OR)
+					negatives.addAll(negated.getChildren());
+				else
+					negatives.add(negated);
+				break;
+			}
+			default:
+				positives.add(child);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Construit le plan d'une disjonction. Les opérandes gardent l'ordre de
+	 * la requête.
+	 *
+	 * @param children
+	 *            Plans des opérandes.
+	 * @return Plan de la disjonction.
+	 */
+	private QueryNode planOr(List<QueryNode> children) {
+		QueryNode result = new QueryNode(Operator.OR);
+		for (QueryNode child : children) {
+			switch (child.getOperator()) {
+			case EMPTY:
+				break;
+			case ALL:
+				return createConstant(Operator.ALL);
+			case OR:
+				for (QueryNode grandChild : child.getChildren())
+					result.addChild(grandChild);
+				break;
+			default:
+				result.addChild(child);
+			}
+		}
+		List<QueryNode> operands = result.getChildren();
+		if (operands.isEmpty())
+			return createConstant(Operator.EMPTY);
+		if (operands.size() == 1)
+			return operands.get(0);
+
+		// chaque opérande est lu entièrement
+		double missing = 1;
+		long reads = 0;
+		for (QueryNode child : operands) {
+			missing = missing * (docNbr - child.getEstimatedSize()) / docNbr;
+			reads += getInputReads(child) + child.getEstimatedSize();
+		}
+		result.setEstimates(Math.round(docNbr * (1 - missing)), reads);
+		return result;
+	}
+
+	/**
+	 * Construit le plan d'un opérateur exigeant un nombre minimal d'opérandes.
+	 * Un opérande vide ne peut pas être compté, et un opérande contenant tous
+	 * les documents l'est toujours. Les opérandes gardent l'ordre de la
+	 * requête.
+	 *
+	 * @param children
+	 *            Plans des opérandes.
+	 * @param minimumMatch
+	 *            Nombre minimal d'opérandes contenant chaque document.
+	 * @return Plan de l'opérateur.
+	 */
+	private QueryNode planAtLeast(List<QueryNode> children, int minimumMatch) {
+		List<QueryNode> operands = new ArrayList<QueryNode>();
+		int k = minimumMatch;
+		for (QueryNode child : children) {
+			if (child.getOperator() == Operator.ALL)
+				k--;
+			else if (child.getOperator() != Operator.EMPTY)
+				operands.add(child);
+		}
+		if (k <= 0)
+			return createConstant(Operator.ALL);
+		if (k > operands.size())
+			return createConstant(Operator.EMPTY);
+		if (k == 1)
+			return planOr(operands);
+		if (k == operands.size())
+			return planAnd(operands);
+
+		// probabilités d'être contenu dans exactement j opérandes parmi les
+		// premiers, en supposant les opérandes indépendants
+		double[] counts = new double[operands.size() + 1];
+		counts[0] = 1;
+		long reads = 0;
+		QueryNode result = new QueryNode(Operator.ATLEAST);
+		result.setMinimumMatch(k);
+		for (int i = 0; i < operands.size(); i++) {
+			QueryNode child = operands.get(i);
+			double p = (double) child.getEstimatedSize() / docNbr;
+			for (int j = i + 1; j > 0; j--)
+				counts[j] = counts[j] * (1 - p) + counts[j - 1] * p;
+			counts[0] = counts[0] * (1 - p);
+			// au plus, chaque opérande est lu entièrement
+			reads += getInputReads(child) + child.getEstimatedSize();
+			result.addChild(child);
+		}
+		double probability = 0;
+		for (int j = k; j < counts.length; j++)
+			probability += counts[j];
+		result.setEstimates(Math.round(docNbr * probability), reads);
+		return result;
+	}
+
+	/**
+	 * Crée un nœud représentant l'ensemble vide ou l'ensemble de tous les
+	 * documents.
+	 *
+	 * @param operator
+	 *            {@link Operator#EMPTY} ou {@link Operator#ALL}.
+	 * @return Nœud correspondant.
+	 */
+	private QueryNode createConstant(Operator operator) {
+		QueryNode result = new QueryNode(operator);
+		if (operator == Operator.ALL)
+			result.setEstimates(docNbr, 0);
+		return result;
+	}
+
+	/**
+	 * Renvoie le nombre estimé de postings lus pour produire un opérande, sans
+	 * compter la lecture de son résultat par le nœud parent. La liste d'un
+	 * terme n'étant lue que par son parent, ce nombre est nul pour un terme.
+	 *
+	 * @param child
+	 *            Plan de l'opérande.
+	 * @return Nombre estimé de postings lus.
+	 */
+	private static long getInputReads(QueryNode child) {
+		if (child.getOperator() == Operator.TERM)
+			return 0;
+		return child.getEstimatedReads();
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		AbstractIndex index = AbstractIndex.indexCorpus(AbstractIndex.TokenListType.ARRAY,
+				AbstractIndex.LexiconType.ARRAY);
+		QueryParser parser = new QueryParser(index.getTokenizer(), index.getNormalizer());
+		QueryPlanner planner = new QueryPlanner(index);
+
+		// test de plan
+		String[] queries = { "solar energy", "energy solar", "solar NOT NOT energy",
+				"solar NOT (energy OR power)", "solar xyzxyz, energy", "NOT solar NOT energy",
+				"(solar energy panels xyzxyz)@3", "(solar energy panels power)@2" };
+		for (String query : queries) {
+			QueryNode plan = planner.plan(parser.parse(query));
+			System.out.println("plan(" + query + "): " + plan + ", estimated size="
+					+ plan.getEstimatedSize() + ", estimated reads=" + plan.getEstimatedReads());
+		}
+	}
+}
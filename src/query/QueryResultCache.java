@@ -0,0 +1,427 @@
+package query;
+
+import indexation.content.PostingList;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache des résultats des requêtes, partagé par tous les threads et borné par
+ * le nombre d'octets occupés. Un résultat est identifié par une clé construite
+ * à partir de la séquence de termes obtenue après tokénisation et
+ * normalisation de la requête, du type de moteur et du nombre de documents
+ * demandés (cf. {@link #createKey(String, int, String)}) : deux requêtes ne
+ * différant que par la casse ou la ponctuation partagent donc le même
+ * résultat. <br/>
+ * Chaque résultat est associé au numéro de génération de l'index pour lequel
+ * il a été calculé (cf. {@link indexation.AbstractIndex#getGeneration()}).
+ * Dès qu'une génération plus récente est rencontrée, tous les résultats
+ * existants sont supprimés : un cache ne doit donc servir qu'à un seul
+ * index. <br/>
+ * Le cache n'utilise aucun verrou : les résultats sont stockés dans une table
+ * concurrente, et l'ordre d'éviction est donné par une file concurrente
+ * parcourue circulairement (algorithme CLOCK). Un résultat consulté depuis son
+ * dernier passage en tête de file obtient une seconde chance, et est replacé
+ * en fin de file au lieu d'être évincé. La taille maximale peut être
+ * brièvement dépassée lorsque plusieurs threads insèrent des résultats
+ * simultanément. <br/>
+ * Les objets stockés sont partagés : les moteurs y placent donc leur propre
+ * copie d'un résultat, et renvoient une copie lors de chaque succès.
+ * Le cache peut aussi contenir d'autres objets calculés à partir d'une
+ * requête, comme son plan, pourvu que leur type fasse partie de la clé.
+ */
+public class QueryResultCache {
+	/**
+	 * Crée un cache vide, pouvant occuper au plus le nombre d'octets spécifié.
+	 *
+	 * @param maxBytes
+	 *            Taille maximale du cache, en octets.
+	 */
+	public QueryResultCache(long maxBytes) {
+		if (maxBytes <= 0)
+			throw new IllegalArgumentException("Cache size must be positive.");
+		this.maxBytes = maxBytes;
+		data = new ConcurrentHashMap<String, Entry>();
+		clock = new ConcurrentLinkedQueue<Entry>();
+		residentBytes = new AtomicLong();
+		generation = new AtomicLong();
+		hits = new LongAdder();
+		misses = new LongAdder();
+		evictions = new LongAdder();
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Coût fixe d'un résultat en mémoire (objets, tableaux et entrée) */
+	private static final int ENTRY_OVERHEAD = 64;
+
+	/**
+	 * Résultat stocké dans le cache.
+	 */
+	private static class Entry {
+		/**
+		 * Crée une entrée pour le résultat spécifié.
+		 *
+		 * @param key
+		 *            Clé du résultat.
+		 * @param value
+		 *            Résultat de la requête.
+		 * @param generation
+		 *            Génération de l'index ayant produit le résultat.
+		 * @param weight
+		 *            Nombre d'octets occupés par l'entrée.
+		 */
+		public Entry(String key, Object value, long generation, long weight) {
+			this.key = key;
+			this.value = value;
+			this.generation = generation;
+			this.weight = weight;
+		}
+
+		/** Clé du résultat */
+		private final String key;
+		/** Résultat de la requête */
+		private final Object value;
+		/** Génération de l'index ayant produit le résultat */
+		private final long generation;
+		/** Nombre d'octets occupés par l'entrée */
+		private final long weight;
+		/** Indique si le résultat a été consulté depuis son entrée dans la file */
+		private volatile boolean referenced;
+	}
+
+	/** Taille maximale du cache, en octets */
+	private final long maxBytes;
+	/** Résultats présents dans le cache, par clé */
+	private final ConcurrentHashMap<String, Entry> data;
+	/**
+	 * File d'éviction : chaque entrée insérée y figure exactement une fois,
+	 * tant que sa taille est comptée dans {@link #residentBytes}
+	 */
+	private final ConcurrentLinkedQueue<Entry> clock;
+	/** Nombre d'octets occupés par les entrées de la file d'éviction */
+	private final AtomicLong residentBytes;
+	/** Génération la plus récente rencontrée */
+	private final AtomicLong generation;
+
+	/**
+	 * Construit la clé identifiant le résultat d'une requête.
+	 *
+	 * @param engine
+	 *            Type du moteur, incluant tout paramètre modifiant le
+	 *            résultat.
+	 * @param k
+	 *            Nombre de documents demandés, ou zéro.
+	 * @param normalizedQuery
+	 *            Requête reconstituée à partir de ses termes normalisés.
+	 * @return Clé du résultat.
+	 */
+	public static String createKey(String engine, int k, String normalizedQuery) {
+		return engine + "|" + k + "|" + normalizedQuery;
+	}
+
+	/**
+	 * Reconstitue une requête à partir de ses termes normalisés, en ignorant
+	 * les termes {@code null} (mots vides).
+	 *
+	 * @param terms
+	 *            Termes normalisés, dans l'ordre de la requête.
+	 * @return Termes séparés par des espaces.
+	 */
+	public static String joinTerms(List<String> terms) {
+		StringBuilder result = new StringBuilder();
+		for (String term : terms) {
+			if (term != null) {
+				if (result.length() > 0)
+					result.append(' ');
+				result.append(term);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Renvoie le résultat associé à la clé spécifiée, s'il a été calculé pour
+	 * la génération spécifiée.
+	 *
+	 * @param key
+	 *            Clé construite par {@link #createKey(String, int, String)}.
+	 * @param generation
+	 *            Génération actuelle de l'index.
+	 * @return Le résultat, ou {@code null} s'il n'est pas dans le cache.
+	 */
+	public Object get(String key, long generation) {
+		updateGeneration(generation);
+		Entry entry = data.get(key);
+		if (entry == null || entry.generation != generation) {
+			misses.increment();
+			return null;
+		}
+		entry.referenced = true;
+		hits.increment();
+		return entry.value;
+	}
+
+	/**
+	 * Insère un résultat dans le cache, en évinçant si nécessaire d'autres
+	 * résultats. Un résultat plus grand que le cache lui-même, ou calculé pour
+	 * une génération dépassée, est ignoré.
+	 *
+	 * @param key
+	 *            Clé construite par {@link #createKey(String, int, String)}.
+	 * @param value
+	 *            Résultat de la requête.
+	 * @param generation
+	 *            Génération de l'index ayant produit le résultat.
+	 */
+	public void put(String key, Object value, long generation) {
+		long weight = weigh(key, value);
+		if (weight > maxBytes)
+			return;
+		updateGeneration(generation);
+		if (generation != this.generation.get())
+			return;
+
+		Entry entry = new Entry(key, value, generation, weight);
+		Entry previous = data.putIfAbsent(key, entry);
+		// un autre thread a déjà inséré ce résultat
+		if (previous != null
+				&& (previous.generation == generation || !data.replace(key, previous, entry)))
+			return;
+		clock.offer(entry);
+		residentBytes.addAndGet(weight);
+		while (residentBytes.get() > maxBytes && evict())
+			;
+	}
+
+	/**
+	 * Supprime tous les résultats du cache.
+	 */
+	public void clear() {
+		Entry entry;
+		while ((entry = clock.poll()) != null) {
+			data.remove(entry.key, entry);
+			residentBytes.addAndGet(-entry.weight);
+		}
+	}
+
+	/**
+	 * Prend en compte la génération spécifiée : si elle est plus récente que
+	 * toutes celles déjà rencontrées, les résultats existants sont supprimés.
+	 *
+	 * @param generation
+	 *            Génération actuelle de l'index.
+	 */
+	private void updateGeneration(long generation) {
+		long current = this.generation.get();
+		while (generation > current) {
+			if (this.generation.compareAndSet(current, generation)) {
+				clear();
+				return;
+			}
+			current = this.generation.get();
+		}
+	}
+
+	/**
+	 * Traite l'entrée en tête de la file d'éviction : elle est replacée en fin
+	 * de file si elle a été consultée depuis son dernier passage, et supprimée
+	 * sinon.
+	 *
+	 * @return {@code false} si la file est vide.
+	 */
+	private boolean evict() {
+		Entry entry = clock.poll();
+		if (entry == null)
+			return false;
+		if (entry.referenced && entry.generation == generation.get() && data.get(entry.key) == entry) {
+			entry.referenced = false;
+			clock.offer(entry);
+		} else {
+			data.remove(entry.key, entry);
+			residentBytes.addAndGet(-entry.weight);
+			evictions.increment();
+		}
+		return true;
+	}
+
+	/**
+	 * Estime le nombre d'octets occupés par un résultat et sa clé.
+	 *
+	 * @param key
+	 *            Clé du résultat.
+	 * @param value
+	 *            Résultat de la requête.
+	 * @return Nombre d'octets occupés.
+	 */
+	private static long weigh(String key, Object value) {
+		long result = ENTRY_OVERHEAD + 2L * key.length();
+		// un docId et une fréquence par posting
+		if (value instanceof PostingList)
+			result = result + 8L * ((PostingList) value).getDocIds().length;
+		// un docId et un score par document
+		else if (value instanceof TopDocs)
+			result = result + 8L * ((TopDocs) value).size();
+		// un autre objet, comme un plan, est proportionnel à sa requête
+		else
+			result = result + 4L * key.length();
+		return result;
+	}
+
+	// //////////////////////////////////////////////////
+	// STATISTIQUES
+	// //////////////////////////////////////////////////
+	/** Nombre de requêtes trouvées dans le cache */
+	private final LongAdder hits;
+	/** Nombre de requêtes absentes du cache */
+	private final LongAdder misses;
+	/** Nombre de résultats évincés faute de place */
+	private final LongAdder evictions;
+
+	/**
+	 * Renvoie le nombre de requêtes trouvées dans le cache.
+	 *
+	 * @return Nombre de succès.
+	 */
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de requêtes absentes du cache.
+	 *
+	 * @return Nombre d'échecs.
+	 */
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	/**
+	 * Renvoie la proportion de requêtes trouvées dans le cache.
+	 *
+	 * @return Taux de succès, entre 0 et 1.
+	 */
+	public double getHitRatio() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		if (total == 0)
+			return 0;
+		return hitCount / (double) total;
+	}
+
+	/**
+	 * Renvoie le nombre de résultats évincés faute de place.
+	 *
+	 * @return Nombre d'évictions.
+	 */
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * Renvoie le nombre d'octets actuellement occupés par le cache.
+	 *
+	 * @return Taille du cache, en octets.
+	 */
+	public long getResidentBytes() {
+		return residentBytes.get();
+	}
+
+	/**
+	 * Renvoie le nombre maximal d'octets occupés par le cache.
+	 *
+	 * @return Taille maximale du cache, en octets.
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Renvoie le nombre de résultats présents dans le cache.
+	 *
+	 * @return Nombre de résultats.
+	 */
+	public int size() {
+		return data.size();
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", hit ratio="
+				+ String.format("%.3f", getHitRatio()) + ", evictions=" + getEvictionCount() + ", size=" + size()
+				+ ", bytes=" + getResidentBytes() + "/" + maxBytes;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : plusieurs threads consultent et
+	 * remplissent le même cache avec des requêtes suivant une loi de Zipf, puis
+	 * on vérifie que la taille maximale est respectée et qu'un changement de
+	 * génération vide le cache.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		final QueryResultCache cache = new QueryResultCache(64 * 1024);
+		final int queryNbr = 2000;
+		// probabilités cumulées de la loi de Zipf
+		final double[] cumulated = new double[queryNbr];
+		double sum = 0;
+		for (int q = 0; q < queryNbr; q++) {
+			sum = sum + 1.0 / (q + 1);
+			cumulated[q] = sum;
+		}
+		final double total = sum;
+
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			final long seed = t;
+			threads[t] = new Thread() {
+				@Override
+				public void run() {
+					Random random = new Random(seed);
+					for (int i = 0; i < 100000; i++) {
+						double p = random.nextDouble() * total;
+						int q = 0;
+						while (cumulated[q] < p)
+							q++;
+						String key = createKey("AND", 0, "term" + q);
+						PostingList list = (PostingList) cache.get(key, 1);
+						if (list == null) {
+							list = new PostingList(1 + q % 50);
+							list.add(q, 1);
+							cache.put(key, list, 1);
+						} else if (list.getDocId(0) != q)
+							throw new IllegalStateException("Wrong result for " + key);
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads)
+			thread.join();
+		System.out.println("after Zipf workload: " + cache);
+		System.out.println("bounded: " + (cache.getResidentBytes() <= cache.getMaxBytes()));
+
+		String key = createKey("AND", 0, "term0");
+		System.out.println("same generation: " + (cache.get(key, 1) != null));
+		System.out.println("new generation: " + (cache.get(key, 2) != null) + ", size=" + cache.size()
+				+ ", bytes=" + cache.getResidentBytes());
+		cache.put(key, new PostingList(), 1);
+		System.out.println("stale result ignored: " + (cache.size() == 0));
+	}
+}
@@ -1,16 +1,18 @@
 package query;
 
 import indexation.AbstractIndex;
+import indexation.content.AbstractPostingCursor;
+import indexation.content.BlockMaxScores;
+import indexation.content.DocumentStatistics;
+import indexation.content.ImpactList;
 import indexation.content.IndexEntry;
-import indexation.content.Posting;
 import indexation.processing.Normalizer;
 import indexation.processing.Tokenizer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.TreeSet;
 
 /**
  * Objet capable de traiter une requête de type sac-de-mots.
@@ -19,13 +21,38 @@ public class RankingQueryEngine {
 	/**
 	 * Initialise ce moteur de requête avec l'index passé en paramètre, qui sera
 	 * considéré comme index de référence lors de l'évaluation des requêtes
-	 * reçues.
+	 * reçues. Les documents sont classés selon la similarité cosinus tf-idf.
 	 * 
 	 * @param index
 	 *            Index de référence.
 	 */
 	public RankingQueryEngine(AbstractIndex index) {
+		this(index, new CosineSimilarity());
+	}
+
+	/**
+	 * Initialise ce moteur de requête avec l'index et la fonction de
+	 * similarité passés en paramètres. La similarité effectue ses précalculs
+	 * immédiatement, et ne doit pas être partagée avec un moteur utilisant un
+	 * autre index.
+	 * 
+	 * @param index
+	 *            Index de référence.
+	 * @param similarity
+	 *            Fonction de similarité utilisée pour classer les documents.
+	 */
+	public RankingQueryEngine(AbstractIndex index, Similarity similarity) {
 		this.index = index;
+		this.similarity = similarity;
+		if (index.getDocumentStatistics() != null)
+			similarity.prepare(index.getDocumentStatistics());
+		final int docNbr = index.getDocumentNumber();
+		accumulators = new ThreadLocal<ScoreAccumulator>() {
+			@Override
+			protected ScoreAccumulator initialValue() {
+				return new ScoreAccumulator(docNbr);
+			}
+		};
 	}
 
 	// //////////////////////////////////////////////////
@@ -33,9 +60,9 @@ public class RankingQueryEngine {
 	// //////////////////////////////////////////////////
 	/**
 	 * Traite la requête passée en paramètre et renvoie la liste ordonnée des
-	 * {@code k} documents les plus pertinents, sous dorme d'objets
+	 * {@code k} documents les plus pertinents, sous forme d'objets
 	 * {@link DocScore}. La valeur zéro pour {@code k} signifie qu'on veut tous
-	 * les documents du corpus.
+	 * les documents de score non-nul.
 	 * 
 	 * @param query
 	 *            Requête à traiter.
@@ -45,47 +72,200 @@ public class RankingQueryEngine {
 	 * @return Liste ordonnée des documents sélectionnés, avec leurs scores.
 	 */
 	public List<DocScore> processQuery(String query, int k) {
-		System.out.println("Processing query \"" + query + "\"");
+		return processQuery(query, k, 0);
+	}
+
+	/**
+	 * Traite la requête passée en paramètre et renvoie la liste ordonnée des
+	 * {@code k} documents les plus pertinents, comme
+	 * {@link #processQuery(String, int)}, mais en limitant le temps consacré
+	 * au calcul des scores. Si l'index contient les impacts précalculés des
+	 * postings, ceux-ci sont traités par contribution décroissante, et le
+	 * traitement s'arrête dès que le temps alloué est écoulé. Sinon, le temps
+	 * alloué est ignoré.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro pour tous les
+	 *            documents.
+	 * @param budget
+	 *            Temps alloué au calcul des scores, en nanosecondes, ou zéro
+	 *            pour ne pas limiter ce temps.
+	 * @return Liste ordonnée des documents sélectionnés, avec leurs scores.
+	 */
+	public List<DocScore> processQuery(String query, int k, long budget) {
+		return processTopDocsQuery(query, k, budget).toDocScores();
+	}
+
+	/**
+	 * Traite la requête passée en paramètre comme
+	 * {@link #processQuery(String, int, long)}, mais renvoie directement le
+	 * résultat sous forme de tableaux de docIds et de scores.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro pour tous les
+	 *            documents de score non-nul.
+	 * @param budget
+	 *            Temps alloué au calcul des scores, en nanosecondes, ou zéro
+	 *            pour ne pas limiter ce temps.
+	 * @return Documents sélectionnés, avec leurs scores.
+	 */
+	public TopDocs processTopDocsQuery(String query, int k, long budget) {
+		return processTopDocsQuery(query, k, budget, RankingStrategy.EXHAUSTIVE);
+	}
+
+	/**
+	 * Traite la requête passée en paramètre comme
+	 * {@link #processTopDocsQuery(String, int, long)}, en utilisant la méthode
+	 * d'évaluation spécifiée. Les méthodes avec élagage dynamique renvoient
+	 * exactement les mêmes documents que l'évaluation exhaustive à partir des
+	 * postings, mais nécessitent que les scores maximaux aient été calculés
+	 * lors de l'indexation. Elles ne sont utilisées que si {@code k} est
+	 * non-nul. Si les impacts quantifiés ont aussi été précalculés,
+	 * l'évaluation exhaustive les utilise à la place des postings : ses scores
+	 * sont alors approchés, et l'ordre des documents de scores voisins peut
+	 * différer de celui des méthodes avec élagage.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro pour tous les
+	 *            documents de score non-nul.
+	 * @param strategy
+	 *            Méthode d'évaluation.
+	 * @return Documents sélectionnés, avec leurs scores.
+	 */
+	public TopDocs processTopDocsQuery(String query, int k,
+			RankingStrategy strategy) {
+		return processTopDocsQuery(query, k, 0, strategy);
+	}
+
+	/**
+	 * Traite la requête passée en paramètre avec la méthode d'évaluation et le
+	 * temps alloué spécifiés.
+	 * 
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro.
+	 * @param budget
+	 *            Temps alloué au calcul des scores, en nanosecondes, ou zéro.
+	 * @param strategy
+	 *            Méthode d'évaluation.
+	 * @return Documents sélectionnés, avec leurs scores.
+	 */
+	private TopDocs processTopDocsQuery(String query, int k, long budget,
+			RankingStrategy strategy) {
+		if (verbose)
+			System.out.println("Processing query \"" + query + "\"");
 		long start = System.currentTimeMillis();
 		
-		// on décompose la requête et identifie les termes
-		List<IndexEntry> queryEntries = new LinkedList<IndexEntry>();
-		splitQuery(query, queryEntries);
+		// on décompose la requête
+		List<String> terms = new LinkedList<String>();
+		splitTerms(query, terms);
 		
-		// on calcule les scores
-		List<DocScore> result = new LinkedList<DocScore>();
-		sortDocuments(queryEntries, k, result);
+		// on consulte le cache des résultats, sauf si le temps est limité
+		String key = null;
+		long generation = index.getGeneration();
+		TopDocs result = null;
+		boolean caching = resultCache != null && budget == 0;
+		if (caching) {
+			key = QueryResultCache.createKey(ENGINE_TYPE + " " + similarity + " " + strategy, k,
+					QueryResultCache.joinTerms(terms));
+			// le cache conserve sa propre copie, que l'appelant peut modifier
+			TopDocs cached = (TopDocs) resultCache.get(key, generation);
+			if (cached != null)
+				result = cached.copy();
+		}
+		
+		if (result == null) {
+			// on identifie les termes
+			List<IndexEntry> queryEntries = new LinkedList<IndexEntry>();
+			splitQuery(terms, queryEntries);
+			
+			// on calcule les scores
+			if (strategy == RankingStrategy.DOCUMENT_AT_A_TIME
+					&& !queryEntries.isEmpty())
+				result = sortDocumentsAtATime(queryEntries, k);
+			else if (strategy == RankingStrategy.EXHAUSTIVE || k == 0
+					|| queryEntries.isEmpty())
+				result = sortDocuments(queryEntries, k, budget);
+			else
+				result = sortDocumentsWithPruning(queryEntries, k, strategy);
+			if (caching)
+				resultCache.put(key, result.copy(), generation);
+		}
 		
 		long end = System.currentTimeMillis();
-		System.out.println("Query processed, returned " + result.size()
-				+ " values,	duration=" + (end - start) + " ms");
+		if (verbose)
+			System.out.println("Query processed, returned " + result.size()
+					+ " values,	duration=" + (end - start) + " ms");
 		
 		return result;
 	}
 
+	/**
+	 * Permet de choisir la méthode d'évaluation d'une requête.
+	 */
+	public enum RankingStrategy {
+		/** Calcule les scores terme par terme, en traitant tous les postings */
+		EXHAUSTIVE,
+		/**
+		 * Calcule les scores document par document, en traitant tous les
+		 * postings, sans accumulateur (cf. {@link DisjunctionScorer})
+		 */
+		DOCUMENT_AT_A_TIME,
+		/**
+		 * Calcule les scores document par document, en ignorant les documents
+		 * qui ne contiennent que des termes dont la somme des scores maximaux
+		 * ne permet pas d'entrer dans les {@code k} meilleurs (MaxScore)
+		 */
+		MAX_SCORE,
+		/**
+		 * Calcule les scores document par document, en choisissant un pivot à
+		 * partir des scores maximaux des termes, puis en sautant les blocs de
+		 * postings dont les scores maximaux sont insuffisants (Block-Max WAND)
+		 */
+		BLOCK_MAX_WAND;
+	}
+
 	/**
 	 * Tokénise et normalise la requête, de manière à obtenir une liste de
-	 * termes. Ces termes sont ensuite traités pour récupérer les entrées
-	 * correspondantes dans l'index, et surtout leurs listes de postings.
+	 * termes.
 	 * 
 	 * @param query
 	 *            Requête à traiter.
 	 * @param result
-	 *            Liste résultat à compléter, qui doit contenir à la fin du
-	 *            traitement les entrées de l'index correspondant aux termes
-	 *            obtenus après nettoyage de la requête.
+	 *            Liste résultat à compléter avec les termes obtenus après
+	 *            nettoyage de la requête, {@code null} pour les mots vides.
 	 */
-	private void splitQuery(String query, List<IndexEntry> result) {
+	private void splitTerms(String query, List<String> result) {
 		// on tokénize la requête
 		Tokenizer tokenizer = index.getTokenizer();
 		List<String> types = tokenizer.tokenizeString(query);
 		// on normalise chaque type
 		Normalizer normalizer = index.getNormalizer();
-
 		// la normalisation du type donne le terme (ou null)
-		for (String type : types) {
-			String term = normalizer.normalizeType(type);
+		for (String type : types)
+			result.add(normalizer.normalizeType(type));
+	}
 
+	/**
+	 * Traite les termes de la requête pour récupérer les entrées
+	 * correspondantes dans l'index, et surtout leurs listes de postings.
+	 * 
+	 * @param terms
+	 *            Termes obtenus par {@link #splitTerms(String, List)}.
+	 * @param result
+	 *            Liste résultat à compléter, qui doit contenir à la fin du
+	 *            traitement les entrées de l'index correspondant aux termes
+	 *            obtenus après nettoyage de la requête.
+	 */
+	private void splitQuery(List<String> terms, List<IndexEntry> result) {
+		for (String term : terms) {
 			if (term != null) { // on récupère l'entrée associée au terme dans
 								// l'index
 				IndexEntry entry = index.getEntry(term);
@@ -100,22 +280,6 @@ public class RankingQueryEngine {
 	// //////////////////////////////////////////////////
 	// POIDS
 	// //////////////////////////////////////////////////
-	/**
-	 * Calcule la pondération log-fréquence associée à un terme dans un
-	 * document.
-	 * 
-	 * @param posting
-	 *            Document à traiter, sous forme de posting.
-	 * @return Poids correspondant au document.
-	 */
-	private float processWf(Posting posting) {
-		int tf = posting.getFrequency();
-		float result = 0;
-		if (tf > 0)
-			result = 1 + (float) Math.log10(tf);
-		return result;
-	}
-
 	/**
 	 * Calcule la fréquence de document inverse associée à un terme dans une
 	 * collection.
@@ -125,10 +289,8 @@ public class RankingQueryEngine {
 	 * @return Fréquence inverse correspondant.
 	 */
 	private float processIdf(IndexEntry entry) {
-		float df = entry.getFrequency();
-		int docNbr = index.getDocumentNumber();
-		float result = (float) Math.log10(docNbr / df);
-		return result;
+		return DocumentStatistics.processIdf(entry.getFrequency(),
+				index.getDocumentNumber());
 	}
 
 	// //////////////////////////////////////////////////
@@ -138,73 +300,589 @@ public class RankingQueryEngine {
 	 * Trie les documents en fonction de leur similarité avec la requête
 	 * spécifiée, et ne garde que les {@code k} plus pertinents (ainsi que leurs
 	 * scores). La valeur zéro pour {@code k} indique que l'on veut renvoyer la
-	 * liste complète de tous les documents (toujours avec leur score).
+	 * liste complète des documents de score non-nul. Les scores sont accumulés
+	 * dans un {@link ScoreAccumulator} propre au thread courant, et seuls les
+	 * documents touchés par la requête sont ensuite normalisés puis soumis à
+	 * un {@link TopDocsCollector}, sans créer d'objet par document. <br/>
+	 * Les contributions et la normalisation sont calculées par la fonction de
+	 * similarité du moteur. Les impacts précalculés ne sont utilisés qu'avec
+	 * la similarité cosinus, pour laquelle ils ont été calculés.
 	 * 
 	 * @param queryEntries
 	 *            Entrées correspondant à la requête à traiter.
 	 * @param k
 	 *            Nombre de documents désiré (ou zéro pour tous les documents).
-	 * @param docScores
-	 *            DocIds et scores des {@code k} documents les plus pertinents.
+	 * @param budget
+	 *            Temps alloué au calcul des scores à partir des impacts, en
+	 *            nanosecondes, ou zéro.
+	 * @return DocIds et scores des {@code k} documents les plus pertinents.
 	 */
-	private void sortDocuments(List<IndexEntry> queryEntries, int k,
-			List<DocScore> docScores) {
+	private TopDocs sortDocuments(List<IndexEntry> queryEntries, int k,
+			long budget) {
 		// initialisation
-		TreeSet<DocScore> orderedIds = new TreeSet<DocScore>();
-		int docNbr = index.getDocumentNumber();
-		final float scores[] = new float[docNbr];
-		Arrays.fill(scores, 0);
-		float norms[] = new float[docNbr];
-		Arrays.fill(norms, 0);
-		float queryNorm = 0;
+		TopDocsCollector collector = new TopDocsCollector(k);
+		// la similarité ne peut être préparée sans les statistiques
+		getDocumentStatistics();
+		ScoreAccumulator scores = accumulators.get();
+		scores.reset();
+		float queryNorm;
+		if (similarity instanceof CosineSimilarity && hasImpacts(queryEntries))
+			queryNorm = accumulateImpacts(queryEntries, scores, budget);
+		else
+			queryNorm = accumulateWeights(queryEntries, scores);
+
+		// on termine le calcul des scores et on sélectionne les documents
+		for (int i = 0; i < scores.size(); i++) {
+			int docId = scores.getDocId(i);
+			float score = scores.getScore(docId);
+			if (score != 0)
+				collector.collect(docId,
+						similarity.normalize(score, docId, queryNorm));
+		}
+		TopDocs result = collector.getTopDocs();
+		result.setScoredPostings(scores.getAdditionNumber());
+		return result;
+	}
+
+	/**
+	 * Trie les documents comme {@link #sortDocuments(List, int, long)}, mais
+	 * en les évaluant document par document : chaque document de l'union des
+	 * listes des termes est complètement évalué, puis directement soumis au
+	 * {@link TopDocsCollector}. Les contributions étant additionnées dans
+	 * l'ordre de la requête, les scores sont exactement ceux de l'évaluation
+	 * terme par terme à partir des postings. Les impacts précalculés ne sont
+	 * pas utilisés.
+	 * 
+	 * @param queryEntries
+	 *            Entrées correspondant à la requête à traiter.
+	 * @param k
+	 *            Nombre de documents désiré (ou zéro pour tous les documents).
+	 * @return DocIds et scores des {@code k} documents les plus pertinents.
+	 */
+	private TopDocs sortDocumentsAtATime(List<IndexEntry> queryEntries, int k) {
+		// la similarité ne peut être préparée sans les statistiques
+		getDocumentStatistics();
+		float[] weights = new float[queryEntries.size()];
+		List<AbstractPostingCursor> cursors = new ArrayList<AbstractPostingCursor>();
+		int t = 0;
+		for (IndexEntry entry : queryEntries) {
+			weights[t++] = similarity.getTermWeight(entry.getFrequency());
+			cursors.add(entry.getPostingCursor());
+		}
+		float queryNorm = similarity.getQueryNorm(weights);
+
+		TopDocsCollector collector = new TopDocsCollector(k);
+		DisjunctionScorer scorer = new DisjunctionScorer(cursors, weights,
+				similarity);
+		while (scorer.next()) {
+			int docId = scorer.getDocId();
+			float score = scorer.score();
+			if (score != 0)
+				collector.collect(docId,
+						similarity.normalize(score, docId, queryNorm));
+		}
+		TopDocs result = collector.getTopDocs();
+		result.setScoredPostings(scorer.getScoredPostings());
+		return result;
+	}
+
+	/**
+	 * Renvoie les statistiques des documents de l'index.
+	 * 
+	 * @return Statistiques des documents.
+	 */
+	private DocumentStatistics getDocumentStatistics() {
+		DocumentStatistics result = index.getDocumentStatistics();
+		if (result == null)
+			throw new IllegalStateException(
+					"The index has no document statistics, it must be rebuilt.");
+		return result;
+	}
+
+	/**
+	 * Ajoute aux scores des documents les contributions des termes de la
+	 * requête, calculées à partir des postings par la fonction de similarité.
+	 * 
+	 * @param queryEntries
+	 *            Entrées correspondant à la requête à traiter.
+	 * @param scores
+	 *            Accumulateurs des scores des documents.
+	 * @return Norme de la requête.
+	 */
+	private float accumulateWeights(List<IndexEntry> queryEntries,
+			ScoreAccumulator scores) {
+		float[] weights = new float[queryEntries.size()];
+		int t = 0;
 
 		// on parcourt tous les termes de la requête
 		for (IndexEntry entry : queryEntries) {
-			float idf = processIdf(entry);
-			// on calcule le poids individuel du terme pour la requête
-			float stq = idf;
-			// on met à jour sa norme
-			queryNorm = queryNorm + (float) Math.pow(stq, 2);
-
-			// pour tous les postings contenant le terme traité
-			List<Posting> postings = entry.getPostings();
-			for (Posting posting : postings) { // on calcule le score individuel
-												// du terme pour le document
-				float std = processWf(posting) * idf;
-				// on met à jour les scores et normes
-				int docId = posting.getDocId();
-				scores[docId] = scores[docId] + stq * std;
-				norms[docId] = norms[docId] + (float) Math.pow(std, 2);
+			// on calcule le poids individuel du terme
+			float weight = similarity.getTermWeight(entry.getFrequency());
+			weights[t++] = weight;
+
+			// pour tous les postings contenant le terme traité, on met à jour
+			// les scores
+			AbstractPostingCursor postings = entry.getPostingCursor();
+			while (postings.next()) {
+				int docId = postings.getDocId();
+				scores.add(docId, similarity.score(weight,
+						postings.getFrequency(), docId));
 			}
 		}
+		return similarity.getQueryNorm(weights);
+	}
 
-		// on termine le calcul des normes
-		for (int i = 0; i < norms.length; i++)
-			norms[i] = (float) Math.sqrt(norms[i]);
-		queryNorm = (float) Math.sqrt(queryNorm);
+	/**
+	 * Indique si les impacts des postings de tous les termes de la requête ont
+	 * été précalculés lors de l'indexation.
+	 * 
+	 * @param queryEntries
+	 *            Entrées correspondant à la requête à traiter.
+	 * @return {@code true} si toutes les entrées possèdent leurs impacts.
+	 */
+	private boolean hasImpacts(List<IndexEntry> queryEntries) {
+		for (IndexEntry entry : queryEntries)
+			if (entry.getImpacts() == null)
+				return false;
+		return true;
+	}
 
-		// on termine le calcul des scores et on ordonne les documents
-		for (int i = 0; i < scores.length; i++) {
-			if (norms[i] == 0)
-				scores[i] = 0;
-			else
-				scores[i] = scores[i] / (norms[i] * queryNorm);
+	/**
+	 * Ajoute aux scores des documents les contributions des termes de la
+	 * requête, en utilisant les impacts précalculés (<i>score-at-a-time</i>).
+	 * Les segments de même impact de tous les termes sont triés par
+	 * contribution décroissante, puis traités dans cet ordre jusqu'à ce que le
+	 * temps alloué soit écoulé.
+	 * 
+	 * @param queryEntries
+	 *            Entrées correspondant à la requête à traiter.
+	 * @param scores
+	 *            Accumulateurs des scores des documents.
+	 * @param budget
+	 *            Temps alloué, en nanosecondes, ou zéro pour traiter tous les
+	 *            segments.
+	 * @return Norme du vecteur de la requête.
+	 */
+	private float accumulateImpacts(List<IndexEntry> queryEntries,
+			ScoreAccumulator scores, long budget) {
+		long start = System.nanoTime();
+		float queryNorm = 0;
+		ImpactList[] lists = new ImpactList[queryEntries.size()];
+		int segmentNumber = 0;
+		int t = 0;
+		for (IndexEntry entry : queryEntries) {
+			lists[t] = entry.getImpacts();
+			segmentNumber = segmentNumber + lists[t].getSegmentNumber();
+			t++;
+		}
+
+		// chaque segment est codé par sa contribution (positive, donc dont
+		// l'ordre est celui de sa représentation binaire), son terme et son
+		// numéro
+		long[] segments = new long[segmentNumber];
+		int n = 0;
+		t = 0;
+		for (IndexEntry entry : queryEntries) {
+			float stq = processIdf(entry);
+			queryNorm = queryNorm + stq * stq;
+			for (int s = 0; s < lists[t].getSegmentNumber(); s++) {
+				float contribution = stq * lists[t].getWeight(s);
+				segments[n++] = ((long) Float.floatToIntBits(contribution) << 32)
+						| (t << 8) | s;
+			}
+			t++;
+		}
+		Arrays.sort(segments);
 
-			DocScore docScore = new DocScore(i, scores[i]);
-			orderedIds.add(docScore);
+		// on traite les segments par contribution décroissante
+		int processed = 0;
+		for (int i = n - 1; i >= 0; i--) {
+			float contribution = Float
+					.intBitsToFloat((int) (segments[i] >>> 32));
+			if (contribution <= 0)
+				break;
+			ImpactList list = lists[(int) segments[i] >>> 8];
+			int segment = (int) segments[i] & 0xFF;
+			int end = list.getSegmentEnd(segment);
+			for (int j = list.getSegmentStart(segment); j < end; j++)
+				scores.add(list.getDocId(j), contribution);
+			processed++;
+			if (budget > 0 && System.nanoTime() - start > budget)
+				break;
 		}
+		if (verbose)
+			System.out.println(" Processed " + processed + "/" + n
+					+ " impact segments");
+		return (float) Math.sqrt(queryNorm);
+	}
 
-		// on garde tout si k vaut zéro
-		if (k == 0)
-			k = orderedIds.size();
+	// //////////////////////////////////////////////////
+	// ÉLAGAGE DYNAMIQUE
+	// //////////////////////////////////////////////////
+	/** DocId utilisé pour une liste de postings entièrement parcourue */
+	private static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+	/**
+	 * Marge appliquée aux bornes supérieures des scores, pour compenser les
+	 * erreurs d'arrondi : un document n'est ignoré que si sa borne est
+	 * nettement inférieure au seuil, ce qui garantit le même résultat que
+	 * l'évaluation exhaustive à partir des postings
+	 */
+	private static final float BOUND_SLACK = 1.0001f;
 
-		// on ajoute dans le bon ordre
-		Iterator<DocScore> it = orderedIds.descendingIterator();
-		int i = 0;
-		while (i < k && it.hasNext()) {
-			DocScore docScore = it.next();
-			docScores.add(docScore);
-			i++;
+	/**
+	 * Sélectionne les {@code k} documents les plus pertinents en les évaluant
+	 * document par document, avec élagage dynamique. Les contributions des
+	 * termes sont calculées à partir des postings et additionnées dans l'ordre
+	 * de la requête, comme lors de l'évaluation exhaustive sans impacts, de
+	 * manière à obtenir exactement les mêmes scores que celle-ci (mais pas
+	 * ceux, quantifiés, de l'évaluation exhaustive à partir des impacts). Les
+	 * scores maximaux ayant été calculés pour la similarité cosinus, seule
+	 * cette similarité est supportée.
+	 * 
+	 * @param queryEntries
+	 *            Entrées correspondant à la requête à traiter.
+	 * @param k
+	 *            Nombre de documents désiré (non-nul).
+	 * @param strategy
+	 *            Méthode d'élagage.
+	 * @return DocIds et scores des {@code k} documents les plus pertinents.
+	 */
+	private TopDocs sortDocumentsWithPruning(List<IndexEntry> queryEntries,
+			int k, RankingStrategy strategy) {
+		if (!(similarity instanceof CosineSimilarity))
+			throw new IllegalStateException(
+					"Dynamic pruning is only available with the cosine similarity.");
+		DocumentStatistics statistics = getDocumentStatistics();
+		int n = queryEntries.size();
+		TermScorer[] terms = new TermScorer[n];
+		float[] weights = new float[n];
+		int t = 0;
+		for (IndexEntry entry : queryEntries) {
+			if (entry.getMaxScores() == null)
+				throw new IllegalStateException(
+						"Dynamic pruning requires max scores computed at indexing time.");
+			weights[t] = similarity.getTermWeight(entry.getFrequency());
+			terms[t] = new TermScorer(entry, weights[t], similarity);
+			t++;
+		}
+		float queryNorm = similarity.getQueryNorm(weights);
+		for (TermScorer term : terms)
+			term.upperBound = term.weight * term.bounds.getMaxScore()
+					/ queryNorm;
+
+		TopDocsCollector collector = new TopDocsCollector(k);
+		long scored;
+		if (strategy == RankingStrategy.MAX_SCORE)
+			scored = processMaxScore(terms, queryNorm, statistics, collector);
+		else
+			scored = processBlockMaxWand(terms, queryNorm, collector);
+		TopDocs result = collector.getTopDocs();
+		result.setScoredPostings(scored);
+		return result;
+	}
+
+	/**
+	 * Évalue les documents selon la méthode MaxScore : les termes sont triés
+	 * par score maximal croissant, et les premiers termes dont la somme des
+	 * scores maximaux est inférieure au seuil d'entrée dans les {@code k}
+	 * meilleurs sont dits non-essentiels. Seules les listes essentielles
+	 * fournissent les documents candidats, et les listes non-essentielles ne
+	 * sont consultées que tant que le candidat peut encore atteindre le seuil.
+	 * 
+	 * @param terms
+	 *            Termes de la requête, dans l'ordre de la requête.
+	 * @param queryNorm
+	 *            Norme du vecteur de la requête.
+	 * @param statistics
+	 *            Statistiques des documents.
+	 * @param collector
+	 *            Collecteur des meilleurs documents.
+	 * @return Nombre de postings évalués.
+	 */
+	private long processMaxScore(TermScorer[] terms, float queryNorm,
+			DocumentStatistics statistics, TopDocsCollector collector) {
+		int n = terms.length;
+		long result = 0;
+		// on ordonne les termes par score maximal croissant
+		TermScorer[] ordered = terms.clone();
+		for (int i = 1; i < n; i++) {
+			TermScorer term = ordered[i];
+			int j = i - 1;
+			while (j >= 0 && ordered[j].upperBound > term.upperBound) {
+				ordered[j + 1] = ordered[j];
+				j--;
+			}
+			ordered[j + 1] = term;
+		}
+		float[] cumulative = new float[n];
+		for (int i = 0; i < n; i++)
+			cumulative[i] = (i > 0 ? cumulative[i - 1] : 0)
+					+ ordered[i].upperBound;
+
+		int firstEssential = 0;
+		while (true) {
+			float threshold = collector.getThreshold();
+			while (firstEssential < n
+					&& cumulative[firstEssential] * BOUND_SLACK < threshold)
+				firstEssential++;
+			if (firstEssential == n)
+				break;
+
+			// le candidat est le plus petit docId des listes essentielles
+			int docId = NO_MORE_DOCS;
+			for (int i = firstEssential; i < n; i++)
+				docId = Math.min(docId, ordered[i].docId);
+			if (docId == NO_MORE_DOCS)
+				break;
+			float norm = statistics.getNorm(docId) * queryNorm;
+			float partial = 0;
+			for (int i = firstEssential; i < n; i++) {
+				TermScorer term = ordered[i];
+				if (term.docId == docId) {
+					partial = partial + term.score();
+					result++;
+					term.next();
+				}
+			}
+
+			// on complète avec les listes non-essentielles, tant que c'est utile
+			boolean pruned = false;
+			for (int i = firstEssential - 1; i >= 0; i--) {
+				float bound = norm > 0 ? partial / norm : 0;
+				if ((bound + cumulative[i]) * BOUND_SLACK < threshold) {
+					pruned = true;
+					break;
+				}
+				TermScorer term = ordered[i];
+				if (term.docId < docId)
+					term.advance(docId);
+				if (term.docId == docId) {
+					partial = partial + term.score();
+					result++;
+				}
+			}
+			if (!pruned)
+				collect(terms, docId, queryNorm, collector);
+			for (TermScorer term : terms)
+				term.matched = false;
+		}
+		return result;
+	}
+
+	/**
+	 * Évalue les documents selon la méthode Block-Max WAND : les termes sont
+	 * triés par docId courant, et le pivot est le premier terme à partir
+	 * duquel la somme des scores maximaux atteint le seuil d'entrée dans les
+	 * {@code k} meilleurs. Le document pivot n'est évalué que si la somme des
+	 * scores maximaux des blocs qui le contiennent atteint aussi ce seuil ;
+	 * sinon, tous les documents jusqu'à la fin du plus court de ces blocs sont
+	 * ignorés.
+	 * 
+	 * @param terms
+	 *            Termes de la requête, dans l'ordre de la requête.
+	 * @param queryNorm
+	 *            Norme du vecteur de la requête.
+	 * @param collector
+	 *            Collecteur des meilleurs documents.
+	 * @return Nombre de postings évalués.
+	 */
+	private long processBlockMaxWand(TermScorer[] terms, float queryNorm,
+			TopDocsCollector collector) {
+		int n = terms.length;
+		long result = 0;
+		TermScorer[] sorted = terms.clone();
+		while (true) {
+			// on ordonne les termes par docId courant
+			for (int i = 1; i < n; i++) {
+				TermScorer term = sorted[i];
+				int j = i - 1;
+				while (j >= 0 && sorted[j].docId > term.docId) {
+					sorted[j + 1] = sorted[j];
+					j--;
+				}
+				sorted[j + 1] = term;
+			}
+
+			// on cherche le pivot
+			float threshold = collector.getThreshold();
+			float bound = 0;
+			int pivot = -1;
+			for (int i = 0; i < n && sorted[i].docId != NO_MORE_DOCS; i++) {
+				bound = bound + sorted[i].upperBound;
+				if (bound * BOUND_SLACK >= threshold) {
+					pivot = i;
+					break;
+				}
+			}
+			if (pivot < 0)
+				break;
+			int pivotDoc = sorted[pivot].docId;
+			while (pivot + 1 < n && sorted[pivot + 1].docId == pivotDoc)
+				pivot++;
+
+			// on vérifie les scores maximaux des blocs contenant le pivot
+			float blockBound = 0;
+			for (int i = 0; i <= pivot; i++)
+				blockBound = blockBound
+						+ sorted[i].blockUpperBound(pivotDoc, queryNorm);
+			if (blockBound * BOUND_SLACK >= threshold) {
+				if (sorted[0].docId == pivotDoc) {
+					// tous les termes jusqu'au pivot contiennent le document
+					for (int i = 0; i <= pivot; i++) {
+						sorted[i].score();
+						result++;
+					}
+					collect(terms, pivotDoc, queryNorm, collector);
+					for (int i = 0; i <= pivot; i++) {
+						sorted[i].matched = false;
+						sorted[i].next();
+					}
+				} else {
+					for (int i = 0; i < pivot; i++)
+						if (sorted[i].docId < pivotDoc)
+							sorted[i].advance(pivotDoc);
+				}
+			} else {
+				// aucun document ne peut atteindre le seuil avant la fin du
+				// plus court des blocs, ni avant le terme suivant le pivot
+				int next = NO_MORE_DOCS;
+				for (int i = 0; i <= pivot; i++)
+					next = Math.min(next, sorted[i].blockEnd());
+				if (pivot + 1 < n)
+					next = Math.min(next, sorted[pivot + 1].docId);
+				for (int i = 0; i <= pivot; i++)
+					if (sorted[i].docId < next)
+						sorted[i].advance(next);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Calcule le score final d'un document à partir des contributions des
+	 * termes qui le contiennent, additionnées dans l'ordre de la requête, et
+	 * le soumet au collecteur.
+	 * 
+	 * @param terms
+	 *            Termes de la requête, dans l'ordre de la requête.
+	 * @param docId
+	 *            Document évalué.
+	 * @param queryNorm
+	 *            Norme de la requête.
+	 * @param collector
+	 *            Collecteur des meilleurs documents.
+	 */
+	private void collect(TermScorer[] terms, int docId, float queryNorm,
+			TopDocsCollector collector) {
+		float score = 0;
+		for (TermScorer term : terms)
+			if (term.matched)
+				score = score + term.contribution;
+		if (score != 0)
+			collector.collect(docId,
+					similarity.normalize(score, docId, queryNorm));
+	}
+
+	/**
+	 * État d'un terme de la requête lors de l'évaluation document par
+	 * document : curseur sur ses postings, poids et bornes supérieures.
+	 */
+	private static class TermScorer {
+		/**
+		 * Crée l'état d'un terme, positionné sur son premier posting.
+		 * 
+		 * @param entry
+		 *            Entrée de l'index correspondant au terme.
+		 * @param weight
+		 *            Poids du terme.
+		 * @param similarity
+		 *            Fonction de similarité du moteur.
+		 */
+		public TermScorer(IndexEntry entry, float weight, Similarity similarity) {
+			this.weight = weight;
+			this.similarity = similarity;
+			bounds = entry.getMaxScores();
+			cursor = entry.getPostingCursor();
+			block = 0;
+			next();
+		}
+
+		/** Curseur sur les postings du terme */
+		private AbstractPostingCursor cursor;
+		/** DocId courant, ou {@link #NO_MORE_DOCS} */
+		private int docId;
+		/** Fonction de similarité du moteur */
+		private Similarity similarity;
+		/** Poids du terme */
+		private float weight;
+		/** Bornes des contributions du terme */
+		private BlockMaxScores bounds;
+		/** Borne de la contribution du terme au score final */
+		private float upperBound;
+		/** Bloc courant, pour les bornes par bloc */
+		private int block;
+		/** Contribution calculée pour le document courant */
+		private float contribution;
+		/** Indique si la contribution concerne le document évalué */
+		private boolean matched;
+
+		/**
+		 * Passe au posting suivant.
+		 */
+		public void next() {
+			docId = cursor.next() ? cursor.getDocId() : NO_MORE_DOCS;
+		}
+
+		/**
+		 * Avance jusqu'au premier posting de docId supérieur ou égal à celui
+		 * spécifié.
+		 * 
+		 * @param target
+		 *            DocId à atteindre.
+		 */
+		public void advance(int target) {
+			docId = cursor.advance(target) ? cursor.getDocId() : NO_MORE_DOCS;
+		}
+
+		/**
+		 * Calcule la contribution du terme au score (non normalisé) du
+		 * document courant, de la même manière que l'évaluation exhaustive.
+		 * 
+		 * @return Contribution du terme.
+		 */
+		public float score() {
+			contribution = similarity.score(weight, cursor.getFrequency(),
+					docId);
+			matched = true;
+			return contribution;
+		}
+
+		/**
+		 * Renvoie la borne de la contribution du terme au score final d'un
+		 * document, à partir du bloc pouvant le contenir.
+		 * 
+		 * @param target
+		 *            DocId concerné.
+		 * @param queryNorm
+		 *            Norme du vecteur de la requête.
+		 * @return Borne de la contribution.
+		 */
+		public float blockUpperBound(int target, float queryNorm) {
+			block = bounds.findBlock(target, block);
+			if (block == bounds.getBlockNumber())
+				return 0;
+			return weight * bounds.getBlockScore(block) / queryNorm;
+		}
+
+		/**
+		 * Renvoie le docId suivant la fin du bloc courant.
+		 * 
+		 * @return Premier docId non couvert par le bloc courant.
+		 */
+		public int blockEnd() {
+			if (block == bounds.getBlockNumber())
+				return NO_MORE_DOCS;
+			return bounds.getLastDocId(block) + 1;
 		}
 	}
 
@@ -213,6 +891,19 @@ public class RankingQueryEngine {
 	// //////////////////////////////////////////////////
 	/** Index de référence */
 	private AbstractIndex index;
+	/** Accumulateurs de scores réutilisés par chaque thread */
+	private ThreadLocal<ScoreAccumulator> accumulators;
+	/** Fonction de similarité utilisée pour classer les documents */
+	private Similarity similarity;
+
+	/**
+	 * Renvoie la fonction de similarité utilisée par ce moteur.
+	 * 
+	 * @return Similarité du moteur.
+	 */
+	public Similarity getSimilarity() {
+		return similarity;
+	}
 
 	/**
 	 * Renvoie l'index associé à ce moteur.
@@ -223,6 +914,68 @@ public class RankingQueryEngine {
 		return index;
 	}
 
+	// //////////////////////////////////////////////////
+	// CACHE
+	// //////////////////////////////////////////////////
+	/** Type de moteur utilisé dans les clés du cache des résultats */
+	private static final String ENGINE_TYPE = "RANKING";
+	/** Cache des résultats des requêtes (optionnel) */
+	private QueryResultCache resultCache;
+
+	/**
+	 * Renvoie le cache des résultats utilisé par ce moteur.
+	 * 
+	 * @return Cache des résultats, ou {@code null} s'il n'y en a pas.
+	 */
+	public QueryResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Modifie le cache des résultats utilisé par ce moteur. Le résultat est
+	 * identifié par les termes normalisés de la requête, la similarité, la
+	 * méthode d'évaluation et le nombre de documents demandés. Les requêtes
+	 * dont le temps de traitement est limité ne sont pas concernées, puisque
+	 * leur résultat dépend de la durée du calcul. Une requête dont le résultat
+	 * est dans le cache n'est pas réévaluée : on renvoie alors une copie du
+	 * résultat conservé dans le cache.
+	 * 
+	 * @param resultCache
+	 *            Cache des résultats, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	// //////////////////////////////////////////////////
+	// AFFICHAGE
+	// //////////////////////////////////////////////////
+	/** Indique si le traitement des requêtes est décrit sur la sortie standard */
+	private volatile boolean verbose = true;
+
+	/**
+	 * Indique si ce moteur décrit le traitement des requêtes sur la sortie
+	 * standard.
+	 * 
+	 * @return {@code true} si le traitement est décrit.
+	 */
+	public boolean isVerbose() {
+		return verbose;
+	}
+
+	/**
+	 * Indique si ce moteur doit décrire le traitement des requêtes sur la
+	 * sortie standard (c'est le cas par défaut). Un moteur partagé par
+	 * plusieurs threads ne devrait pas le faire : les descriptions seraient
+	 * mélangées, et les écritures sérialiseraient les traitements.
+	 * 
+	 * @param verbose
+	 *            {@code true} pour décrire le traitement.
+	 */
+	public void setVerbose(boolean verbose) {
+		this.verbose = verbose;
+	}
+
 	// //////////////////////////////////////////////////
 	// TEST
 	// //////////////////////////////////////////////////
@@ -0,0 +1,161 @@
+package query;
+
+import java.util.Arrays;
+
+/**
+ * Accumulateurs de scores réutilisables d'une requête à l'autre, pour
+ * l'évaluation terme par terme. Les scores sont stockés dans un tableau dense
+ * indexé par docId, mais seuls les documents effectivement touchés par la
+ * requête courante sont parcourus : leurs docIds sont listés au fur et à
+ * mesure, et chaque case du tableau est marquée par le numéro de la requête
+ * qui l'a modifiée en dernier. Il n'est donc jamais nécessaire de remettre le
+ * tableau à zéro, et le coût d'une requête est proportionnel au nombre de
+ * postings traités, et non au nombre de documents du corpus. <br/>
+ * Cet objet n'est pas synchronisé : chaque thread doit utiliser le sien.
+ */
+public class ScoreAccumulator {
+	/**
+	 * Crée des accumulateurs pour le nombre de documents spécifié.
+	 *
+	 * @param docNbr
+	 *            Nombre de documents du corpus.
+	 */
+	public ScoreAccumulator(int docNbr) {
+		scores = new float[docNbr];
+		stamps = new int[docNbr];
+		touched = new int[DEFAULT_CAPACITY];
+		size = 0;
+		query = 1;
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Capacité initiale de la liste des documents touchés */
+	private static final int DEFAULT_CAPACITY = 256;
+
+	/** Scores des documents, valables seulement pour les documents touchés */
+	private float[] scores;
+	/** Numéro de la dernière requête ayant touché chaque document */
+	private int[] stamps;
+	/** DocIds des documents touchés par la requête courante */
+	private int[] touched;
+	/** Nombre de documents touchés par la requête courante */
+	private int size;
+	/** Numéro de la requête courante */
+	private int query;
+	/** Nombre de valeurs ajoutées pour la requête courante */
+	private long additions;
+
+	/**
+	 * Renvoie le nombre de valeurs ajoutées depuis le début de la requête
+	 * courante, c'est-à-dire le nombre de postings évalués.
+	 *
+	 * @return Nombre d'appels à {@link #add(int, float)}.
+	 */
+	public long getAdditionNumber() {
+		return additions;
+	}
+
+	/**
+	 * Renvoie le nombre de documents touchés par la requête courante.
+	 *
+	 * @return Nombre de documents touchés.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Renvoie le docId du document touché de rang spécifié.
+	 *
+	 * @param index
+	 *            Rang du document, dans l'ordre où ils ont été touchés.
+	 * @return DocId correspondant.
+	 */
+	public int getDocId(int index) {
+		return touched[index];
+	}
+
+	/**
+	 * Renvoie le score accumulé pour le document spécifié.
+	 *
+	 * @param docId
+	 *            DocId du document.
+	 * @return Score du document, ou zéro s'il n'a pas été touché.
+	 */
+	public float getScore(int docId) {
+		if (stamps[docId] != query)
+			return 0;
+		return scores[docId];
+	}
+
+	// //////////////////////////////////////////////////
+	// ACCUMULATION
+	// //////////////////////////////////////////////////
+	/**
+	 * Oublie les scores de la requête précédente, en temps constant.
+	 */
+	public void reset() {
+		size = 0;
+		additions = 0;
+		query++;
+		// on ne remet le tableau à zéro qu'une fois tous les 2^32 requêtes
+		if (query == 0) {
+			Arrays.fill(stamps, 0);
+			query = 1;
+		}
+	}
+
+	/**
+	 * Ajoute une valeur au score du document spécifié.
+	 *
+	 * @param docId
+	 *            DocId du document.
+	 * @param value
+	 *            Valeur à ajouter.
+	 */
+	public void add(int docId, float value) {
+		additions++;
+		if (stamps[docId] != query) {
+			stamps[docId] = query;
+			scores[docId] = value;
+			if (size == touched.length)
+				touched = Arrays.copyOf(touched, size * 2);
+			touched[size++] = docId;
+		} else
+			scores[docId] = scores[docId] + value;
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		ScoreAccumulator accumulator = new ScoreAccumulator(10);
+
+		// test de add
+		accumulator.add(3, 0.5f);
+		accumulator.add(7, 0.25f);
+		accumulator.add(3, 0.5f);
+		System.out.print("add: " + accumulator.size() + " documents:");
+		for (int i = 0; i < accumulator.size(); i++)
+			System.out.print(" " + accumulator.getDocId(i) + "="
+					+ accumulator.getScore(accumulator.getDocId(i)));
+		System.out.println();
+
+		// test de reset
+		accumulator.reset();
+		accumulator.add(7, 1f);
+		System.out.println("reset: " + accumulator.size() + " document, 3="
+				+ accumulator.getScore(3) + ", 7=" + accumulator.getScore(7));
+	}
+}
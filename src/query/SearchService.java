@@ -0,0 +1,290 @@
+package query;
+
+import indexation.AbstractIndex;
+import indexation.content.PostingList;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import query.RankingQueryEngine.RankingStrategy;
+
+/**
+ * Service traitant simultanément de nombreuses requêtes sur un même index.
+ * Les requêtes sont exécutées par un nombre fixe de threads, typiquement
+ * celui des processeurs disponibles. Tous les threads partagent l'index et
+ * les moteurs, qui ne sont pas modifiés pendant les traitements :
+ * <ul>
+ * <li>les requêtes booléennes sont traitées par un
+ * {@link BooleanQueryEngine}, dont les plans ne sont pas modifiés après leur
+ * construction ;</li>
+ * <li>les requêtes vectorielles sont traitées par un
+ * {@link RankingQueryEngine}, dont les accumulateurs de scores sont propres
+ * à chaque thread ;</li>
+ * <li>l'analyse des requêtes utilise le tokéniseur de l'index, qui n'a pas
+ * d'état, et son normalisateur, qui fournit à chaque thread son propre
+ * racinisateur ;</li>
+ * <li>les moteurs n'écrivent rien sur la sortie standard (cf.
+ * {@link BooleanQueryEngine#setVerbose(boolean)}), et ne lisent pas la
+ * configuration globale pendant les traitements.</li>
+ * </ul>
+ * L'index ne doit pas être modifié tant que le service est utilisé : le cache
+ * des résultats éventuel serait vidé, mais les requêtes en cours pourraient
+ * observer un index partiellement modifié.
+ */
+public class SearchService implements Closeable {
+	/**
+	 * Crée un service interrogeant l'index spécifié, dont les documents sont
+	 * classés selon la similarité cosinus tf-idf, et utilisant autant de
+	 * threads que de processeurs disponibles.
+	 *
+	 * @param index
+	 *            Index de référence, déjà construit.
+	 */
+	public SearchService(AbstractIndex index) {
+		this(index, new CosineSimilarity(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Crée un service interrogeant l'index spécifié, avec la similarité et le
+	 * nombre de threads spécifiés.
+	 *
+	 * @param index
+	 *            Index de référence, déjà construit.
+	 * @param similarity
+	 *            Fonction de similarité utilisée pour classer les documents.
+	 * @param threadNbr
+	 *            Nombre de threads traitant les requêtes.
+	 */
+	public SearchService(AbstractIndex index, Similarity similarity, int threadNbr) {
+		if (threadNbr < 1)
+			throw new IllegalArgumentException("Thread number must be positive.");
+		this.index = index;
+		this.threadNbr = threadNbr;
+		booleanEngine = new BooleanQueryEngine(index);
+		booleanEngine.setVerbose(false);
+		rankingEngine = new RankingQueryEngine(index, similarity);
+		rankingEngine.setVerbose(false);
+		executor = Executors.newFixedThreadPool(threadNbr, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread result = new Thread(runnable, "search-" + count.incrementAndGet());
+				result.setDaemon(true);
+				return result;
+			}
+		});
+		processedQueries = new LongAdder();
+	}
+
+	// //////////////////////////////////////////////////
+	// TRAITEMENT GENERAL
+	// //////////////////////////////////////////////////
+	/** Threads traitant les requêtes */
+	private final ExecutorService executor;
+	/** Nombre de threads traitant les requêtes */
+	private final int threadNbr;
+	/** Nombre de requêtes traitées depuis la création du service */
+	private final LongAdder processedQueries;
+
+	/**
+	 * Soumet une requête booléenne (cf. {@link QueryParser}), qui sera traitée
+	 * par l'un des threads du service.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @return Résultat à venir : la liste des documents concernés, ou
+	 *         l'exception levée si la requête n'est pas conforme à la
+	 *         grammaire.
+	 */
+	public Future<PostingList> submitBooleanQuery(final String query) {
+		return executor.submit(new Callable<PostingList>() {
+			@Override
+			public PostingList call() {
+				PostingList result = booleanEngine.processQuery(query);
+				processedQueries.increment();
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Soumet une requête vectorielle, qui sera traitée par l'un des threads du
+	 * service.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro pour tous les
+	 *            documents de score non-nul.
+	 * @param strategy
+	 *            Méthode d'évaluation.
+	 * @return Résultat à venir : les documents sélectionnés, avec leurs
+	 *         scores.
+	 */
+	public Future<TopDocs> submitRankingQuery(final String query, final int k, final RankingStrategy strategy) {
+		return executor.submit(new Callable<TopDocs>() {
+			@Override
+			public TopDocs call() {
+				TopDocs result = rankingEngine.processTopDocsQuery(query, k, strategy);
+				processedQueries.increment();
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Traite une requête booléenne et attend son résultat.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @return Liste des documents concernés.
+	 *
+	 * @throws InterruptedException
+	 *             Le thread appelant a été interrompu pendant l'attente.
+	 * @throws ExecutionException
+	 *             Le traitement a échoué, par exemple parce que la requête
+	 *             n'est pas conforme à la grammaire.
+	 */
+	public PostingList processBooleanQuery(String query) throws InterruptedException, ExecutionException {
+		return submitBooleanQuery(query).get();
+	}
+
+	/**
+	 * Traite une requête vectorielle et attend son résultat.
+	 *
+	 * @param query
+	 *            Requête à traiter.
+	 * @param k
+	 *            Nombre maximum de documents à renvoyer, ou zéro.
+	 * @param strategy
+	 *            Méthode d'évaluation.
+	 * @return Documents sélectionnés, avec leurs scores.
+	 *
+	 * @throws InterruptedException
+	 *             Le thread appelant a été interrompu pendant l'attente.
+	 * @throws ExecutionException
+	 *             Le traitement a échoué.
+	 */
+	public TopDocs processRankingQuery(String query, int k, RankingStrategy strategy)
+			throws InterruptedException, ExecutionException {
+		return submitRankingQuery(query, k, strategy).get();
+	}
+
+	/**
+	 * Renvoie le nombre de requêtes traitées depuis la création du service.
+	 *
+	 * @return Nombre de requêtes traitées.
+	 */
+	public long getProcessedQueryNumber() {
+		return processedQueries.sum();
+	}
+
+	/**
+	 * Renvoie le nombre de threads traitant les requêtes.
+	 *
+	 * @return Nombre de threads.
+	 */
+	public int getThreadNumber() {
+		return threadNbr;
+	}
+
+	/**
+	 * Arrête le service : les requêtes déjà soumises sont traitées, mais plus
+	 * aucune ne peut l'être.
+	 */
+	@Override
+	public void close() {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// //////////////////////////////////////////////////
+	// INDEX
+	// //////////////////////////////////////////////////
+	/** Index de référence */
+	private final AbstractIndex index;
+	/** Moteur traitant les requêtes booléennes */
+	private final BooleanQueryEngine booleanEngine;
+	/** Moteur traitant les requêtes vectorielles */
+	private final RankingQueryEngine rankingEngine;
+
+	/**
+	 * Renvoie l'index associé à ce service.
+	 *
+	 * @return Index associé à ce service.
+	 */
+	public AbstractIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Modifie le cache des résultats utilisé par les deux moteurs du service.
+	 *
+	 * @param resultCache
+	 *            Cache des résultats, ou {@code null} pour ne pas en utiliser.
+	 */
+	public void setResultCache(QueryResultCache resultCache) {
+		booleanEngine.setResultCache(resultCache);
+		rankingEngine.setResultCache(resultCache);
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : les résultats obtenus par plusieurs
+	 * threads sont comparés avec ceux d'un moteur utilisé par un seul thread
+	 * (cf. {@link performance.SearchBenchmark} pour la mesure du débit).
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		AbstractIndex index = AbstractIndex.indexCorpus(AbstractIndex.TokenListType.ARRAY,
+				AbstractIndex.LexiconType.HASH);
+		String[] queries = { "solar energy", "solar OR energy NOT panels", "(solar energy panels power sun)@2",
+				"running runners ran", "connected connection connecting" };
+		BooleanQueryEngine reference = new BooleanQueryEngine(index);
+		reference.setVerbose(false);
+		RankingQueryEngine ranking = new RankingQueryEngine(index);
+		ranking.setVerbose(false);
+
+		SearchService service = new SearchService(index, new CosineSimilarity(), 4);
+		List<Future<PostingList>> booleanResults = new ArrayList<Future<PostingList>>();
+		List<Future<TopDocs>> rankingResults = new ArrayList<Future<TopDocs>>();
+		for (int i = 0; i < queries.length * 100; i++) {
+			booleanResults.add(service.submitBooleanQuery(queries[i % queries.length]));
+			rankingResults.add(service.submitRankingQuery(queries[i % queries.length], 10,
+					RankingStrategy.EXHAUSTIVE));
+		}
+		int mismatches = 0;
+		for (int i = 0; i < booleanResults.size(); i++) {
+			String query = queries[i % queries.length];
+			if (!booleanResults.get(i).get().toString().equals(reference.processQuery(query).toString()))
+				mismatches++;
+			if (!rankingResults.get(i).get().toString()
+					.equals(ranking.processTopDocsQuery(query, 10, RankingStrategy.EXHAUSTIVE).toString()))
+				mismatches++;
+		}
+		service.close();
+		System.out.println("processed=" + service.getProcessedQueryNumber() + ", mismatches=" + mismatches);
+	}
+}
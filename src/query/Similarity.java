@@ -0,0 +1,76 @@
+package query;
+
+import indexation.content.DocumentStatistics;
+
+/**
+ * Fonction de similarité utilisée par un {@link RankingQueryEngine} pour
+ * calculer le score d'un document par rapport à une requête sac-de-mots. Le
+ * score d'un document est la somme des contributions des termes de la requête
+ * qu'il contient, éventuellement normalisée une fois toutes les contributions
+ * additionnées. <br/>
+ * Tout ce qui ne dépend que du corpus (poids des termes, normalisation des
+ * documents) doit être précalculé dans {@link #prepare(DocumentStatistics)},
+ * de manière à ce que le calcul d'une contribution, effectué pour chaque
+ * posting, soit le plus simple possible. Une instance est donc liée à un
+ * index : chaque moteur doit utiliser la sienne.
+ */
+public interface Similarity {
+	/**
+	 * Effectue les précalculs nécessaires à partir des statistiques des
+	 * documents de l'index. Cette méthode est appelée une fois, à la création
+	 * du moteur.
+	 * 
+	 * @param statistics
+	 *            Statistiques des documents de l'index.
+	 */
+	public void prepare(DocumentStatistics statistics);
+
+	/**
+	 * Renvoie le poids d'un terme, qui ne dépend que de sa fréquence de
+	 * document.
+	 * 
+	 * @param df
+	 *            Nombre de documents contenant le terme.
+	 * @return Poids du terme.
+	 */
+	public float getTermWeight(int df);
+
+	/**
+	 * Calcule la contribution d'un terme au score (non normalisé) d'un
+	 * document qui le contient.
+	 * 
+	 * @param termWeight
+	 *            Poids du terme, renvoyé par {@link #getTermWeight(int)}.
+	 * @param tf
+	 *            Fréquence du terme dans le document.
+	 * @param docId
+	 *            DocId du document.
+	 * @return Contribution du terme au score du document.
+	 */
+	public float score(float termWeight, int tf, int docId);
+
+	/**
+	 * Calcule la norme de la requête, utilisée lors de la normalisation des
+	 * scores.
+	 * 
+	 * @param termWeights
+	 *            Poids des termes de la requête.
+	 * @return Norme de la requête.
+	 */
+	public float getQueryNorm(float[] termWeights);
+
+	/**
+	 * Calcule le score final d'un document à partir de la somme des
+	 * contributions des termes de la requête.
+	 * 
+	 * @param score
+	 *            Somme des contributions.
+	 * @param docId
+	 *            DocId du document.
+	 * @param queryNorm
+	 *            Norme de la requête, renvoyée par
+	 *            {@link #getQueryNorm(float[])}.
+	 * @return Score final du document.
+	 */
+	public float normalize(float score, int docId, float queryNorm);
+}
@@ -0,0 +1,135 @@
+package query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Résultat d'une requête de type sac-de-mots : les documents sélectionnés et
+ * leurs scores, par ordre de score décroissant, stockés dans deux tableaux
+ * parallèles. L'objet indique aussi le nombre total de documents ayant obtenu
+ * un score non-nul, qu'ils aient été sélectionnés ou pas.
+ */
+public class TopDocs {
+	/**
+	 * Crée un résultat à partir des tableaux spécifiés (sans copie).
+	 *
+	 * @param docIds
+	 *            DocIds des documents sélectionnés, par score décroissant.
+	 * @param scores
+	 *            Scores de ces documents.
+	 * @param totalHits
+	 *            Nombre de documents ayant obtenu un score non-nul.
+	 */
+	public TopDocs(int[] docIds, float[] scores, int totalHits) {
+		this.docIds = docIds;
+		this.scores = scores;
+		this.totalHits = totalHits;
+	}
+
+	// //////////////////////////////////////////////////
+	// DOCUMENTS
+	// //////////////////////////////////////////////////
+	/** DocIds des documents sélectionnés */
+	private int[] docIds;
+	/** Scores des documents sélectionnés */
+	private float[] scores;
+	/** Nombre de documents ayant obtenu un score non-nul */
+	private int totalHits;
+	/** Nombre de postings évalués pour obtenir ce résultat */
+	private long scoredPostings;
+
+	/**
+	 * Renvoie le nombre de documents sélectionnés.
+	 *
+	 * @return Nombre de documents de ce résultat.
+	 */
+	public int size() {
+		return docIds.length;
+	}
+
+	/**
+	 * Renvoie le docId du document de rang spécifié.
+	 *
+	 * @param rank
+	 *            Rang du document (0 pour le plus pertinent).
+	 * @return DocId du document.
+	 */
+	public int getDocId(int rank) {
+		return docIds[rank];
+	}
+
+	/**
+	 * Renvoie le score du document de rang spécifié.
+	 *
+	 * @param rank
+	 *            Rang du document (0 pour le plus pertinent).
+	 * @return Score du document.
+	 */
+	public float getScore(int rank) {
+		return scores[rank];
+	}
+
+	/**
+	 * Renvoie le nombre de documents ayant obtenu un score non-nul, y compris
+	 * ceux qui n'ont pas été sélectionnés. Lorsque l'évaluation utilise un
+	 * élagage dynamique, seuls les documents complètement évalués sont
+	 * comptés.
+	 *
+	 * @return Nombre de documents trouvés.
+	 */
+	public int getTotalHits() {
+		return totalHits;
+	}
+
+	/**
+	 * Renvoie le nombre de postings dont la contribution au score a été
+	 * calculée pour obtenir ce résultat.
+	 *
+	 * @return Nombre de postings évalués.
+	 */
+	public long getScoredPostings() {
+		return scoredPostings;
+	}
+
+	/**
+	 * Enregistre le nombre de postings évalués pour obtenir ce résultat.
+	 *
+	 * @param scoredPostings
+	 *            Nombre de postings évalués.
+	 */
+	public void setScoredPostings(long scoredPostings) {
+		this.scoredPostings = scoredPostings;
+	}
+
+	/**
+	 * Crée une copie de ce résultat. Les tableaux des documents et des scores,
+	 * qui ne sont jamais modifiés ni exposés, sont partagés.
+	 *
+	 * @return Copie de ce résultat.
+	 */
+	public TopDocs copy() {
+		TopDocs result = new TopDocs(docIds, scores, totalHits);
+		result.scoredPostings = scoredPostings;
+		return result;
+	}
+
+	/**
+	 * Convertit ce résultat en liste d'objets {@link DocScore}.
+	 *
+	 * @return Liste ordonnée des documents sélectionnés, avec leurs scores.
+	 */
+	public List<DocScore> toDocScores() {
+		List<DocScore> result = new ArrayList<DocScore>(docIds.length);
+		for (int i = 0; i < docIds.length; i++)
+			result.add(new DocScore(docIds[i], scores[i]));
+		return result;
+	}
+
+	// //////////////////////////////////////////////////
+	// OBJECT
+	// //////////////////////////////////////////////////
+	@Override
+	public String toString() {
+		return toDocScores().toString();
+	}
+}
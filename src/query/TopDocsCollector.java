@@ -0,0 +1,240 @@
+package query;
+
+import java.util.Arrays;
+
+/**
+ * Objet sélectionnant les {@code k} documents de plus haut score parmi des
+ * candidats qui lui sont soumis un par un. Les candidats retenus sont stockés
+ * dans un tas binaire minimal (le moins bon en tête), sous la forme d'entiers
+ * {@code long} combinant le score (32 bits de poids fort) et le docId (32 bits
+ * de poids faible) : un candidat n'est admis que s'il dépasse le moins bon
+ * document retenu, et aucun objet n'est créé pendant la sélection. <br/>
+ * À score égal, le document de plus grand docId est préféré, comme pour
+ * l'ordre défini par {@link DocScore}. Les documents de score nul sont
+ * ignorés. <br/>
+ * La valeur zéro pour {@code k} signifie que l'on veut tous les documents de
+ * score non-nul.
+ */
+public class TopDocsCollector {
+	/**
+	 * Crée un collecteur gardant les {@code k} meilleurs documents.
+	 *
+	 * @param k
+	 *            Nombre maximum de documents à garder, ou zéro pour tous les
+	 *            documents de score non-nul.
+	 */
+	public TopDocsCollector(int k) {
+		if (k < 0)
+			throw new IllegalArgumentException("k must be positive or zero: "
+					+ k);
+		this.k = k;
+		heap = new long[k > 0 ? k : DEFAULT_CAPACITY];
+		size = 0;
+		totalHits = 0;
+	}
+
+	// //////////////////////////////////////////////////
+	// DONNÉES
+	// //////////////////////////////////////////////////
+	/** Capacité initiale lorsque tous les documents sont gardés */
+	private static final int DEFAULT_CAPACITY = 64;
+
+	/** Nombre maximum de documents à garder, ou zéro */
+	private final int k;
+	/** Candidats retenus, organisés en tas minimal si {@code k > 0} */
+	private long[] heap;
+	/** Nombre de candidats retenus */
+	private int size;
+	/** Nombre de candidats de score non-nul soumis */
+	private int totalHits;
+
+	/**
+	 * Renvoie le score qu'un candidat doit dépasser pour être retenu.
+	 *
+	 * @return Score du moins bon document retenu si {@code k} documents sont
+	 *         déjà retenus, ou {@link Float#NEGATIVE_INFINITY} sinon.
+	 */
+	public float getThreshold() {
+		if (k == 0 || size < k)
+			return Float.NEGATIVE_INFINITY;
+		return unpackScore(heap[0]);
+	}
+
+	// //////////////////////////////////////////////////
+	// SÉLECTION
+	// //////////////////////////////////////////////////
+	/**
+	 * Soumet un candidat, qui est retenu s'il fait partie des {@code k}
+	 * meilleurs documents soumis jusqu'ici.
+	 *
+	 * @param docId
+	 *            DocId du candidat.
+	 * @param score
+	 *            Score du candidat.
+	 */
+	public void collect(int docId, float score) {
+		if (score == 0)
+			return;
+		totalHits++;
+		long key = pack(docId, score);
+		if (k == 0) {
+			if (size == heap.length)
+				heap = Arrays.copyOf(heap, size * 2);
+			heap[size++] = key;
+		} else if (size < k) {
+			heap[size] = key;
+			siftUp(size);
+			size++;
+		} else if (key > heap[0]) {
+			heap[0] = key;
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Fait remonter un élément du tas jusqu'à sa place.
+	 *
+	 * @param index
+	 *            Position de l'élément.
+	 */
+	private void siftUp(int index) {
+		long key = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >>> 1;
+			if (heap[parent] <= key)
+				break;
+			heap[index] = heap[parent];
+			index = parent;
+		}
+		heap[index] = key;
+	}
+
+	/**
+	 * Fait descendre un élément du tas jusqu'à sa place.
+	 *
+	 * @param index
+	 *            Position de l'élément.
+	 */
+	private void siftDown(int index) {
+		long key = heap[index];
+		int half = size >>> 1;
+		while (index < half) {
+			int child = 2 * index + 1;
+			if (child + 1 < size && heap[child + 1] < heap[child])
+				child++;
+			if (key <= heap[child])
+				break;
+			heap[index] = heap[child];
+			index = child;
+		}
+		heap[index] = key;
+	}
+
+	/**
+	 * Renvoie les documents retenus, par score décroissant.
+	 *
+	 * @return Résultat de la sélection.
+	 */
+	public TopDocs getTopDocs() {
+		long[] sorted = Arrays.copyOf(heap, size);
+		Arrays.sort(sorted);
+		int[] docIds = new int[size];
+		float[] scores = new float[size];
+		for (int i = 0; i < size; i++) {
+			long key = sorted[size - 1 - i];
+			docIds[i] = (int) key;
+			scores[i] = unpackScore(key);
+		}
+		return new TopDocs(docIds, scores, totalHits);
+	}
+
+	// //////////////////////////////////////////////////
+	// CODAGE
+	// //////////////////////////////////////////////////
+	/**
+	 * Combine un docId et un score dans un entier {@code long}, de manière à
+	 * ce que l'ordre des entiers soit celui des scores, puis des docIds.
+	 *
+	 * @param docId
+	 *            DocId positif ou nul.
+	 * @param score
+	 *            Score quelconque.
+	 * @return Entier combinant les deux valeurs.
+	 */
+	private static long pack(int docId, float score) {
+		int bits = Float.floatToIntBits(score);
+		// les réels négatifs sont ordonnés à l'envers dans leur codage
+		bits = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+		return ((long) bits << 32) | docId;
+	}
+
+	/**
+	 * Extrait le score d'un entier produit par {@link #pack(int, float)}.
+	 *
+	 * @param key
+	 *            Entier combinant un docId et un score.
+	 * @return Score correspondant.
+	 */
+	private static float unpackScore(long key) {
+		int bits = (int) (key >> 32);
+		bits = bits ^ ((bits >> 31) & 0x7FFFFFFF);
+		return Float.intBitsToFloat(bits);
+	}
+
+	// //////////////////////////////////////////////////
+	// TEST
+	// //////////////////////////////////////////////////
+	/**
+	 * Test des méthodes de cette classe : la sélection est comparée avec
+	 * celle obtenue à l'aide d'un {@link java.util.TreeSet} de
+	 * {@link DocScore}, puis la durée des deux méthodes est comparée.
+	 *
+	 * @param args
+	 *            Pas utilisé.
+	 *
+	 * @throws Exception
+	 *             Problème quelconque rencontré.
+	 */
+	public static void main(String[] args) throws Exception {
+		// test de collect et getTopDocs
+		TopDocsCollector collector = new TopDocsCollector(3);
+		float[] scores = { 0.5f, 0f, 0.9f, 0.1f, 0.9f, -0.2f, 0.7f };
+		for (int i = 0; i < scores.length; i++)
+			collector.collect(i, scores[i]);
+		System.out.println("k=3: " + collector.getTopDocs() + ", total hits="
+				+ collector.getTopDocs().getTotalHits() + ", threshold="
+				+ collector.getThreshold());
+		TopDocsCollector all = new TopDocsCollector(0);
+		for (int i = 0; i < scores.length; i++)
+			all.collect(i, scores[i]);
+		System.out.println("k=0: " + all.getTopDocs());
+
+		// comparaison avec un TreeSet sur un grand nombre de documents
+		java.util.Random random = new java.util.Random(0);
+		int docNbr = 1000000;
+		float[] values = new float[docNbr];
+		for (int i = 0; i < docNbr; i++)
+			values[i] = random.nextInt(10) == 0 ? random.nextInt(1000) / 1000f
+					: 0;
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			TopDocsCollector heap = new TopDocsCollector(10);
+			for (int i = 0; i < docNbr; i++)
+				heap.collect(i, values[i]);
+			TopDocs topDocs = heap.getTopDocs();
+			long heapTime = System.nanoTime() - start;
+			start = System.nanoTime();
+			java.util.TreeSet<DocScore> treeSet = new java.util.TreeSet<DocScore>();
+			for (int i = 0; i < docNbr; i++)
+				treeSet.add(new DocScore(i, values[i]));
+			java.util.List<DocScore> expected = new java.util.ArrayList<DocScore>();
+			java.util.Iterator<DocScore> it = treeSet.descendingIterator();
+			while (expected.size() < 10)
+				expected.add(it.next());
+			long treeTime = System.nanoTime() - start;
+			System.out.println("identical=" + topDocs.toString().equals(expected.toString())
+					+ ", heap=" + heapTime / 1000000 + " ms, tree set="
+					+ treeTime / 1000000 + " ms");
+		}
+	}
+}
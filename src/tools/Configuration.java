@@ -111,4 +111,154 @@ public class Configuration {
 	public static boolean isComputingScores() {
 		return computingScores;
 	}
+
+	// //////////////////////////////////////////////////
+	// POSTINGS
+	// //////////////////////////////////////////////////
+	/** Indique s'il faut ou pas stocker les postings hors du tas */
+	private static boolean storingPostingsOffHeap = false;
+
+	/**
+	 * Permet d'indiquer si les postings doivent être stockés hors du tas Java
+	 * ({@code true}) ou pas ({@code false}).
+	 * 
+	 * @param storingPostingsOffHeap
+	 *            Stocker les postings hors du tas ({@code true}) ou pas (
+	 *            {@code false}).
+	 */
+	public static void setStoringPostingsOffHeap(boolean storingPostingsOffHeap) {
+		Configuration.storingPostingsOffHeap = storingPostingsOffHeap;
+	}
+
+	/**
+	 * Indique si les postings doivent être stockés hors du tas Java (
+	 * {@code true}) ou pas ({@code false}).
+	 * 
+	 * @return Stocker les postings hors du tas ({@code true}) ou pas (
+	 *         {@code false}).
+	 */
+	public static boolean isStoringPostingsOffHeap() {
+		return storingPostingsOffHeap;
+	}
+
+	/**
+	 * Indique s'il faut ou pas laisser les postings sur disque, et ne les lire
+	 * qu'à la demande
+	 */
+	private static boolean loadingPostingsLazily = false;
+
+	/**
+	 * Permet d'indiquer si les postings doivent être laissés sur disque et lus
+	 * seulement lorsqu'une requête en a besoin ({@code true}), ou gardés en
+	 * mémoire avec le lexique ({@code false}).
+	 * 
+	 * @param loadingPostingsLazily
+	 *            Lire les postings à la demande ({@code true}) ou pas (
+	 *            {@code false}).
+	 */
+	public static void setLoadingPostingsLazily(boolean loadingPostingsLazily) {
+		Configuration.loadingPostingsLazily = loadingPostingsLazily;
+	}
+
+	/**
+	 * Indique si les postings doivent être laissés sur disque et lus seulement
+	 * lorsqu'une requête en a besoin ({@code true}), ou gardés en mémoire avec
+	 * le lexique ({@code false}).
+	 * 
+	 * @return Lire les postings à la demande ({@code true}) ou pas (
+	 *         {@code false}).
+	 */
+	public static boolean isLoadingPostingsLazily() {
+		return loadingPostingsLazily;
+	}
+
+	/**
+	 * Taille maximale (en octets) du cache de postings lus sur disque, ou zéro
+	 * pour ne pas utiliser de cache
+	 */
+	private static long postingCacheSize = 0;
+
+	/**
+	 * Permet de spécifier la taille maximale du cache contenant les listes de
+	 * postings lues sur disque (index dont les postings sont lus à la demande,
+	 * ou index sur disque). La valeur zéro désactive le cache.
+	 * 
+	 * @param postingCacheSize
+	 *            Taille maximale du cache, en octets, ou zéro.
+	 */
+	public static void setPostingCacheSize(long postingCacheSize) {
+		Configuration.postingCacheSize = postingCacheSize;
+	}
+
+	/**
+	 * Renvoie la taille maximale du cache contenant les listes de postings lues
+	 * sur disque.
+	 * 
+	 * @return Taille maximale du cache, en octets, ou zéro s'il est désactivé.
+	 */
+	public static long getPostingCacheSize() {
+		return postingCacheSize;
+	}
+
+	/**
+	 * Indique s'il faut ou pas précalculer l'impact de chaque posting lors de
+	 * l'indexation
+	 */
+	private static boolean precomputingImpacts = false;
+
+	/**
+	 * Permet d'indiquer si le poids tf-idf de chaque posting doit être calculé
+	 * et quantifié lors de l'indexation, avec une copie de chaque liste triée
+	 * par impact décroissant ({@code true}), ou calculé à chaque requête (
+	 * {@code false}).
+	 * 
+	 * @param precomputingImpacts
+	 *            Précalculer les impacts ({@code true}) ou pas ({@code false}).
+	 */
+	public static void setPrecomputingImpacts(boolean precomputingImpacts) {
+		Configuration.precomputingImpacts = precomputingImpacts;
+	}
+
+	/**
+	 * Indique si le poids tf-idf de chaque posting doit être calculé et
+	 * quantifié lors de l'indexation ({@code true}), ou calculé à chaque
+	 * requête ({@code false}).
+	 * 
+	 * @return Précalculer les impacts ({@code true}) ou pas ({@code false}).
+	 */
+	public static boolean isPrecomputingImpacts() {
+		return precomputingImpacts;
+	}
+
+	/**
+	 * Indique s'il faut ou pas stocker les scores maximaux de chaque terme et
+	 * de chaque bloc de postings
+	 */
+	private static boolean storingMaxScores = false;
+
+	/**
+	 * Permet d'indiquer si les bornes supérieures des contributions de chaque
+	 * terme (sur toute sa liste et sur chaque bloc de postings) doivent être
+	 * calculées lors de l'indexation ({@code true}), ce qui permet l'élagage
+	 * dynamique lors des requêtes, ou pas ({@code false}).
+	 * 
+	 * @param storingMaxScores
+	 *            Stocker les scores maximaux ({@code true}) ou pas (
+	 *            {@code false}).
+	 */
+	public static void setStoringMaxScores(boolean storingMaxScores) {
+		Configuration.storingMaxScores = storingMaxScores;
+	}
+
+	/**
+	 * Indique si les bornes supérieures des contributions de chaque terme
+	 * doivent être calculées lors de l'indexation ({@code true}) ou pas (
+	 * {@code false}).
+	 * 
+	 * @return Stocker les scores maximaux ({@code true}) ou pas (
+	 *         {@code false}).
+	 */
+	public static boolean isStoringMaxScores() {
+		return storingMaxScores;
+	}
 }
@@ -1,6 +1,6 @@
 package tools;
 
-import indexation.content.Posting;
+import indexation.content.PostingList;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -59,6 +59,42 @@ public class FileTools {
 		return result;
 	}
 
+	/**
+	 * Renvoie le chemin vers le fichier contenant le lexique sur disque (arbre
+	 * B+) de l'index.
+	 * 
+	 * @return Chemin du fichier (binaire) du lexique.
+	 */
+	public static String getLexiconFile() {
+		String corpusName = Configuration.getCorpusName();
+		String options = "";
+		if (Configuration.isFilteringStopWords())
+			options = options + "_filter";
+		if (Configuration.isStemmingTokens())
+			options = options + "_stem";
+		String result = "data" + File.separator + corpusName + options
+				+ "_lexicon.data";
+		return result;
+	}
+
+	/**
+	 * Renvoie le chemin vers le fichier contenant les listes de postings de
+	 * l'index, lorsqu'elles sont stockées séparément du lexique.
+	 * 
+	 * @return Chemin du fichier (binaire) des postings.
+	 */
+	public static String getPostingsFile() {
+		String corpusName = Configuration.getCorpusName();
+		String options = "";
+		if (Configuration.isFilteringStopWords())
+			options = options + "_filter";
+		if (Configuration.isStemmingTokens())
+			options = options + "_stem";
+		String result = "data" + File.separator + corpusName + options
+				+ "_postings.data";
+		return result;
+	}
+
 	/**
 	 * Renvoie le chemin vers le fichier (CSV) de décompte des termes.
 	 * 
@@ -120,14 +156,14 @@ public class FileTools {
 	 *            Liste de postings.
 	 * @return Liste de noms de fichiers.
 	 */
-	public static List<String> getFileNamesFromPostings(List<Posting> postings) {
+	public static List<String> getFileNamesFromPostings(PostingList postings) {
 		List<String> result = new LinkedList<String>();
 		File folder = new File(getCorpusFolder());
 		String fn[] = folder.list();
 		Arrays.sort(fn);
 
-		for (Posting posting : postings) {
-			int docId = posting.getDocId();
+		for (int i = 0; i < postings.size(); i++) {
+			int docId = postings.getDocId(i);
 			String name = fn[docId];
 			result.add(name);
 		}
@@ -166,8 +202,8 @@ public class FileTools {
 	 *            Liste de noms de fichiers.
 	 * @return Liste de postings.
 	 */
-	public static List<Posting> getPostingsFromFileNames(List<String> fileNames) {
-		List<Posting> result = new LinkedList<Posting>();
+	public static PostingList getPostingsFromFileNames(List<String> fileNames) {
+		PostingList result = new PostingList(Math.max(1, fileNames.size()));
 		File folder = new File(getCorpusFolder());
 		String fn[] = folder.list();
 		List<String> fn2 = new ArrayList<String>(Arrays.asList(fn));
@@ -176,8 +212,7 @@ public class FileTools {
 
 		for (String fileName : fileNames) {
 			int docId = fn2.indexOf(fileName);
-			Posting posting = new Posting(docId);
-			result.add(posting);
+			result.add(docId, 0);
 		}
 		return result;
 	}